@@ -0,0 +1,39 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Temporary directories holding the generated data files, along with the snapshots written next to them.
+ *
+ * @author karanikasg@gmail.com.
+ */
+final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * @return the generated data file, found in a new temporary directory of its own
+     */
+    static Path createDataFile(RouteDataGenerator generator) throws IOException {
+        Path dataFile = Files.createTempDirectory("busroute-benchmark").resolve("routes.txt");
+        generator.write(dataFile);
+        return dataFile;
+    }
+
+    /**
+     * Deletes the data file along with everything else found in its directory
+     */
+    static void delete(Path dataFile) throws IOException {
+        Path directory = dataFile.getParent();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,291 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import com.jojos.challenge.busroute.Main;
+import com.jojos.challenge.busroute.control.NettyServer;
+import com.jojos.challenge.busroute.util.Histogram;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@code GET /api/direct} under many concurrent keep-alive connections, the service started in process.
+ *
+ * A single selector thread holds all connections. Every connection sends a request once every {@code interval}
+ * milliseconds, the first ones spread evenly over the first interval, and waits for the response in between, so
+ * the offered load is {@code connections / interval} requests per millisecond whatever the response times. The
+ * latency of a request is taken from the moment it was due rather than the moment it was sent, so a server
+ * falling behind shows in the percentiles instead of slowing down the client.
+ *
+ * Arguments are {@code name=value} pairs, all optional
+ * <ul>
+ *     <li>{@code connections} 10000, {@code interval} 1000 milliseconds</li>
+ *     <li>{@code warmup} 10 and {@code duration} 30 seconds</li>
+ *     <li>{@code threads} {@code PLATFORM|VIRTUAL}, the {@code busroute.threads.mode} of the service</li>
+ *     <li>{@code server} {@code SERVLET|NETTY}</li>
+ *     <li>{@code store} COMPACT, {@code routes} 100000, {@code stationsPerRoute} 50, {@code stations} 1000000</li>
+ * </ul>
+ * Client and service share the process, so it needs twice as many file descriptors as connections.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public final class ConnectionLoadTest {
+
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    /**
+     * Lets the servlet container keep a connection open for any number of requests and however long it is idle,
+     * as netty does, rather than closing it after 100 requests or 20 idle seconds
+     */
+    public static class KeepAliveConfiguration {
+        @Bean
+        public EmbeddedServletContainerCustomizer unlimitedKeepAlive() {
+            return container -> ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+                AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) connector.getProtocolHandler();
+                protocol.setMaxKeepAliveRequests(-1);
+                protocol.setKeepAliveTimeout(-1);
+            });
+        }
+    }
+
+    /**
+     * A connection along with the request it is waiting for
+     */
+    private static final class Connection {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer response = ByteBuffer.allocate(4_096);
+        private ByteBuffer request;
+        private long dueNanos;
+    }
+
+    private final InetSocketAddress address;
+    private final int connections;
+    private final long intervalNanos;
+    private final int stations;
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    private final Histogram latency = new Histogram();
+    private long errors;
+    private long reconnects;
+
+    private ConnectionLoadTest(InetSocketAddress address, int connections, long intervalMillis, int stations) {
+        this.address = address;
+        this.connections = connections;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.stations = stations;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        int connections = Integer.parseInt(options.getOrDefault("connections", "10000"));
+        long interval = Long.parseLong(options.getOrDefault("interval", "1000"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        String threads = options.getOrDefault("threads", "PLATFORM").toUpperCase(Locale.ROOT);
+        String server = options.getOrDefault("server", "SERVLET").toUpperCase(Locale.ROOT);
+        String store = options.getOrDefault("store", "COMPACT");
+        int routes = Integer.parseInt(options.getOrDefault("routes", "100000"));
+        int stationsPerRoute = Integer.parseInt(options.getOrDefault("stationsPerRoute", "50"));
+        int stations = Integer.parseInt(options.getOrDefault("stations", "1000000"));
+
+        Path dataFile = BenchmarkFiles.createDataFile(
+                new RouteDataGenerator(routes, stationsPerRoute, stations, RouteDataGenerator.Distribution.UNIFORM, 42));
+        try (ConfigurableApplicationContext context = SpringApplication.run(new Object[]{Main.class, KeepAliveConfiguration.class},
+                new String[]{dataFile.toString(), "--server.port=0", "--busroute.store=" + store, "--busroute.threads.mode=" + threads,
+                        "--busroute.reload.enabled=false", "--busroute.audit.enabled=false", "--logging.level.com.jojos=WARN",
+                        "--busroute.netty.enabled=" + "NETTY".equals(server), "--busroute.netty.port=0"})) {
+            int port = "NETTY".equals(server) ? context.getBean(NettyServer.class).getPort() :
+                    ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+
+            ConnectionLoadTest test = new ConnectionLoadTest(new InetSocketAddress("localhost", port), connections, interval, stations);
+            test.run(TimeUnit.SECONDS.toNanos(warmup), TimeUnit.SECONDS.toNanos(duration));
+
+            Histogram latency = test.latency;
+            System.out.printf(Locale.ROOT, "%s server, %s threads, %d connections, a request every %d ms each%n",
+                    server, threads, connections, interval);
+            System.out.printf(Locale.ROOT, "requests %d, errors %d, reconnects %d, throughput %.0f/s%n",
+                    latency.getCount(), test.errors, test.reconnects, (double) latency.getCount() / duration);
+            System.out.printf(Locale.ROOT, "latency ms: mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, p999 %.3f, max %.3f%n",
+                    latency.getMean() / 1e6, latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(90) / 1e6,
+                    latency.getValueAtPercentile(99) / 1e6, latency.getValueAtPercentile(99.9) / 1e6, latency.getMax() / 1e6);
+        } finally {
+            BenchmarkFiles.delete(dataFile);
+        }
+    }
+
+    /**
+     * Opens the connections and keeps them busy for the warmup and then the measurement, only the latter being recorded
+     */
+    private void run(long warmupNanos, long durationNanos) throws IOException {
+        try (Selector selector = Selector.open()) {
+            // connections waiting for their next request, in the order they are due since they all wait the same interval
+            ArrayDeque<Connection> idle = new ArrayDeque<>(connections);
+            for (int i = 0; i < connections; i++) {
+                Connection connection = new Connection();
+                connect(selector, connection);
+                idle.add(connection);
+            }
+            // the clock starts once all connections are open
+            long start = System.nanoTime();
+            int i = 0;
+            for (Connection connection : idle) {
+                connection.dueNanos = start + intervalNanos * i++ / connections;
+            }
+
+            long measureFrom = start + warmupNanos;
+            long end = measureFrom + durationNanos;
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                while (!idle.isEmpty() && idle.peekFirst().dueNanos <= now) {
+                    send(idle.pollFirst());
+                }
+                long waitMillis = idle.isEmpty() ? 1 : TimeUnit.NANOSECONDS.toMillis(idle.peekFirst().dueNanos - now);
+                selector.select(Math.max(1, waitMillis));
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isWritable()) {
+                        send(connection);
+                    } else if (key.isReadable() && receive(selector, connection, measureFrom)) {
+                        connection.dueNanos += intervalNanos;
+                        idle.addLast(connection);
+                    }
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        }
+    }
+
+    private void connect(Selector selector, Connection connection) throws IOException {
+        try {
+            connection.channel = SocketChannel.open(address);
+        } catch (IOException e) {
+            throw new IOException("Failed to open a connection, is the limit of open files (ulimit -n) high enough?", e);
+        }
+        connection.channel.socket().setTcpNoDelay(true);
+        connection.channel.configureBlocking(false);
+        connection.key = connection.channel.register(selector, 0, connection);
+    }
+
+    /**
+     * Writes the request of the connection, a new one unless part of it is still to be written
+     */
+    private void send(Connection connection) throws IOException {
+        if (connection.request == null || !connection.request.hasRemaining()) {
+            String request = "GET /api/direct?dep_sid=" + random.nextInt(stations) + "&arr_sid=" + random.nextInt(stations) +
+                    " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+            connection.request = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+            connection.response.clear();
+        }
+        connection.channel.write(connection.request);
+        connection.key.interestOps(connection.request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Reads what is available of the response
+     *
+     * @return whether the response is complete
+     */
+    private boolean receive(Selector selector, Connection connection, long measureFrom) throws IOException {
+        ByteBuffer response = connection.response;
+        if (connection.channel.read(response) < 0) {
+            // closed by the server, the request is counted as failed and sent again
+            errors++;
+            reconnects++;
+            connection.channel.close();
+            connect(selector, connection);
+            connection.request = null;
+            send(connection);
+            return false;
+        }
+
+        int headerEnd = indexOf(response, HEADER_END, 0);
+        if (headerEnd < 0) {
+            return false;
+        }
+        String headers = new String(response.array(), 0, headerEnd, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+        int bodyStart = headerEnd + HEADER_END.length;
+        int contentLength = headerValue(headers, "content-length");
+        boolean complete = contentLength >= 0 ? response.position() - bodyStart >= contentLength :
+                indexOf(response, LAST_CHUNK, bodyStart) >= 0;
+        if (!complete) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        if (connection.dueNanos >= measureFrom) {
+            latency.record(now - connection.dueNanos);
+            if (!headers.startsWith("http/1.1 200")) {
+                errors++;
+            }
+        }
+        connection.key.interestOps(0);
+        if (headers.contains("\r\nconnection: close")) {
+            reconnects++;
+            connection.channel.close();
+            connect(selector, connection);
+        }
+        return true;
+    }
+
+    private static int headerValue(String headers, String name) {
+        int start = headers.indexOf("\r\n" + name + ":");
+        if (start < 0) {
+            return -1;
+        }
+        start += name.length() + 3;
+        int end = headers.indexOf("\r\n", start);
+        return Integer.parseInt(headers.substring(start, end < 0 ? headers.length() : end).trim());
+    }
+
+    /**
+     * @return the index of the bytes among the ones read into the buffer, -1 if not found
+     */
+    private static int indexOf(ByteBuffer buffer, byte[] bytes, int from) {
+        byte[] array = buffer.array();
+        outer:
+        for (int i = from; i <= buffer.position() - bytes.length; i++) {
+            for (int j = 0; j < bytes.length; j++) {
+                if (array[i + j] != bytes[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,105 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import com.jojos.challenge.busroute.service.CompactRouteStore;
+import com.jojos.challenge.busroute.service.DeltaRouteStore;
+import com.jojos.challenge.busroute.service.InMemoryRouteStore;
+import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import com.jojos.challenge.busroute.util.RouteDelta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RouteStore#applyDelta(RouteDelta)} replacing {@code changes} random routes at a time, followed by a query
+ * seeing them, per store and number of routes loaded. The changes pile up from one call to the next, as they do until
+ * the data file is loaded again, so the time includes merging the segments of the changes and building the index of
+ * the {@code IN_MEMORY} store again once the changes add up to half of its routes.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeltaBenchmark {
+
+    private static final int DELTAS = 1_024;
+
+    @Param({"IN_MEMORY", "COMPACT"})
+    public RouteStoreType store;
+
+    @Param({"10000", "100000"})
+    public int routes;
+
+    @Param({"1", "10", "100"})
+    public int changes;
+
+    @Param("50")
+    public int stationsPerRoute;
+
+    @Param("1000000")
+    public int stations;
+
+    private RouteStore routeStore;
+
+    private RouteDelta[] deltas;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RouteDataGenerator generator = new RouteDataGenerator(routes, stationsPerRoute, stations,
+                RouteDataGenerator.Distribution.UNIFORM, 42);
+        List<String> lines = generator.lines();
+        RouteStore loaded = store == RouteStoreType.COMPACT ? new CompactRouteStore() : new InMemoryRouteStore();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] tokens = line.split(" ");
+            LinkedHashSet<Integer> stationIds = new LinkedHashSet<>();
+            for (int i = 1; i < tokens.length; i++) {
+                stationIds.add(Integer.parseInt(tokens[i]));
+            }
+            loaded.storeRoute(Integer.parseInt(tokens[0]), stationIds);
+        }
+        loaded.freeze();
+        routeStore = store == RouteStoreType.COMPACT ? new DeltaRouteStore((CompactRouteStore) loaded) : loaded;
+
+        // the stations of the routes replacing others are taken from routes of the data file
+        SplittableRandom random = new SplittableRandom(7);
+        deltas = new RouteDelta[DELTAS];
+        for (int delta = 0; delta < DELTAS; delta++) {
+            List<String> replacements = new ArrayList<>(changes);
+            for (int change = 0; change < changes; change++) {
+                String[] tokens = lines.get(1 + random.nextInt(routes)).split(" ");
+                replacements.add("replace " + random.nextInt(routes) + " " +
+                        String.join(" ", Arrays.asList(tokens).subList(1, tokens.length)));
+            }
+            deltas[delta] = RouteDelta.parse(replacements);
+        }
+    }
+
+    @Benchmark
+    public boolean applyDelta() {
+        int delta = next;
+        next = (delta + 1) & (DELTAS - 1);
+        routeStore.applyDelta(deltas[delta]);
+        return routeStore.isDirectConnectionExistBetween(delta, stations - delta);
+    }
+}
@@ -0,0 +1,110 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.service.RouteService;
+import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The memory a store occupies once loaded, per store implementation. The measured time is the load time,
+ * the footprint is reported through the secondary results
+ * <ul>
+ *     <li>{@code heapBytes}, the heap still in use after a full collection, compared to before loading</li>
+ *     <li>{@code mappedBytes}, the size of the snapshot mapped by the {@link RouteStoreType#MAPPED} store</li>
+ * </ul>
+ *
+ * @author karanikasg@gmail.com.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class FootprintBenchmark {
+
+    @Param({"IN_MEMORY", "COMPACT", "MAPPED", "COMPRESSED"})
+    public RouteStoreType store;
+
+    @Param({"UNIFORM", "SKEWED"})
+    public RouteDataGenerator.Distribution distribution;
+
+    @Param("100000")
+    public int routes;
+
+    @Param("50")
+    public int stationsPerRoute;
+
+    @Param("1000000")
+    public int stations;
+
+    private Path dataFile;
+    private RouteStore routeStore;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long heapBytes;
+        public long mappedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFile = BenchmarkFiles.createDataFile(new RouteDataGenerator(routes, stationsPerRoute, stations, distribution, 42));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(dataFile);
+    }
+
+    @Setup(Level.Iteration)
+    public void release() {
+        routeStore = null;
+    }
+
+    @Benchmark
+    public RouteStore load(Footprint footprint) throws IOException {
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.setStore(store);
+        // the snapshot is rebuilt every time, as it would be on the first start
+        properties.getSnapshot().setEnabled(false);
+
+        long before = usedHeapAfterCollection();
+        routeStore = new RouteService(properties).loadRoutesFromFileAndValidate(dataFile.toString());
+        footprint.heapBytes = usedHeapAfterCollection() - before;
+        if (store == RouteStoreType.MAPPED) {
+            footprint.mappedBytes = Files.size(dataFile.resolveSibling(dataFile.getFileName() + ".snapshot"));
+        }
+        return routeStore;
+    }
+
+    private static long usedHeapAfterCollection() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
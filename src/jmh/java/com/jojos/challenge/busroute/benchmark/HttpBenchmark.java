@@ -0,0 +1,157 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import com.jojos.challenge.busroute.Main;
+import com.jojos.challenge.busroute.control.NettyServer;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full HTTP path against the running service on a random port, answering pairs of random stations
+ * <ul>
+ *     <li>one by one through {@code GET /api/direct}</li>
+ *     <li>{@value #BATCH} at a time through {@code POST /api/direct/batch}, as a JSON array</li>
+ *     <li>{@value #BATCH} at a time through {@code POST /api/direct/batch}, as big endian 32 bit integers answered
+ *     by a bitset</li>
+ * </ul>
+ * All are reported per pair of stations, so their throughput is directly comparable.
+ *
+ * The single queries go either through the servlet container or through the netty server ({@code -p server=NETTY}),
+ * batches always through the servlet container. Running with several JMH threads ({@code -t 32}) compares how the
+ * two hold up under concurrent connections.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpBenchmark {
+
+    private static final int BATCH = 1_000;
+
+    @Param({"COMPACT"})
+    public RouteStoreType store;
+
+    @Param({"SERVLET", "NETTY"})
+    public String server;
+
+    @Param("100000")
+    public int routes;
+
+    @Param("50")
+    public int stationsPerRoute;
+
+    @Param("1000000")
+    public int stations;
+
+    private Path dataFile;
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+    private String singleUrl;
+    private SplittableRandom random;
+    private byte[] batch;
+    private byte[] binaryBatch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFile = BenchmarkFiles.createDataFile(
+                new RouteDataGenerator(routes, stationsPerRoute, stations, RouteDataGenerator.Distribution.UNIFORM, 42));
+        context = SpringApplication.run(Main.class, dataFile.toString(), "--server.port=0", "--busroute.store=" + store,
+                "--busroute.reload.enabled=false", "--busroute.audit.enabled=false", "--logging.level.com.jojos=WARN",
+                "--busroute.netty.enabled=" + "NETTY".equals(server), "--busroute.netty.port=0");
+        int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+        baseUrl = "http://localhost:" + port + "/api/direct";
+        singleUrl = "NETTY".equals(server) ? "http://localhost:" + context.getBean(NettyServer.class).getPort() + "/api/direct" : baseUrl;
+
+        random = new SplittableRandom(7);
+        StringBuilder json = new StringBuilder("[");
+        ByteBuffer binary = ByteBuffer.allocate(BATCH * 2 * Integer.BYTES);
+        for (int i = 0; i < BATCH * 2; i++) {
+            int stationId = random.nextInt(stations);
+            json.append(i == 0 ? "" : ",").append(stationId);
+            binary.putInt(stationId);
+        }
+        batch = json.append(']').toString().getBytes("US-ASCII");
+        binaryBatch = binary.array();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        BenchmarkFiles.delete(dataFile);
+    }
+
+    @Benchmark
+    public byte[] singleGet() throws IOException {
+        URL url = new URL(singleUrl + "?dep_sid=" + random.nextInt(stations) + "&arr_sid=" + random.nextInt(stations));
+        return read((HttpURLConnection) url.openConnection());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public byte[] batchPost() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/batch").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(batch);
+        }
+        return read(connection);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public byte[] binaryBatchPost() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/batch").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        connection.setRequestProperty("Accept", "application/octet-stream");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(binaryBatch);
+        }
+        return read(connection);
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[8_192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,163 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.service.RouteService;
+import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * {@link RouteStore#isDirectConnectionExistBetween(int, int)} with the intersection of the routes of the two
+ * stations picked by their fan-out ({@code -p adaptive=true}) versus always merged ({@code -p adaptive=false}),
+ * per fan-out bucket of the pairs of stations:
+ * <ul>
+ *     <li>{@code LEAF_LEAF}, stations found on a single route each</li>
+ *     <li>{@code MID_MID}, stations found on 8 to 63 routes each</li>
+ *     <li>{@code LEAF_HUB}, a leaf and one of the stations found on the most routes</li>
+ *     <li>{@code MID_HUB}, a mid station and a hub</li>
+ *     <li>{@code HUB_HUB}, two hubs</li>
+ * </ul>
+ * The hubs are the {@code HUBS} stations found on the most routes, the data skewed so that they are found on
+ * a large share of them.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntersectionBenchmark {
+
+    public enum Bucket {
+        LEAF_LEAF,
+        MID_MID,
+        LEAF_HUB,
+        MID_HUB,
+        HUB_HUB
+    }
+
+    private static final int PAIRS = 4_096;
+    private static final int HUBS = 20;
+
+    @Param({"true", "false"})
+    public boolean adaptive;
+
+    @Param({"LEAF_LEAF", "MID_MID", "LEAF_HUB", "MID_HUB", "HUB_HUB"})
+    public Bucket bucket;
+
+    @Param({"IN_MEMORY", "COMPACT"})
+    public RouteStoreType store;
+
+    @Param("100000")
+    public int routes;
+
+    @Param("50")
+    public int stationsPerRoute;
+
+    @Param("1000000")
+    public int stations;
+
+    private Path dataFile;
+    private RouteService routeService;
+
+    // departure and arrival one after the other, PAIRS of them
+    private int[] pairs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        RouteDataGenerator generator = new RouteDataGenerator(routes, stationsPerRoute, stations,
+                RouteDataGenerator.Distribution.SKEWED, 42);
+        dataFile = BenchmarkFiles.createDataFile(generator);
+
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.setStore(store);
+        properties.getIntersection().setAdaptive(adaptive);
+        properties.getReload().setEnabled(false);
+        properties.getMetrics().setEnabled(false);
+        // the choice of intersection is set on the route map the service publishes
+        routeService = new RouteService(properties);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+
+        // the number of routes every station is found on
+        int[] degrees = new int[stations];
+        List<String> lines = generator.lines();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] tokens = line.split(" ");
+            for (int i = 1; i < tokens.length; i++) {
+                degrees[Integer.parseInt(tokens[i])]++;
+            }
+        }
+        int[] hubs = IntStream.range(0, stations).boxed().
+                sorted((a, b) -> Integer.compare(degrees[b], degrees[a])).
+                limit(HUBS).mapToInt(Integer::intValue).toArray();
+        int[] mids = IntStream.range(0, stations).filter(station -> degrees[station] >= 8 && degrees[station] < 64).toArray();
+        int[] leaves = IntStream.range(0, stations).filter(station -> degrees[station] == 1).toArray();
+
+        SplittableRandom random = new SplittableRandom(7);
+        switch (bucket) {
+            case LEAF_LEAF:
+                pairs = pairsOf(leaves, leaves, random);
+                break;
+            case MID_MID:
+                pairs = pairsOf(mids, mids, random);
+                break;
+            case LEAF_HUB:
+                pairs = pairsOf(leaves, hubs, random);
+                break;
+            case MID_HUB:
+                pairs = pairsOf(mids, hubs, random);
+                break;
+            default:
+                pairs = pairsOf(hubs, hubs, random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        routeService.stopWatching();
+        BenchmarkFiles.delete(dataFile);
+    }
+
+    @Benchmark
+    public boolean directConnection() {
+        int pair = next;
+        next = (pair + 2) & (PAIRS * 2 - 1);
+        return routeService.isThereConnectionBetween(pairs[pair], pairs[pair + 1]);
+    }
+
+    // either station of a pair may come first
+    private static int[] pairsOf(int[] departures, int[] arrivals, SplittableRandom random) {
+        int[] pairs = new int[PAIRS * 2];
+        for (int i = 0; i < pairs.length; i += 2) {
+            int departure = departures[random.nextInt(departures.length)];
+            int arrival = arrivals[random.nextInt(arrivals.length)];
+            boolean swap = random.nextBoolean();
+            pairs[i] = swap ? arrival : departure;
+            pairs[i + 1] = swap ? departure : arrival;
+        }
+        return pairs;
+    }
+}
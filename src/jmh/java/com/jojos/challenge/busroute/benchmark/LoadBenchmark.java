@@ -0,0 +1,96 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import com.jojos.challenge.busroute.util.RouteUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and validating a generated data file, per store implementation, out of
+ * <ul>
+ *     <li>a stream of lines, see {@link RouteUtils#loadRoutesFromStreamAndValidate(java.util.function.Supplier, RouteStoreType)}</li>
+ *     <li>the file itself cut into line aligned ranges parsed by {@code threads} threads, see
+ *     {@link RouteUtils#loadRoutesFromFileAndValidate(Path, RouteStoreType, int)}</li>
+ * </ul>
+ * The stream variant is given the lines already in memory, so it does not pay for reading the file. It parses the
+ * lines as a parallel stream, on the common fork join pool, so it takes no {@code threads}.
+ *
+ * Loading out of the file with {@code -p threads=1,2,4,8,16} tells how the parsing scales with the cores, as long
+ * as the machine has at least as many of them.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({"IN_MEMORY", "COMPACT"})
+    public RouteStoreType store;
+
+    @Param({"UNIFORM", "SKEWED"})
+    public RouteDataGenerator.Distribution distribution;
+
+    @Param("100000")
+    public int routes;
+
+    @Param("50")
+    public int stationsPerRoute;
+
+    @Param("1000000")
+    public int stations;
+
+    private List<String> lines;
+    private Path dataFile;
+
+    /**
+     * The threads parsing the ranges of the file, of the file variant alone
+     */
+    @State(Scope.Benchmark)
+    public static class FileThreads {
+        @Param({"1", "2", "4", "8", "16"})
+        public int threads;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        RouteDataGenerator generator = new RouteDataGenerator(routes, stationsPerRoute, stations, distribution, 42);
+        lines = generator.lines();
+        dataFile = BenchmarkFiles.createDataFile(generator);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(dataFile);
+    }
+
+    @Benchmark
+    public RouteStore loadFromStream() {
+        return RouteUtils.loadRoutesFromStreamAndValidate(lines::stream, store);
+    }
+
+    @Benchmark
+    public RouteStore loadFromFile(FileThreads fileThreads) throws IOException {
+        return RouteUtils.loadRoutesFromFileAndValidate(dataFile, store, fileThreads.threads);
+    }
+}
@@ -0,0 +1,161 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.service.RouteService;
+import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * {@link RouteStore#isDirectConnectionExistBetween(int, int)} per store implementation, for pairs of
+ * <ul>
+ *     <li>hubs, the stations found on the most routes. Their lists of routes are the longest to merge</li>
+ *     <li>leaves, stations found on a single route</li>
+ *     <li>random station ids, most of them not found on any route with the default parameters</li>
+ * </ul>
+ * Along with {@link RouteStore#getMinimumTransfersBetween(int, int, int)} for the pairs of hubs and leaves,
+ * allowing {@code maxTransfers} changes of routes. {@code -p filter=true} puts the filter of the pairs of stations
+ * sharing no route in front of the store.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final int PAIRS = 4_096;
+    private static final int HUBS = 100;
+
+    @Param({"IN_MEMORY", "COMPACT", "MAPPED", "COMPRESSED"})
+    public RouteStoreType store;
+
+    @Param({"UNIFORM", "SKEWED"})
+    public RouteDataGenerator.Distribution distribution;
+
+    @Param("100000")
+    public int routes;
+
+    @Param("50")
+    public int stationsPerRoute;
+
+    @Param("1000000")
+    public int stations;
+
+    @Param("2")
+    public int maxTransfers;
+
+    @Param("false")
+    public boolean filter;
+
+    private Path dataFile;
+    private RouteStore routeStore;
+
+    // departure and arrival one after the other, PAIRS of them
+    private int[] hubPairs;
+    private int[] leafPairs;
+    private int[] randomPairs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        RouteDataGenerator generator = new RouteDataGenerator(routes, stationsPerRoute, stations, distribution, 42);
+        dataFile = BenchmarkFiles.createDataFile(generator);
+
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.setStore(store);
+        properties.getFilter().setEnabled(filter);
+        routeStore = new RouteService(properties).loadRoutesFromFileAndValidate(dataFile.toString());
+
+        // the number of routes every station is found on
+        int[] degrees = new int[stations];
+        List<String> lines = generator.lines();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] tokens = line.split(" ");
+            for (int i = 1; i < tokens.length; i++) {
+                degrees[Integer.parseInt(tokens[i])]++;
+            }
+        }
+        int[] hubs = IntStream.range(0, stations).boxed().
+                sorted((a, b) -> Integer.compare(degrees[b], degrees[a])).
+                limit(HUBS).mapToInt(Integer::intValue).toArray();
+        int[] leaves = IntStream.range(0, stations).filter(station -> degrees[station] == 1).toArray();
+
+        SplittableRandom random = new SplittableRandom(7);
+        hubPairs = pairsOf(hubs, random);
+        leafPairs = pairsOf(leaves.length > 1 ? leaves : hubs, random);
+        randomPairs = random.ints(PAIRS * 2, 0, stations).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(dataFile);
+    }
+
+    @Benchmark
+    public boolean hubPairs() {
+        return query(hubPairs);
+    }
+
+    @Benchmark
+    public boolean leafPairs() {
+        return query(leafPairs);
+    }
+
+    @Benchmark
+    public boolean randomPairs() {
+        return query(randomPairs);
+    }
+
+    @Benchmark
+    public int hubTransfers() {
+        int pair = nextPair();
+        return routeStore.getMinimumTransfersBetween(hubPairs[pair], hubPairs[pair + 1], maxTransfers);
+    }
+
+    @Benchmark
+    public int leafTransfers() {
+        int pair = nextPair();
+        return routeStore.getMinimumTransfersBetween(leafPairs[pair], leafPairs[pair + 1], maxTransfers);
+    }
+
+    private int nextPair() {
+        int pair = next;
+        next = (pair + 2) & (PAIRS * 2 - 1);
+        return pair;
+    }
+
+    private boolean query(int[] pairs) {
+        int pair = nextPair();
+        return routeStore.isDirectConnectionExistBetween(pairs[pair], pairs[pair + 1]);
+    }
+
+    private static int[] pairsOf(int[] candidates, SplittableRandom random) {
+        int[] pairs = new int[PAIRS * 2];
+        Arrays.setAll(pairs, i -> candidates[random.nextInt(candidates.length)]);
+        return pairs;
+    }
+}
@@ -0,0 +1,119 @@
+package com.jojos.challenge.busroute.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic bus route data files.
+ *
+ * Every route gets a random number of distinct stations, on average the given stations per route,
+ * drawn out of the station id range either
+ * <ul>
+ *     <li>uniformly, so that every station is found on about the same number of routes</li>
+ *     <li>skewed, so that a few hub stations are found on a large share of the routes while most of the
+ *     stations are leaves found on a single route or none</li>
+ * </ul>
+ * The data is derived from the seed alone, so the same parameters always give the same routes.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class RouteDataGenerator {
+
+    public enum Distribution {
+        UNIFORM,
+        SKEWED
+    }
+
+    // the larger, the more the skewed station ids concentrate near 0
+    private static final double SKEW = 4;
+
+    private final int routes;
+    private final int stationsPerRoute;
+    private final int stations;
+    private final Distribution distribution;
+    private final long seed;
+
+    /**
+     * @param routes the number of routes
+     * @param stationsPerRoute the average number of stations of a route, at most 1,000
+     * @param stations the station ids are drawn out of {@code [0, stations)}
+     * @param distribution how the station ids are drawn
+     * @param seed the seed of the random numbers
+     */
+    public RouteDataGenerator(int routes, int stationsPerRoute, int stations, Distribution distribution, long seed) {
+        this.routes = routes;
+        this.stationsPerRoute = stationsPerRoute;
+        this.stations = stations;
+        this.distribution = distribution;
+        this.seed = seed;
+    }
+
+    /**
+     * @return the lines of the data file, the number of routes first
+     */
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>(routes + 1);
+        lines.add(String.valueOf(routes));
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder line = new StringBuilder();
+        for (int routeId = 0; routeId < routes; routeId++) {
+            line.setLength(0);
+            appendRoute(line, routeId, random);
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the data file without holding all of its lines in memory
+     */
+    public void write(Path path) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder line = new StringBuilder();
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            writer.write(String.valueOf(routes));
+            writer.newLine();
+            for (int routeId = 0; routeId < routes; routeId++) {
+                line.setLength(0);
+                appendRoute(line, routeId, random);
+                writer.append(line).append('\n');
+            }
+        }
+    }
+
+    private void appendRoute(StringBuilder line, int routeId, SplittableRandom random) {
+        int count = Math.min(1_000, Math.max(2, stationsPerRoute / 2 + random.nextInt(stationsPerRoute + 1)));
+        int[] route = new int[count];
+        line.append(routeId);
+        for (int i = 0; i < count; i++) {
+            int station;
+            do {
+                station = nextStation(random);
+            } while (contains(route, i, station));
+            route[i] = station;
+            line.append(' ').append(station);
+        }
+    }
+
+    private int nextStation(SplittableRandom random) {
+        if (distribution == Distribution.UNIFORM) {
+            return random.nextInt(stations);
+        }
+        return (int) (stations * Math.pow(random.nextDouble(), SKEW));
+    }
+
+    private static boolean contains(int[] route, int length, int station) {
+        for (int i = 0; i < length; i++) {
+            if (route[i] == station) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,730 @@
+package com.jojos.challenge.busroute.config;
+
+import com.jojos.challenge.busroute.service.CachingRouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import com.jojos.challenge.busroute.util.RouteLimits;
+import com.jojos.challenge.busroute.util.RouteUtils;
+import com.jojos.challenge.busroute.util.VirtualThreads;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tunables of the bus route service, bound from the {@code busroute.*} properties.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@Component
+@ConfigurationProperties(prefix = "busroute")
+public class BusRouteProperties {
+
+    /**
+     * The route store implementation the route data file is loaded into
+     */
+    private RouteStoreType store = RouteStoreType.IN_MEMORY;
+
+    private final HotStations hotStations = new HotStations();
+
+    private final Loader loader = new Loader();
+
+    private final Snapshot snapshot = new Snapshot();
+
+    private final Reload reload = new Reload();
+
+    private final Batch batch = new Batch();
+
+    private final Audit audit = new Audit();
+
+    private final Metrics metrics = new Metrics();
+
+    private final Cache cache = new Cache();
+
+    private final Netty netty = new Netty();
+
+    private final Threads threads = new Threads();
+
+    private final Transfers transfers = new Transfers();
+
+    private final Routes routes = new Routes();
+
+    private final Limits limits = new Limits();
+
+    private final Shards shards = new Shards();
+
+    private final Intersection intersection = new Intersection();
+
+    private final Filter filter = new Filter();
+
+    public RouteStoreType getStore() {
+        return store;
+    }
+
+    public void setStore(RouteStoreType store) {
+        this.store = store;
+    }
+
+    public HotStations getHotStations() {
+        return hotStations;
+    }
+
+    public Loader getLoader() {
+        return loader;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Reload getReload() {
+        return reload;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Netty getNetty() {
+        return netty;
+    }
+
+    public Threads getThreads() {
+        return threads;
+    }
+
+    public Transfers getTransfers() {
+        return transfers;
+    }
+
+    public Routes getRoutes() {
+        return routes;
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    public Shards getShards() {
+        return shards;
+    }
+
+    public Intersection getIntersection() {
+        return intersection;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Precomputed reachability of the busiest stations, only available for the {@link RouteStoreType#COMPACT} store
+     */
+    public static class HotStations {
+
+        /**
+         * How many of the stations found on the most routes get their reachable stations precomputed. 0 disables it
+         */
+        private int count = 0;
+
+        /**
+         * The cap in bytes for the memory of the precomputed stations
+         */
+        private long maxMemory = 256L * 1024 * 1024;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public long getMaxMemory() {
+            return maxMemory;
+        }
+
+        public void setMaxMemory(long maxMemory) {
+            this.maxMemory = maxMemory;
+        }
+    }
+
+    /**
+     * Loading of the bus route data file
+     */
+    public static class Loader {
+
+        /**
+         * The number of threads parsing the file, 0 for as many as the available processors
+         */
+        private int threads = 0;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        /**
+         * @return the configured threads, resolving 0 to the available processors
+         */
+        public int resolveThreads() {
+            return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    /**
+     * Binary snapshot of the loaded routes, written next to the bus route data file. Only available for the
+     * {@link RouteStoreType#COMPACT} store, the {@link RouteStoreType#MAPPED} one always uses it
+     */
+    public static class Snapshot {
+
+        /**
+         * Whether the routes are restored from the snapshot on start, when the data file is unchanged
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * Reloading the bus route data file whenever it changes, without restarting the service
+     */
+    public static class Reload {
+
+        /**
+         * What to do about holding the current and the new route store in memory at the same time
+         */
+        public enum MemoryPolicy {
+
+            /**
+             * Always build the new store next to the current one
+             */
+            ALWAYS,
+
+            /**
+             * Only build the new store if the free heap is at least {@link #headroomFactor} times the size of the data file,
+             * otherwise keep the current store until the service is restarted
+             */
+            HEADROOM
+        }
+
+        /**
+         * Whether the data file is watched for changes
+         */
+        private boolean enabled = true;
+
+        /**
+         * How long in milliseconds the data file must stay untouched before it is reloaded
+         */
+        private long quietPeriod = 500;
+
+        private MemoryPolicy memoryPolicy = MemoryPolicy.HEADROOM;
+
+        /**
+         * The heap required to build the new store, as a multiple of the size of the data file
+         */
+        private double headroomFactor = 6;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getQuietPeriod() {
+            return quietPeriod;
+        }
+
+        public void setQuietPeriod(long quietPeriod) {
+            this.quietPeriod = quietPeriod;
+        }
+
+        public MemoryPolicy getMemoryPolicy() {
+            return memoryPolicy;
+        }
+
+        public void setMemoryPolicy(MemoryPolicy memoryPolicy) {
+            this.memoryPolicy = memoryPolicy;
+        }
+
+        public double getHeadroomFactor() {
+            return headroomFactor;
+        }
+
+        public void setHeadroomFactor(double headroomFactor) {
+            this.headroomFactor = headroomFactor;
+        }
+    }
+
+    /**
+     * Queries of many station pairs in one request
+     */
+    public static class Batch {
+
+        /**
+         * The maximum number of pairs of a single request
+         */
+        private int maxPairs = 1_000_000;
+
+        /**
+         * Batches of at least this many pairs are evaluated in parallel
+         */
+        private int parallelThreshold = 4_096;
+
+        public int getMaxPairs() {
+            return maxPairs;
+        }
+
+        public void setMaxPairs(int maxPairs) {
+            this.maxPairs = maxPairs;
+        }
+
+        public int getParallelThreshold() {
+            return parallelThreshold;
+        }
+
+        public void setParallelThreshold(int parallelThreshold) {
+            this.parallelThreshold = parallelThreshold;
+        }
+    }
+
+    /**
+     * Sampled audit trail of the single pair queries, written off the request threads
+     */
+    public static class Audit {
+
+        /**
+         * Whether the queries are audited at all
+         */
+        private boolean enabled = true;
+
+        /**
+         * The share of the queries audited, between 0 and 1
+         */
+        private double sampleRate = 0.01;
+
+        /**
+         * Sampled queries waiting for the writer, rounded up to a power of 2. Once full further queries are dropped
+         */
+        private int bufferSize = 65_536;
+
+        /**
+         * The most queries the writer drains at a time
+         */
+        private int batchSize = 1_024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Instrumentation exposed at {@code /api/metrics}
+     */
+    public static class Metrics {
+
+        /**
+         * Whether the queries are timed and counted. The load phases and the route store sizes are always recorded
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * Answers of the most requested pairs of stations, remembered in front of the route store
+     */
+    public static class Cache {
+
+        /**
+         * The number of pairs remembered at most, 0 disables the cache
+         */
+        private int size = 0;
+
+        /**
+         * Which pairs are remembered
+         */
+        private CachingRouteStore.Policy policy = CachingRouteStore.Policy.TINY_LFU;
+
+        public int getSize() {
+            return size;
+        }
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        public CachingRouteStore.Policy getPolicy() {
+            return policy;
+        }
+
+        public void setPolicy(CachingRouteStore.Policy policy) {
+            this.policy = policy;
+        }
+    }
+
+    /**
+     * The non blocking HTTP front end for {@code GET /api/direct}
+     */
+    public static class Netty {
+
+        /**
+         * Whether the netty server is started along with the servlet container
+         */
+        private boolean enabled = false;
+
+        /**
+         * The port of the netty server, 0 for any free port
+         */
+        private int port = 8089;
+
+        /**
+         * Event loop threads holding the connections, 0 for twice the available processors
+         */
+        private int threads = 0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    /**
+     * The threads serving the HTTP requests of the servlet container and loading the route data file
+     */
+    public static class Threads {
+
+        public enum Mode {
+            /**
+             * Pools of platform threads, the worker pool of the servlet container capped by {@code server.tomcat.max-threads}
+             */
+            PLATFORM,
+            /**
+             * A new virtual thread for every request and for every range of the data file, JDK 21 or later
+             */
+            VIRTUAL
+        }
+
+        private Mode mode = Mode.PLATFORM;
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * @return whether virtual threads are asked for and the running JDK provides them
+         */
+        public boolean useVirtualThreads() {
+            return mode == Mode.VIRTUAL && VirtualThreads.isSupported();
+        }
+    }
+
+    /**
+     * Queries of the stations reachable with changes of routes
+     */
+    public static class Transfers {
+
+        /**
+         * The most changes of routes a query may ask for, also the number allowed when the query does not say
+         */
+        private int max = 3;
+
+        public int getMax() {
+            return max;
+        }
+
+        public void setMax(int max) {
+            this.max = max;
+        }
+    }
+
+    /**
+     * How the routes of the data file are run
+     */
+    public static class Routes {
+
+        /**
+         * Whether every route is run both ways, so that a direct connection exists whichever of the two stations
+         * comes first on it. Transfers always follow the order of the stations in the data file
+         */
+        private boolean bidirectional = false;
+
+        public boolean isBidirectional() {
+            return bidirectional;
+        }
+
+        public void setBidirectional(boolean bidirectional) {
+            this.bidirectional = bidirectional;
+        }
+    }
+
+    /**
+     * The upper limits the data file is validated against, see {@link RouteLimits}
+     */
+    public static class Limits {
+
+        /**
+         * The most routes of the data file
+         */
+        private int maxBusRoutes = RouteUtils.MAX_BUS_ROUTES;
+
+        /**
+         * The most distinct stations of all routes
+         */
+        private int maxStations = RouteUtils.MAX_STATIONS;
+
+        /**
+         * The most stations of a single route
+         */
+        private int maxStationsPerRoute = RouteUtils.MAX_STATIONS_PER_ROUTE;
+
+        public int getMaxBusRoutes() {
+            return maxBusRoutes;
+        }
+
+        public void setMaxBusRoutes(int maxBusRoutes) {
+            this.maxBusRoutes = maxBusRoutes;
+        }
+
+        public int getMaxStations() {
+            return maxStations;
+        }
+
+        public void setMaxStations(int maxStations) {
+            this.maxStations = maxStations;
+        }
+
+        public int getMaxStationsPerRoute() {
+            return maxStationsPerRoute;
+        }
+
+        public void setMaxStationsPerRoute(int maxStationsPerRoute) {
+            this.maxStationsPerRoute = maxStationsPerRoute;
+        }
+
+        public RouteLimits toRouteLimits() {
+            return new RouteLimits(maxBusRoutes, maxStations, maxStationsPerRoute);
+        }
+    }
+
+    /**
+     * Splitting the stations among several nodes, see {@link com.jojos.challenge.busroute.service.ShardRouteStore}
+     */
+    public static class Shards {
+
+        /**
+         * The number of shards the stations are split into. More than 1 makes this node load the stations of
+         * its own shard only, serving their postings to the router
+         */
+        private int count = 1;
+
+        /**
+         * The shard this node loads, 0 up to count - 1
+         */
+        private int index = 0;
+
+        /**
+         * The urls of the nodes of the shards in shard order, e.g. http://host-0:8088,http://host-1:8088. Makes this
+         * node a router asking them, no data file is loaded
+         */
+        private List<String> nodes = new ArrayList<>();
+
+        /**
+         * The timeout in milliseconds of connecting to a shard and of reading its answer
+         */
+        private int timeout = 2_000;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public List<String> getNodes() {
+            return nodes;
+        }
+
+        public void setNodes(List<String> nodes) {
+            this.nodes = nodes;
+        }
+
+        public int getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(int timeout) {
+            this.timeout = timeout;
+        }
+
+        /**
+         * @return true if this node loads a shard of the stations
+         */
+        public boolean isShard() {
+            return count > 1;
+        }
+
+        /**
+         * @return true if this node routes the queries to the shards
+         */
+        public boolean isRouter() {
+            return !nodes.isEmpty();
+        }
+    }
+
+    /**
+     * How the routes of two stations are intersected by the {@link RouteStoreType#IN_MEMORY} and
+     * {@link RouteStoreType#COMPACT} stores
+     */
+    public static class Intersection {
+
+        /**
+         * Whether the intersection is picked per query by the fan-out of both stations, false merges the routes
+         * of the stations whatever their fan-out
+         */
+        private boolean adaptive = true;
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+    }
+
+    /**
+     * Probabilistic pre-check of the direct connections, rejecting most pairs of stations sharing no route before
+     * the station index is searched. Only available for the stores with an on-heap station index
+     */
+    public static class Filter {
+
+        /**
+         * Whether the filter is built once the routes are loaded
+         */
+        private boolean enabled = false;
+
+        /**
+         * The share of the pairs of stations sharing no route the filter is sized to let through
+         */
+        private double falsePositiveRate = 0.05;
+
+        /**
+         * The cap in bytes for the memory of the filter, a smaller filter lets more pairs through
+         */
+        private long maxMemory = 64L * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getFalsePositiveRate() {
+            return falsePositiveRate;
+        }
+
+        public void setFalsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+        }
+
+        public long getMaxMemory() {
+            return maxMemory;
+        }
+
+        public void setMaxMemory(long maxMemory) {
+            this.maxMemory = maxMemory;
+        }
+    }
+}
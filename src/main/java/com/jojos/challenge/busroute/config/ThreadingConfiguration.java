@@ -0,0 +1,60 @@
+package com.jojos.challenge.busroute.config;
+
+import com.jojos.challenge.busroute.util.VirtualThreads;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Hands the requests of the servlet container over to virtual threads, one per request, when
+ * {@code busroute.threads.mode} is {@link BusRouteProperties.Threads.Mode#VIRTUAL VIRTUAL}.
+ *
+ * The poller threads of the connector keep accepting and reading the connections, only the worker pool
+ * is replaced, so the number of requests in flight is no longer capped by the size of that pool.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@Configuration
+public class ThreadingConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(ThreadingConfiguration.class);
+
+    private final BusRouteProperties properties;
+
+    @Autowired
+    public ThreadingConfiguration(BusRouteProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void checkMode() {
+        if (properties.getThreads().getMode() == BusRouteProperties.Threads.Mode.VIRTUAL && !VirtualThreads.isSupported()) {
+            log.warn("Virtual threads require JDK 21 or later, running on {}. Falling back to platform threads",
+                    System.getProperty("java.version"));
+        }
+    }
+
+    @Bean
+    public EmbeddedServletContainerCustomizer virtualThreadCustomizer() {
+        return container -> {
+            if (!properties.getThreads().useVirtualThreads() || !(container instanceof TomcatEmbeddedServletContainerFactory)) {
+                return;
+            }
+            ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+                ProtocolHandler handler = connector.getProtocolHandler();
+                if (handler instanceof AbstractProtocol) {
+                    ((AbstractProtocol<?>) handler).setExecutor(VirtualThreads.threadPerTaskExecutor("http-virtual-"));
+                    log.info("Serving the requests of the {} connector on virtual threads", connector.getScheme());
+                }
+            });
+        };
+    }
+}
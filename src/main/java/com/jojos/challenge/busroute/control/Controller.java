@@ -1,15 +1,34 @@
 package com.jojos.challenge.busroute.control;
 
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.data.DirectRoutesView;
 import com.jojos.challenge.busroute.data.DirectView;
+import com.jojos.challenge.busroute.service.DirectRoutes;
+import com.jojos.challenge.busroute.service.QueryAuditor;
 import com.jojos.challenge.busroute.service.RouteService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * The main (and only) controller
  *
@@ -21,17 +40,187 @@ public class Controller {
 
     private static final Logger log = LoggerFactory.getLogger(Controller.class);
 
+    // pairs of stations read out of a binary batch at a time, a multiple of 64 so that every chunk but the last
+    // is answered in whole bitset words
+    private static final int CHUNK_PAIRS = 8_192;
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
     private final RouteService routeService;
+    private final BusRouteProperties properties;
+    private final QueryAuditor auditor;
 
     @Autowired
-    public Controller(RouteService routeService) {
+    public Controller(RouteService routeService, BusRouteProperties properties, QueryAuditor auditor) {
         this.routeService = routeService;
+        this.properties = properties;
+        this.auditor = auditor;
     }
 
     @GetMapping
     public DirectView isDirect(@RequestParam("dep_sid") int departure, @RequestParam("arr_sid") int arrival) {
         boolean exist = routeService.isThereConnectionBetween(departure, arrival);
-        log.info(String.format("Connection between %d and %d %sexists", departure, arrival, !exist ? "doesn't " : ""));
+        auditor.record(departure, arrival, exist);
         return new DirectView(departure, arrival, exist);
     }
+
+    /**
+     * Same as {@link #isDirect(int, int)} with {@code details=true}, telling the connecting routes as well
+     * as the one with the fewest stops
+     */
+    @GetMapping(params = "details=true")
+    public DirectRoutesView directRoutes(@RequestParam("dep_sid") int departure, @RequestParam("arr_sid") int arrival) {
+        DirectRoutes routes = routeService.getDirectRoutesBetween(departure, arrival);
+        auditor.record(departure, arrival, routes.isConnected());
+        if (!routes.isConnected()) {
+            return new DirectRoutesView(departure, arrival, new int[0], null, null);
+        }
+        return new DirectRoutesView(departure, arrival, routes.getRouteIds(), routes.getBestRouteId(), routes.getStops());
+    }
+
+    /**
+     * Answers many pairs of stations at once. The pairs are given as a flat JSON array of station ids,
+     * departure and arrival one after the other: {@code [dep0, arr0, dep1, arr1, ...]}.
+     * See {@link ResultWriter} for the response.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void areDirect(@RequestBody int[] pairs, @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                          HttpServletResponse response) throws IOException {
+        checkPairs(pairs.length);
+        long[] connected = routeService.areThereConnectionsBetween(pairs);
+        ResultWriter writer = new ResultWriter(accept, pairs.length / 2, response);
+        writer.write(connected, pairs.length / 2);
+        writer.finish();
+        log.debug("Answered a batch of {} pairs of stations", pairs.length / 2);
+    }
+
+    /**
+     * Same as {@link #areDirect(int[], String, HttpServletResponse)} with the pairs given as big endian 32 bit integers.
+     * The body is read {@value #CHUNK_PAIRS} pairs at a time, every chunk answered and written to the response before
+     * the next one is read, all of them against the same route map. Should the request tell its length the body is
+     * checked upfront, otherwise a body found malformed past the first chunk fails the response midway.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void areDirect(HttpServletRequest request, @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                          HttpServletResponse response) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length >= 0) {
+            checkBody(length);
+        }
+        RouteService.Batch batch = routeService.startBatch();
+        InputStream in = request.getInputStream();
+        byte[] body = new byte[CHUNK_PAIRS * 2 * Integer.BYTES];
+        int[] pairs = new int[CHUNK_PAIRS * 2];
+        ResultWriter writer = null;
+        long read = 0;
+        int filled;
+        do {
+            filled = fill(in, body);
+            read += filled;
+            checkBody(read);
+            int count = filled / (2 * Integer.BYTES);
+            ByteBuffer.wrap(body, 0, filled).asIntBuffer().get(pairs, 0, count * 2);
+            long[] connected = batch.areThereConnectionsBetween(pairs, count);
+            if (writer == null) {
+                // the first chunk is checked before the response is started
+                writer = new ResultWriter(accept, length < 0 ? -1 : length / (2 * Integer.BYTES), response);
+            }
+            writer.write(connected, count);
+        } while (filled == body.length);
+        writer.finish();
+        batch.finish();
+        log.debug("Answered a batch of {} pairs of stations", batch.getCount());
+    }
+
+    private void checkBody(long bytes) {
+        if (bytes % Integer.BYTES != 0) {
+            throw new HttpMessageNotReadableException("The body must consist of 32 bit integers, found " + bytes + " bytes");
+        }
+        checkPairs(bytes / Integer.BYTES);
+    }
+
+    private void checkPairs(long stationIds) {
+        if (stationIds % 2 != 0) {
+            throw new HttpMessageNotReadableException("A departure without an arrival station found, pairs of stations expected");
+        }
+        if (stationIds / 2 > properties.getBatch().getMaxPairs()) {
+            throw new HttpMessageNotReadableException(String.format("At most %d pairs of stations expected, found %d",
+                    properties.getBatch().getMaxPairs(), stationIds / 2));
+        }
+    }
+
+    /**
+     * @return the number of bytes read, less than the length of the buffer only at the end of the stream
+     */
+    private static int fill(InputStream in, byte[] buffer) throws IOException {
+        int filled = 0;
+        while (filled < buffer.length) {
+            int read = in.read(buffer, filled, buffer.length - filled);
+            if (read < 0) {
+                break;
+            }
+            filled += read;
+        }
+        return filled;
+    }
+
+    /**
+     * Writes the answers in the order of the pairs, a chunk of them at a time, straight into the response.
+     * Should the client accept {@code application/octet-stream} they are written as a bitset, the answer of pair
+     * {@code i} being bit {@code i % 8} (least significant first) of byte {@code i / 8}. Otherwise as a JSON array of
+     * booleans. Every chunk but the last must hold a multiple of 8 pairs.
+     */
+    private static final class ResultWriter {
+
+        private final boolean bitset;
+        private final OutputStream out;
+        private int written;
+
+        /**
+         * @param pairs the number of pairs of the batch, -1 if not known before all of them are read
+         */
+        private ResultWriter(String accept, long pairs, HttpServletResponse response) throws IOException {
+            this.bitset = accept != null && accept.contains(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            if (bitset) {
+                response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+                if (pairs >= 0) {
+                    response.setContentLengthLong((pairs + 7) >>> 3);
+                }
+            } else {
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            }
+            this.out = new BufferedOutputStream(response.getOutputStream(), 8_192);
+            if (!bitset) {
+                out.write('[');
+            }
+        }
+
+        /**
+         * @param connected the answers of the chunk, see {@link RouteService#areThereConnectionsBetween(int[])}
+         * @param count the number of pairs of the chunk
+         */
+        private void write(long[] connected, int count) throws IOException {
+            if (bitset) {
+                for (int i = 0; i < (count + 7) >>> 3; i++) {
+                    out.write((int) (connected[i >>> 3] >>> ((i & 7) << 3)));
+                }
+            } else {
+                for (int pair = 0; pair < count; pair++) {
+                    if (written + pair > 0) {
+                        out.write(',');
+                    }
+                    out.write((connected[pair >>> 6] & (1L << pair)) != 0 ? TRUE : FALSE);
+                }
+            }
+            written += count;
+        }
+
+        private void finish() throws IOException {
+            if (!bitset) {
+                out.write(']');
+            }
+            out.flush();
+        }
+    }
 }
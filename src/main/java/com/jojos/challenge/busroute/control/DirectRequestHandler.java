@@ -0,0 +1,255 @@
+package com.jojos.challenge.busroute.control;
+
+import com.jojos.challenge.busroute.service.DirectRoutes;
+import com.jojos.challenge.busroute.service.QueryAuditor;
+import com.jojos.challenge.busroute.service.RouteService;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AsciiString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Answers {@code GET /api/direct?dep_sid=&arr_sid=} on the event loop, with the same JSON as {@link com.jojos.challenge.busroute.data.DirectView},
+ * or {@link com.jojos.challenge.busroute.data.DirectRoutesView} given {@code details=true}.
+ *
+ * The query string is scanned in place and the JSON is written as ASCII straight into a pooled buffer, neither
+ * a decoder nor an object mapper is involved. The body of a request, if any, is ignored.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@ChannelHandler.Sharable
+class DirectRequestHandler extends SimpleChannelInboundHandler<HttpObject> {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectRequestHandler.class);
+
+    private static final String PATH = "/api/direct";
+    private static final String DEPARTURE = "dep_sid";
+    private static final String ARRIVAL = "arr_sid";
+    private static final String DETAILS = "details=true";
+
+    private static final AsciiString CONTENT_TYPE = AsciiString.cached("application/json;charset=UTF-8");
+
+    private static final byte[] DEPARTURE_PREFIX = "{\"dep_sid\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ARRIVAL_PREFIX = ",\"arr_sid\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DIRECT_TRUE = ",\"direct_bus_route\":true}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DIRECT_FALSE = ",\"direct_bus_route\":false}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROUTE_IDS_PREFIX = ",\"direct_bus_route\":true,\"route_ids\":[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BEST_ROUTE_PREFIX = "],\"best_route_id\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STOPS_PREFIX = ",\"stops\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO_ROUTES = (",\"direct_bus_route\":false,\"route_ids\":[],\"best_route_id\":null,\"stops\":null}").
+            getBytes(StandardCharsets.US_ASCII);
+
+    // an int takes at most 11 characters
+    private static final int MAX_BODY_SIZE = DEPARTURE_PREFIX.length + ARRIVAL_PREFIX.length + DIRECT_FALSE.length + 2 * 11;
+
+    // the value of a missing or invalid parameter
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private final RouteService routeService;
+    private final QueryAuditor auditor;
+
+    DirectRequestHandler(RouteService routeService, QueryAuditor auditor) {
+        this.routeService = routeService;
+        this.auditor = auditor;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, HttpObject message) {
+        if (!(message instanceof HttpRequest)) {
+            return;
+        }
+        HttpRequest request = (HttpRequest) message;
+        if (!request.decoderResult().isSuccess()) {
+            respondWithError(ctx, request, HttpResponseStatus.BAD_REQUEST, "Malformed request");
+            return;
+        }
+
+        String uri = request.uri();
+        int queryStart = uri.indexOf('?');
+        int pathEnd = queryStart < 0 ? uri.length() : queryStart;
+        if (pathEnd != PATH.length() || !uri.startsWith(PATH)) {
+            respondWithError(ctx, request, HttpResponseStatus.NOT_FOUND, "No such resource");
+            return;
+        }
+        if (request.method() != HttpMethod.GET) {
+            respondWithError(ctx, request, HttpResponseStatus.METHOD_NOT_ALLOWED, "Request method " + request.method() + " not supported");
+            return;
+        }
+
+        long departure = parameter(uri, queryStart, DEPARTURE);
+        long arrival = parameter(uri, queryStart, ARRIVAL);
+        if (departure == INVALID || arrival == INVALID) {
+            respondWithError(ctx, request, HttpResponseStatus.BAD_REQUEST,
+                    "Required int parameters '" + DEPARTURE + "' and '" + ARRIVAL + "' missing or invalid");
+            return;
+        }
+
+        if (hasFlag(uri, queryStart, DETAILS)) {
+            respondWithRoutes(ctx, request, (int) departure, (int) arrival);
+            return;
+        }
+
+        boolean exist = routeService.isThereConnectionBetween((int) departure, (int) arrival);
+        auditor.record((int) departure, (int) arrival, exist);
+
+        ByteBuf body = ctx.alloc().buffer(MAX_BODY_SIZE);
+        body.writeBytes(DEPARTURE_PREFIX);
+        writeInt(body, (int) departure);
+        body.writeBytes(ARRIVAL_PREFIX);
+        writeInt(body, (int) arrival);
+        body.writeBytes(exist ? DIRECT_TRUE : DIRECT_FALSE);
+        respond(ctx, request, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, body));
+    }
+
+    private void respondWithRoutes(ChannelHandlerContext ctx, HttpRequest request, int departure, int arrival) {
+        DirectRoutes routes = routeService.getDirectRoutesBetween(departure, arrival);
+        auditor.record(departure, arrival, routes.isConnected());
+
+        ByteBuf body = ctx.alloc().buffer();
+        body.writeBytes(DEPARTURE_PREFIX);
+        writeInt(body, departure);
+        body.writeBytes(ARRIVAL_PREFIX);
+        writeInt(body, arrival);
+        if (!routes.isConnected()) {
+            body.writeBytes(NO_ROUTES);
+        } else {
+            body.writeBytes(ROUTE_IDS_PREFIX);
+            int[] routeIds = routes.getRouteIds();
+            for (int i = 0; i < routeIds.length; i++) {
+                if (i > 0) {
+                    body.writeByte(',');
+                }
+                writeInt(body, routeIds[i]);
+            }
+            body.writeBytes(BEST_ROUTE_PREFIX);
+            writeInt(body, routes.getBestRouteId());
+            body.writeBytes(STOPS_PREFIX);
+            writeInt(body, routes.getStops());
+            body.writeByte('}');
+        }
+        respond(ctx, request, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, body));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.warn("Closing connection {} after an error", ctx.channel().remoteAddress(), cause);
+        ctx.close();
+    }
+
+    /**
+     * @return the value of the first occurrence of the parameter in the query string, {@link #INVALID} if it is
+     * missing or not an int
+     */
+    static long parameter(String uri, int queryStart, String name) {
+        if (queryStart < 0) {
+            return INVALID;
+        }
+        int start = queryStart + 1;
+        while (start < uri.length()) {
+            int end = uri.indexOf('&', start);
+            if (end < 0) {
+                end = uri.length();
+            }
+            if (end - start > name.length() && uri.charAt(start + name.length()) == '=' && uri.startsWith(name, start)) {
+                return parseInt(uri, start + name.length() + 1, end);
+            }
+            start = end + 1;
+        }
+        return INVALID;
+    }
+
+    /**
+     * @return true if the {@code name=value} pair is found as is in the query string
+     */
+    static boolean hasFlag(String uri, int queryStart, String pair) {
+        if (queryStart < 0) {
+            return false;
+        }
+        int start = queryStart + 1;
+        while (start < uri.length()) {
+            int end = uri.indexOf('&', start);
+            if (end < 0) {
+                end = uri.length();
+            }
+            if (end - start == pair.length() && uri.startsWith(pair, start)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    private static long parseInt(String uri, int start, int end) {
+        boolean negative = false;
+        if (start < end && (uri.charAt(start) == '-' || uri.charAt(start) == '+')) {
+            negative = uri.charAt(start) == '-';
+            start++;
+        }
+        if (start == end || end - start > 10) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? INVALID : value;
+    }
+
+    private static void writeInt(ByteBuf buffer, int value) {
+        if (value < 0) {
+            buffer.writeByte('-');
+        }
+        long remaining = Math.abs((long) value);
+        long divisor = 1;
+        while (divisor * 10 <= remaining) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.writeByte((int) ('0' + remaining / divisor));
+            remaining %= divisor;
+        }
+    }
+
+    private static void respondWithError(ChannelHandlerContext ctx, HttpRequest request, HttpResponseStatus status, String message) {
+        ByteBuf body = ctx.alloc().buffer();
+        body.writeCharSequence("{\"status\":" + status.code() + ",\"error\":\"" + status.reasonPhrase() +
+                "\",\"message\":\"" + message + "\",\"path\":\"" + PATH + "\"}", StandardCharsets.US_ASCII);
+        respond(ctx, request, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, body));
+    }
+
+    private static void respond(ChannelHandlerContext ctx, HttpRequest request, FullHttpResponse response) {
+        response.headers().
+                set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE).
+                setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        if (keepAlive && !request.protocolVersion().isKeepAliveDefault()) {
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        }
+        if (keepAlive) {
+            ctx.writeAndFlush(response, ctx.voidPromise());
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
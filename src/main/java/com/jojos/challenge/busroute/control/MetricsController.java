@@ -0,0 +1,31 @@
+package com.jojos.challenge.busroute.control;
+
+import com.jojos.challenge.busroute.service.RouteMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Exposes the {@link RouteMetrics} of the service
+ *
+ * @author karanikasg@gmail.com.
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final RouteMetrics metrics;
+
+    @Autowired
+    public MetricsController(RouteMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @GetMapping
+    public Map<String, Object> metrics() {
+        return metrics.snapshot();
+    }
+}
@@ -0,0 +1,116 @@
+package com.jojos.challenge.busroute.control;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.service.QueryAuditor;
+import com.jojos.challenge.busroute.service.RouteService;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A non blocking HTTP front end for {@code GET /api/direct}, next to the servlet container.
+ *
+ * A handful of event loop threads hold all the connections, and every query is answered on the thread
+ * that read it, since the lookup is a matter of microseconds. The request is parsed and the response encoded
+ * by hand, see {@link DirectRequestHandler}, the contract and the JSON are the same as {@link Controller#isDirect(int, int)}.
+ *
+ * Started once the application is ready, i.e. once the route data file is loaded, should {@code busroute.netty.enabled}
+ * be set. The servlet container keeps serving every endpoint, unless turned off with {@code server.port=-1}.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@Component
+public class NettyServer {
+
+    private static final Logger log = LoggerFactory.getLogger(NettyServer.class);
+
+    private final BusRouteProperties properties;
+    private final DirectRequestHandler handler;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Channel channel;
+
+    @Autowired
+    public NettyServer(RouteService routeService, QueryAuditor auditor, BusRouteProperties properties) {
+        this.properties = properties;
+        this.handler = new DirectRequestHandler(routeService, auditor);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startIfEnabled() throws InterruptedException {
+        if (properties.getNetty().isEnabled()) {
+            start();
+        }
+    }
+
+    /**
+     * Binds the server to {@code busroute.netty.port}
+     */
+    public synchronized void start() throws InterruptedException {
+        if (channel != null) {
+            return;
+        }
+        bossGroup = new NioEventLoopGroup(1);
+        // 0 makes netty pick twice the number of available processors
+        workerGroup = new NioEventLoopGroup(properties.getNetty().getThreads());
+        try {
+            channel = new ServerBootstrap().
+                    group(bossGroup, workerGroup).
+                    channel(NioServerSocketChannel.class).
+                    option(ChannelOption.SO_BACKLOG, 1_024).
+                    childOption(ChannelOption.TCP_NODELAY, true).
+                    childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel channel) {
+                            channel.pipeline().
+                                    addLast(new HttpServerCodec()).
+                                    addLast(handler);
+                        }
+                    }).
+                    bind(properties.getNetty().getPort()).sync().channel();
+        } catch (InterruptedException | RuntimeException e) {
+            stop();
+            throw e;
+        }
+        log.info("Netty server listening on port {}", getPort());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+            channel = null;
+        }
+        if (bossGroup != null) {
+            // no quiet period, the channel is closed already
+            bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+            workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+            bossGroup = null;
+            workerGroup = null;
+        }
+    }
+
+    /**
+     * @return the port the server listens to, -1 if not started
+     */
+    public synchronized int getPort() {
+        return channel != null ? ((InetSocketAddress) channel.localAddress()).getPort() : -1;
+    }
+}
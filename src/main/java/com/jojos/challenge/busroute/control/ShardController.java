@@ -0,0 +1,47 @@
+package com.jojos.challenge.busroute.control;
+
+import com.jojos.challenge.busroute.data.PostingsView;
+import com.jojos.challenge.busroute.service.RouteService;
+import com.jojos.challenge.busroute.service.StationPostings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells the postings of the stations of the shard this node loads, asked by the router of a sharded deployment.
+ * Only found on a node loading a shard, see {@code busroute.shards.count}
+ *
+ * @author karanikasg@gmail.com.
+ */
+@RestController
+@RequestMapping("/api/shard")
+@ConditionalOnExpression("${busroute.shards.count:1} > 1")
+public class ShardController {
+
+    private final RouteService routeService;
+
+    @Autowired
+    public ShardController(RouteService routeService) {
+        this.routeService = routeService;
+    }
+
+    /**
+     * @param stationIds one or more stations of the shard, e.g. {@code sid=3&sid=6}
+     * @return the postings of every station in the order given
+     */
+    @GetMapping("/postings")
+    public List<PostingsView> postings(@RequestParam("sid") int[] stationIds) {
+        StationPostings[] postings = routeService.getPostings(stationIds);
+        List<PostingsView> views = new ArrayList<>(postings.length);
+        for (StationPostings station : postings) {
+            views.add(new PostingsView(station.getStationId(), station.getRouteIds(), station.getPositions()));
+        }
+        return views;
+    }
+}
@@ -0,0 +1,48 @@
+package com.jojos.challenge.busroute.control;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.data.TransferView;
+import com.jojos.challenge.busroute.service.RouteService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.ServletRequestBindingException;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Answers whether a station can be reached from another one changing routes at most a given number of times
+ *
+ * @author karanikasg@gmail.com.
+ */
+@RestController
+@RequestMapping("/api/transfers")
+public class TransferController {
+
+    private final RouteService routeService;
+    private final BusRouteProperties properties;
+
+    @Autowired
+    public TransferController(RouteService routeService, BusRouteProperties properties) {
+        this.routeService = routeService;
+        this.properties = properties;
+    }
+
+    /**
+     * @param maxTransfers the number of changes allowed, {@code busroute.transfers.max} at most and by default
+     */
+    @GetMapping
+    public TransferView transfers(@RequestParam("dep_sid") int departure, @RequestParam("arr_sid") int arrival,
+                                  @RequestParam(value = "max_transfers", required = false) Integer maxTransfers)
+            throws ServletRequestBindingException {
+        int max = properties.getTransfers().getMax();
+        if (maxTransfers == null) {
+            maxTransfers = max;
+        } else if (maxTransfers < 0 || maxTransfers > max) {
+            throw new ServletRequestBindingException(String.format("Parameter 'max_transfers' must be between 0 and %d, found %d",
+                    max, maxTransfers));
+        }
+        int transfers = routeService.getMinimumTransfersBetween(departure, arrival, maxTransfers);
+        return new TransferView(departure, arrival, maxTransfers, transfers >= 0 ? transfers : null);
+    }
+}
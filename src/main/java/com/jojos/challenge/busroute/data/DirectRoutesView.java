@@ -0,0 +1,63 @@
+package com.jojos.challenge.busroute.data;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+
+/**
+ * The return JSON object of a direct query asking for details, the fields of {@link DirectView}
+ * followed by the connecting routes
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class DirectRoutesView {
+
+    private final int departure;
+    private final int arrival;
+    private final int[] routeIds;
+    private final Integer bestRouteId;
+    private final Integer stops;
+
+    /**
+     * @param routeIds the ids of the connecting routes in ascending order, empty if there is no direct connection
+     * @param bestRouteId the route with the fewest stops, null if there is no direct connection
+     * @param stops the number of stops on the best route, null if there is no direct connection
+     */
+    @JsonCreator
+    public DirectRoutesView(int departure, int arrival, int[] routeIds, Integer bestRouteId, Integer stops) {
+        this.departure = departure;
+        this.arrival = arrival;
+        this.routeIds = routeIds;
+        this.bestRouteId = bestRouteId;
+        this.stops = stops;
+    }
+
+    @JsonGetter("dep_sid")
+    public int getDeparture() {
+        return departure;
+    }
+
+    @JsonGetter("arr_sid")
+    public int getArrival() {
+        return arrival;
+    }
+
+    @JsonGetter("direct_bus_route")
+    public boolean isDirectBusRoute() {
+        return routeIds.length > 0;
+    }
+
+    @JsonGetter("route_ids")
+    public int[] getRouteIds() {
+        return routeIds;
+    }
+
+    @JsonGetter("best_route_id")
+    public Integer getBestRouteId() {
+        return bestRouteId;
+    }
+
+    @JsonGetter("stops")
+    public Integer getStops() {
+        return stops;
+    }
+}
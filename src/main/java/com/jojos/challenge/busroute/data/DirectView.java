@@ -2,12 +2,20 @@ package com.jojos.challenge.busroute.data;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
 
 /**
  * The return JSON object of the controller
  *
  * @author karanikasg@gmail.com.
  */
+@JsonSerialize(using = DirectView.Serializer.class)
 public class DirectView {
 
     private final int departure;
@@ -35,4 +43,27 @@ public class DirectView {
     public boolean isDirectBusRoute() {
         return directBusRoute;
     }
+
+    /**
+     * Writes the three fields straight to the generator, with their names encoded once, instead of going
+     * through the reflection based bean serializer on every response
+     */
+    public static class Serializer extends JsonSerializer<DirectView> {
+
+        private static final SerializedString DEPARTURE = new SerializedString("dep_sid");
+        private static final SerializedString ARRIVAL = new SerializedString("arr_sid");
+        private static final SerializedString DIRECT_BUS_ROUTE = new SerializedString("direct_bus_route");
+
+        @Override
+        public void serialize(DirectView view, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeFieldName(DEPARTURE);
+            generator.writeNumber(view.departure);
+            generator.writeFieldName(ARRIVAL);
+            generator.writeNumber(view.arrival);
+            generator.writeFieldName(DIRECT_BUS_ROUTE);
+            generator.writeBoolean(view.directBusRoute);
+            generator.writeEndObject();
+        }
+    }
 }
@@ -0,0 +1,42 @@
+package com.jojos.challenge.busroute.data;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+
+/**
+ * The return JSON object of a shard telling the routes a station is found on, along with its position in each
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class PostingsView {
+
+    private final int station;
+    private final int[] routeIds;
+    private final int[] positions;
+
+    /**
+     * @param routeIds the route ids in ascending order, empty if the station is not found on any route
+     * @param positions the position of the station in every route
+     */
+    @JsonCreator
+    public PostingsView(int station, int[] routeIds, int[] positions) {
+        this.station = station;
+        this.routeIds = routeIds;
+        this.positions = positions;
+    }
+
+    @JsonGetter("sid")
+    public int getStation() {
+        return station;
+    }
+
+    @JsonGetter("route_ids")
+    public int[] getRouteIds() {
+        return routeIds;
+    }
+
+    @JsonGetter("positions")
+    public int[] getPositions() {
+        return positions;
+    }
+}
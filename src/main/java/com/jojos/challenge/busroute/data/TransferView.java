@@ -0,0 +1,53 @@
+package com.jojos.challenge.busroute.data;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+
+/**
+ * The return JSON object of a transfer query
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class TransferView {
+
+    private final int departure;
+    private final int arrival;
+    private final int maxTransfers;
+    private final Integer transfers;
+
+    /**
+     * @param transfers the minimum number of changes of routes, null if the arrival is not reachable
+     */
+    @JsonCreator
+    public TransferView(int departure, int arrival, int maxTransfers, Integer transfers) {
+        this.departure = departure;
+        this.arrival = arrival;
+        this.maxTransfers = maxTransfers;
+        this.transfers = transfers;
+    }
+
+    @JsonGetter("dep_sid")
+    public int getDeparture() {
+        return departure;
+    }
+
+    @JsonGetter("arr_sid")
+    public int getArrival() {
+        return arrival;
+    }
+
+    @JsonGetter("max_transfers")
+    public int getMaxTransfers() {
+        return maxTransfers;
+    }
+
+    @JsonGetter("reachable")
+    public boolean isReachable() {
+        return transfers != null;
+    }
+
+    @JsonGetter("transfers")
+    public Integer getTransfers() {
+        return transfers;
+    }
+}
@@ -0,0 +1,268 @@
+package com.jojos.challenge.busroute.service;
+
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link RouteStore} remembering the answers of the wrapped store for the most requested pairs of stations.
+ *
+ * The cache is a set associative table of {@value #WAYS} ways per set. An entry packs the departure, the arrival
+ * and the answer into a single long, so it is read and written atomically and no lock is needed: the entries of
+ * a set are kept in recency order, a hit moves its entry to the front and a new entry evicts the last one, i.e.
+ * the least recently used of its set. Concurrent updates of the same set may lose or duplicate an entry, which
+ * costs a miss at worst, never a wrong answer.
+ *
+ * With the {@link Policy#TINY_LFU} policy a new entry only evicts the least recently used one if its pair has been
+ * requested more often lately, according to a count-min sketch of the recent requests. This keeps one-off pairs
+ * from flushing the popular ones out of the cache.
+ *
+ * Only pairs of non negative station ids are cached, others go straight to the wrapped store. The wrapped store
+ * must not change while wrapped, a changed store is wrapped anew with an empty cache.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class CachingRouteStore implements RouteStore {
+
+    public enum Policy {
+        /**
+         * Every missed pair is cached, evicting the least recently used one of its set
+         */
+        LRU,
+        /**
+         * A missed pair is only cached if requested more often than the least recently used one of its set
+         */
+        TINY_LFU
+    }
+
+    private static final int WAYS = 4;
+
+    private static final long OCCUPIED = 1L << 63;
+    private static final long CONNECTED = 1L;
+
+    private final RouteStore delegate;
+    private final Policy policy;
+
+    private final AtomicLongArray entries;
+    private final int setMask;
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param delegate the store answering the pairs not found in the cache
+     * @param size the number of pairs the cache holds at most, rounded up to a power of 2
+     * @param policy decides which pairs are cached
+     */
+    public CachingRouteStore(RouteStore delegate, int size, Policy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+        int sets = Integer.highestOneBit(Math.max(1, (size + WAYS - 1) / WAYS) * 2 - 1);
+        this.entries = new AtomicLongArray(sets * WAYS);
+        this.setMask = sets - 1;
+        this.sketch = policy == Policy.TINY_LFU ? new FrequencySketch(sets * WAYS) : null;
+    }
+
+    @Override
+    public void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        throw new IllegalStateException("Route store is frozen, no more routes can be stored");
+    }
+
+    @Override
+    public int getTotalNumberOfRoutes() {
+        return delegate.getTotalNumberOfRoutes();
+    }
+
+    @Override
+    public int getTotalNumberOfStations() {
+        return delegate.getTotalNumberOfStations();
+    }
+
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        delegate.forEachStationFanOut(fanOut);
+    }
+
+    /**
+     * Not cached, only whether a connection exists is
+     */
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        return delegate.forEachDirectRoute(departure, arrival, routes);
+    }
+
+    /**
+     * Not cached, the answers depend on the number of transfers allowed
+     */
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        return delegate.getMinimumTransfersBetween(departure, arrival, maxTransfers);
+    }
+
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        if ((departure | arrival) < 0) {
+            return delegate.isDirectConnectionExistBetween(departure, arrival);
+        }
+
+        long key = OCCUPIED | ((long) departure << 32) | ((long) arrival << 1);
+        long hash = mix(key);
+        int set = ((int) hash & setMask) * WAYS;
+        if (sketch != null) {
+            sketch.increment(hash);
+        }
+
+        for (int way = 0; way < WAYS; way++) {
+            long entry = entries.get(set + way);
+            if ((entry & ~CONNECTED) == key) {
+                hits.increment();
+                if (way > 0) {
+                    moveToFront(set, way, entry);
+                }
+                return (entry & CONNECTED) != 0;
+            }
+        }
+
+        misses.increment();
+        boolean connected = delegate.isDirectConnectionExistBetween(departure, arrival);
+        long victim = entries.get(set + WAYS - 1);
+        if (victim == 0 || sketch == null || sketch.frequency(hash) > sketch.frequency(mix(victim & ~CONNECTED))) {
+            if (victim != 0) {
+                evictions.increment();
+            }
+            moveToFront(set, WAYS - 1, connected ? key | CONNECTED : key);
+        }
+        return connected;
+    }
+
+    /**
+     * @return the store the cache is in front of
+     */
+    RouteStore delegate() {
+        return delegate;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the size of the cache and its sketch in bytes
+     */
+    public long getMemoryFootprint() {
+        return (long) entries.length() * Long.BYTES + (sketch != null ? sketch.getMemoryFootprint() : 0);
+    }
+
+    /**
+     * Shifts the entries in front of the given way back by one, dropping the entry of the way, and puts the entry first
+     */
+    private void moveToFront(int set, int way, long entry) {
+        for (int i = way; i > 0; i--) {
+            entries.lazySet(set + i, entries.get(set + i - 1));
+        }
+        entries.lazySet(set, entry);
+    }
+
+    /**
+     * The finalizer of murmur3, spreading the station ids over all bits
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * A count-min sketch of 4 bit counters estimating how often a pair has been requested lately. Once the sketch
+     * has counted ten times the size of the cache all counters are halved, so that the past fades away.
+     *
+     * Counters are updated without synchronization, a lost update skews an estimate by one.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long HALF_MASK = 0x7777777777777777L;
+
+        // 16 counters per long
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int size) {
+            this.table = new long[Integer.highestOneBit(Math.max(size, 16) * 2 - 1)];
+            this.tableMask = table.length - 1;
+            this.sampleSize = 10 * Math.max(size, 16);
+        }
+
+        private void increment(long hash) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = indexOf(hash, row);
+                int shift = counterOf(hash, row) << 2;
+                long word = table[index];
+                if (((word >>> shift) & 0xF) < 0xF) {
+                    table[index] = word + (1L << shift);
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private int frequency(long hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int count = (int) ((table[indexOf(hash, row)] >>> (counterOf(hash, row) << 2)) & 0xF);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            additions = 0;
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & HALF_MASK;
+            }
+        }
+
+        private int indexOf(long hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h >>> 40) & tableMask;
+        }
+
+        /**
+         * @return which of the 16 counters of the long of the row to use
+         */
+        private static int counterOf(long hash, int row) {
+            return (int) (hash >>> (row << 2)) & 0xF;
+        }
+
+        private long getMemoryFootprint() {
+            return (long) table.length * Long.BYTES;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.GrowableIntArray;
+import com.jojos.challenge.busroute.util.IdDictionary;
+import com.jojos.challenge.busroute.util.RouteBuffer;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Implementation of {@link RouteStore} that keeps the route information in compact primitive arrays.
+ *
+ * While loading, routes are appended into growable int buffers. Once {@link #freeze()} is called
+ * (explicitly by the loader or implicitly by the first query) the buffers are turned into a
+ * compressed-sparse-row (CSR) layout:
+ * <ul>
+ *     <li>route ordinal -> ordered station ordinals ({@code routeOffsets}/{@code routeStations})</li>
+ *     <li>station ordinal -> ascending route ordinals along with the position of the station
+ *     within each of those routes ({@link StationIndex})</li>
+ * </ul>
+ * Ordinals are the indexes of the ids in the sorted route and station id arrays, an id is turned into its
+ * ordinal through an {@link IdDictionary}.
+ * No boxed value survives the freeze, which keeps the footprint at a few bytes per stop.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class CompactRouteStore implements RouteStore {
+
+    // loading phase buffers, guarded by this and released once frozen
+    private GrowableIntArray loadedRouteIds = new GrowableIntArray();
+    private GrowableIntArray loadedOffsets = new GrowableIntArray();
+    private GrowableIntArray loadedStations = new GrowableIntArray();
+
+    private volatile boolean frozen;
+
+    // route id <-> ordinal, the ordinal of a route id is its index in the sorted route ids
+    private IdDictionary routes;
+
+    // route ordinal -> station ordinals in route order
+    private int[] routeOffsets;
+    private int[] routeStations;
+
+    // station ordinal -> route ordinals in ascending order, along with the position of the station in each route
+    private StationIndex stationIndex;
+
+    // the two indexes above as a graph of routes and stations
+    private RouteGraph.OnHeap routeGraph;
+
+    public CompactRouteStore() {
+        loadedOffsets.add(0);
+    }
+
+    /**
+     * Creates an already frozen store out of the arrays of a previously frozen one, see {@link RouteSnapshot}
+     */
+    CompactRouteStore(IdDictionary routes, int[] routeOffsets, int[] routeStations, StationIndex stationIndex) {
+        this.routes = routes;
+        this.routeOffsets = routeOffsets;
+        this.routeStations = routeStations;
+        this.stationIndex = stationIndex;
+        this.routeGraph = new RouteGraph.OnHeap(routes.ids(), routeOffsets, routeStations, stationIndex);
+        this.loadedRouteIds = null;
+        this.loadedOffsets = null;
+        this.loadedStations = null;
+        this.frozen = true;
+    }
+
+    @Override
+    public synchronized void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        checkNotFrozen();
+        loadedRouteIds.add(routeId);
+        stationIds.forEach(loadedStations::add);
+        loadedOffsets.add(loadedStations.size());
+    }
+
+    @Override
+    public synchronized void storeRoute(int routeId, int[] stationIds, int offset, int count) {
+        checkNotFrozen();
+        loadedRouteIds.add(routeId);
+        loadedStations.addAll(stationIds, offset, count);
+        loadedOffsets.add(loadedStations.size());
+    }
+
+    /**
+     * Appends all buffers at once. Room is made for all of them upfront, then every buffer is copied
+     * into its own disjoint range of the loading arrays in parallel, without any locking.
+     */
+    @Override
+    public synchronized void storeRoutes(List<RouteBuffer> buffers) {
+        checkNotFrozen();
+        int count = buffers.size();
+        int[] routeStarts = new int[count + 1];
+        int[] stationStarts = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            routeStarts[i + 1] = routeStarts[i] + buffers.get(i).size();
+            stationStarts[i + 1] = stationStarts[i] + buffers.get(i).getStationCount();
+        }
+
+        int firstRoute = loadedRouteIds.extend(routeStarts[count]);
+        loadedOffsets.extend(routeStarts[count]);
+        int firstStation = loadedStations.extend(stationStarts[count]);
+        int[] routeIds = loadedRouteIds.elements();
+        int[] offsets = loadedOffsets.elements();
+        int[] stations = loadedStations.elements();
+
+        IntStream.range(0, count).parallel().forEach(i -> {
+            RouteBuffer buffer = buffers.get(i);
+            int route = firstRoute + routeStarts[i];
+            int stationBase = firstStation + stationStarts[i];
+            for (int r = 0; r < buffer.size(); r++) {
+                routeIds[route + r] = buffer.getRouteId(r);
+                // the offsets array holds the end of every route, shifted by one for the leading 0
+                offsets[route + r + 1] = stationBase + buffer.getStationsEnd(r);
+            }
+            System.arraycopy(buffer.stationIds(), 0, stations, stationBase, buffer.getStationCount());
+        });
+    }
+
+    @Override
+    public synchronized void freeze() {
+        if (frozen) {
+            return;
+        }
+
+        int lines = loadedRouteIds.size();
+        int[] lineRouteIds = loadedRouteIds.elements();
+        int[] lineOffsets = loadedOffsets.elements();
+        int[] stations = loadedStations.elements();
+        int totalStops = loadedStations.size();
+
+        // order routes by their id. Should an id be stored twice the last one wins, same as a map would do
+        long[] byRouteId = new long[lines];
+        for (int line = 0; line < lines; line++) {
+            byRouteId[line] = ((long) lineRouteIds[line] << 32) | line;
+        }
+        Arrays.sort(byRouteId);
+        int[] sortedRouteIds = new int[lines];
+        int[] routeLines = new int[lines];
+        int routes = 0;
+        for (long packed : byRouteId) {
+            int routeId = (int) (packed >> 32);
+            int line = (int) packed;
+            if (routes > 0 && sortedRouteIds[routes - 1] == routeId) {
+                routeLines[routes - 1] = line;
+            } else {
+                sortedRouteIds[routes] = routeId;
+                routeLines[routes] = line;
+                routes++;
+            }
+        }
+
+        // route -> stations, in ascending route id order
+        int[] newRouteOffsets = new int[routes + 1];
+        for (int route = 0; route < routes; route++) {
+            int line = routeLines[route];
+            newRouteOffsets[route + 1] = newRouteOffsets[route] + lineOffsets[line + 1] - lineOffsets[line];
+        }
+        int[] newRouteStations = new int[newRouteOffsets[routes]];
+        for (int route = 0; route < routes; route++) {
+            int line = routeLines[route];
+            System.arraycopy(stations, lineOffsets[line], newRouteStations, newRouteOffsets[route], lineOffsets[line + 1] - lineOffsets[line]);
+        }
+
+        // station -> routes, turning the station ids of the routes into station ordinals
+        StationIndex newStationIndex = StationIndex.build(newRouteOffsets, newRouteStations);
+
+        this.routes = IdDictionary.of(Arrays.copyOf(sortedRouteIds, routes));
+        this.routeOffsets = newRouteOffsets;
+        this.routeStations = newRouteStations;
+        this.stationIndex = newStationIndex;
+        this.routeGraph = new RouteGraph.OnHeap(this.routes.ids(), newRouteOffsets, newRouteStations, newStationIndex);
+
+        loadedRouteIds = null;
+        loadedOffsets = null;
+        loadedStations = null;
+        frozen = true;
+    }
+
+    @Override
+    public int getTotalNumberOfRoutes() {
+        ensureFrozen();
+        return routes.size();
+    }
+
+    @Override
+    public int getTotalNumberOfStations() {
+        ensureFrozen();
+        return stationIndex.getStationCount();
+    }
+
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        ensureFrozen();
+        return stationIndex.connects(departure, arrival);
+    }
+
+    @Override
+    public boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        ensureFrozen();
+        return stationIndex.connectsEitherWay(stationId1, stationId2, null);
+    }
+
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        ensureFrozen();
+        return stationIndex.forEachConnection(departure, arrival, null, this.routes.ids(), routes);
+    }
+
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        return routeGraph().minimumTransfers(departure, arrival, maxTransfers);
+    }
+
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        stationIndex().forEachFanOut(fanOut);
+    }
+
+    /**
+     * An estimation of the heap occupied by the frozen arrays, excluding the object headers.
+     *
+     * @return the size of the index in bytes
+     */
+    public long getMemoryFootprint() {
+        ensureFrozen();
+        long ints = (long) routeOffsets.length + routeStations.length;
+        return ints * Integer.BYTES + routes.getMemoryFootprint() + stationIndex.getMemoryFootprint();
+    }
+
+    /**
+     * @return the dictionary of the route ids, e.g. for tools reading the arrays of a snapshot
+     */
+    public IdDictionary getRouteDictionary() {
+        ensureFrozen();
+        return routes;
+    }
+
+    /**
+     * @return the dictionary of the station ids, e.g. for tools reading the arrays of a snapshot
+     */
+    public IdDictionary getStationDictionary() {
+        ensureFrozen();
+        return stationIndex.stations();
+    }
+
+    int[] routeIds() {
+        ensureFrozen();
+        return routes.ids();
+    }
+
+    int[] routeOffsets() {
+        ensureFrozen();
+        return routeOffsets;
+    }
+
+    int[] routeStations() {
+        ensureFrozen();
+        return routeStations;
+    }
+
+    StationIndex stationIndex() {
+        ensureFrozen();
+        return stationIndex;
+    }
+
+    RouteGraph.OnHeap routeGraph() {
+        ensureFrozen();
+        return routeGraph;
+    }
+
+    /**
+     * @return the index of the first station ordinal of the route ordinal, see {@link #routeStationAt(int)}
+     */
+    int routeStart(int route) {
+        return routeOffsets[route];
+    }
+
+    int routeEnd(int route) {
+        return routeOffsets[route + 1];
+    }
+
+    int routeStationAt(int index) {
+        return routeStations[index];
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Route store is frozen, no more routes can be stored");
+        }
+    }
+
+    private void ensureFrozen() {
+        if (!frozen) {
+            freeze();
+        }
+    }
+}
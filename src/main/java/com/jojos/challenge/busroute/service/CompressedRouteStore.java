@@ -0,0 +1,147 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.IdDictionary;
+import com.jojos.challenge.busroute.util.PackedIntArray;
+import com.jojos.challenge.busroute.util.RouteBuffer;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Implementation of {@link RouteStore} holding the same indexes as the {@link CompactRouteStore}, bit-packed.
+ *
+ * The routes are loaded into a {@link CompactRouteStore} which, once frozen, is packed and dropped:
+ * <ul>
+ *     <li>route ordinal -> station ordinals, every station ordinal taking as many bits as the largest one needs
+ *     ({@link PackedIntArray})</li>
+ *     <li>station ordinal -> (route ordinal, position) postings in frame-of-reference coded blocks
+ *     ({@link CompressedStationIndex})</li>
+ * </ul>
+ * Queries read the packed bits as they are, trading a few shifts and masks per posting for a fraction of the
+ * memory of the compact store. Both stores are held while freezing.
+ *
+ * Route changes are not supported, the data file is to be reloaded instead.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class CompressedRouteStore implements RouteStore {
+
+    // loading phase store, guarded by this and released once frozen
+    private CompactRouteStore loading = new CompactRouteStore();
+
+    private volatile boolean frozen;
+
+    // route id <-> ordinal, the ordinal of a route id is its index in the sorted route ids
+    private IdDictionary routes;
+
+    // route ordinal -> station ordinals in route order
+    private int[] routeOffsets;
+    private PackedIntArray routeStations;
+
+    // station ordinal -> route ordinals in ascending order, along with the position of the station in each route
+    private CompressedStationIndex stationIndex;
+
+    private RouteGraph routeGraph;
+
+    @Override
+    public synchronized void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        checkNotFrozen();
+        loading.storeRoute(routeId, stationIds);
+    }
+
+    @Override
+    public synchronized void storeRoute(int routeId, int[] stationIds, int offset, int count) {
+        checkNotFrozen();
+        loading.storeRoute(routeId, stationIds, offset, count);
+    }
+
+    @Override
+    public synchronized void storeRoutes(List<RouteBuffer> buffers) {
+        checkNotFrozen();
+        loading.storeRoutes(buffers);
+    }
+
+    @Override
+    public synchronized void freeze() {
+        if (frozen) {
+            return;
+        }
+        CompactRouteStore compact = loading;
+        compact.freeze();
+
+        this.routes = compact.getRouteDictionary();
+        this.routeOffsets = compact.routeOffsets();
+        this.routeStations = PackedIntArray.of(compact.routeStations());
+        this.stationIndex = CompressedStationIndex.of(compact.stationIndex());
+        this.routeGraph = new RouteGraph.Compressed(routeOffsets, routeStations, stationIndex);
+
+        loading = null;
+        frozen = true;
+    }
+
+    @Override
+    public int getTotalNumberOfRoutes() {
+        ensureFrozen();
+        return routes.size();
+    }
+
+    @Override
+    public int getTotalNumberOfStations() {
+        ensureFrozen();
+        return stationIndex.getStationCount();
+    }
+
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        ensureFrozen();
+        return stationIndex.connects(departure, arrival);
+    }
+
+    @Override
+    public boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        ensureFrozen();
+        return stationIndex.connectsEitherWay(stationId1, stationId2);
+    }
+
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        ensureFrozen();
+        return stationIndex.forEachConnection(departure, arrival, this.routes.ids(), routes);
+    }
+
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        ensureFrozen();
+        return routeGraph.minimumTransfers(departure, arrival, maxTransfers);
+    }
+
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        ensureFrozen();
+        stationIndex.forEachFanOut(fanOut);
+    }
+
+    /**
+     * An estimation of the heap occupied by the packed indexes, excluding the object headers.
+     *
+     * @return the size of the indexes in bytes
+     */
+    public long getMemoryFootprint() {
+        ensureFrozen();
+        return (long) routeOffsets.length * Integer.BYTES + routes.getMemoryFootprint() + routeStations.getMemoryFootprint() +
+                stationIndex.getMemoryFootprint();
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Route store is frozen, no more routes can be stored");
+        }
+    }
+
+    private void ensureFrozen() {
+        if (!frozen) {
+            freeze();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.IdDictionary;
+import com.jojos.challenge.busroute.util.PackedIntArray;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The same station -> (route, position in route) postings as the {@link StationIndex}, bit-packed into a fraction
+ * of its memory.
+ *
+ * The postings of a station are cut into blocks of {@value #BLOCK}. A block is frame-of-reference coded: its first
+ * route ordinal is the base, every route is stored as its distance from the base with as few bits as the largest
+ * distance needs, and every position with as few bits as the largest position of the block needs. The routes of a
+ * station are sorted and route ordinals are dense, so a distance takes far fewer bits than an int.
+ * <pre>
+ * block = size - 1 (7 bits) | route width (5) | position width (5) | base width (5) | base | routes | positions
+ * </pre>
+ * Every block starts on a byte boundary. A width being fixed for the whole block, any posting is read in constant
+ * time, so two lists are intersected by galloping over the packed bits as they are, nothing is decoded into a
+ * buffer first. The bases double as skip pointers, a search gallops over the blocks of a station before it
+ * gallops within the block.
+ *
+ * A posting is numbered {@code block * BLOCK + index in the block}, the postings of a station being numbered in a
+ * row, so {@link #postingsStart(int)} and {@link #routeAt(int)} keep to the contract of the {@link StationIndex}.
+ *
+ * @author karanikasg@gmail.com.
+ */
+final class CompressedStationIndex {
+
+    static final int BLOCK = 128;
+    private static final int BLOCK_SHIFT = 7;
+
+    private static final int WIDTH_BITS = 5;
+    private static final int HEADER_BITS = BLOCK_SHIFT + 3 * WIDTH_BITS;
+
+    // station id <-> ordinal, the ordinal of a station id is its index in the sorted station ids
+    private final IdDictionary stations;
+
+    // station ordinal -> blocks, the blocks of station s being stationBlocks[s]..stationBlocks[s + 1]
+    private final int[] stationBlocks;
+
+    // block -> byte of bits it starts at
+    private final int[] blockStarts;
+    private final long[] bits;
+
+    private CompressedStationIndex(IdDictionary stations, int[] stationBlocks, int[] blockStarts, long[] bits) {
+        this.stations = stations;
+        this.stationBlocks = stationBlocks;
+        this.blockStarts = blockStarts;
+        this.bits = bits;
+    }
+
+    /**
+     * Packs the postings of the given index, which is left as is
+     */
+    static CompressedStationIndex of(StationIndex index) {
+        int stationCount = index.getStationCount();
+        int[] stationBlocks = new int[stationCount + 1];
+        long blockCount = 0;
+        for (int station = 0; station < stationCount; station++) {
+            stationBlocks[station] = (int) blockCount;
+            int postings = index.postingsEnd(station) - index.postingsStart(station);
+            blockCount += (postings + BLOCK - 1) >>> BLOCK_SHIFT;
+            if (blockCount > Integer.MAX_VALUE >>> BLOCK_SHIFT) {
+                throw new IllegalArgumentException(String.format("Too many postings to compress, more than %d blocks", blockCount));
+            }
+        }
+        stationBlocks[stationCount] = (int) blockCount;
+
+        // the size of every block first, then the blocks themselves
+        int[] blockStarts = new int[(int) blockCount];
+        long bytes = 0;
+        int block = 0;
+        for (int station = 0; station < stationCount; station++) {
+            for (int from = index.postingsStart(station); from < index.postingsEnd(station); from += BLOCK) {
+                if (bytes > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(String.format("Too many postings to compress, more than %d bytes", bytes));
+                }
+                blockStarts[block++] = (int) bytes;
+                int to = Math.min(from + BLOCK, index.postingsEnd(station));
+                bytes += (encode(index, from, to, null, 0) + Byte.SIZE - 1) / Byte.SIZE;
+            }
+        }
+        long[] bits = new long[PackedIntArray.wordsFor(bytes * Byte.SIZE)];
+        block = 0;
+        for (int station = 0; station < stationCount; station++) {
+            for (int from = index.postingsStart(station); from < index.postingsEnd(station); from += BLOCK) {
+                int to = Math.min(from + BLOCK, index.postingsEnd(station));
+                encode(index, from, to, bits, (long) blockStarts[block++] * Byte.SIZE);
+            }
+        }
+        return new CompressedStationIndex(index.stations(), stationBlocks, blockStarts, bits);
+    }
+
+    /**
+     * Writes the postings {@code from..to} of the index as a block starting at the given bit, unless {@code bits} is null
+     *
+     * @return the bits of the block
+     */
+    private static long encode(StationIndex index, int from, int to, long[] bits, long bit) {
+        int size = to - from;
+        int base = index.routeAt(from);
+        int routeWidth = PackedIntArray.bitsRequired(index.routeAt(to - 1) - base);
+        int maxPosition = 0;
+        for (int posting = from; posting < to; posting++) {
+            maxPosition = Math.max(maxPosition, index.positionAt(posting));
+        }
+        int positionWidth = PackedIntArray.bitsRequired(maxPosition);
+        int baseWidth = PackedIntArray.bitsRequired(base);
+        long length = HEADER_BITS + baseWidth + (long) size * (routeWidth + positionWidth);
+        if (bits == null) {
+            return length;
+        }
+
+        int header = (size - 1) | routeWidth << BLOCK_SHIFT | positionWidth << (BLOCK_SHIFT + WIDTH_BITS) |
+                baseWidth << (BLOCK_SHIFT + 2 * WIDTH_BITS);
+        PackedIntArray.write(bits, bit, HEADER_BITS, header);
+        long routeBits = bit + HEADER_BITS + baseWidth;
+        long positionBits = routeBits + (long) size * routeWidth;
+        PackedIntArray.write(bits, bit + HEADER_BITS, baseWidth, base);
+        for (int i = 0; i < size; i++) {
+            PackedIntArray.write(bits, routeBits + (long) i * routeWidth, routeWidth, index.routeAt(from + i) - base);
+            PackedIntArray.write(bits, positionBits + (long) i * positionWidth, positionWidth, index.positionAt(from + i));
+        }
+        return length;
+    }
+
+    /**
+     * Reports the number of routes of every station in ordinal order
+     */
+    void forEachFanOut(IntConsumer fanOut) {
+        for (int station = 0; station < stations.size(); station++) {
+            fanOut.accept(postingsEnd(station) - postingsStart(station));
+        }
+    }
+
+    IdDictionary stations() {
+        return stations;
+    }
+
+    int getStationCount() {
+        return stations.size();
+    }
+
+    /**
+     * @return the ordinal of the station or a negative number if it does not exist
+     */
+    int ordinalOf(int stationId) {
+        return stations.ordinalOf(stationId);
+    }
+
+    /**
+     * @return the first posting of the station ordinal, see {@link #routeAt(int)} and {@link #positionAt(int)}
+     */
+    int postingsStart(int station) {
+        return stationBlocks[station] << BLOCK_SHIFT;
+    }
+
+    int postingsEnd(int station) {
+        int lastBlock = stationBlocks[station + 1] - 1;
+        return (lastBlock << BLOCK_SHIFT) + (headerOf(lastBlock) & (BLOCK - 1)) + 1;
+    }
+
+    int routeAt(int posting) {
+        int block = posting >>> BLOCK_SHIFT;
+        long bit = (long) blockStarts[block] * Byte.SIZE;
+        int header = headerOf(block);
+        int routeWidth = routeWidthOf(header);
+        int baseWidth = baseWidthOf(header);
+        int base = PackedIntArray.read(bits, bit + HEADER_BITS, baseWidth);
+        long routeBit = bit + HEADER_BITS + baseWidth + (long) (posting & (BLOCK - 1)) * routeWidth;
+        return base + PackedIntArray.read(bits, routeBit, routeWidth);
+    }
+
+    int positionAt(int posting) {
+        int block = posting >>> BLOCK_SHIFT;
+        int header = headerOf(block);
+        int size = (header & (BLOCK - 1)) + 1;
+        int positionWidth = positionWidthOf(header);
+        long positionBit = (long) blockStarts[block] * Byte.SIZE + HEADER_BITS + baseWidthOf(header) +
+                (long) size * routeWidthOf(header) + (long) (posting & (BLOCK - 1)) * positionWidth;
+        return PackedIntArray.read(bits, positionBit, positionWidth);
+    }
+
+    /**
+     * @return true if any route visits the departure before the arrival, or both are the same existing station
+     */
+    boolean connects(int departure, int arrival) {
+        return connects(departure, arrival, false);
+    }
+
+    /**
+     * Same as {@link #connects(int, int)} whichever of the two stations comes first on the route, for routes run in
+     * both directions
+     */
+    boolean connectsEitherWay(int station1, int station2) {
+        return connects(station1, station2, true);
+    }
+
+    private boolean connects(int departure, int arrival, boolean eitherWay) {
+        int dep = stations.ordinalOf(departure);
+        int arr = stations.ordinalOf(arrival);
+        if (dep < 0 || arr < 0) {
+            // at least one of the provided stations does not exist in any of the routes
+            return false;
+        }
+        if (dep == arr) {
+            // a station is reachable from itself
+            return true;
+        }
+
+        // each list leaps to the route the other one is at, so the shorter list sets the pace
+        Cursor from = new Cursor(dep);
+        Cursor to = new Cursor(arr);
+        while (to.advance(from.route())) {
+            int route = to.route();
+            if (from.route() == route) {
+                // distinct stations never share a position, any common route connects them either way
+                if (eitherWay || from.position() < to.position()) {
+                    return true;
+                }
+                if (!from.next()) {
+                    return false;
+                }
+            } else if (!from.advance(route)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same intersection as {@link #connects(int, int)}, going on past the first connecting route so that every one of
+     * them is told along with the number of stops from the departure to the arrival
+     *
+     * @param routeIds the ids of the routes by ordinal
+     * @return true if any route connects the stations
+     */
+    boolean forEachConnection(int departure, int arrival, int[] routeIds, RouteStore.DirectRouteConsumer consumer) {
+        int dep = stations.ordinalOf(departure);
+        int arr = stations.ordinalOf(arrival);
+        if (dep < 0 || arr < 0) {
+            return false;
+        }
+
+        Cursor from = new Cursor(dep);
+        if (dep == arr) {
+            // every route of the station connects it to itself
+            do {
+                consumer.accept(routeIds[from.route()], 0);
+            } while (from.next());
+            return true;
+        }
+
+        boolean connected = false;
+        Cursor to = new Cursor(arr);
+        while (to.advance(from.route())) {
+            int route = to.route();
+            if (from.route() == route) {
+                if (from.position() < to.position()) {
+                    consumer.accept(routeIds[route], to.position() - from.position());
+                    connected = true;
+                }
+                if (!from.next()) {
+                    break;
+                }
+            } else if (!from.advance(route)) {
+                break;
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * @return the size of the arrays in bytes, excluding the object headers
+     */
+    long getMemoryFootprint() {
+        return stations.getMemoryFootprint() + ((long) stationBlocks.length + blockStarts.length) * Integer.BYTES +
+                (long) bits.length * Long.BYTES;
+    }
+
+    private int headerOf(int block) {
+        return PackedIntArray.read(bits, (long) blockStarts[block] * Byte.SIZE, HEADER_BITS);
+    }
+
+    private int baseOf(int block) {
+        return PackedIntArray.read(bits, (long) blockStarts[block] * Byte.SIZE + HEADER_BITS, baseWidthOf(headerOf(block)));
+    }
+
+    private static int routeWidthOf(int header) {
+        return (header >>> BLOCK_SHIFT) & ((1 << WIDTH_BITS) - 1);
+    }
+
+    private static int positionWidthOf(int header) {
+        return (header >>> (BLOCK_SHIFT + WIDTH_BITS)) & ((1 << WIDTH_BITS) - 1);
+    }
+
+    private static int baseWidthOf(int header) {
+        return header >>> (BLOCK_SHIFT + 2 * WIDTH_BITS);
+    }
+
+    /**
+     * Walks the postings of a station forwards, block by block, a station having at least one posting. Allocated per
+     * query and never escaping it, so that the JIT can keep its fields in registers
+     */
+    private final class Cursor {
+
+        private int block;
+        private final int endBlock;
+
+        // the block the cursor is in
+        private int size;
+        private int routeWidth;
+        private int positionWidth;
+        private int base;
+        private int last;
+        private long routeBits;
+        private long positionBits;
+
+        private int index;
+        // the route at the index, read once
+        private int route;
+
+        Cursor(int station) {
+            this.endBlock = stationBlocks[station + 1];
+            load(stationBlocks[station]);
+        }
+
+        int route() {
+            return route;
+        }
+
+        int position() {
+            return PackedIntArray.read(bits, positionBits + (long) index * positionWidth, positionWidth);
+        }
+
+        /**
+         * @return false if there are no more postings
+         */
+        boolean next() {
+            if (++index < size) {
+                route = routeOf(index);
+                return true;
+            }
+            if (block + 1 < endBlock) {
+                load(block + 1);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Moves to the first posting, the current one included, of a route not before the target
+         *
+         * @return false if there is none
+         */
+        boolean advance(int target) {
+            if (route >= target) {
+                return true;
+            }
+            if (last < target) {
+                // beyond the block, gallop over the bases of the blocks that follow
+                int lo = block + 1;
+                if (lo == endBlock) {
+                    return false;
+                }
+                if (baseOf(lo) <= target) {
+                    int step = 1;
+                    int hi = lo + 1;
+                    while (hi < endBlock && baseOf(hi) <= target) {
+                        lo = hi;
+                        step <<= 1;
+                        hi = lo + step;
+                    }
+                    hi = Math.min(hi, endBlock);
+                    while (hi - lo > 1) {
+                        int mid = (lo + hi) >>> 1;
+                        if (baseOf(mid) <= target) {
+                            lo = mid;
+                        } else {
+                            hi = mid;
+                        }
+                    }
+                }
+                load(lo);
+                if (last < target) {
+                    // the target falls between the blocks
+                    if (lo + 1 == endBlock) {
+                        return false;
+                    }
+                    load(lo + 1);
+                }
+            }
+
+            // the block holds the posting, gallop within it
+            if (route >= target) {
+                return true;
+            }
+            int lo = index;
+            int step = 1;
+            int hi = index + 1;
+            while (hi < size && routeOf(hi) < target) {
+                lo = hi;
+                step <<= 1;
+                hi = lo + step;
+            }
+            hi = Math.min(hi, size - 1);
+            while (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                if (routeOf(mid) < target) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+            }
+            index = hi;
+            route = routeOf(hi);
+            return true;
+        }
+
+        private int routeOf(int i) {
+            return base + PackedIntArray.read(bits, routeBits + (long) i * routeWidth, routeWidth);
+        }
+
+        private void load(int block) {
+            this.block = block;
+            long bit = (long) blockStarts[block] * Byte.SIZE;
+            int header = PackedIntArray.read(bits, bit, HEADER_BITS);
+            int baseWidth = baseWidthOf(header);
+            size = (header & (BLOCK - 1)) + 1;
+            routeWidth = routeWidthOf(header);
+            positionWidth = positionWidthOf(header);
+            base = PackedIntArray.read(bits, bit + HEADER_BITS, baseWidth);
+            routeBits = bit + HEADER_BITS + baseWidth;
+            positionBits = routeBits + (long) size * routeWidth;
+            index = 0;
+            route = base;
+            last = routeOf(size - 1);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.RouteDelta;
+import com.jojos.challenge.busroute.util.RouteLimits;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link RouteStore} applying changes to the routes of a frozen {@link CompactRouteStore} without rebuilding it.
+ *
+ * The changes are layered on top of the routes of the base store by a {@link RouteOverlay}: the routes removed or
+ * replaced are marked with the epoch of the change, the ones added or replaced are kept in a few segments of their own,
+ * each with a {@link StationIndex}, merged as they grow. A query reads the current version once and is answered by
+ * the segments and the base routes not removed as of it, so it never sees a partially applied change. The cost of a
+ * change is proportional to the routes it changes, not to the routes of the store.
+ *
+ * The segments grow with every change, until the data file is loaded again.
+ *
+ * Transfer queries search the graph of the base routes and the graphs of the segments as one, skipping the routes
+ * removed, see {@link RouteGraph.Layered}.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class DeltaRouteStore implements RouteStore {
+
+    private final CompactRouteStore base;
+    private final int maxBusRoutes;
+
+    // guarded by this, read through its current version by the queries
+    private final RouteOverlay overlay;
+
+    public DeltaRouteStore(CompactRouteStore base) {
+        this(base, RouteLimits.DEFAULT);
+    }
+
+    /**
+     * @param limits the number of routes stored one at a time is kept within, a delta is kept within the limits it is
+     *               parsed with
+     */
+    public DeltaRouteStore(CompactRouteStore base, RouteLimits limits) {
+        this.base = base;
+        this.maxBusRoutes = limits.getMaxBusRoutes();
+        this.overlay = new RouteOverlay(base.routeGraph());
+    }
+
+    @Override
+    public synchronized void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        if (!overlay.exists(routeId) && getTotalNumberOfRoutes() >= maxBusRoutes) {
+            throw new IllegalArgumentException(String.format("Number of bus routes larger than expected %d", maxBusRoutes));
+        }
+        overlay.apply(Collections.singletonList(new RouteDelta.Operation(RouteDelta.Kind.REPLACE, routeId, toArray(stationIds))));
+    }
+
+    @Override
+    public synchronized void removeRoute(int routeId) {
+        checkExists(routeId);
+        overlay.apply(Collections.singletonList(new RouteDelta.Operation(RouteDelta.Kind.REMOVE, routeId, new int[0])));
+    }
+
+    @Override
+    public synchronized void replaceRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        checkExists(routeId);
+        overlay.apply(Collections.singletonList(new RouteDelta.Operation(RouteDelta.Kind.REPLACE, routeId, toArray(stationIds))));
+    }
+
+    /**
+     * The changes are kept within the limits they are parsed with, checked before any of them is applied
+     */
+    @Override
+    public synchronized void applyDelta(RouteDelta delta) {
+        int routeCountChange = delta.validate(overlay::exists);
+        delta.checkLimits(getTotalNumberOfRoutes() + routeCountChange, overlay.stationCountAfter(delta.getOperations()));
+        overlay.apply(delta.getOperations());
+    }
+
+    @Override
+    public void freeze() {
+        base.freeze();
+    }
+
+    @Override
+    public int getTotalNumberOfRoutes() {
+        return overlay.version().getRouteCount();
+    }
+
+    @Override
+    public int getTotalNumberOfStations() {
+        return overlay.version().getStationCount();
+    }
+
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        return overlay.version().connects(departure, arrival, false);
+    }
+
+    @Override
+    public boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        return overlay.version().connects(stationId1, stationId2, true);
+    }
+
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        return overlay.version().forEachConnection(departure, arrival, routes);
+    }
+
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        return overlay.version().routeGraph().minimumTransfers(departure, arrival, maxTransfers);
+    }
+
+    /**
+     * @return the store the changes are applied on top of
+     */
+    CompactRouteStore base() {
+        return base;
+    }
+
+    /**
+     * Reports the fan-out of the stations of the base routes only, as loaded. The changes applied since are not reflected
+     */
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        base.forEachStationFanOut(fanOut);
+    }
+
+    /**
+     * @return the number of changes applied so far, every change publishes a new version
+     */
+    public long getEpoch() {
+        return overlay.version().getEpoch();
+    }
+
+    /**
+     * @return the number of routes added or replaced so far
+     */
+    public int getOverlaySize() {
+        return overlay.version().getOverlaySize();
+    }
+
+    private void checkExists(int routeId) {
+        if (!overlay.exists(routeId)) {
+            throw new IllegalArgumentException("Route id " + routeId + " does not exist");
+        }
+    }
+
+    private static int[] toArray(LinkedHashSet<Integer> stationIds) {
+        return stationIds.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
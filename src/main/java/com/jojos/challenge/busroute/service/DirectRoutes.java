@@ -0,0 +1,55 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.GrowableIntArray;
+
+import java.util.Arrays;
+
+/**
+ * The routes directly connecting two stations, collected in the same pass over the station index that tells
+ * whether a connection exists at all
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class DirectRoutes implements RouteStore.DirectRouteConsumer {
+
+    private final GrowableIntArray routeIds = new GrowableIntArray(4);
+    private int bestRouteId = -1;
+    private int stops = -1;
+
+    @Override
+    public void accept(int routeId, int stops) {
+        routeIds.add(routeId);
+        // the fewest stops win, then the lowest route id
+        if (this.stops < 0 || stops < this.stops || (stops == this.stops && routeId < bestRouteId)) {
+            this.bestRouteId = routeId;
+            this.stops = stops;
+        }
+    }
+
+    public boolean isConnected() {
+        return routeIds.size() > 0;
+    }
+
+    /**
+     * @return the ids of the connecting routes in ascending order
+     */
+    public int[] getRouteIds() {
+        int[] ids = routeIds.toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * @return the id of the route with the fewest stops between the stations, -1 if none connects them
+     */
+    public int getBestRouteId() {
+        return bestRouteId;
+    }
+
+    /**
+     * @return the number of stops on the best route, 0 from a station to itself, -1 if no route connects them
+     */
+    public int getStops() {
+        return stops;
+    }
+}
@@ -0,0 +1,233 @@
+package com.jojos.challenge.busroute.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link RouteStore} rejecting most pairs of stations that share no route before the wrapped store searches them.
+ *
+ * Every station id hashes to a block of 1 to 8 words, a cache line at most, holding the signature of the routes of
+ * the station: every route sets one bit of the block, picked by hashing its ordinal. Two stations sharing a route
+ * share that bit, so should the blocks of the departure and the arrival have no bit in common the stations are
+ * certainly not connected. Otherwise the wrapped store tells. Station ids found on no route are checked the same way
+ * against the block they hash to, empty or holding the routes of other stations. The filter has false positives,
+ * never false negatives.
+ *
+ * The filter holds about as many blocks as stations and is sized for pairs of stations of the average fan-out: the
+ * bits of a block so that the routes of two such stations set none in common with the configured false positive
+ * rate, a cache line at most whatever the rate. Should the filter exceed the memory cap, the bits of a block are
+ * halved first, then the blocks, letting more pairs through. The false positive rate expected is logged once built,
+ * as a warning when above the configured one: a block of 512 bits reaches a rate of 0.05 only for stations found on 5
+ * routes on average, 0.01 on 2, the stations found on more routes are let through more often whatever the rate.
+ *
+ * The wrapped store must not change while wrapped, route changes drop the filter until the data file is loaded again.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class FilteringRouteStore implements RouteStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FilteringRouteStore.class);
+
+    // words of a block at most, a cache line
+    private static final int MAX_WORDS = 8;
+
+    // Fibonacci hashing, the top bits of the product are spread evenly for consecutive ids
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final RouteStore delegate;
+
+    // blocks of words one after the other, the block of a station at blockOf(stationId)
+    private final long[] blocks;
+    private final int words;
+    private final int blockShift;
+    private final int bitShift;
+    private final double expectedRate;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder rejects = new LongAdder();
+
+    /**
+     * @param delegate the store answering the pairs of stations the filter lets through
+     * @param stationIndex the index of the wrapped store, its stations and their routes are hashed into the filter
+     * @param falsePositiveRate the share of the pairs sharing no route to let through, above 0 and below 1
+     * @param maxMemory the cap in bytes for the memory of the filter
+     */
+    FilteringRouteStore(RouteStore delegate, StationIndex stationIndex, double falsePositiveRate, long maxMemory) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be above 0 and below 1, got " + falsePositiveRate);
+        }
+        this.delegate = delegate;
+
+        int stations = stationIndex.getStationCount();
+        long postings = stations == 0 ? 0 : stationIndex.postingsEnd(stations - 1);
+        // two blocks at least, hashing to none of them takes a shift by 64 bits
+        int blockCount = Math.max(2, ceilingPowerOfTwo(stations, 1 << 30));
+        // two blocks of f bits each out of m share none with a chance of about exp(-f * f / m)
+        double bitsPerBlock = Math.max(1, (double) postings / blockCount);
+        int words = ceilingPowerOfTwo((long) Math.ceil(bitsPerBlock * bitsPerBlock / -Math.log(1 - falsePositiveRate) / Long.SIZE), MAX_WORDS);
+        while ((long) blockCount * words * Long.BYTES > maxMemory && blockCount > 2) {
+            if (words > 1) {
+                words >>>= 1;
+            } else {
+                blockCount >>>= 1;
+                bitsPerBlock *= 2;
+            }
+        }
+        if ((long) blockCount * words * Long.BYTES > maxMemory) {
+            log.warn("Memory cap of {} bytes is below the smallest filter, using {} bytes", maxMemory, (long) blockCount * words * Long.BYTES);
+        }
+        this.expectedRate = 1 - Math.exp(-bitsPerBlock * bitsPerBlock / (words * Long.SIZE));
+
+        this.words = words;
+        this.blocks = new long[blockCount * words];
+        this.blockShift = Long.SIZE - Integer.numberOfTrailingZeros(blockCount);
+        this.bitShift = Long.SIZE - Integer.numberOfTrailingZeros(words * Long.SIZE);
+
+        for (int station = 0; station < stations; station++) {
+            int block = blockOf(stationIndex.stationIdOf(station));
+            for (int posting = stationIndex.postingsStart(station); posting < stationIndex.postingsEnd(station); posting++) {
+                int bit = (int) ((stationIndex.routeAt(posting) * GOLDEN_RATIO) >>> bitShift);
+                blocks[block + (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        log.info("Built a filter of {} blocks of {} bits for {} stations found on {} routes in all, using {} bytes. " +
+                "False positive rate expected {}", blockCount, words * Long.SIZE, stations, postings, getMemoryFootprint(),
+                String.format("%.3f", expectedRate));
+        if (expectedRate > falsePositiveRate) {
+            // the largest average fan-out the blocks reach the configured rate for
+            double maxFanOut = Math.sqrt(-Math.log(1 - falsePositiveRate) * words * Long.SIZE);
+            log.warn("False positive rate expected {} above the configured {}: the stations are found on {} routes on " +
+                    "average, blocks of {} bits reach the configured rate up to {}", String.format("%.3f", expectedRate),
+                    falsePositiveRate, String.format("%.1f", stations == 0 ? 0 : (double) postings / stations),
+                    words * Long.SIZE, String.format("%.1f", maxFanOut));
+        }
+    }
+
+    @Override
+    public void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        throw new IllegalStateException("Route store is frozen, no more routes can be stored");
+    }
+
+    @Override
+    public int getTotalNumberOfRoutes() {
+        return delegate.getTotalNumberOfRoutes();
+    }
+
+    @Override
+    public int getTotalNumberOfStations() {
+        return delegate.getTotalNumberOfStations();
+    }
+
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        return mayConnect(departure, arrival) && delegate.isDirectConnectionExistBetween(departure, arrival);
+    }
+
+    /**
+     * The signatures tell whether the stations share a route whatever the direction, so a single check covers both
+     */
+    @Override
+    public boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        return mayConnect(stationId1, stationId2) && delegate.isConnectionEitherWayBetween(stationId1, stationId2);
+    }
+
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        return mayConnect(departure, arrival) && delegate.forEachDirectRoute(departure, arrival, routes);
+    }
+
+    /**
+     * Not filtered, stations sharing no route may still be connected through transfers
+     */
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        return delegate.getMinimumTransfersBetween(departure, arrival, maxTransfers);
+    }
+
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        delegate.forEachStationFanOut(fanOut);
+    }
+
+    /**
+     * @return the store answering the pairs of stations the filter lets through
+     */
+    RouteStore delegate() {
+        return delegate;
+    }
+
+    public int getBlockCount() {
+        return blocks.length / words;
+    }
+
+    public int getBlockBits() {
+        return words * Long.SIZE;
+    }
+
+    /**
+     * @return the share of the pairs of stations of the average fan-out sharing no route the filter is expected to
+     * let through, above the configured rate when the blocks are too small for the fan-out
+     */
+    public double getExpectedFalsePositiveRate() {
+        return expectedRate;
+    }
+
+    /**
+     * @return the number of pairs of stations checked by the filter
+     */
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    /**
+     * @return the number of pairs of stations rejected by the filter, never searched by the wrapped store
+     */
+    public long getRejects() {
+        return rejects.sum();
+    }
+
+    /**
+     * @return the size of the filter in bytes, excluding the wrapped store
+     */
+    public long getMemoryFootprint() {
+        return (long) blocks.length * Long.BYTES;
+    }
+
+    /**
+     * @return false if the stations certainly share no route
+     */
+    private boolean mayConnect(int stationId1, int stationId2) {
+        checks.increment();
+        int block1 = blockOf(stationId1);
+        int block2 = blockOf(stationId2);
+        for (int word = 0; word < words; word++) {
+            if ((blocks[block1 + word] & blocks[block2 + word]) != 0) {
+                return true;
+            }
+        }
+        rejects.increment();
+        return false;
+    }
+
+    /**
+     * @return the index of the first word of the block of the station
+     */
+    private int blockOf(int stationId) {
+        return (int) ((stationId * GOLDEN_RATIO) >>> blockShift) * words;
+    }
+
+    /**
+     * @return the smallest power of 2 at least the value, {@code max} at most
+     */
+    private static int ceilingPowerOfTwo(long value, int max) {
+        if (value >= max) {
+            return max;
+        }
+        return value <= 1 ? 1 : Integer.highestOneBit((int) value - 1) << 1;
+    }
+}
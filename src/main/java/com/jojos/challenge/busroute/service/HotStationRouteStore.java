@@ -0,0 +1,182 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.CompressedBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link RouteStore} that precomputes, for the busiest stations, every station directly reachable from them.
+ *
+ * The busiest stations are the ones found on the most routes. For each of them a {@link CompressedBitmap}
+ * of the reachable arrival station ids is materialized, turning a query departing from such a station
+ * into a single membership test. Queries departing from any other station go through the wrapped
+ * {@link CompactRouteStore}.
+ *
+ * Bitmaps are built busiest station first, until the configured memory cap would be exceeded.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class HotStationRouteStore implements RouteStore {
+
+    private static final Logger log = LoggerFactory.getLogger(HotStationRouteStore.class);
+
+    private final CompactRouteStore delegate;
+
+    // sorted ids of the hot stations along with the arrivals reachable from each one of them
+    private final int[] hotStationIds;
+    private final CompressedBitmap[] reachable;
+
+    private final long memoryFootprint;
+
+    /**
+     * @param delegate the store answering queries for any station that is not hot
+     * @param hotStations the maximum number of stations to precompute the reachable stations for
+     * @param maxMemory the cap in bytes for the memory of all bitmaps
+     */
+    public HotStationRouteStore(CompactRouteStore delegate, int hotStations, long maxMemory) {
+        this.delegate = delegate;
+
+        StationIndex stationIndex = delegate.stationIndex();
+        int[] busiest = busiestStations(stationIndex, hotStations);
+
+        long[] scratch = new long[(stationIndex.getStationCount() + 63) >>> 6];
+        int[] buffer = new int[stationIndex.getStationCount()];
+        CompressedBitmap[] bitmaps = new CompressedBitmap[busiest.length];
+        long footprint = 0;
+        int built = 0;
+        for (; built < busiest.length; built++) {
+            CompressedBitmap bitmap = reachableFrom(busiest[built], scratch, buffer);
+            long size = bitmap.getMemoryFootprint() + Integer.BYTES;
+            if (footprint + size > maxMemory) {
+                log.warn("Memory cap of {} bytes reached, precomputed {} out of {} hot stations", maxMemory, built, busiest.length);
+                break;
+            }
+            bitmaps[built] = bitmap;
+            footprint += size;
+        }
+
+        // order the hot stations by id, which is the order of their ordinals
+        long[] order = new long[built];
+        for (int i = 0; i < built; i++) {
+            order[i] = ((long) busiest[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        this.hotStationIds = new int[built];
+        this.reachable = new CompressedBitmap[built];
+        for (int i = 0; i < built; i++) {
+            hotStationIds[i] = stationIndex.stationIdOf((int) (order[i] >>> 32));
+            reachable[i] = bitmaps[(int) order[i]];
+        }
+        this.memoryFootprint = footprint;
+
+        log.info("Precomputed the reachable stations of {} hot stations using {} bytes out of a budget of {} bytes",
+                built, footprint, maxMemory);
+    }
+
+    @Override
+    public void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        throw new IllegalStateException("Route store is frozen, no more routes can be stored");
+    }
+
+    @Override
+    public int getTotalNumberOfRoutes() {
+        return delegate.getTotalNumberOfRoutes();
+    }
+
+    @Override
+    public int getTotalNumberOfStations() {
+        return delegate.getTotalNumberOfStations();
+    }
+
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        int hot = Arrays.binarySearch(hotStationIds, departure);
+        if (hot >= 0) {
+            return reachable[hot].contains(arrival);
+        }
+        return delegate.isDirectConnectionExistBetween(departure, arrival);
+    }
+
+    /**
+     * The bitmaps only tell whether a connection exists, the routes are always looked up by the wrapped store
+     */
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        return delegate.forEachDirectRoute(departure, arrival, routes);
+    }
+
+    /**
+     * Transfers are always searched by the wrapped store, the bitmaps only tell the direct connections
+     */
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        return delegate.getMinimumTransfersBetween(departure, arrival, maxTransfers);
+    }
+
+    /**
+     * @return the store answering queries for any station that is not hot
+     */
+    CompactRouteStore delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        delegate.forEachStationFanOut(fanOut);
+    }
+
+    public int getHotStationCount() {
+        return hotStationIds.length;
+    }
+
+    /**
+     * @return the size of the precomputed bitmaps in bytes, excluding the wrapped store
+     */
+    public long getMemoryFootprint() {
+        return memoryFootprint;
+    }
+
+    private static int[] busiestStations(StationIndex stationIndex, int count) {
+        int stations = stationIndex.getStationCount();
+        long[] byDegree = new long[stations];
+        for (int station = 0; station < stations; station++) {
+            long degree = stationIndex.postingsEnd(station) - stationIndex.postingsStart(station);
+            byDegree[station] = (degree << 32) | station;
+        }
+        Arrays.sort(byDegree);
+
+        int[] busiest = new int[Math.min(Math.max(count, 0), stations)];
+        for (int i = 0; i < busiest.length; i++) {
+            busiest[i] = (int) byDegree[stations - 1 - i];
+        }
+        return busiest;
+    }
+
+    private CompressedBitmap reachableFrom(int station, long[] scratch, int[] buffer) {
+        StationIndex stationIndex = delegate.stationIndex();
+        Arrays.fill(scratch, 0L);
+
+        // a station is reachable from itself
+        int size = 0;
+        buffer[size++] = stationIndex.stationIdOf(station);
+        scratch[station >>> 6] |= 1L << station;
+
+        for (int posting = stationIndex.postingsStart(station); posting < stationIndex.postingsEnd(station); posting++) {
+            int route = stationIndex.routeAt(posting);
+            int from = delegate.routeStart(route) + stationIndex.positionAt(posting) + 1;
+            for (int i = from; i < delegate.routeEnd(route); i++) {
+                int arrival = delegate.routeStationAt(i);
+                long bit = 1L << arrival;
+                if ((scratch[arrival >>> 6] & bit) == 0) {
+                    scratch[arrival >>> 6] |= bit;
+                    buffer[size++] = stationIndex.stationIdOf(arrival);
+                }
+            }
+        }
+        return CompressedBitmap.of(buffer, size);
+    }
+}
@@ -0,0 +1,82 @@
+package com.jojos.challenge.busroute.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * A {@link ShardRouter.Shard} on another node, asked through {@code GET /api/shard/postings?sid={}&sid={}}.
+ * Connections are kept alive and reused by the JDK between the requests.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class HttpShard implements ShardRouter.Shard {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String baseUrl;
+    private final int timeout;
+
+    /**
+     * @param baseUrl the url of the node, e.g. {@code http://localhost:8088}
+     * @param timeout the timeout in milliseconds of connecting to the node and of reading its answer
+     */
+    public HttpShard(String baseUrl, int timeout) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public StationPostings[] postings(int... stationIds) {
+        StringBuilder url = new StringBuilder(baseUrl).append("/api/shard/postings");
+        for (int i = 0; i < stationIds.length; i++) {
+            url.append(i == 0 ? "?sid=" : "&sid=").append(stationIds[i]);
+        }
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url.toString()).openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                InputStream error = connection.getErrorStream();
+                if (error != null) {
+                    error.close();
+                }
+                throw new IOException(String.format("Shard %s answered %d", baseUrl, status));
+            }
+            JsonNode stations;
+            try (InputStream in = connection.getInputStream()) {
+                stations = mapper.readTree(in);
+            }
+            if (stations.size() != stationIds.length) {
+                throw new IOException(String.format("Shard %s told %d stations instead of %d", baseUrl, stations.size(), stationIds.length));
+            }
+            StationPostings[] postings = new StationPostings[stationIds.length];
+            for (int i = 0; i < postings.length; i++) {
+                JsonNode station = stations.get(i);
+                postings[i] = new StationPostings(station.get("sid").asInt(), toArray(station.get("route_ids")), toArray(station.get("positions")));
+            }
+            return postings;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to ask shard " + baseUrl, e);
+        }
+    }
+
+    private static int[] toArray(JsonNode array) {
+        int[] ints = new int[array.size()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = array.get(i).asInt();
+        }
+        return ints;
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+}
@@ -1,18 +1,27 @@
 package com.jojos.challenge.busroute.service;
 
-import java.util.HashSet;
+import com.jojos.challenge.busroute.util.RouteDelta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-
-import static com.jojos.challenge.busroute.util.RouteUtils.addToContainedSet;
+import java.util.function.IntConsumer;
 
 /**
  * Implementation of {@link RouteStore} that holds all of the route information in memory
  * Optimized for fast resolution of the following answer:
  * Does a direct connection exist between two stations at any given route?
  *
+ * The routes are kept as given, while the station side is a primitive {@link StationIndex}
+ * that is built on the first query after routes are stored, along with the {@link RouteGraph} of both.
+ * Routes removed, replaced or changed through a delta later on are layered on top of them by a {@link RouteOverlay},
+ * in proportion to the routes changed, until the changes add up to half the routes and both are built again.
+ * Queries never allocate.
+ *
  * @author karanikasg@gmail.com.
  */
 public class InMemoryRouteStore implements RouteStore {
@@ -20,57 +29,186 @@ public class InMemoryRouteStore implements RouteStore {
     // eah entry contains a routeId as the key with an ordered set of stations (order matters)
     private final ConcurrentMap<Integer, LinkedHashSet<Integer>> routesToStations = new ConcurrentHashMap<>();
 
-    // orthogonal equivalent after transforming the previous collection. Here each key is the station with a set of routeIds
-    private final ConcurrentMap<Integer, Set<Integer>> stationsToRoutes = new ConcurrentHashMap<>();
+    // orthogonal equivalent of the previous collection. Each station with its sorted routes and its positions in them,
+    // found in the graph of the routes and their stations, along with the changes applied since it was built
+    private volatile RouteOverlay overlay;
+
+    // the choice of intersection of every station index built, see StationIndex#setAdaptive
+    private boolean adaptive = true;
 
     @Override
     public void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
-        stationIds.forEach(stationId -> addToContainedSet(stationsToRoutes, stationId, routeId));
         routesToStations.put(routeId, stationIds);
+        // taking the lock makes sure an index built concurrently with the put above is discarded
+        synchronized (this) {
+            overlay = null;
+        }
+    }
+
+    @Override
+    public synchronized void removeRoute(int routeId) {
+        checkExists(routeId);
+        routesToStations.remove(routeId);
+        applyToIndex(Collections.singletonList(new RouteDelta.Operation(RouteDelta.Kind.REMOVE, routeId, new int[0])));
+    }
+
+    @Override
+    public synchronized void replaceRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        checkExists(routeId);
+        routesToStations.put(routeId, stationIds);
+        applyToIndex(Collections.singletonList(new RouteDelta.Operation(RouteDelta.Kind.REPLACE, routeId,
+                stationIds.stream().mapToInt(Integer::intValue).toArray())));
     }
 
+    /**
+     * Queries keep using the current version of the station index while the changes are applied under the lock,
+     * the next one is published once all of them are. The changes are kept within the limits they are parsed with,
+     * checked against the station index, built first should it not be, before any of them is applied.
+     */
+    @Override
+    public synchronized void applyDelta(RouteDelta delta) {
+        int routeCountChange = delta.validate(routesToStations::containsKey);
+        delta.checkLimits(routesToStations.size() + routeCountChange, overlay().stationCountAfter(delta.getOperations()));
+        for (RouteDelta.Operation operation : delta.getOperations()) {
+            if (operation.getKind() == RouteDelta.Kind.REMOVE) {
+                routesToStations.remove(operation.getRouteId());
+            } else {
+                LinkedHashSet<Integer> stationIds = new LinkedHashSet<>();
+                Arrays.stream(operation.getStationIds()).forEach(stationIds::add);
+                routesToStations.put(operation.getRouteId(), stationIds);
+            }
+        }
+        applyToIndex(delta.getOperations());
+    }
+
+    @Override
+    public void freeze() {
+        version();
+    }
+
+    /**
+     * Counted as of the version of the station index queries see, the routes being changed by a delta are not
+     */
     @Override
     public int getTotalNumberOfRoutes() {
-        return routesToStations.size();
+        return version().getRouteCount();
     }
 
     @Override
     public int getTotalNumberOfStations() {
-        return stationsToRoutes.size();
+        return version().getStationCount();
     }
 
     @Override
     public boolean isDirectConnectionExistBetween(int departure, int arrival) {
-        Set<Integer> routeIds1 = stationsToRoutes.get(departure);
-        Set<Integer> routeIds2 = stationsToRoutes.get(arrival);
-        if (routeIds1 == null || routeIds2 == null) {
-            // at least one of the provided stations does not exist in any of the routes
-            return false;
+        return version().connects(departure, arrival, false);
+    }
+
+    @Override
+    public boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        return version().connects(stationId1, stationId2, true);
+    }
+
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        return version().forEachConnection(departure, arrival, routes);
+    }
+
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        return version().routeGraph().minimumTransfers(departure, arrival, maxTransfers);
+    }
+
+    /**
+     * Reports the fan-out of the stations as of the last time the station index was built, the changes applied
+     * since are not reflected
+     */
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        stationIndex().forEachFanOut(fanOut);
+    }
+
+    private void checkExists(int routeId) {
+        if (!routesToStations.containsKey(routeId)) {
+            throw new IllegalArgumentException("Route id " + routeId + " does not exist");
         }
+    }
 
-        Set<Integer> intersection = new HashSet<>(routeIds1);
-        intersection.retainAll(routeIds2);
+    /**
+     * @param adaptive false to merge the routes of the stations whatever their fan-out, in the current station index
+     * and in the ones built after route changes
+     */
+    synchronized void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        RouteOverlay current = overlay;
+        if (current != null) {
+            current.base().stationIndex().setAdaptive(adaptive);
+        }
+    }
 
-        // go and chase the order from 1 -> 2 in the ordered collection
-        for (Integer routeId : intersection) {
-            LinkedHashSet<Integer> stations = routesToStations.get(routeId);
-            if (connectionFromAToBExistsIn(stations, departure, arrival)) {
-                return true;
-            }
+    /**
+     * @return the station index as last built, the changes applied since are layered on top of it
+     */
+    StationIndex stationIndex() {
+        return overlay().base().stationIndex();
+    }
+
+    /**
+     * Layers the changes, already applied to the routes, on top of the station index should it be built. Once they
+     * add up to half the routes the index is built again, so that the cost of a change stays proportional to the
+     * routes it changes on average.
+     */
+    private void applyToIndex(List<RouteDelta.Operation> operations) {
+        RouteOverlay current = overlay;
+        if (current == null) {
+            // built by the next query
+            return;
+        }
+        current.apply(operations);
+        if (current.getChangedRoutes() * 2L > routesToStations.size()) {
+            overlay = new RouteOverlay(buildRouteGraph());
         }
+    }
 
-        return false;
+    private RouteOverlay.Version version() {
+        return overlay().version();
     }
 
-    private boolean connectionFromAToBExistsIn(LinkedHashSet<Integer> stations, int departure, int arrival) {
-        for (int station : stations) {
-            if (station == departure) {
-                return true;
+    private RouteOverlay overlay() {
+        RouteOverlay current = overlay;
+        if (current == null) {
+            synchronized (this) {
+                current = overlay;
+                if (current == null) {
+                    current = new RouteOverlay(buildRouteGraph());
+                    overlay = current;
+                }
             }
-            if (station == arrival) {
-                return false;
+        }
+        return current;
+    }
+    private RouteGraph.OnHeap buildRouteGraph() {
+        int[] routeIds = routesToStations.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(routeIds);
+
+        List<LinkedHashSet<Integer>> routes = new ArrayList<>(routeIds.length);
+        int[] routeOffsets = new int[routeIds.length + 1];
+        for (int route = 0; route < routeIds.length; route++) {
+            LinkedHashSet<Integer> stations = routesToStations.get(routeIds[route]);
+            routes.add(stations);
+            routeOffsets[route + 1] = routeOffsets[route] + stations.size();
+        }
+
+        int[] stops = new int[routeOffsets[routeIds.length]];
+        for (int route = 0; route < routeIds.length; route++) {
+            int slot = routeOffsets[route];
+            for (int stationId : routes.get(route)) {
+                stops[slot++] = stationId;
             }
         }
-        return false;
+        // the station ids of the stops are replaced by their ordinals
+        StationIndex stationIndex = StationIndex.build(routeOffsets, stops);
+        stationIndex.setAdaptive(adaptive);
+        return new RouteGraph.OnHeap(routeIds, routeOffsets, stops, stationIndex);
     }
 }
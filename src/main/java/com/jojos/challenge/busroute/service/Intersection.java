@@ -0,0 +1,25 @@
+package com.jojos.challenge.busroute.service;
+
+/**
+ * The ways the {@link StationIndex} intersects the routes of two stations, picked per query by their fan-out
+ *
+ * @author karanikasg@gmail.com.
+ */
+enum Intersection {
+
+    /**
+     * Both lists walked side by side, for lists of about the same length
+     */
+    MERGE,
+
+    /**
+     * Every route of the shorter list searched for in the longer one, exponentially then binary, for lists far
+     * apart in length, e.g. a leaf and a hub
+     */
+    GALLOP,
+
+    /**
+     * The route bitmaps of two hubs and-ed a word at a time, for pairs of the stations found on the most routes
+     */
+    BITMAP
+}
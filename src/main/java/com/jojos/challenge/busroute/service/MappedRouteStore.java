@@ -0,0 +1,166 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.IdDictionary;
+
+import java.nio.IntBuffer;
+import java.util.LinkedHashSet;
+import java.util.function.IntConsumer;
+
+/**
+ * A read only {@link RouteStore} answering straight out of a memory mapped {@link RouteSnapshot}.
+ *
+ * The station index is never copied onto the heap, it lives in the page cache. The heap holds a handful
+ * of buffer objects whatever the size of the data set, so it can be kept small and the garbage collector
+ * has nothing to scan. Several service instances mapping the same snapshot share the same physical pages.
+ *
+ * Queries are the same merge-join as {@link StationIndex#connects(int, int)}, reading the ints through
+ * absolute gets of the mapped buffers. Station ids are looked up in the mapped table of their {@link IdDictionary}.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class MappedRouteStore implements RouteStore {
+
+    private final IntBuffer routeIds;
+
+    // same layout as the arrays of StationIndex
+    private final IntBuffer stationIds;
+    private final IntBuffer stationTable;
+    private final IntBuffer offsets;
+    private final IntBuffer routes;
+    private final IntBuffer positions;
+
+    private final RouteGraph routeGraph;
+
+    MappedRouteStore(RouteSnapshot snapshot) {
+        this.routeIds = snapshot.section(RouteSnapshot.Section.ROUTE_IDS);
+        this.stationIds = snapshot.section(RouteSnapshot.Section.STATION_IDS);
+        this.stationTable = snapshot.section(RouteSnapshot.Section.STATION_TABLE);
+        this.offsets = snapshot.section(RouteSnapshot.Section.STATION_OFFSETS);
+        this.routes = snapshot.section(RouteSnapshot.Section.STATION_ROUTES);
+        this.positions = snapshot.section(RouteSnapshot.Section.STATION_POSITIONS);
+        this.routeGraph = new RouteGraph.Mapped(snapshot);
+    }
+
+    @Override
+    public void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        throw new IllegalStateException("Route store is frozen, no more routes can be stored");
+    }
+
+    @Override
+    public int getTotalNumberOfRoutes() {
+        return routeIds.limit();
+    }
+
+    @Override
+    public int getTotalNumberOfStations() {
+        return stationIds.limit();
+    }
+
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        return connects(departure, arrival, false);
+    }
+
+    @Override
+    public boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        return connects(stationId1, stationId2, true);
+    }
+
+    private boolean connects(int departure, int arrival, boolean eitherWay) {
+        int dep = ordinalOf(departure);
+        int arr = ordinalOf(arrival);
+        if (dep < 0 || arr < 0) {
+            // at least one of the provided stations does not exist in any of the routes
+            return false;
+        }
+        if (dep == arr) {
+            // a station is reachable from itself
+            return true;
+        }
+
+        int i = offsets.get(dep);
+        int iEnd = offsets.get(dep + 1);
+        int j = offsets.get(arr);
+        int jEnd = offsets.get(arr + 1);
+        while (i < iEnd && j < jEnd) {
+            int route1 = routes.get(i);
+            int route2 = routes.get(j);
+            if (route1 < route2) {
+                i++;
+            } else if (route1 > route2) {
+                j++;
+            } else {
+                if (eitherWay || positions.get(i) < positions.get(j)) {
+                    return true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer consumer) {
+        int dep = ordinalOf(departure);
+        int arr = ordinalOf(arrival);
+        if (dep < 0 || arr < 0) {
+            return false;
+        }
+        if (dep == arr) {
+            for (int posting = offsets.get(dep); posting < offsets.get(dep + 1); posting++) {
+                consumer.accept(routeIds.get(routes.get(posting)), 0);
+            }
+            return true;
+        }
+
+        boolean connected = false;
+        int i = offsets.get(dep);
+        int iEnd = offsets.get(dep + 1);
+        int j = offsets.get(arr);
+        int jEnd = offsets.get(arr + 1);
+        while (i < iEnd && j < jEnd) {
+            int route1 = routes.get(i);
+            int route2 = routes.get(j);
+            if (route1 < route2) {
+                i++;
+            } else if (route1 > route2) {
+                j++;
+            } else {
+                if (positions.get(i) < positions.get(j)) {
+                    consumer.accept(routeIds.get(route1), positions.get(j) - positions.get(i));
+                    connected = true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return connected;
+    }
+
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        return routeGraph.minimumTransfers(departure, arrival, maxTransfers);
+    }
+
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        for (int station = 0; station < stationIds.limit(); station++) {
+            fanOut.accept(offsets.get(station + 1) - offsets.get(station));
+        }
+    }
+
+    /**
+     * @return the size of the mapped index in bytes, none of which is on the heap
+     */
+    public long getMappedSize() {
+        return ((long) stationIds.limit() + stationTable.limit() + offsets.limit() + routes.limit() + positions.limit()) * Integer.BYTES;
+    }
+
+    /**
+     * @return the ordinal of the station or a negative number if it does not exist
+     */
+    private int ordinalOf(int stationId) {
+        return IdDictionary.ordinalOf(stationTable, stationId);
+    }
+}
@@ -0,0 +1,176 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps an audit trail of the answered queries, off the request threads.
+ *
+ * A request thread decides whether the query is sampled and, if so, claims a slot of a fixed size ring buffer
+ * with a single compare-and-set and writes the query into primitive arrays. No lock is taken, nothing is
+ * allocated and nothing is formatted. Should the buffer be full the query is dropped and counted instead,
+ * a request thread never waits for the writer.
+ *
+ * A single writer thread drains the buffer in batches, in the order the slots were claimed, and hands every
+ * query over to the {@link Sink}. By default the sink logs the query through the {@code busroute.audit} logger.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@Component
+public class QueryAuditor {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryAuditor.class);
+    private static final Logger auditLog = LoggerFactory.getLogger("busroute.audit");
+
+    // sampling compares a random int out of [0, SAMPLE_SCALE) to the threshold
+    private static final int SAMPLE_SCALE = 1 << 24;
+
+    /**
+     * Receives the audited queries on the writer thread
+     */
+    interface Sink {
+        void audit(int departure, int arrival, boolean exists);
+    }
+
+    private final boolean enabled;
+    private final int sampleThreshold;
+    private final int batchSize;
+    private final Sink sink;
+
+    // the ring buffer, a slot holds the query of sequence s once published[s & mask] == s
+    private final int mask;
+    private final long[] stations;
+    private final boolean[] outcomes;
+    private final AtomicLongArray published;
+
+    // the next sequence to claim and the next one to drain
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    @Autowired
+    public QueryAuditor(BusRouteProperties properties) {
+        this(properties.getAudit().isEnabled() && auditLog.isInfoEnabled(), properties.getAudit().getSampleRate(),
+                properties.getAudit().getBufferSize(), properties.getAudit().getBatchSize(),
+                (departure, arrival, exists) -> auditLog.info("Connection between {} and {} {}exists",
+                        departure, arrival, !exists ? "doesn't " : ""));
+    }
+
+    /**
+     * @param enabled whether any query is audited at all
+     * @param sampleRate the share of the queries audited, between 0 and 1
+     * @param bufferSize the slots of the ring buffer, rounded up to a power of 2
+     * @param batchSize the most queries drained at a time
+     * @param sink receives the audited queries
+     */
+    QueryAuditor(boolean enabled, double sampleRate, int bufferSize, int batchSize, Sink sink) {
+        this.enabled = enabled && sampleRate > 0;
+        this.sampleThreshold = (int) Math.min(SAMPLE_SCALE, Math.round(sampleRate * SAMPLE_SCALE));
+        this.batchSize = Math.max(1, batchSize);
+        this.sink = sink;
+
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+        this.mask = capacity - 1;
+        this.stations = new long[capacity];
+        this.outcomes = new boolean[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            published.set(slot, -1);
+        }
+
+        if (this.enabled) {
+            writer = new Thread(this::drain, "query-audit");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * Audits the query should it be sampled. Never blocks.
+     */
+    public void record(int departure, int arrival, boolean exists) {
+        if (!enabled || (sampleThreshold < SAMPLE_SCALE && ThreadLocalRandom.current().nextInt(SAMPLE_SCALE) >= sampleThreshold)) {
+            return;
+        }
+
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail > mask) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        stations[slot] = ((long) departure << 32) | (arrival & 0xFFFFFFFFL);
+        outcomes[slot] = exists;
+        // the ordered write makes the slot visible to the writer after its content
+        published.lazySet(slot, sequence);
+    }
+
+    /**
+     * @return the number of sampled queries dropped so far because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops the writer once the queries already recorded are drained
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void drain() {
+        long next = tail;
+        while (true) {
+            int drained = 0;
+            while (drained < batchSize && published.get((int) next & mask) == next) {
+                int slot = (int) next & mask;
+                long pair = stations[slot];
+                boolean exists = outcomes[slot];
+                next++;
+                drained++;
+                try {
+                    sink.audit((int) (pair >>> 32), (int) pair, exists);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to audit a query", e);
+                }
+            }
+            // frees the drained slots for the request threads
+            tail = next;
+
+            if (drained == 0) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        if (dropped.get() > 0) {
+            log.warn("Dropped {} sampled queries in total, the audit buffer was full", dropped.get());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.jojos.challenge.busroute.service;
+
+/**
+ * The route ordinals of a {@link StationIndex} removed as of a version of the routes, see {@link RouteOverlay}.
+ *
+ * Every route ordinal holds the epoch of the version that removed it, 0 while it is not. An epoch is written once,
+ * before the version removing the route is published, and never changes after, so the versions before it keep
+ * finding the route while it is removed for the ones after. Removing a route is a single write, whatever the number
+ * of versions still read.
+ *
+ * @author karanikasg@gmail.com.
+ */
+final class RemovedRoutes {
+
+    private final int[] removedAt;
+    private final int epoch;
+
+    /**
+     * @param removedAt the epoch every route ordinal was removed at, 0 if it is not
+     * @param epoch the version the routes are removed as of
+     */
+    RemovedRoutes(int[] removedAt, int epoch) {
+        this.removedAt = removedAt;
+        this.epoch = epoch;
+    }
+
+    boolean contains(int route) {
+        int at = removedAt[route];
+        return at != 0 && at <= epoch;
+    }
+}
@@ -0,0 +1,95 @@
+package com.jojos.challenge.busroute.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the bus route data file for changes on a daemon thread of its own.
+ *
+ * The directory of the file is registered with a {@link WatchService}, as files cannot be watched
+ * on their own. Once the file is created, replaced or modified, the watcher waits until no more
+ * events arrive for a quiet period, so that a file being written is not picked up half way, and then
+ * runs the given action. The action runs on the watcher thread, one at a time.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class RouteFileWatcher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteFileWatcher.class);
+
+    private final Path file;
+    private final long quietPeriodMillis;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * @param file the file to watch
+     * @param quietPeriodMillis how long no event must arrive before the change is acted upon
+     * @param onChange the action run once the file has changed
+     */
+    public RouteFileWatcher(Path file, long quietPeriodMillis, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this::watch, "route-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching {} for changes", this.file);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                if (!isChanged(watchService.take())) {
+                    continue;
+                }
+                // wait for the writes to settle
+                WatchKey key;
+                while ((key = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS)) != null) {
+                    isChanged(key);
+                }
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    log.error("Failed to act upon the change of {}", file, e);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.info("Stopped watching {}", file);
+        }
+    }
+
+    /**
+     * @return true if any of the events of the key concern the watched file
+     */
+    private boolean isChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,810 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.IdDictionary;
+import com.jojos.challenge.busroute.util.PackedIntArray;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The routes and the stations as a bipartite graph, answering how many times one has to change routes to get
+ * from one station to another.
+ *
+ * The graph is the two compressed-sparse-row indexes every frozen store already holds, route ordinal -> station
+ * ordinals in route order and station ordinal -> (route ordinal, position) postings, so it costs no memory on top
+ * of them. A route-to-route adjacency would take the square of the fan-out of every station.
+ *
+ * The search is a bidirectional breadth first search over routes, a level being one more transfer.
+ * <ul>
+ *     <li>forward from the departure, keeping for every route reached the earliest position it can be boarded at</li>
+ *     <li>backward from the arrival, keeping for every route the latest position from which the arrival can still be
+ *     reached, i.e. boarding the route anywhere before it will do</li>
+ * </ul>
+ * The side with the smaller frontier is expanded next. The two meet on a route boarded before the position the
+ * backward search needs, the transfers being the sum of the levels of both sides. Every stop of a route is scanned
+ * at most once per side, as is every station, so even an unreachable arrival costs at most one pass over the graph.
+ *
+ * The search state lives in primitive arrays, taken from a small pool, so a query allocates nothing once warm.
+ *
+ * A store with route changes layered on top of it answers out of several graphs, see {@link Layered}: a station found
+ * in more than one has an ordinal in each, linked through {@link #sameStation(int)}, so visiting the station visits
+ * all of them, and the routes removed since are skipped through {@link #isRemoved(int)}.
+ *
+ * @author karanikasg@gmail.com.
+ */
+abstract class RouteGraph {
+
+    /**
+     * The answer when the arrival cannot be reached within the transfers allowed
+     */
+    static final int UNREACHABLE = -1;
+
+    private final WorkspacePool workspaces;
+
+    RouteGraph() {
+        this(new WorkspacePool());
+    }
+
+    /**
+     * @param workspaces the pool of the search state, shared by the graphs of successive versions of the same routes
+     */
+    RouteGraph(WorkspacePool workspaces) {
+        this.workspaces = workspaces;
+    }
+
+    abstract int routeCount();
+
+    abstract int stationCount();
+
+    /**
+     * @return the ordinal of the station or a negative number if it does not exist
+     */
+    abstract int ordinalOf(int stationId);
+
+    /**
+     * @return the index of the first stop of the route ordinal, see {@link #stationAt(int)}
+     */
+    abstract int routeStart(int route);
+
+    abstract int routeEnd(int route);
+
+    /**
+     * @return the station ordinal of the stop
+     */
+    abstract int stationAt(int stop);
+
+    /**
+     * @return the first posting of the station ordinal, see {@link #routeAt(int)} and {@link #positionAt(int)}
+     */
+    abstract int postingsStart(int station);
+
+    abstract int postingsEnd(int station);
+
+    abstract int routeAt(int posting);
+
+    abstract int positionAt(int posting);
+
+    /**
+     * @return the ordinal of the same station in the next layer of the graph it is found in, see {@link Layered},
+     * the station itself should it be found in a single layer
+     */
+    int sameStation(int station) {
+        return station;
+    }
+
+    /**
+     * @return true if the route is no longer found in the graph, see {@link Layered}
+     */
+    boolean isRemoved(int route) {
+        return false;
+    }
+
+    /**
+     * @return the number of routes the search state is made for, at least the number of routes of the graph
+     */
+    int workspaceRoutes() {
+        return routeCount();
+    }
+
+    /**
+     * @param maxTransfers the number of route changes allowed, 0 only accepting a direct connection
+     * @return the minimum number of route changes to get from the departure to the arrival, 0 for a direct connection,
+     * {@link #UNREACHABLE} if more than {@code maxTransfers} are needed or the stations do not exist
+     */
+    int minimumTransfers(int departure, int arrival, int maxTransfers) {
+        int dep = ordinalOf(departure);
+        int arr = ordinalOf(arrival);
+        if (dep < 0 || arr < 0 || maxTransfers < 0) {
+            return UNREACHABLE;
+        }
+        if (dep == arr) {
+            // a station is reachable from itself
+            return 0;
+        }
+
+        Workspace workspace = acquire();
+        try {
+            // more transfers than routes are never needed, which also bounds the clock ticks of a search
+            return search(workspace, dep, arr, Math.min(maxTransfers, routeCount()));
+        } finally {
+            release(workspace);
+        }
+    }
+
+    private int search(Workspace w, int dep, int arr, int maxTransfers) {
+        int start = w.tick();
+        Side forward = w.forward;
+        Side backward = w.backward;
+        forward.reset(start);
+        backward.reset(start);
+
+        int level = w.tick();
+        int station = dep;
+        do {
+            for (int posting = postingsStart(station); posting < postingsEnd(station); posting++) {
+                if (!isRemoved(routeAt(posting))) {
+                    forward.improve(routeAt(posting), positionAt(posting), true, level, this);
+                }
+            }
+            station = sameStation(station);
+        } while (station != dep);
+        station = arr;
+        do {
+            for (int posting = postingsStart(station); posting < postingsEnd(station); posting++) {
+                if (!isRemoved(routeAt(posting))) {
+                    backward.improve(routeAt(posting), positionAt(posting), false, level, this);
+                }
+            }
+            station = sameStation(station);
+        } while (station != arr);
+        forward.swapFrontiers();
+        backward.swapFrontiers();
+        for (int i = 0; i < forward.frontierSize; i++) {
+            int route = forward.frontier[i];
+            if (meets(forward, backward, route)) {
+                return 0;
+            }
+        }
+
+        for (int transfers = 1; transfers <= maxTransfers; transfers++) {
+            if (forward.frontierSize == 0 || backward.frontierSize == 0) {
+                // one side has run out of routes to improve, no more stations can be reached
+                return UNREACHABLE;
+            }
+            level = w.tick();
+            boolean meet = forward.frontierSize <= backward.frontierSize
+                    ? expandForward(forward, backward, level)
+                    : expandBackward(backward, forward, level);
+            if (meet) {
+                return transfers;
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    /**
+     * Rides every route of the frontier from where it is boarded to its end, boarding the routes of every station
+     * passed by on the way
+     *
+     * @return whether a route boarded meets the backward search
+     */
+    private boolean expandForward(Side forward, Side backward, int level) {
+        forward.ensureStations(stationCount());
+        boolean meet = false;
+        for (int i = 0; i < forward.frontierSize && !meet; i++) {
+            int route = forward.frontier[i];
+            int boarding = forward.frontierValue[i];
+            int first = routeStart(route) + boarding + 1;
+            int last = routeStart(route) + forward.scanned[route];
+            forward.scanned[route] = boarding;
+            for (int stop = first; stop <= last && !meet; stop++) {
+                int station = stationAt(stop);
+                if (!forward.visit(station)) {
+                    continue;
+                }
+                // the station in every layer of the graph, all of them visited at once
+                int node = station;
+                do {
+                    for (int posting = postingsStart(node); posting < postingsEnd(node) && !meet; posting++) {
+                        int next = routeAt(posting);
+                        meet = !isRemoved(next) && forward.improve(next, positionAt(posting), true, level, this) && meets(forward, backward, next);
+                    }
+                    node = sameStation(node);
+                } while (node != station && !meet && forward.visit(node));
+            }
+        }
+        forward.swapFrontiers();
+        return meet;
+    }
+
+    /**
+     * Rides every route of the frontier backwards from where the arrival is still reached to its start, marking the
+     * routes of every station passed by on the way as leading to the arrival from there
+     *
+     * @return whether a route marked meets the forward search
+     */
+    private boolean expandBackward(Side backward, Side forward, int level) {
+        backward.ensureStations(stationCount());
+        boolean meet = false;
+        for (int i = 0; i < backward.frontierSize && !meet; i++) {
+            int route = backward.frontier[i];
+            int alighting = backward.frontierValue[i];
+            int first = routeStart(route) + backward.scanned[route];
+            int last = routeStart(route) + alighting - 1;
+            backward.scanned[route] = alighting;
+            for (int stop = first; stop <= last && !meet; stop++) {
+                int station = stationAt(stop);
+                if (!backward.visit(station)) {
+                    continue;
+                }
+                // the station in every layer of the graph, all of them visited at once
+                int node = station;
+                do {
+                    for (int posting = postingsStart(node); posting < postingsEnd(node) && !meet; posting++) {
+                        int next = routeAt(posting);
+                        meet = !isRemoved(next) && backward.improve(next, positionAt(posting), false, level, this) && meets(forward, backward, next);
+                    }
+                    node = sameStation(node);
+                } while (node != station && !meet && backward.visit(node));
+            }
+        }
+        backward.swapFrontiers();
+        return meet;
+    }
+
+    /**
+     * @return whether the route is boarded before the position from which the arrival is reached
+     */
+    private static boolean meets(Side forward, Side backward, int route) {
+        return forward.has(route) && backward.has(route) && forward.value[route] < backward.value[route];
+    }
+
+    private Workspace acquire() {
+        AtomicReferenceArray<Workspace> pool = workspaces.pool;
+        for (int i = 0; i < pool.length(); i++) {
+            Workspace workspace = pool.getAndSet(i, null);
+            // one made for fewer routes, those of an earlier version, is left to the garbage collector
+            if (workspace != null && workspace.routeCapacity() >= routeCount()) {
+                return workspace;
+            }
+        }
+        return new Workspace(workspaceRoutes());
+    }
+
+    private void release(Workspace workspace) {
+        AtomicReferenceArray<Workspace> pool = workspaces.pool;
+        for (int i = 0; i < pool.length(); i++) {
+            if (pool.compareAndSet(i, null, workspace)) {
+                return;
+            }
+        }
+        // the pool is full, the workspace is left to the garbage collector
+    }
+
+    /**
+     * The search state left by the searches done, for the next ones to reuse
+     */
+    static final class WorkspacePool {
+
+        private final AtomicReferenceArray<Workspace> pool = new AtomicReferenceArray<>(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * The state of one search, reused by the next one. Entries are valid if stamped with a clock value of the current
+     * search, so nothing but the station bitsets is cleared in between.
+     */
+    private static final class Workspace {
+
+        private final Side forward;
+        private final Side backward;
+        private int clock;
+
+        private Workspace(int routeCount) {
+            this.forward = new Side(routeCount);
+            this.backward = new Side(routeCount);
+        }
+
+        private int routeCapacity() {
+            return forward.stamp.length;
+        }
+
+        private int tick() {
+            if (clock == Integer.MAX_VALUE / 2) {
+                // a search takes at most as many ticks as there are routes, far from the overflow
+                forward.clearStamps();
+                backward.clearStamps();
+                clock = 0;
+            }
+            return ++clock;
+        }
+    }
+
+    /**
+     * The routes reached by one direction of the search
+     */
+    private static final class Side {
+
+        // the clock of the search that last set the value of a route, and of the level that put it on the frontier
+        private final int[] stamp;
+        private final int[] queued;
+        // the earliest boarding position forward, the latest position leading to the arrival backward
+        private final int[] value;
+        // the position of the value the route was last scanned from, its stops beyond it have been scanned
+        private final int[] scanned;
+
+        private int[] frontier;
+        // the values of the frontier routes as the level started, a route improved while the level is expanded is
+        // only ridden from its new position on the next level, one more transfer away
+        private final int[] frontierValue;
+        private int frontierSize;
+        private int[] next;
+        private int nextSize;
+
+        private long[] stations;
+        private boolean stationsClean = true;
+        private int searchStart;
+
+        private Side(int routeCount) {
+            this.stamp = new int[routeCount];
+            this.queued = new int[routeCount];
+            this.value = new int[routeCount];
+            this.scanned = new int[routeCount];
+            this.frontier = new int[routeCount];
+            this.frontierValue = new int[routeCount];
+            this.next = new int[routeCount];
+        }
+
+        private void reset(int searchStart) {
+            this.searchStart = searchStart;
+            this.frontierSize = 0;
+            this.nextSize = 0;
+            if (!stationsClean) {
+                Arrays.fill(stations, 0);
+                stationsClean = true;
+            }
+        }
+
+        private void ensureStations(int stationCount) {
+            if (stations == null || stations.length < (stationCount + 63) >>> 6) {
+                stations = new long[(stationCount + 63) >>> 6];
+            }
+            stationsClean = false;
+        }
+
+        private boolean has(int route) {
+            return stamp[route] >= searchStart;
+        }
+
+        /**
+         * Records the position unless a better one is known, queueing the route for the next level if improved
+         *
+         * @param earliest whether a lower position is better, forward, or a higher one, backward
+         * @return whether the position of the route has been improved
+         */
+        private boolean improve(int route, int position, boolean earliest, int level, RouteGraph graph) {
+            if (has(route)) {
+                if (earliest ? position >= value[route] : position <= value[route]) {
+                    return false;
+                }
+            } else {
+                stamp[route] = searchStart;
+                // nothing scanned yet, forward past the last stop, backward before the first one
+                scanned[route] = earliest ? graph.routeEnd(route) - graph.routeStart(route) - 1 : 0;
+            }
+            value[route] = position;
+            if (queued[route] != level) {
+                queued[route] = level;
+                next[nextSize++] = route;
+            }
+            return true;
+        }
+
+        /**
+         * @return true the first time the station is visited by this search
+         */
+        private boolean visit(int station) {
+            long bit = 1L << station;
+            long word = stations[station >>> 6];
+            if ((word & bit) != 0) {
+                return false;
+            }
+            stations[station >>> 6] = word | bit;
+            return true;
+        }
+
+        private void swapFrontiers() {
+            int[] swap = frontier;
+            frontier = next;
+            frontierSize = nextSize;
+            next = swap;
+            nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                frontierValue[i] = value[frontier[i]];
+            }
+        }
+
+        private void clearStamps() {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(queued, 0);
+        }
+    }
+
+    /**
+     * The graph of the arrays of a {@link CompactRouteStore} or of any store building the same layout
+     */
+    static final class OnHeap extends RouteGraph {
+
+        private final int[] routeIds;
+        private final int[] routeOffsets;
+        private final int[] routeStations;
+        private final StationIndex stationIndex;
+
+        /**
+         * @param routeIds the ids of the routes by ordinal
+         * @param routeOffsets the stops of route ordinal {@code r} are found in {@code routeStations[routeOffsets[r]..routeOffsets[r + 1])}
+         * @param routeStations the station ordinals of all routes in route order
+         */
+        OnHeap(int[] routeIds, int[] routeOffsets, int[] routeStations, StationIndex stationIndex) {
+            this.routeIds = routeIds;
+            this.routeOffsets = routeOffsets;
+            this.routeStations = routeStations;
+            this.stationIndex = stationIndex;
+        }
+
+        StationIndex stationIndex() {
+            return stationIndex;
+        }
+
+        int[] routeIds() {
+            return routeIds;
+        }
+
+        @Override
+        int routeCount() {
+            return routeOffsets.length - 1;
+        }
+
+        @Override
+        int stationCount() {
+            return stationIndex.getStationCount();
+        }
+
+        @Override
+        int ordinalOf(int stationId) {
+            return stationIndex.ordinalOf(stationId);
+        }
+
+        @Override
+        int routeStart(int route) {
+            return routeOffsets[route];
+        }
+
+        @Override
+        int routeEnd(int route) {
+            return routeOffsets[route + 1];
+        }
+
+        @Override
+        int stationAt(int stop) {
+            return routeStations[stop];
+        }
+
+        @Override
+        int postingsStart(int station) {
+            return stationIndex.postingsStart(station);
+        }
+
+        @Override
+        int postingsEnd(int station) {
+            return stationIndex.postingsEnd(station);
+        }
+
+        @Override
+        int routeAt(int posting) {
+            return stationIndex.routeAt(posting);
+        }
+
+        @Override
+        int positionAt(int posting) {
+            return stationIndex.positionAt(posting);
+        }
+    }
+
+    /**
+     * The graph of a {@link CompressedRouteStore}, unpacking every stop and posting as it is read
+     */
+    static final class Compressed extends RouteGraph {
+
+        private final int[] routeOffsets;
+        private final PackedIntArray routeStations;
+        private final CompressedStationIndex stationIndex;
+
+        /**
+         * @param routeOffsets the stops of route ordinal {@code r} are found in {@code routeStations[routeOffsets[r]..routeOffsets[r + 1])}
+         * @param routeStations the station ordinals of all routes in route order
+         */
+        Compressed(int[] routeOffsets, PackedIntArray routeStations, CompressedStationIndex stationIndex) {
+            this.routeOffsets = routeOffsets;
+            this.routeStations = routeStations;
+            this.stationIndex = stationIndex;
+        }
+
+        @Override
+        int routeCount() {
+            return routeOffsets.length - 1;
+        }
+
+        @Override
+        int stationCount() {
+            return stationIndex.getStationCount();
+        }
+
+        @Override
+        int ordinalOf(int stationId) {
+            return stationIndex.ordinalOf(stationId);
+        }
+
+        @Override
+        int routeStart(int route) {
+            return routeOffsets[route];
+        }
+
+        @Override
+        int routeEnd(int route) {
+            return routeOffsets[route + 1];
+        }
+
+        @Override
+        int stationAt(int stop) {
+            return routeStations.get(stop);
+        }
+
+        @Override
+        int postingsStart(int station) {
+            return stationIndex.postingsStart(station);
+        }
+
+        @Override
+        int postingsEnd(int station) {
+            return stationIndex.postingsEnd(station);
+        }
+
+        @Override
+        int routeAt(int posting) {
+            return stationIndex.routeAt(posting);
+        }
+
+        @Override
+        int positionAt(int posting) {
+            return stationIndex.positionAt(posting);
+        }
+    }
+
+    /**
+     * The graph of the sections of a memory mapped {@link RouteSnapshot}, read through absolute gets
+     */
+    static final class Mapped extends RouteGraph {
+
+        private final IntBuffer routeOffsets;
+        private final IntBuffer routeStations;
+        private final IntBuffer stationIds;
+        private final IntBuffer stationTable;
+        private final IntBuffer offsets;
+        private final IntBuffer routes;
+        private final IntBuffer positions;
+
+        Mapped(RouteSnapshot snapshot) {
+            this.routeOffsets = snapshot.section(RouteSnapshot.Section.ROUTE_OFFSETS);
+            this.routeStations = snapshot.section(RouteSnapshot.Section.ROUTE_STATIONS);
+            this.stationIds = snapshot.section(RouteSnapshot.Section.STATION_IDS);
+            this.stationTable = snapshot.section(RouteSnapshot.Section.STATION_TABLE);
+            this.offsets = snapshot.section(RouteSnapshot.Section.STATION_OFFSETS);
+            this.routes = snapshot.section(RouteSnapshot.Section.STATION_ROUTES);
+            this.positions = snapshot.section(RouteSnapshot.Section.STATION_POSITIONS);
+        }
+
+        @Override
+        int routeCount() {
+            return routeOffsets.limit() - 1;
+        }
+
+        @Override
+        int stationCount() {
+            return stationIds.limit();
+        }
+
+        @Override
+        int ordinalOf(int stationId) {
+            return IdDictionary.ordinalOf(stationTable, stationId);
+        }
+
+        @Override
+        int routeStart(int route) {
+            return routeOffsets.get(route);
+        }
+
+        @Override
+        int routeEnd(int route) {
+            return routeOffsets.get(route + 1);
+        }
+
+        @Override
+        int stationAt(int stop) {
+            return routeStations.get(stop);
+        }
+
+        @Override
+        int postingsStart(int station) {
+            return offsets.get(station);
+        }
+
+        @Override
+        int postingsEnd(int station) {
+            return offsets.get(station + 1);
+        }
+
+        @Override
+        int routeAt(int posting) {
+            return routes.get(posting);
+        }
+
+        @Override
+        int positionAt(int posting) {
+            return positions.get(posting);
+        }
+    }
+
+    /**
+     * The graph of a store with route changes layered on top of it, see {@link RouteOverlay}: the graph of the store
+     * followed by the graphs of the routes added since, every layer numbering its routes, stops, stations and
+     * postings after the ones of the layers before it. The routes removed since are kept, skipped by the search.
+     */
+    static final class Layered extends RouteGraph {
+
+        private final OnHeap[] layers;
+        private final RemovedRoutes[] removed;
+
+        // the first route ordinal, stop, station ordinal and posting of every layer, followed by the totals
+        private final int[] routeStarts;
+        private final int[] stopStarts;
+        private final int[] stationStarts;
+        private final int[] postingStarts;
+
+        /**
+         * @param layers the graph of the store followed by the graphs of the changes
+         * @param removed the routes removed from every layer, null if none
+         */
+        Layered(OnHeap[] layers, RemovedRoutes[] removed, WorkspacePool workspaces) {
+            super(workspaces);
+            this.layers = layers;
+            this.removed = removed;
+            this.routeStarts = new int[layers.length + 1];
+            this.stopStarts = new int[layers.length + 1];
+            this.stationStarts = new int[layers.length + 1];
+            this.postingStarts = new int[layers.length + 1];
+            for (int layer = 0; layer < layers.length; layer++) {
+                OnHeap graph = layers[layer];
+                routeStarts[layer + 1] = routeStarts[layer] + graph.routeCount();
+                stopStarts[layer + 1] = stopStarts[layer] + graph.routeStart(graph.routeCount());
+                stationStarts[layer + 1] = stationStarts[layer] + graph.stationCount();
+                postingStarts[layer + 1] = postingStarts[layer] + graph.postingsStart(graph.stationCount());
+            }
+        }
+
+        @Override
+        int routeCount() {
+            return routeStarts[layers.length];
+        }
+
+        @Override
+        int stationCount() {
+            return stationStarts[layers.length];
+        }
+
+        /**
+         * @return the ordinal of the station in the first layer it is found on a route of, a station on removed
+         * routes only does not exist
+         */
+        @Override
+        int ordinalOf(int stationId) {
+            for (int layer = 0; layer < layers.length; layer++) {
+                int station = layers[layer].ordinalOf(stationId);
+                if (station < 0) {
+                    continue;
+                }
+                for (int posting = layers[layer].postingsStart(station); posting < layers[layer].postingsEnd(station); posting++) {
+                    if (removed[layer] == null || !removed[layer].contains(layers[layer].routeAt(posting))) {
+                        return stationStarts[layer] + station;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int routeStart(int route) {
+            int layer = layerOf(routeStarts, route);
+            return stopStarts[layer] + layers[layer].routeStart(route - routeStarts[layer]);
+        }
+
+        @Override
+        int routeEnd(int route) {
+            int layer = layerOf(routeStarts, route);
+            return stopStarts[layer] + layers[layer].routeEnd(route - routeStarts[layer]);
+        }
+
+        @Override
+        int stationAt(int stop) {
+            int layer = layerOf(stopStarts, stop);
+            return stationStarts[layer] + layers[layer].stationAt(stop - stopStarts[layer]);
+        }
+
+        @Override
+        int postingsStart(int station) {
+            int layer = layerOf(stationStarts, station);
+            return postingStarts[layer] + layers[layer].postingsStart(station - stationStarts[layer]);
+        }
+
+        @Override
+        int postingsEnd(int station) {
+            int layer = layerOf(stationStarts, station);
+            return postingStarts[layer] + layers[layer].postingsEnd(station - stationStarts[layer]);
+        }
+
+        @Override
+        int routeAt(int posting) {
+            int layer = layerOf(postingStarts, posting);
+            return routeStarts[layer] + layers[layer].routeAt(posting - postingStarts[layer]);
+        }
+
+        @Override
+        int positionAt(int posting) {
+            int layer = layerOf(postingStarts, posting);
+            return layers[layer].positionAt(posting - postingStarts[layer]);
+        }
+
+        @Override
+        int sameStation(int station) {
+            int layer = layerOf(stationStarts, station);
+            int stationId = layers[layer].stationIndex().stationIdOf(station - stationStarts[layer]);
+            for (int next = (layer + 1) % layers.length; next != layer; next = (next + 1) % layers.length) {
+                int ordinal = layers[next].ordinalOf(stationId);
+                if (ordinal >= 0) {
+                    return stationStarts[next] + ordinal;
+                }
+            }
+            return station;
+        }
+
+        @Override
+        boolean isRemoved(int route) {
+            int layer = layerOf(routeStarts, route);
+            return removed[layer] != null && removed[layer].contains(route - routeStarts[layer]);
+        }
+
+        /**
+         * Every version of the routes has a graph of its own, room is made for the routes of a few more changes
+         */
+        @Override
+        int workspaceRoutes() {
+            return routeCount() + routeCount() / 4;
+        }
+
+        /**
+         * @param starts the first value of every layer, followed by the total
+         * @return the layer of the value
+         */
+        private static int layerOf(int[] starts, int value) {
+            // the store holds most of the values, the changes layered on top of it are few
+            if (value < starts[1]) {
+                return 0;
+            }
+            int layer = starts.length - 2;
+            while (starts[layer] > value) {
+                layer--;
+            }
+            return layer;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.util.Histogram;
+import com.jojos.challenge.busroute.util.LoadPhase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The instrumentation of the route service, cheap enough to stay on in production.
+ *
+ * <ul>
+ *     <li>query latency histograms and the connected / not connected answers, per route store implementation,
+ *     for single pairs, batches of pairs and transfer queries</li>
+ *     <li>the duration of every {@link LoadPhase} of the last load, and their totals</li>
+ *     <li>the size and memory footprint of the route store currently published, and how many pairs its filter rejects</li>
+ *     <li>the distribution of the station fan-out, i.e. the number of routes every station is found on, and the
+ *     number of queries answered by every {@link Intersection} of the station routes</li>
+ * </ul>
+ *
+ * Recording a query takes no lock and allocates nothing, the threads recording into stripes of the histograms
+ * of their own, see {@link Histogram}.
+ *
+ * @author karanikasg@gmail.com.
+ */
+@Component
+public class RouteMetrics {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    /**
+     * The queries answered by one route store implementation
+     */
+    private static final class QueryMetrics {
+        private final Histogram latency = new Histogram();
+        private final Histogram batchLatency = new Histogram();
+        private final LongAdder batchPairs = new LongAdder();
+        private final LongAdder connected = new LongAdder();
+        private final LongAdder notConnected = new LongAdder();
+        private final Histogram transferLatency = new Histogram();
+        private final LongAdder reachable = new LongAdder();
+        private final LongAdder unreachable = new LongAdder();
+    }
+
+    /**
+     * The durations of a load phase
+     */
+    private static final class PhaseMetrics {
+        private final AtomicLong lastNanos = new AtomicLong();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder count = new LongAdder();
+    }
+
+    private final boolean enabled;
+
+    private final ConcurrentMap<Class<?>, QueryMetrics> queries = new ConcurrentHashMap<>();
+    private final Map<LoadPhase, PhaseMetrics> phases = new EnumMap<>(LoadPhase.class);
+
+    private volatile RouteStore store;
+    private volatile Histogram fanOut = new Histogram();
+
+    @Autowired
+    public RouteMetrics(BusRouteProperties properties) {
+        this.enabled = properties.getMetrics().isEnabled();
+        for (LoadPhase phase : LoadPhase.values()) {
+            phases.put(phase, new PhaseMetrics());
+        }
+    }
+
+    /**
+     * @return whether queries are to be timed and recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param store the route store that answered the query
+     * @param nanos how long it took
+     * @param connected the answer
+     */
+    public void recordQuery(RouteStore store, long nanos, boolean connected) {
+        QueryMetrics metrics = queriesOf(store);
+        metrics.latency.record(nanos);
+        (connected ? metrics.connected : metrics.notConnected).increment();
+    }
+
+    /**
+     * @param store the route store that answered the batch
+     * @param nanos how long the whole batch took
+     * @param pairs the number of pairs of the batch
+     * @param connected how many of them were connected
+     */
+    public void recordBatch(RouteStore store, long nanos, int pairs, int connected) {
+        QueryMetrics metrics = queriesOf(store);
+        metrics.batchLatency.record(nanos);
+        metrics.batchPairs.add(pairs);
+        metrics.connected.add(connected);
+        metrics.notConnected.add(pairs - connected);
+    }
+
+    /**
+     * @param store the route store that answered the transfer query
+     * @param nanos how long it took
+     * @param reachable whether the arrival is reachable within the transfers allowed
+     */
+    public void recordTransferQuery(RouteStore store, long nanos, boolean reachable) {
+        QueryMetrics metrics = queriesOf(store);
+        metrics.transferLatency.record(nanos);
+        (reachable ? metrics.reachable : metrics.unreachable).increment();
+    }
+
+    /**
+     * Meant to be used as a {@link LoadPhase.Listener}
+     */
+    public void recordLoadPhase(LoadPhase phase, long nanos) {
+        PhaseMetrics metrics = phases.get(phase);
+        metrics.lastNanos.set(nanos);
+        metrics.totalNanos.add(nanos);
+        metrics.count.increment();
+    }
+
+    /**
+     * Takes the sizes of the route store now being published and computes the distribution of its station fan-out
+     */
+    public void storePublished(RouteStore store) {
+        Histogram histogram = new Histogram();
+        store.forEachStationFanOut(histogram::record);
+        this.fanOut = histogram;
+        this.store = store;
+    }
+
+    /**
+     * Takes the sizes of the route store now being published with route changes applied, keeping the distribution
+     * of the station fan-out of the last load. The stores the changes are applied to report the fan-out of their
+     * routes as loaded anyway, see {@link DeltaRouteStore#forEachStationFanOut(java.util.function.IntConsumer)}
+     */
+    public void storeChanged(RouteStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return all metrics as nested maps, ready to be written as JSON
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("store", storeSnapshot(store));
+
+        Map<String, Object> queriesByStore = new LinkedHashMap<>();
+        queries.forEach((type, metrics) -> queriesByStore.put(nameOf(type), querySnapshot(metrics)));
+        snapshot.put("queries", queriesByStore);
+
+        Map<String, Object> load = new LinkedHashMap<>();
+        phases.forEach((phase, metrics) -> {
+            Map<String, Object> phaseSnapshot = new LinkedHashMap<>();
+            phaseSnapshot.put("count", metrics.count.sum());
+            phaseSnapshot.put("lastMillis", toMillis(metrics.lastNanos.get()));
+            phaseSnapshot.put("totalMillis", toMillis(metrics.totalNanos.sum()));
+            load.put(phase.name(), phaseSnapshot);
+        });
+        snapshot.put("load", load);
+
+        snapshot.put("stationFanOut", histogramSnapshot(fanOut));
+        return snapshot;
+    }
+
+    private QueryMetrics queriesOf(RouteStore store) {
+        // a plain get first, computeIfAbsent locks the bin even when the key is present
+        QueryMetrics metrics = queries.get(store.getClass());
+        return metrics != null ? metrics : queries.computeIfAbsent(store.getClass(), type -> new QueryMetrics());
+    }
+
+    private static Map<String, Object> storeSnapshot(RouteStore store) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        if (store == null) {
+            return snapshot;
+        }
+        // the cache is reported on its own, the type is the one of the store behind it
+        RouteStore cached = store instanceof CachingRouteStore ? ((CachingRouteStore) store).delegate() : store;
+        snapshot.put("type", nameOf(cached.getClass()));
+        snapshot.put("routes", store.getTotalNumberOfRoutes());
+        snapshot.put("stations", store.getTotalNumberOfStations());
+        snapshot.put("heapBytes", heapBytesOf(store));
+        snapshot.put("mappedBytes", cached instanceof MappedRouteStore ? ((MappedRouteStore) cached).getMappedSize() : 0);
+        StationIndex stationIndex = StationIndex.of(cached);
+        if (stationIndex != null) {
+            snapshot.put("intersections", intersectionSnapshot(stationIndex));
+        }
+        if (cached instanceof DeltaRouteStore) {
+            snapshot.put("deltaEpoch", ((DeltaRouteStore) cached).getEpoch());
+            snapshot.put("overlayRoutes", ((DeltaRouteStore) cached).getOverlaySize());
+        }
+        if (cached instanceof FilteringRouteStore) {
+            snapshot.put("filter", filterSnapshot((FilteringRouteStore) cached));
+        }
+        if (store instanceof CachingRouteStore) {
+            snapshot.put("cache", cacheSnapshot((CachingRouteStore) store));
+        }
+        return snapshot;
+    }
+
+    private static Map<String, Object> filterSnapshot(FilteringRouteStore filter) {
+        long checks = filter.getChecks();
+        long rejects = filter.getRejects();
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("blocks", filter.getBlockCount());
+        snapshot.put("blockBits", filter.getBlockBits());
+        snapshot.put("checks", checks);
+        snapshot.put("rejects", rejects);
+        snapshot.put("rejectRatio", checks == 0 ? 0 : (double) rejects / checks);
+        return snapshot;
+    }
+
+    private static Map<String, Object> intersectionSnapshot(StationIndex stationIndex) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("adaptive", stationIndex.isAdaptive());
+        snapshot.put("hubs", stationIndex.getHubCount());
+        snapshot.put("hubFanOut", stationIndex.getHubCount() == 0 ? null : stationIndex.getHubFanOut());
+        for (Intersection intersection : Intersection.values()) {
+            snapshot.put(intersection.name(), stationIndex.getIntersections(intersection));
+        }
+        return snapshot;
+    }
+
+    private static Map<String, Object> cacheSnapshot(CachingRouteStore cache) {
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("policy", cache.getPolicy());
+        snapshot.put("capacity", cache.getCapacity());
+        snapshot.put("hits", hits);
+        snapshot.put("misses", misses);
+        snapshot.put("hitRatio", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        snapshot.put("evictions", cache.getEvictions());
+        return snapshot;
+    }
+
+    /**
+     * @return the estimated heap occupied by the index of the store, -1 if the store does not keep track of it
+     */
+    private static long heapBytesOf(RouteStore store) {
+        if (store instanceof CachingRouteStore) {
+            long delegateBytes = heapBytesOf(((CachingRouteStore) store).delegate());
+            return delegateBytes < 0 ? -1 : delegateBytes + ((CachingRouteStore) store).getMemoryFootprint();
+        }
+        if (store instanceof FilteringRouteStore) {
+            long delegateBytes = heapBytesOf(((FilteringRouteStore) store).delegate());
+            return delegateBytes < 0 ? -1 : delegateBytes + ((FilteringRouteStore) store).getMemoryFootprint();
+        }
+        if (store instanceof HotStationRouteStore) {
+            HotStationRouteStore hotStationStore = (HotStationRouteStore) store;
+            return hotStationStore.getMemoryFootprint() + hotStationStore.delegate().getMemoryFootprint();
+        }
+        if (store instanceof DeltaRouteStore) {
+            return ((DeltaRouteStore) store).base().getMemoryFootprint();
+        }
+        if (store instanceof CompactRouteStore) {
+            return ((CompactRouteStore) store).getMemoryFootprint();
+        }
+        if (store instanceof CompressedRouteStore) {
+            return ((CompressedRouteStore) store).getMemoryFootprint();
+        }
+        if (store instanceof ShardRouteStore) {
+            return ((ShardRouteStore) store).getMemoryFootprint();
+        }
+        if (store instanceof MappedRouteStore || store instanceof ShardRouter) {
+            return 0;
+        }
+        return -1;
+    }
+
+    private static Map<String, Object> querySnapshot(QueryMetrics metrics) {
+        long connected = metrics.connected.sum();
+        long notConnected = metrics.notConnected.sum();
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("connected", connected);
+        snapshot.put("notConnected", notConnected);
+        snapshot.put("connectedRatio", connected + notConnected == 0 ? 0 : (double) connected / (connected + notConnected));
+        snapshot.put("latencyNanos", histogramSnapshot(metrics.latency));
+        snapshot.put("batchPairs", metrics.batchPairs.sum());
+        snapshot.put("batchLatencyNanos", histogramSnapshot(metrics.batchLatency));
+        snapshot.put("transfersReachable", metrics.reachable.sum());
+        snapshot.put("transfersUnreachable", metrics.unreachable.sum());
+        snapshot.put("transferLatencyNanos", histogramSnapshot(metrics.transferLatency));
+        return snapshot;
+    }
+
+    private static Map<String, Object> histogramSnapshot(Histogram histogram) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", histogram.getCount());
+        snapshot.put("mean", histogram.getMean());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            snapshot.put(PERCENTILE_NAMES[i], histogram.getValueAtPercentile(PERCENTILES[i]));
+        }
+        snapshot.put("max", histogram.getMax());
+        return snapshot;
+    }
+
+    private static String nameOf(Class<?> type) {
+        // the store of a service started without a data file is anonymous
+        return type.getSimpleName().isEmpty() ? "None" : type.getSimpleName();
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,438 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.RouteDelta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Route changes layered on top of the graph of a frozen store, applied without rebuilding it.
+ *
+ * Every batch of changes adds a segment holding the routes it adds or replaces, with a {@link StationIndex} of their
+ * own, while the routes it removes or replaces are marked with the epoch of the batch, see {@link RemovedRoutes}.
+ * A segment is merged with the one before it as soon as it is half its size, so there are about log2 of the routes
+ * changed segments at most and every route changed is copied that many times at most. Applying a batch thus costs
+ * in proportion to the routes it changes, whatever the number of routes of the store.
+ *
+ * Queries read an immutable {@link Version}, published with a single volatile write once a batch is applied, so they
+ * never see part of one. Batches are applied one at a time, the store guarding them with its lock.
+ *
+ * @author karanikasg@gmail.com.
+ */
+final class RouteOverlay {
+
+    private final RouteGraph.OnHeap base;
+    private final RouteGraph.WorkspacePool workspaces = new RouteGraph.WorkspacePool();
+
+    // the epoch every base route ordinal was removed at, 0 if it is not, and the removed routes of every station
+    private final int[] baseRemovedAt;
+    private final int[] baseRemovedPostings;
+    private int baseRemovedCount;
+
+    // the segments oldest first, the segment of every route added or replaced, and the routes every station is
+    // found on in all of them
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<Integer, Segment> segmentOf = new HashMap<>();
+    private final Map<Integer, Integer> overlayPostings = new HashMap<>();
+
+    private int routeCount;
+    private int stationCount;
+
+    private volatile Version version;
+
+    /**
+     * The routes added or replaced by one or more batches of changes, in ascending route id order
+     */
+    private static final class Segment {
+
+        private final RouteGraph.OnHeap graph;
+        private final int[] removedAt;
+        private int removedCount;
+
+        /**
+         * @param routeStations the station ids of all routes in route order, replaced by their station ordinals
+         */
+        private Segment(int[] routeIds, int[] routeOffsets, int[] routeStations, boolean adaptive) {
+            StationIndex stationIndex = StationIndex.build(routeOffsets, routeStations);
+            stationIndex.setAdaptive(adaptive);
+            this.graph = new RouteGraph.OnHeap(routeIds, routeOffsets, routeStations, stationIndex);
+            this.removedAt = new int[routeIds.length];
+        }
+
+        private int stationIdAt(int stop) {
+            return graph.stationIndex().stationIdOf(graph.stationAt(stop));
+        }
+    }
+
+    /**
+     * The routes at a point in time
+     */
+    static final class Version {
+
+        private final int epoch;
+        private final int routeCount;
+        private final int stationCount;
+        private final int overlaySize;
+
+        private final RouteGraph.OnHeap base;
+        // null if no route of the base is removed
+        private final RemovedRoutes baseRemoved;
+        private final RouteGraph.OnHeap[] segments;
+        private final RemovedRoutes[] segmentsRemoved;
+
+        private final RouteGraph.WorkspacePool workspaces;
+
+        // built on demand, null until then
+        private volatile RouteGraph routeGraph;
+
+        private Version(int epoch, int routeCount, int stationCount, int overlaySize, RouteGraph.OnHeap base,
+                        RemovedRoutes baseRemoved, RouteGraph.OnHeap[] segments, RemovedRoutes[] segmentsRemoved,
+                        RouteGraph.WorkspacePool workspaces) {
+            this.epoch = epoch;
+            this.routeCount = routeCount;
+            this.stationCount = stationCount;
+            this.overlaySize = overlaySize;
+            this.base = base;
+            this.baseRemoved = baseRemoved;
+            this.segments = segments;
+            this.segmentsRemoved = segmentsRemoved;
+            this.workspaces = workspaces;
+        }
+
+        /**
+         * @return the number of batches of changes applied so far
+         */
+        int getEpoch() {
+            return epoch;
+        }
+
+        int getRouteCount() {
+            return routeCount;
+        }
+
+        int getStationCount() {
+            return stationCount;
+        }
+
+        /**
+         * @return the number of routes added or replaced, found in the segments
+         */
+        int getOverlaySize() {
+            return overlaySize;
+        }
+
+        /**
+         * @param eitherWay whether the arrival may come first on the route, see {@link StationIndex#connectsEitherWay}
+         */
+        boolean connects(int departure, int arrival, boolean eitherWay) {
+            for (int segment = 0; segment < segments.length; segment++) {
+                if (connects(segments[segment].stationIndex(), departure, arrival, segmentsRemoved[segment], eitherWay)) {
+                    return true;
+                }
+            }
+            return connects(base.stationIndex(), departure, arrival, baseRemoved, eitherWay);
+        }
+
+        boolean forEachConnection(int departure, int arrival, RouteStore.DirectRouteConsumer routes) {
+            boolean connected = base.stationIndex().forEachConnection(departure, arrival, baseRemoved, base.routeIds(), routes);
+            for (int segment = 0; segment < segments.length; segment++) {
+                RouteGraph.OnHeap graph = segments[segment];
+                connected |= graph.stationIndex().forEachConnection(departure, arrival, segmentsRemoved[segment], graph.routeIds(), routes);
+            }
+            return connected;
+        }
+
+        /**
+         * @return the graph of the routes, built by the first query of the version that needs it should any change
+         * have been applied
+         */
+        RouteGraph routeGraph() {
+            if (segments.length == 0 && baseRemoved == null) {
+                return base;
+            }
+            RouteGraph graph = routeGraph;
+            if (graph == null) {
+                // two queries may build it at the same time, either graph will do
+                RouteGraph.OnHeap[] layers = new RouteGraph.OnHeap[segments.length + 1];
+                RemovedRoutes[] removed = new RemovedRoutes[segments.length + 1];
+                layers[0] = base;
+                removed[0] = baseRemoved;
+                System.arraycopy(segments, 0, layers, 1, segments.length);
+                System.arraycopy(segmentsRemoved, 0, removed, 1, segments.length);
+                graph = new RouteGraph.Layered(layers, removed, workspaces);
+                routeGraph = graph;
+            }
+            return graph;
+        }
+
+        private static boolean connects(StationIndex stationIndex, int departure, int arrival, RemovedRoutes removed, boolean eitherWay) {
+            return eitherWay
+                    ? stationIndex.connectsEitherWay(departure, arrival, removed)
+                    : stationIndex.connects(departure, arrival, removed);
+        }
+    }
+
+    /**
+     * @param base the graph of the frozen store, its route ids in ascending order
+     */
+    RouteOverlay(RouteGraph.OnHeap base) {
+        this.base = base;
+        this.baseRemovedAt = new int[base.routeCount()];
+        this.baseRemovedPostings = new int[base.stationCount()];
+        this.routeCount = base.routeCount();
+        this.stationCount = base.stationCount();
+        this.version = new Version(0, routeCount, stationCount, 0, base, null, new RouteGraph.OnHeap[0], new RemovedRoutes[0], workspaces);
+    }
+
+    /**
+     * @return the graph the changes are layered on top of
+     */
+    RouteGraph.OnHeap base() {
+        return base;
+    }
+
+    /**
+     * @return the routes as of the last batch of changes applied
+     */
+    Version version() {
+        return version;
+    }
+
+    /**
+     * @return true if the route is found in the last version
+     */
+    boolean exists(int routeId) {
+        if (segmentOf.containsKey(routeId)) {
+            return true;
+        }
+        int route = Arrays.binarySearch(base.routeIds(), routeId);
+        return route >= 0 && baseRemovedAt[route] == 0;
+    }
+
+    /**
+     * @return the number of routes of the base removed or replaced, plus the ones added since
+     */
+    int getChangedRoutes() {
+        return baseRemovedCount + segmentOf.size();
+    }
+
+    /**
+     * Applies a batch of changes known to be applicable and publishes the version that follows
+     */
+    void apply(List<RouteDelta.Operation> operations) {
+        int epoch = version.epoch + 1;
+
+        TreeMap<Integer, int[]> changes = lastChanges(operations);
+        int added = 0;
+        int stops = 0;
+        for (Map.Entry<Integer, int[]> change : changes.entrySet()) {
+            remove(change.getKey(), epoch);
+            if (change.getValue() != null) {
+                added++;
+                stops += change.getValue().length;
+            }
+        }
+
+        if (added > 0) {
+            int[] routeIds = new int[added];
+            int[] routeOffsets = new int[added + 1];
+            int[] routeStations = new int[stops];
+            int route = 0;
+            for (Map.Entry<Integer, int[]> change : changes.entrySet()) {
+                int[] stationIds = change.getValue();
+                if (stationIds == null) {
+                    continue;
+                }
+                for (int stationId : stationIds) {
+                    addPosting(stationId);
+                }
+                System.arraycopy(stationIds, 0, routeStations, routeOffsets[route], stationIds.length);
+                routeIds[route] = change.getKey();
+                routeOffsets[route + 1] = routeOffsets[route] + stationIds.length;
+                route++;
+            }
+            add(new Segment(routeIds, routeOffsets, routeStations, base.stationIndex().isAdaptive()));
+            routeCount += added;
+        }
+
+        segments.removeIf(segment -> segment.removedCount == segment.removedAt.length);
+        while (segments.size() > 1 && segments.get(segments.size() - 1).removedAt.length * 2 >= segments.get(segments.size() - 2).removedAt.length) {
+            Segment newer = segments.remove(segments.size() - 1);
+            Segment older = segments.remove(segments.size() - 1);
+            add(merge(older, newer));
+        }
+
+        RouteGraph.OnHeap[] graphs = new RouteGraph.OnHeap[segments.size()];
+        RemovedRoutes[] removed = new RemovedRoutes[segments.size()];
+        for (int segment = 0; segment < graphs.length; segment++) {
+            graphs[segment] = segments.get(segment).graph;
+            removed[segment] = segments.get(segment).removedCount == 0 ? null : new RemovedRoutes(segments.get(segment).removedAt, epoch);
+        }
+        version = new Version(epoch, routeCount, stationCount, segmentOf.size(), base,
+                baseRemovedCount == 0 ? null : new RemovedRoutes(baseRemovedAt, epoch), graphs, removed, workspaces);
+    }
+
+    /**
+     * @return the number of distinct stations of all routes should the batch of changes, known to be applicable,
+     * be applied, without applying it
+     */
+    int stationCountAfter(List<RouteDelta.Operation> operations) {
+        // the change in the number of routes every station is found on
+        Map<Integer, Integer> postingChanges = new HashMap<>();
+        for (Map.Entry<Integer, int[]> change : lastChanges(operations).entrySet()) {
+            int routeId = change.getKey();
+            Segment segment = segmentOf.get(routeId);
+            if (segment != null) {
+                int route = Arrays.binarySearch(segment.graph.routeIds(), routeId);
+                for (int stop = segment.graph.routeStart(route); stop < segment.graph.routeEnd(route); stop++) {
+                    postingChanges.merge(segment.stationIdAt(stop), -1, Integer::sum);
+                }
+            } else {
+                int route = Arrays.binarySearch(base.routeIds(), routeId);
+                if (route >= 0 && baseRemovedAt[route] == 0) {
+                    for (int stop = base.routeStart(route); stop < base.routeEnd(route); stop++) {
+                        postingChanges.merge(base.stationIndex().stationIdOf(base.stationAt(stop)), -1, Integer::sum);
+                    }
+                }
+            }
+            if (change.getValue() != null) {
+                for (int stationId : change.getValue()) {
+                    postingChanges.merge(stationId, 1, Integer::sum);
+                }
+            }
+        }
+
+        int stations = stationCount;
+        for (Map.Entry<Integer, Integer> postingChange : postingChanges.entrySet()) {
+            int before = postings(postingChange.getKey());
+            int after = before + postingChange.getValue();
+            if (before == 0 && after > 0) {
+                stations++;
+            } else if (before > 0 && after == 0) {
+                stations--;
+            }
+        }
+        return stations;
+    }
+
+    /**
+     * @return the last change of every route of the batch in route id order, a removal mapped to null
+     */
+    private static TreeMap<Integer, int[]> lastChanges(List<RouteDelta.Operation> operations) {
+        TreeMap<Integer, int[]> changes = new TreeMap<>();
+        for (RouteDelta.Operation operation : operations) {
+            changes.put(operation.getRouteId(), operation.getKind() == RouteDelta.Kind.REMOVE ? null : operation.getStationIds());
+        }
+        return changes;
+    }
+
+    /**
+     * Removes the route from the base or its segment as of the epoch, should it exist
+     */
+    private void remove(int routeId, int epoch) {
+        Segment segment = segmentOf.remove(routeId);
+        if (segment != null) {
+            int route = Arrays.binarySearch(segment.graph.routeIds(), routeId);
+            segment.removedAt[route] = epoch;
+            segment.removedCount++;
+            for (int stop = segment.graph.routeStart(route); stop < segment.graph.routeEnd(route); stop++) {
+                removePosting(segment.stationIdAt(stop));
+            }
+            routeCount--;
+            return;
+        }
+
+        int route = Arrays.binarySearch(base.routeIds(), routeId);
+        if (route < 0 || baseRemovedAt[route] != 0) {
+            return;
+        }
+        baseRemovedAt[route] = epoch;
+        baseRemovedCount++;
+        for (int stop = base.routeStart(route); stop < base.routeEnd(route); stop++) {
+            int station = base.stationAt(stop);
+            baseRemovedPostings[station]++;
+            if (!isOnBaseRoute(station) && !overlayPostings.containsKey(base.stationIndex().stationIdOf(station))) {
+                stationCount--;
+            }
+        }
+        routeCount--;
+    }
+
+    private void add(Segment segment) {
+        segments.add(segment);
+        for (int routeId : segment.graph.routeIds()) {
+            segmentOf.put(routeId, segment);
+        }
+    }
+
+    /**
+     * @return a segment of the routes of both segments that are not removed, the routes of the newer one replacing
+     * the ones of the older
+     */
+    private Segment merge(Segment older, Segment newer) {
+        int routes = older.removedAt.length - older.removedCount + newer.removedAt.length - newer.removedCount;
+        int[] routeIds = new int[routes];
+        int[] routeOffsets = new int[routes + 1];
+        int[] routeStations = new int[older.graph.routeStart(older.graph.routeCount()) + newer.graph.routeStart(newer.graph.routeCount())];
+        int i = 0;
+        int j = 0;
+        int route = 0;
+        int stop = 0;
+        while (route < routes) {
+            // a route found in both is removed from the older one
+            while (i < older.removedAt.length && older.removedAt[i] != 0) {
+                i++;
+            }
+            while (j < newer.removedAt.length && newer.removedAt[j] != 0) {
+                j++;
+            }
+            boolean fromOlder = j == newer.removedAt.length ||
+                    (i < older.removedAt.length && older.graph.routeIds()[i] < newer.graph.routeIds()[j]);
+            Segment segment = fromOlder ? older : newer;
+            int from = fromOlder ? i++ : j++;
+            for (int source = segment.graph.routeStart(from); source < segment.graph.routeEnd(from); source++) {
+                routeStations[stop++] = segment.stationIdAt(source);
+            }
+            routeIds[route] = segment.graph.routeIds()[from];
+            routeOffsets[++route] = stop;
+        }
+        return new Segment(routeIds, routeOffsets, Arrays.copyOf(routeStations, stop), base.stationIndex().isAdaptive());
+    }
+
+    private void addPosting(int stationId) {
+        if (overlayPostings.merge(stationId, 1, Integer::sum) == 1 && !isOnBaseRoute(base.ordinalOf(stationId))) {
+            stationCount++;
+        }
+    }
+
+    private void removePosting(int stationId) {
+        int postings = overlayPostings.merge(stationId, -1, Integer::sum);
+        if (postings == 0) {
+            overlayPostings.remove(stationId);
+            if (!isOnBaseRoute(base.ordinalOf(stationId))) {
+                stationCount--;
+            }
+        }
+    }
+
+    /**
+     * @return the number of routes of the last version the station is found on
+     */
+    private int postings(int stationId) {
+        int station = base.ordinalOf(stationId);
+        int postings = overlayPostings.getOrDefault(stationId, 0);
+        return station < 0 ? postings : postings + base.postingsEnd(station) - base.postingsStart(station) - baseRemovedPostings[station];
+    }
+
+    /**
+     * @param station a base station ordinal, negative if the station is not found in the base
+     * @return true if the station is found on a base route that is not removed
+     */
+    private boolean isOnBaseRoute(int station) {
+        return station >= 0 && baseRemovedPostings[station] < base.postingsEnd(station) - base.postingsStart(station);
+    }
+}
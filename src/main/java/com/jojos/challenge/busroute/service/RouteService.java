@@ -1,18 +1,29 @@
 package com.jojos.challenge.busroute.service;
 
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.util.LoadPhase;
+import com.jojos.challenge.busroute.util.RouteDelta;
+import com.jojos.challenge.busroute.util.RouteUtils;
+import com.jojos.challenge.busroute.util.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
-import java.util.function.Supplier;
-import java.util.stream.Stream;
-
-import static com.jojos.challenge.busroute.util.RouteUtils.loadFile;
-import static com.jojos.challenge.busroute.util.RouteUtils.loadRoutesFromStreamAndValidate;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * A component that will complete (i.e. the {@link #run(ApplicationArguments) method will be called}
@@ -28,27 +39,325 @@ public class RouteService implements ApplicationRunner {
 
     private static final Logger log = LoggerFactory.getLogger(RouteService.class);
 
-    private RouteStore routeStore;
+    private final BusRouteProperties properties;
+    private final RouteMetrics metrics;
+
+    // replaced as a whole on reload, a query in flight keeps using the store it has read
+    private volatile RouteStore routeStore;
+
+    private volatile Path dataFile;
+    private RouteFileWatcher watcher;
+    private RouteFileWatcher deltaWatcher;
+
+    public RouteService(BusRouteProperties properties) {
+        this(properties, new RouteMetrics(properties));
+    }
+
+    @Autowired
+    public RouteService(BusRouteProperties properties, RouteMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+    }
 
     @Override
     public void run(ApplicationArguments args) throws IOException {
 
         List<String> nonOptionArgs = args.getNonOptionArgs();
 
-        if (nonOptionArgs == null || nonOptionArgs.isEmpty()) {
+        BusRouteProperties.Shards shards = properties.getShards();
+        if (shards.isRouter()) {
+            log.info("Routing the queries to the shards {}", shards.getNodes());
+            publish(new ShardRouter(shards.getNodes().stream().
+                    map(node -> new HttpShard(node, shards.getTimeout())).
+                    collect(Collectors.toList())));
+        } else if (nonOptionArgs == null || nonOptionArgs.isEmpty()) {
             log.error("Houston we have a problem, no input bus route data file defined... Returning always false");
-            routeStore = new RouteStore() {};
+            publish(new RouteStore() {});
         } else {
             String filePath = nonOptionArgs.get(0);
             log.info("Loading route map from {}", filePath);
 
-            routeStore = loadRoutesFromFileAndValidate(filePath);
+            publish(loadRoutesFromFileAndValidate(filePath));
+            dataFile = Paths.get(filePath);
+
+            if (properties.getReload().isEnabled()) {
+                watcher = new RouteFileWatcher(dataFile, properties.getReload().getQuietPeriod(), this::reload);
+                deltaWatcher = new RouteFileWatcher(RouteDelta.pathFor(dataFile), properties.getReload().getQuietPeriod(),
+                        this::applyPendingDelta);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stopWatching() throws IOException {
+        RouteStore store = unwrapped(routeStore);
+        if (store instanceof ShardRouter) {
+            ((ShardRouter) store).close();
+        }
+        if (watcher != null) {
+            watcher.close();
+        }
+        if (deltaWatcher != null) {
+            deltaWatcher.close();
+        }
+    }
+
+    /**
+     * Loads the data file again into a new store, which is then published in place of the current one.
+     * Queries keep being answered by the current store while the new one is built. Should the new data
+     * file be invalid, or the memory policy not allow holding both stores, the current store is kept.
+     *
+     * @return true if the new store has been published
+     */
+    public synchronized boolean reload() {
+        Path path = dataFile;
+        if (path == null) {
+            log.warn("No bus route data file has been loaded, nothing to reload");
+            return false;
+        }
+        if (!hasHeadroomFor(path)) {
+            return false;
+        }
+
+        Instant start = Instant.now();
+        RouteStore newRouteStore;
+        try {
+            newRouteStore = loadRoutesFromFileAndValidate(path.toString());
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to reload route map from {}, keeping the current one", path, e);
+            return false;
+        }
+        publish(newRouteStore);
+        log.info("Reloaded route map from {} in {}", path, Duration.between(start, Instant.now()));
+        return true;
+    }
+
+    /**
+     * Applies the changes of the delta file to the current store, all at once. Stores that do not support updates
+     * in place are swapped for one that does, queries see either none or all of the changes.
+     * The changes are lost once the data file is loaded again.
+     *
+     * The store changed in place answers the queries on its own while the changes are applied, the cache and the
+     * filter in front of it would answer them as of before the changes.
+     *
+     * @param deltaFile the file with the changes, see {@link RouteDelta}
+     * @return true if the changes have been applied
+     */
+    public synchronized boolean applyDelta(Path deltaFile) {
+        Instant start = Instant.now();
+        RouteStore current = routeStore;
+        try {
+            RouteDelta delta = RouteDelta.parse(deltaFile, properties.getLimits().toRouteLimits());
+            RouteStore updatable = updatable(current);
+            routeStore = updatable;
+            updatable.applyDelta(delta);
+            publish(updatable, true);
+            log.info("Applied {} route changes of {} in {}", delta.getOperations().size(), deltaFile, Duration.between(start, Instant.now()));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // the stores check the changes before applying any of them
+            routeStore = current;
+            log.error("Failed to apply the route changes of {}, keeping the current route map", deltaFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies the delta file found next to the data file, then moves it aside with the suffix .applied
+     * or .rejected so that it is not applied twice
+     */
+    private void applyPendingDelta() {
+        Path deltaFile = RouteDelta.pathFor(dataFile);
+        if (!Files.isRegularFile(deltaFile)) {
+            return;
+        }
+        String suffix = applyDelta(deltaFile) ? ".applied" : ".rejected";
+        try {
+            Files.move(deltaFile, deltaFile.resolveSibling(deltaFile.getFileName() + suffix), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Failed to move {} aside", deltaFile, e);
+        }
+    }
+
+    /**
+     * Makes the store answer the queries from now on, behind an empty cache should caching be enabled
+     */
+    private void publish(RouteStore store) {
+        publish(store, false);
+    }
+
+    /**
+     * @param changed whether the store is the one published with route changes applied, its station fan-out is then
+     *                the one of the last load
+     */
+    private void publish(RouteStore store, boolean changed) {
+        BusRouteProperties.Cache cache = properties.getCache();
+        if (cache.getSize() > 0) {
+            store = new CachingRouteStore(store, cache.getSize(), cache.getPolicy());
+        }
+        boolean adaptive = properties.getIntersection().isAdaptive();
+        RouteStore unwrapped = unwrapped(store);
+        if (unwrapped instanceof InMemoryRouteStore) {
+            // its station index is built again once the route changes add up
+            ((InMemoryRouteStore) unwrapped).setAdaptive(adaptive);
+        } else {
+            StationIndex stationIndex = StationIndex.of(store);
+            if (stationIndex != null) {
+                stationIndex.setAdaptive(adaptive);
+            }
+        }
+        routeStore = store;
+        if (changed) {
+            metrics.storeChanged(store);
+        } else {
+            metrics.storePublished(store);
+        }
+    }
+
+    private RouteStore updatable(RouteStore store) {
+        // the cached answers are discarded along with the cache once the changed store is published
+        store = unwrapped(store);
+        if (store instanceof DeltaRouteStore || store instanceof InMemoryRouteStore) {
+            return store;
+        }
+        if (store instanceof FilteringRouteStore) {
+            log.warn("The filter is not maintained under route changes, it is dropped until the data file is loaded again");
+            return updatable(((FilteringRouteStore) store).delegate());
+        }
+        if (store instanceof HotStationRouteStore) {
+            log.warn("Hot stations are not maintained under route changes, they are dropped until the data file is loaded again");
+            return new DeltaRouteStore(((HotStationRouteStore) store).delegate(), properties.getLimits().toRouteLimits());
+        }
+        if (store instanceof CompactRouteStore) {
+            return new DeltaRouteStore((CompactRouteStore) store, properties.getLimits().toRouteLimits());
+        }
+        throw new UnsupportedOperationException("The routes of the " + properties.getStore() + " route store cannot be updated");
+    }
+
+    /**
+     * The current store stays reachable while the new one is built, so for a while both are held in memory
+     */
+    private boolean hasHeadroomFor(Path path) {
+        BusRouteProperties.Reload reload = properties.getReload();
+        if (reload.getMemoryPolicy() == BusRouteProperties.Reload.MemoryPolicy.ALWAYS) {
+            return true;
+        }
+        long required;
+        try {
+            required = (long) (Files.size(path) * reload.getHeadroomFactor());
+        } catch (IOException e) {
+            log.error("Failed to reload route map from {}, keeping the current one", path, e);
+            return false;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        if (available < required) {
+            log.warn("Not reloading route map from {}, {} bytes of heap are available but {} are required while both " +
+                    "route maps are held. Restart the service to pick up the change", path, available, required);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the store behind the cache, if any
+     */
+    private static RouteStore unwrapped(RouteStore store) {
+        return store instanceof CachingRouteStore ? ((CachingRouteStore) store).delegate() : store;
+    }
+
+    public RouteStore loadRoutesFromFileAndValidate(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        BusRouteProperties.Shards shards = properties.getShards();
+        if (shards.isShard()) {
+            log.info("Loading the stations of shard {} out of {}, whatever the {} store type", shards.getIndex(), shards.getCount(), properties.getStore());
+            return parse(path, new ShardRouteStore(shards.getIndex(), shards.getCount(), properties.getLimits().toRouteLimits()));
+        }
+        RouteStoreType storeType = properties.getStore();
+        if (storeType == RouteStoreType.MAPPED || (storeType == RouteStoreType.COMPACT && properties.getSnapshot().isEnabled())) {
+            return withFilter(withHotStations(loadFromSnapshotOrFile(path, storeType == RouteStoreType.MAPPED)));
+        }
+        return withFilter(withHotStations(parse(path, storeType.newRouteStore())));
+    }
+
+    private RouteStore parse(Path path, RouteStore routeStore) throws IOException {
+        ThreadFactory threadFactory = properties.getThreads().useVirtualThreads() ?
+                VirtualThreads.factory("route-loader-virtual-") :
+                RouteUtils.platformThreads();
+        return RouteUtils.loadRoutesFromFileAndValidate(path, routeStore, properties.getLoader().resolveThreads(), threadFactory,
+                metrics::recordLoadPhase, properties.getLimits().toRouteLimits());
+    }
+
+    /**
+     * Restores the store from the snapshot of the data file, or parses the data file and writes
+     * its snapshot should there be no usable one.
+     *
+     * @param mapped whether the store answers straight out of the mapped snapshot instead of heap arrays
+     */
+    private RouteStore loadFromSnapshotOrFile(Path path, boolean mapped) throws IOException {
+        Path snapshotPath = RouteSnapshot.pathFor(path);
+        RouteSnapshot.Source source = RouteSnapshot.Source.of(path);
+
+        Instant start = Instant.now();
+        long startNanos = System.nanoTime();
+        RouteSnapshot snapshot = RouteSnapshot.open(snapshotPath, source);
+        if (snapshot != null) {
+            RouteStore store = mapped ? new MappedRouteStore(snapshot) : snapshot.toCompactRouteStore();
+            metrics.recordLoadPhase(LoadPhase.SNAPSHOT_RESTORE, System.nanoTime() - startNanos);
+            log.info("Restored route map from snapshot {} in {}", snapshotPath, Duration.between(start, Instant.now()));
+            return store;
+        }
+
+        CompactRouteStore store = (CompactRouteStore) parse(path, new CompactRouteStore());
+        try {
+            startNanos = System.nanoTime();
+            RouteSnapshot.write(snapshotPath, source, store);
+            metrics.recordLoadPhase(LoadPhase.SNAPSHOT_WRITE, System.nanoTime() - startNanos);
+            log.info("Wrote snapshot {} of the route map", snapshotPath);
+        } catch (IOException e) {
+            log.warn("Could not write snapshot {}, the data file will be parsed again on the next start", snapshotPath, e);
+            return store;
+        }
+        if (mapped) {
+            snapshot = RouteSnapshot.open(snapshotPath, source);
+            if (snapshot == null) {
+                log.warn("Could not map snapshot {}, keeping the route map on the heap", snapshotPath);
+                return store;
+            }
+            return new MappedRouteStore(snapshot);
+        }
+        return store;
+    }
+
+    private RouteStore withHotStations(RouteStore store) {
+        BusRouteProperties.HotStations hotStations = properties.getHotStations();
+        if (hotStations.getCount() <= 0) {
+            return store;
         }
+        if (!(store instanceof CompactRouteStore)) {
+            log.warn("Hot stations are only supported by the {} route store, ignoring them", RouteStoreType.COMPACT);
+            return store;
+        }
+        long start = System.nanoTime();
+        RouteStore hotStationStore = new HotStationRouteStore((CompactRouteStore) store, hotStations.getCount(), hotStations.getMaxMemory());
+        metrics.recordLoadPhase(LoadPhase.HOT_STATIONS, System.nanoTime() - start);
+        return hotStationStore;
     }
 
-    public RouteStore loadRoutesFromFileAndValidate(String filePath) {
-        Supplier<Stream<String>> stream = loadFile(filePath);
-        return loadRoutesFromStreamAndValidate(stream);
+    private RouteStore withFilter(RouteStore store) {
+        BusRouteProperties.Filter filter = properties.getFilter();
+        if (!filter.isEnabled()) {
+            return store;
+        }
+        StationIndex stationIndex = StationIndex.of(store);
+        if (stationIndex == null) {
+            log.warn("The filter is only supported by the {} and {} route stores, ignoring it", RouteStoreType.IN_MEMORY, RouteStoreType.COMPACT);
+            return store;
+        }
+        long start = System.nanoTime();
+        RouteStore filteringStore = new FilteringRouteStore(store, stationIndex, filter.getFalsePositiveRate(), filter.getMaxMemory());
+        metrics.recordLoadPhase(LoadPhase.FILTER, System.nanoTime() - start);
+        return filteringStore;
     }
 
     /**
@@ -60,7 +369,164 @@ public class RouteService implements ApplicationRunner {
      * @return true or false depending on whether the route exists
      */
     public boolean isThereConnectionBetween(int departure, int arrival) {
-        return routeStore.isDirectConnectionExistBetween(departure, arrival);
+        RouteStore store = routeStore;
+        if (!metrics.isEnabled()) {
+            return connects(store, departure, arrival);
+        }
+        long start = System.nanoTime();
+        boolean connected = connects(store, departure, arrival);
+        metrics.recordQuery(store, System.nanoTime() - start, connected);
+        return connected;
     }
 
+    /**
+     * @return whether a direct connection exists, either way if the routes are run in both directions
+     */
+    private boolean connects(RouteStore store, int departure, int arrival) {
+        return properties.getRoutes().isBidirectional() ?
+                store.isConnectionEitherWayBetween(departure, arrival) :
+                store.isDirectConnectionExistBetween(departure, arrival);
+    }
+
+    /**
+     * Same as {@link #isThereConnectionBetween(int, int)}, telling which routes connect the stations as well.
+     * Should the routes be run in both directions the ones visiting the arrival first are told too
+     *
+     * @param departure start bus station
+     * @param arrival end bus station
+     * @return the connecting routes, none if there is no direct connection
+     */
+    public DirectRoutes getDirectRoutesBetween(int departure, int arrival) {
+        RouteStore store = routeStore;
+        DirectRoutes routes = new DirectRoutes();
+        if (!metrics.isEnabled()) {
+            collectDirectRoutes(store, departure, arrival, routes);
+            return routes;
+        }
+        long start = System.nanoTime();
+        boolean connected = collectDirectRoutes(store, departure, arrival, routes);
+        metrics.recordQuery(store, System.nanoTime() - start, connected);
+        return routes;
+    }
+
+    private boolean collectDirectRoutes(RouteStore store, int departure, int arrival, DirectRoutes routes) {
+        boolean connected = store.forEachDirectRoute(departure, arrival, routes);
+        if (departure != arrival && properties.getRoutes().isBidirectional()) {
+            // a route visits two distinct stations in one order only, so none is told twice
+            connected |= store.forEachDirectRoute(arrival, departure, routes);
+        }
+        return connected;
+    }
+
+    /**
+     * @param stationIds stations of the shard this node loads
+     * @return the postings of every station in the order given
+     * @throws UnsupportedOperationException should this node not load a shard
+     */
+    public StationPostings[] getPostings(int[] stationIds) {
+        RouteStore store = unwrapped(routeStore);
+        if (!(store instanceof ShardRouter.Shard)) {
+            throw new UnsupportedOperationException("This node does not load a shard of the stations");
+        }
+        return ((ShardRouter.Shard) store).postings(stationIds);
+    }
+
+    /**
+     * @param departure start bus station
+     * @param arrival end bus station
+     * @param maxTransfers the number of changes of routes allowed
+     * @return the minimum number of changes of routes to get from the departure to the arrival, 0 for a direct
+     * connection, -1 if not reachable with at most {@code maxTransfers} changes
+     */
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        RouteStore store = routeStore;
+        if (!metrics.isEnabled()) {
+            return store.getMinimumTransfersBetween(departure, arrival, maxTransfers);
+        }
+        long start = System.nanoTime();
+        int transfers = store.getMinimumTransfersBetween(departure, arrival, maxTransfers);
+        metrics.recordTransferQuery(store, System.nanoTime() - start, transfers >= 0);
+        return transfers;
+    }
+
+    /**
+     * Answers whether a direct connection exists for every pair of stations, all of them against the same route map
+     * even if it is replaced in the meantime. Big batches are evaluated in parallel, 64 pairs per task.
+     *
+     * @param pairs departure and arrival station ids one after the other, {@code [dep0, arr0, dep1, arr1, ...]}
+     * @return a bitset where bit {@code i} of word {@code i / 64} is set if the {@code i}th pair is connected
+     */
+    public long[] areThereConnectionsBetween(int[] pairs) {
+        Batch batch = startBatch();
+        long[] connected = batch.areThereConnectionsBetween(pairs, pairs.length / 2);
+        batch.finish();
+        return connected;
+    }
+
+    /**
+     * @return a batch of pairs of stations answered a chunk at a time, against the route map of now
+     */
+    public Batch startBatch() {
+        return new Batch(routeStore);
+    }
+
+    /**
+     * A batch query answered in chunks of pairs as they arrive, all of them against the same route map even if it is
+     * replaced in the meantime. The batch is recorded in the metrics as one once finished, taking the time spent
+     * answering its chunks. Not thread safe.
+     */
+    public final class Batch {
+
+        private final RouteStore store;
+        private long nanos;
+        private int count;
+        private int connectedPairs;
+
+        private Batch(RouteStore store) {
+            this.store = store;
+        }
+
+        /**
+         * Same as {@link RouteService#areThereConnectionsBetween(int[])} for the first {@code count} pairs of the array
+         */
+        public long[] areThereConnectionsBetween(int[] pairs, int count) {
+            long start = System.nanoTime();
+            long[] connected = new long[(count + 63) >>> 6];
+            IntStream words = IntStream.range(0, connected.length);
+            if (count >= properties.getBatch().getParallelThreshold()) {
+                words = words.parallel();
+            }
+            words.forEach(word -> {
+                long bits = 0;
+                int end = Math.min(count, (word + 1) << 6);
+                for (int pair = word << 6; pair < end; pair++) {
+                    if (connects(store, pairs[pair << 1], pairs[(pair << 1) + 1])) {
+                        bits |= 1L << pair;
+                    }
+                }
+                connected[word] = bits;
+            });
+            if (metrics.isEnabled()) {
+                for (long bits : connected) {
+                    connectedPairs += Long.bitCount(bits);
+                }
+            }
+            this.count += count;
+            nanos += System.nanoTime() - start;
+            return connected;
+        }
+
+        /**
+         * @return the number of pairs answered so far
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public void finish() {
+            if (metrics.isEnabled()) {
+                metrics.recordBatch(store, nanos, count, connectedPairs);
+            }
+        }
+    }
 }
@@ -0,0 +1,275 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.IdDictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A versioned, checksummed binary image of a frozen {@link CompactRouteStore}, kept next to the
+ * bus route data file it was built from so that a restart does not need to parse the file again.
+ *
+ * The snapshot starts with a fixed size header:
+ * <pre>
+ *     int  magic
+ *     int  version
+ *     long size of the data file
+ *     long last modified time of the data file, in milliseconds
+ *     long CRC32 of the data file
+ *     int  length of every {@link Section}, in ints, in declaration order
+ *     long CRC32 of the sections
+ * </pre>
+ * followed by the int arrays of the sections, big endian, in declaration order.
+ *
+ * A snapshot is only used when the data file it is keyed by is unchanged and both its header and its
+ * sections check out. Otherwise it is ignored, the data file is parsed and the snapshot is written again.
+ *
+ * @author karanikasg@gmail.com.
+ */
+final class RouteSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteSnapshot.class);
+
+    static final String SUFFIX = ".snapshot";
+
+    private static final int MAGIC = 0x42525453; // "BRTS"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + Section.values().length * 4 + 8;
+
+    // the ints written at a time, the sections of a big store do not need to be copied twice into memory
+    private static final int WRITE_CHUNK = 1 << 20;
+
+    /**
+     * The arrays of a frozen {@link CompactRouteStore}, in the order they are written. The route and station
+     * ids are followed by the tables of their {@link IdDictionary}, so that they are not hashed again on restore
+     * and can be looked up as they are mapped
+     */
+    enum Section {
+        ROUTE_IDS,
+        ROUTE_OFFSETS,
+        ROUTE_STATIONS,
+        STATION_IDS,
+        STATION_OFFSETS,
+        STATION_ROUTES,
+        STATION_POSITIONS,
+        ROUTE_TABLE,
+        STATION_TABLE
+    }
+
+    /**
+     * Identifies the content of the bus route data file a snapshot was built from
+     */
+    static final class Source {
+
+        // files are hashed through mappings of up to this size
+        private static final long MAP_WINDOW_SIZE = 1L << 30;
+
+        private final long size;
+        private final long lastModified;
+        private final long crc;
+
+        Source(long size, long lastModified, long crc) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc = crc;
+        }
+
+        static Source of(Path dataFile) throws IOException {
+            long lastModified = Files.getLastModifiedTime(dataFile).toMillis();
+            CRC32 crc = new CRC32();
+            long size;
+            try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+                size = channel.size();
+                for (long position = 0; position < size; position += MAP_WINDOW_SIZE) {
+                    crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_SIZE, size - position)));
+                }
+            }
+            return new Source(size, lastModified, crc.getValue());
+        }
+
+        boolean matches(Source other) {
+            return size == other.size && lastModified == other.lastModified && crc == other.crc;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("size %d, modified %d, crc %08x", size, lastModified, crc);
+        }
+    }
+
+    private final Map<Section, IntBuffer> sections;
+
+    private RouteSnapshot(Map<Section, IntBuffer> sections) {
+        this.sections = sections;
+    }
+
+    /**
+     * @return the path of the snapshot of the given bus route data file
+     */
+    static Path pathFor(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Writes the snapshot of the store into a temporary file which then replaces the given path,
+     * so that a reader never sees a partially written snapshot. A store still mapping the replaced
+     * snapshot keeps reading it, as the replaced file is only unlinked.
+     */
+    static void write(Path path, Source source, CompactRouteStore store) throws IOException {
+        StationIndex stationIndex = store.stationIndex();
+        Map<Section, int[]> arrays = new EnumMap<>(Section.class);
+        arrays.put(Section.ROUTE_IDS, store.routeIds());
+        arrays.put(Section.ROUTE_OFFSETS, store.routeOffsets());
+        arrays.put(Section.ROUTE_STATIONS, store.routeStations());
+        arrays.put(Section.STATION_IDS, stationIndex.stations().ids());
+        arrays.put(Section.STATION_OFFSETS, stationIndex.offsets());
+        arrays.put(Section.STATION_ROUTES, stationIndex.routes());
+        arrays.put(Section.STATION_POSITIONS, stationIndex.positions());
+        arrays.put(Section.ROUTE_TABLE, store.getRouteDictionary().table());
+        arrays.put(Section.STATION_TABLE, stationIndex.stations().table());
+
+        // a unique temporary file, several instances may be writing the snapshot of the same data file
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_SIZE);
+                CRC32 crc = new CRC32();
+                ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK * Integer.BYTES);
+                for (int[] array : arrays.values()) {
+                    for (int offset = 0; offset < array.length; offset += WRITE_CHUNK) {
+                        int length = Math.min(WRITE_CHUNK, array.length - offset);
+                        chunk.clear();
+                        chunk.asIntBuffer().put(array, offset, length);
+                        chunk.limit(length * Integer.BYTES);
+                        crc.update(chunk.array(), 0, chunk.limit());
+                        writeFully(channel, chunk);
+                    }
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION);
+                header.putLong(source.size).putLong(source.lastModified).putLong(source.crc);
+                arrays.values().forEach(array -> header.putInt(array.length));
+                header.putLong(crc.getValue());
+                header.flip();
+                channel.position(0);
+                writeFully(channel, header);
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the snapshot found under the given path, verifying that it was built from the given source.
+     *
+     * @return the snapshot or null should it not exist, be stale or be corrupt
+     */
+    static RouteSnapshot open(Path path, Source source) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                log.warn("Ignoring snapshot {}, it is truncated", path);
+                return null;
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                log.warn("Ignoring snapshot {}, it is not a snapshot of version {}", path, VERSION);
+                return null;
+            }
+            Source snapshotSource = new Source(header.getLong(), header.getLong(), header.getLong());
+            if (!snapshotSource.matches(source)) {
+                log.info("Ignoring snapshot {}, it was built from {} but the data file is now {}", path, snapshotSource, source);
+                return null;
+            }
+
+            Section[] order = Section.values();
+            long[] lengths = new long[order.length];
+            long expectedSize = HEADER_SIZE;
+            for (int i = 0; i < order.length; i++) {
+                lengths[i] = header.getInt() & 0xFFFFFFFFL;
+                expectedSize += lengths[i] * Integer.BYTES;
+            }
+            long expectedCrc = header.getLong();
+            if (expectedSize != fileSize) {
+                log.warn("Ignoring snapshot {}, it is {} bytes long instead of {}", path, fileSize, expectedSize);
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            Map<Section, IntBuffer> sections = new EnumMap<>(Section.class);
+            long position = HEADER_SIZE;
+            for (int i = 0; i < order.length; i++) {
+                long bytes = lengths[i] * Integer.BYTES;
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+                crc.update(mapped);
+                mapped.rewind();
+                sections.put(order[i], mapped.asIntBuffer());
+                position += bytes;
+            }
+            if (crc.getValue() != expectedCrc) {
+                log.warn("Ignoring snapshot {}, its checksum does not match", path);
+                return null;
+            }
+            return new RouteSnapshot(sections);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring snapshot {}, it could not be read", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return a read only view of the ints of the section
+     */
+    IntBuffer section(Section section) {
+        return sections.get(section).duplicate();
+    }
+
+    /**
+     * Copies the sections into the heap arrays of a frozen {@link CompactRouteStore}
+     */
+    CompactRouteStore toCompactRouteStore() {
+        IdDictionary routes = IdDictionary.of(toArray(Section.ROUTE_IDS), toArray(Section.ROUTE_TABLE));
+        IdDictionary stations = IdDictionary.of(toArray(Section.STATION_IDS), toArray(Section.STATION_TABLE));
+        StationIndex stationIndex = new StationIndex(stations, toArray(Section.STATION_OFFSETS),
+                toArray(Section.STATION_ROUTES), toArray(Section.STATION_POSITIONS), routes.size());
+        return new CompactRouteStore(routes, toArray(Section.ROUTE_OFFSETS), toArray(Section.ROUTE_STATIONS), stationIndex);
+    }
+
+    private int[] toArray(Section section) {
+        IntBuffer buffer = section(section);
+        int[] array = new int[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.jojos.challenge.busroute.service;
 
+import com.jojos.challenge.busroute.util.RouteBuffer;
+import com.jojos.challenge.busroute.util.RouteDelta;
+import com.jojos.challenge.busroute.util.RouteFileException;
+
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 
 /**
  * An interface to mark the means of storing the route information.
@@ -13,6 +20,18 @@ import java.util.LinkedHashSet;
  */
 public interface RouteStore {
 
+    /**
+     * Told the routes directly connecting two stations
+     */
+    @FunctionalInterface
+    interface DirectRouteConsumer {
+        /**
+         * @param routeId the id of the route
+         * @param stops the number of stops from the departure to the arrival on the route, 0 for the same station
+         */
+        void accept(int routeId, int stops);
+    }
+
     /**
      * Store a route identified by its route id and an ordered set of station ids.
      *
@@ -21,6 +40,85 @@ public interface RouteStore {
      */
     default void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {}
 
+    /**
+     * Store a route identified by its route id and the station ids found in the given array.
+     * The array may be reused by the caller once this method returns.
+     *
+     * @param routeId, uniquely identify the route
+     * @param stationIds the station ids in order
+     * @param offset the index of the first station id of the route in the array
+     * @param count how many of the station ids belong to the route
+     */
+    default void storeRoute(int routeId, int[] stationIds, int offset, int count) {
+        LinkedHashSet<Integer> stations = new LinkedHashSet<>();
+        for (int i = offset; i < offset + count; i++) {
+            stations.add(stationIds[i]);
+        }
+        storeRoute(routeId, stations);
+    }
+
+    /**
+     * @return the stations the store keeps out of the routes stored, null for all of them. The loader drops the other
+     * stations as it parses the data file, see {@link RouteBuffer#RouteBuffer(IntPredicate)}
+     */
+    default IntPredicate stationFilter() {
+        return null;
+    }
+
+    /**
+     * Store all routes of the given buffers, parsed concurrently out of the bus route data file.
+     *
+     * @param buffers the parsed routes, holding the stations of {@link #stationFilter()} only
+     */
+    default void storeRoutes(List<RouteBuffer> buffers) {
+        buffers.parallelStream().forEach(buffer -> {
+            for (int route = 0; route < buffer.size(); route++) {
+                int start = buffer.getStationsStart(route);
+                storeRoute(buffer.getRouteId(route), buffer.stationIds(), start, buffer.getStationsEnd(route) - start);
+            }
+        });
+    }
+
+    /**
+     * Remove a stored route.
+     *
+     * @param routeId the id of the route
+     * @throws IllegalArgumentException should the route not exist
+     * @throws UnsupportedOperationException should the store not support updates
+     */
+    default void removeRoute(int routeId) {
+        throw new UnsupportedOperationException("Routes of this route store cannot be updated");
+    }
+
+    /**
+     * Replace the stations of a stored route.
+     *
+     * @param routeId the id of the route
+     * @param stationIds the new ordered set of station ids
+     * @throws IllegalArgumentException should the route not exist
+     * @throws UnsupportedOperationException should the store not support updates
+     */
+    default void replaceRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        throw new UnsupportedOperationException("Routes of this route store cannot be updated");
+    }
+
+    /**
+     * Apply all changes of the delta at once. Queries see either none or all of the changes.
+     *
+     * @param delta the changes
+     * @throws RouteFileException should any of the changes not be applicable, in which case none is applied
+     * @throws UnsupportedOperationException should the store not support updates
+     */
+    default void applyDelta(RouteDelta delta) {
+        throw new UnsupportedOperationException("Routes of this route store cannot be updated");
+    }
+
+    /**
+     * Signals that all routes have been stored. Implementations may use this to compact
+     * their internal representation, in which case no more routes can be stored afterwards.
+     */
+    default void freeze() {}
+
     /**
      * The total number of routes that have been stored in the data store
      * @return the total number of stored routes
@@ -48,5 +146,51 @@ public interface RouteStore {
         return false;
     }
 
+    /**
+     * Same as {@link #isDirectConnectionExistBetween(int, int)} for routes run in both directions, i.e. whether any
+     * route visits both stations whatever their order
+     *
+     * @param stationId1 the one station
+     * @param stationId2 the other station
+     * @return true if a direct connection exists one way or the other
+     */
+    default boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        return isDirectConnectionExistBetween(stationId1, stationId2) || isDirectConnectionExistBetween(stationId2, stationId1);
+    }
+
+    /**
+     * Same as {@link #isDirectConnectionExistBetween(int, int)}, telling every route that connects the two stations
+     * along the way, in no particular order.
+     *
+     * @param departure the departure station
+     * @param arrival the arrival station
+     * @param routes told the id of every connecting route and the number of stops on it
+     * @return true if a direct connection exists
+     */
+    default boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        return false;
+    }
+
+    /**
+     * Reports the fan-out of every stored station, i.e. the number of routes it is found on. Meant for statistics,
+     * the order of the stations is unspecified.
+     *
+     * @param fanOut told the number of routes of every station
+     */
+    default void forEachStationFanOut(IntConsumer fanOut) {}
+
+    /**
+     * The minimum number of times one has to change routes to get from the departure to the arrival, every route
+     * ridden in its direction of travel and a change taking place at a station both routes are found on.
+     *
+     * @param departure the departure station
+     * @param arrival the arrival station
+     * @param maxTransfers the number of changes allowed, 0 only accepting a direct connection
+     * @return 0 if a direct connection exists, the minimum number of changes otherwise, or -1 should more than
+     * {@code maxTransfers} changes be needed or no route connect the stations at all
+     */
+    default int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        return -1;
+    }
 
 }
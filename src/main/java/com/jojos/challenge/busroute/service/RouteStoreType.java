@@ -0,0 +1,51 @@
+package com.jojos.challenge.busroute.service;
+
+import java.util.function.Supplier;
+
+/**
+ * The available {@link RouteStore} implementations that the route data file can be loaded into.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public enum RouteStoreType {
+
+    /**
+     * Boxed concurrent collections, see {@link InMemoryRouteStore}
+     */
+    IN_MEMORY(InMemoryRouteStore::new),
+
+    /**
+     * Primitive arrays in compressed-sparse-row layout, see {@link CompactRouteStore}
+     */
+    COMPACT(CompactRouteStore::new),
+
+    /**
+     * Same layout as {@link #COMPACT}, served off-heap out of the memory mapped snapshot, see {@link MappedRouteStore}.
+     * The routes are loaded into a {@link CompactRouteStore} which the {@link RouteService} swaps for the
+     * mapped snapshot once written. There is no empty mapped store to load routes into, see {@link #newRouteStore()}
+     */
+    MAPPED(() -> {
+        throw new UnsupportedOperationException("A MAPPED route store is only served out of a snapshot, " +
+                "load the routes through the RouteService or into a COMPACT store");
+    }),
+
+    /**
+     * Same indexes as {@link #COMPACT}, bit-packed, see {@link CompressedRouteStore}
+     */
+    COMPRESSED(CompressedRouteStore::new);
+
+    private final Supplier<RouteStore> factory;
+
+    RouteStoreType(Supplier<RouteStore> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return an empty store to load the routes into
+     * @throws UnsupportedOperationException for {@link #MAPPED}, which the {@link RouteService} builds out of the
+     * snapshot of the loaded routes
+     */
+    public RouteStore newRouteStore() {
+        return factory.get();
+    }
+}
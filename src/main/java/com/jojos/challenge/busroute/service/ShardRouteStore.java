@@ -0,0 +1,305 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.GrowableIntArray;
+import com.jojos.challenge.busroute.util.IdDictionary;
+import com.jojos.challenge.busroute.util.RouteBuffer;
+import com.jojos.challenge.busroute.util.RouteLimits;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * A {@link RouteStore} holding a slice of the stations only, so that a network too big for a single node is split
+ * among several of them, every node loading the whole data file into a store of its own shard.
+ *
+ * The stations are assigned to the shards by a hash of their id, see {@link #shardOf(int, int)}. A shard keeps the
+ * same station -> (route, position) postings as the {@link StationIndex} of the other stores, for its own stations
+ * only, and with route ids in place of route ordinals so that the postings of different shards can be merge-joined.
+ * The routes themselves are not kept, so the memory of all shards together is about that of a single store.
+ *
+ * Two stations of the same shard are answered by the shard itself, in general it is the {@link ShardRouter} that
+ * asks the shards of both stations for their postings. A shard has no notion of the stations of the others, they
+ * are unknown to it: the stations of the other shards are dropped as the data file is parsed, see
+ * {@link #stationFilter()}, and the limit of the distinct stations (rule 8) applies to the stations of the shard.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class ShardRouteStore implements RouteStore, ShardRouter.Shard {
+
+    private static final StationPostings[] NONE = new StationPostings[0];
+
+    private final int shard;
+    private final int shards;
+    private final int maxStations;
+
+    // loading phase buffers, a posting per stop of the stations of the shard. Guarded by this and released once frozen
+    private GrowableIntArray loadedStationIds = new GrowableIntArray();
+    private GrowableIntArray loadedRouteIds = new GrowableIntArray();
+    private GrowableIntArray loadedPositions = new GrowableIntArray();
+
+    private volatile boolean frozen;
+
+    // station ordinal -> route ids in ascending order, along with the position of the station in each route
+    private StationIndex stationIndex;
+    private int routeCount;
+
+    public ShardRouteStore(int shard, int shards) {
+        this(shard, shards, RouteLimits.DEFAULT);
+    }
+
+    /**
+     * @param shard the shard of the store, {@code 0..shards - 1}
+     * @param shards the number of shards the stations are split into
+     * @param limits the distinct stations of the shard are kept within, the other limits apply to the data file
+     */
+    public ShardRouteStore(int shard, int shards, RouteLimits limits) {
+        if (shards < 1 || shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException(String.format("Shard %d out of %d does not exist", shard, shards));
+        }
+        this.shard = shard;
+        this.shards = shards;
+        this.maxStations = limits.getMaxStations();
+    }
+
+    /**
+     * @return the shard the station belongs to, {@code 0..shards - 1}
+     */
+    public static int shardOf(int stationId, int shards) {
+        // spread the ids first, the stations of a region are often numbered in a row
+        int h = stationId * 0x9E3779B9;
+        return (int) (((h ^ (h >>> 16)) & 0xFFFFFFFFL) % shards);
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    @Override
+    public void storeRoute(int routeId, LinkedHashSet<Integer> stationIds) {
+        storeRoute(routeId, stationIds.stream().mapToInt(Integer::intValue).toArray(), 0, stationIds.size());
+    }
+
+    @Override
+    public synchronized void storeRoute(int routeId, int[] stationIds, int offset, int count) {
+        checkNotFrozen();
+        for (int position = 0; position < count; position++) {
+            int stationId = stationIds[offset + position];
+            if (shardOf(stationId, shards) == shard) {
+                loadedStationIds.add(stationId);
+                loadedRouteIds.add(routeId);
+                loadedPositions.add(position);
+            }
+        }
+    }
+
+    /**
+     * @return the stations of the shard
+     */
+    @Override
+    public IntPredicate stationFilter() {
+        return stationId -> shardOf(stationId, shards) == shard;
+    }
+
+    /**
+     * Appends the postings of all buffers at once, every buffer copied into its own disjoint range of the loading
+     * arrays in parallel. The buffers are expected to hold the stations of the shard only, the ones holding all
+     * stations are filtered one route at a time.
+     */
+    @Override
+    public synchronized void storeRoutes(List<RouteBuffer> buffers) {
+        checkNotFrozen();
+        int count = buffers.size();
+        int[] postingStarts = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            RouteBuffer buffer = buffers.get(i);
+            postingStarts[i + 1] = postingStarts[i] + (buffer.positions() == null ? 0 : buffer.getStationCount());
+        }
+
+        int firstPosting = loadedStationIds.extend(postingStarts[count]);
+        loadedRouteIds.extend(postingStarts[count]);
+        loadedPositions.extend(postingStarts[count]);
+        int[] stationIds = loadedStationIds.elements();
+        int[] routeIds = loadedRouteIds.elements();
+        int[] positions = loadedPositions.elements();
+
+        IntStream.range(0, count).parallel().forEach(i -> {
+            RouteBuffer buffer = buffers.get(i);
+            if (buffer.positions() == null) {
+                return;
+            }
+            int posting = firstPosting + postingStarts[i];
+            System.arraycopy(buffer.stationIds(), 0, stationIds, posting, buffer.getStationCount());
+            System.arraycopy(buffer.positions(), 0, positions, posting, buffer.getStationCount());
+            for (int route = 0; route < buffer.size(); route++) {
+                int routeId = buffer.getRouteId(route);
+                for (int station = buffer.getStationsStart(route); station < buffer.getStationsEnd(route); station++) {
+                    routeIds[posting + station] = routeId;
+                }
+            }
+        });
+
+        for (RouteBuffer buffer : buffers) {
+            if (buffer.positions() == null) {
+                for (int route = 0; route < buffer.size(); route++) {
+                    int start = buffer.getStationsStart(route);
+                    storeRoute(buffer.getRouteId(route), buffer.stationIds(), start, buffer.getStationsEnd(route) - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException should the shard hold more distinct stations than allowed (rule 8)
+     */
+    @Override
+    public synchronized void freeze() {
+        if (frozen) {
+            return;
+        }
+        int postings = loadedStationIds.size();
+        int[] stationIds = loadedStationIds.elements();
+        int[] routeIds = loadedRouteIds.elements();
+        int[] positions = loadedPositions.elements();
+
+        // the postings in ascending route id order
+        long[] byRouteId = new long[postings];
+        for (int i = 0; i < postings; i++) {
+            byRouteId[i] = ((long) routeIds[i] << 32) | i;
+        }
+        Arrays.parallelSort(byRouteId);
+        int routes = 0;
+        for (int i = 0; i < postings; i++) {
+            if (i == 0 || (byRouteId[i] >> 32) != (byRouteId[i - 1] >> 32)) {
+                routes++;
+            }
+        }
+
+        int[] sortedStationIds = Arrays.copyOf(stationIds, postings);
+        Arrays.parallelSort(sortedStationIds);
+        int distinct = 0;
+        for (int i = 0; i < postings; i++) {
+            if (distinct == 0 || sortedStationIds[distinct - 1] != sortedStationIds[i]) {
+                sortedStationIds[distinct++] = sortedStationIds[i];
+            }
+        }
+        if (distinct > maxStations) {
+            throw new IllegalArgumentException(String.format("Upper limit for the total number of stations on all routes exceeded, " +
+                    "%d stations of shard %d out of %d (rule 8)", distinct, shard, shards));
+        }
+        IdDictionary stations = IdDictionary.of(Arrays.copyOf(sortedStationIds, distinct));
+
+        int[] offsets = new int[distinct + 1];
+        for (int i = 0; i < postings; i++) {
+            offsets[stations.ordinalOf(stationIds[i]) + 1]++;
+        }
+        for (int station = 0; station < distinct; station++) {
+            offsets[station + 1] += offsets[station];
+        }
+        // walking the postings in route id order keeps every station's route ids sorted
+        int[] stationRoutes = new int[postings];
+        int[] stationPositions = new int[postings];
+        int[] cursor = Arrays.copyOf(offsets, distinct);
+        for (long packed : byRouteId) {
+            int i = (int) packed;
+            int slot = cursor[stations.ordinalOf(stationIds[i])]++;
+            stationRoutes[slot] = routeIds[i];
+            stationPositions[slot] = positions[i];
+        }
+
+        this.stationIndex = new StationIndex(stations, offsets, stationRoutes, stationPositions);
+        this.routeCount = routes;
+        loadedStationIds = null;
+        loadedRouteIds = null;
+        loadedPositions = null;
+        frozen = true;
+    }
+
+    /**
+     * @return the number of routes found on any station of the shard
+     */
+    @Override
+    public int getTotalNumberOfRoutes() {
+        ensureFrozen();
+        return routeCount;
+    }
+
+    /**
+     * @return the number of stations of the shard
+     */
+    @Override
+    public int getTotalNumberOfStations() {
+        ensureFrozen();
+        return stationIndex.getStationCount();
+    }
+
+    /**
+     * @return whether a direct connection exists, false unless both stations belong to the shard
+     */
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        ensureFrozen();
+        return stationIndex.connects(departure, arrival);
+    }
+
+    @Override
+    public boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        ensureFrozen();
+        return stationIndex.connectsEitherWay(stationId1, stationId2, null);
+    }
+
+    @Override
+    public StationPostings[] postings(int... stationIds) {
+        ensureFrozen();
+        if (stationIds.length == 0) {
+            return NONE;
+        }
+        StationPostings[] postings = new StationPostings[stationIds.length];
+        for (int i = 0; i < stationIds.length; i++) {
+            int station = stationIndex.ordinalOf(stationIds[i]);
+            int start = station < 0 ? 0 : stationIndex.postingsStart(station);
+            int end = station < 0 ? 0 : stationIndex.postingsEnd(station);
+            postings[i] = new StationPostings(stationIds[i], Arrays.copyOfRange(stationIndex.routes(), start, end),
+                    Arrays.copyOfRange(stationIndex.positions(), start, end));
+        }
+        return postings;
+    }
+
+    @Override
+    public void forEachStationFanOut(IntConsumer fanOut) {
+        ensureFrozen();
+        stationIndex.forEachFanOut(fanOut);
+    }
+
+    /**
+     * @return the size of the postings in bytes, excluding the object headers
+     */
+    public long getMemoryFootprint() {
+        ensureFrozen();
+        return stationIndex.getMemoryFootprint();
+    }
+
+    StationIndex stationIndex() {
+        ensureFrozen();
+        return stationIndex;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Route store is frozen, no more routes can be stored");
+        }
+    }
+
+    private void ensureFrozen() {
+        if (!frozen) {
+            freeze();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.jojos.challenge.busroute.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A read only {@link RouteStore} answering out of the shards the stations are split into, see {@link ShardRouteStore}.
+ *
+ * A query asks for the postings of both stations, from a single shard should they belong to the same one, from the two
+ * shards of theirs at the same time otherwise, and merge-joins them, see {@link StationPostings}. So whatever the number
+ * of shards no query involves more than two of them. The router holds no routes, it loads no data file.
+ *
+ * Transfers need all of the routes as a single graph and are not answered.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class ShardRouter implements RouteStore {
+
+    /**
+     * The postings of the stations of a shard, either in process or on another node
+     */
+    @FunctionalInterface
+    public interface Shard {
+        /**
+         * @param stationIds stations of the shard
+         * @return the postings of every station in the order given, none for a station the shard does not know
+         */
+        StationPostings[] postings(int... stationIds);
+    }
+
+    private final List<Shard> shards;
+
+    // asks the shard of the arrival while the calling thread asks the one of the departure
+    private final ExecutorService executor;
+
+    /**
+     * @param shards the shards in shard order, shard {@code i} holding the stations {@link ShardRouteStore#shardOf(int, int)}
+     *               assigns to {@code i}
+     */
+    public ShardRouter(List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("No shards to route the queries to");
+        }
+        this.shards = new ArrayList<>(shards);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "shard-router-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShards() {
+        return shards.size();
+    }
+
+    @Override
+    public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+        StationPostings[] postings = postings(departure, arrival);
+        return StationPostings.connects(postings[0], postings[1], false);
+    }
+
+    @Override
+    public boolean isConnectionEitherWayBetween(int stationId1, int stationId2) {
+        StationPostings[] postings = postings(stationId1, stationId2);
+        return StationPostings.connects(postings[0], postings[1], true);
+    }
+
+    @Override
+    public boolean forEachDirectRoute(int departure, int arrival, DirectRouteConsumer routes) {
+        StationPostings[] postings = postings(departure, arrival);
+        return StationPostings.forEachConnection(postings[0], postings[1], routes);
+    }
+
+    @Override
+    public int getMinimumTransfersBetween(int departure, int arrival, int maxTransfers) {
+        throw new UnsupportedOperationException("Transfers are not answered by a sharded deployment");
+    }
+
+    /**
+     * Stops the threads asking the shards, queries in flight fail
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the postings of the departure and of the arrival
+     */
+    private StationPostings[] postings(int departure, int arrival) {
+        Shard departureShard = shards.get(ShardRouteStore.shardOf(departure, shards.size()));
+        Shard arrivalShard = shards.get(ShardRouteStore.shardOf(arrival, shards.size()));
+        if (departureShard == arrivalShard) {
+            return departureShard.postings(departure, arrival);
+        }
+        CompletableFuture<StationPostings[]> arrivalPostings = CompletableFuture.supplyAsync(() -> arrivalShard.postings(arrival), executor);
+        StationPostings departurePostings = departureShard.postings(departure)[0];
+        try {
+            return new StationPostings[]{departurePostings, arrivalPostings.join()[0]};
+        } catch (CompletionException e) {
+            // the shard failing, rather than the future
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.GrowableIntArray;
+import com.jojos.challenge.busroute.util.IdDictionary;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable station -> (route, position in route) index in primitive arrays.
+ *
+ * For every station the routes it belongs to are kept sorted in ascending route ordinal
+ * along with the position of the station in each route. Asking whether a direct connection
+ * exists becomes an intersection of the two sorted lists of the stations, comparing the positions
+ * on every common route. No allocation takes place while answering.
+ *
+ * The intersection is picked per query out of the fan-out of both stations, see {@link Intersection}: lists of
+ * about the same length are merged, a list {@value #GALLOP_RATIO} or more times shorter than the other is searched
+ * for in it, and two hubs have their route bitmaps and-ed. A hub is a station whose route bitmap takes no more
+ * than half the memory of its postings, the bitmaps being built along with the index.
+ *
+ * Station ids are turned into ordinals through an {@link IdDictionary}, the seed of their bucket and a single slot.
+ *
+ * @author karanikasg@gmail.com.
+ */
+class StationIndex {
+
+    /**
+     * How many times longer a list must be than the other one for the shorter one to be searched for in it
+     */
+    static final int GALLOP_RATIO = 8;
+
+    /**
+     * The fewest routes of a hub whatever the number of routes
+     */
+    static final int MIN_HUB_FAN_OUT = 64;
+
+    // station id <-> ordinal, the ordinal of a station id is its index in the sorted station ids
+    private final IdDictionary stations;
+
+    // station ordinal -> route ordinals in ascending order, along with the position of the station in each route
+    private final int[] offsets;
+    private final int[] routes;
+    private final int[] positions;
+
+    // the stations of at least hubFanOut routes in ascending ordinal order, along with the bitmap of their routes
+    private final int hubFanOut;
+    private final int[] hubs;
+    private final int hubWords;
+    private final long[] hubRoutes;
+
+    // the fixed merge only, as before the intersections were picked per query
+    private volatile boolean adaptive = true;
+    private final LongAdder[] intersections = new LongAdder[Intersection.values().length];
+
+    /**
+     * Creates an index without hubs, e.g. of route ids rather than route ordinals
+     */
+    StationIndex(IdDictionary stations, int[] offsets, int[] routes, int[] positions) {
+        this(stations, offsets, routes, positions, 0);
+    }
+
+    /**
+     * @param routeCount the number of route ordinals, the size of the hub bitmaps
+     */
+    StationIndex(IdDictionary stations, int[] offsets, int[] routes, int[] positions, int routeCount) {
+        this.stations = stations;
+        this.offsets = offsets;
+        this.routes = routes;
+        this.positions = positions;
+        for (int i = 0; i < intersections.length; i++) {
+            intersections[i] = new LongAdder();
+        }
+
+        // a bitmap of routeCount / 8 bytes against the 8 bytes of every posting
+        this.hubFanOut = routeCount == 0 ? Integer.MAX_VALUE : Math.max(MIN_HUB_FAN_OUT, (routeCount + 31) / 32);
+        this.hubWords = (routeCount + 63) >>> 6;
+        GrowableIntArray hubStations = new GrowableIntArray();
+        for (int station = 0; station < stations.size(); station++) {
+            if (offsets[station + 1] - offsets[station] >= hubFanOut) {
+                hubStations.add(station);
+            }
+        }
+        this.hubs = hubStations.toArray();
+        this.hubRoutes = new long[hubs.length * hubWords];
+        for (int hub = 0; hub < hubs.length; hub++) {
+            for (int posting = offsets[hubs[hub]]; posting < offsets[hubs[hub] + 1]; posting++) {
+                hubRoutes[hub * hubWords + (routes[posting] >>> 6)] |= 1L << routes[posting];
+            }
+        }
+    }
+
+    /**
+     * @return the index answering the queries of the store, behind any cache, filter, hot stations or route changes, null
+     * if the store has none
+     */
+    static StationIndex of(RouteStore store) {
+        if (store instanceof CachingRouteStore) {
+            return of(((CachingRouteStore) store).delegate());
+        }
+        if (store instanceof FilteringRouteStore) {
+            return of(((FilteringRouteStore) store).delegate());
+        }
+        if (store instanceof HotStationRouteStore) {
+            return ((HotStationRouteStore) store).delegate().stationIndex();
+        }
+        if (store instanceof DeltaRouteStore) {
+            return ((DeltaRouteStore) store).base().stationIndex();
+        }
+        if (store instanceof CompactRouteStore) {
+            return ((CompactRouteStore) store).stationIndex();
+        }
+        if (store instanceof InMemoryRouteStore) {
+            return ((InMemoryRouteStore) store).stationIndex();
+        }
+        if (store instanceof ShardRouteStore) {
+            return ((ShardRouteStore) store).stationIndex();
+        }
+        return null;
+    }
+
+    /**
+     * Builds the index out of routes given in ascending order. The ordinal of a route is its index in that order.
+     *
+     * @param routeOffsets the stops of route ordinal {@code r} are found in {@code stops[routeOffsets[r]..routeOffsets[r + 1])}
+     * @param stops the station ids of all routes in route order. They are replaced by their station ordinals on return
+     * @return the index
+     */
+    static StationIndex build(int[] routeOffsets, int[] stops) {
+        int routeCount = routeOffsets.length - 1;
+        int totalStops = routeOffsets[routeCount];
+
+        int[] stationIds = Arrays.copyOf(stops, totalStops);
+        Arrays.parallelSort(stationIds);
+        int distinct = 0;
+        for (int i = 0; i < totalStops; i++) {
+            if (distinct == 0 || stationIds[distinct - 1] != stationIds[i]) {
+                stationIds[distinct++] = stationIds[i];
+            }
+        }
+        IdDictionary stations = IdDictionary.of(Arrays.copyOf(stationIds, distinct));
+
+        // swap the ids for ordinals and count the routes of every station
+        Arrays.parallelSetAll(stops, i -> stations.ordinalOf(stops[i]));
+        int[] offsets = new int[distinct + 1];
+        for (int i = 0; i < totalStops; i++) {
+            offsets[stops[i] + 1]++;
+        }
+        for (int station = 0; station < distinct; station++) {
+            offsets[station + 1] += offsets[station];
+        }
+
+        // walking the routes in ascending order keeps every station's route list sorted
+        int[] routes = new int[totalStops];
+        int[] positions = new int[totalStops];
+        int[] cursor = Arrays.copyOf(offsets, distinct);
+        for (int route = 0; route < routeCount; route++) {
+            int start = routeOffsets[route];
+            for (int i = start; i < routeOffsets[route + 1]; i++) {
+                int slot = cursor[stops[i]]++;
+                routes[slot] = route;
+                positions[slot] = i - start;
+            }
+        }
+
+        return new StationIndex(stations, offsets, routes, positions, routeCount);
+    }
+
+    /**
+     * Reports the number of routes of every station in ordinal order
+     */
+    void forEachFanOut(IntConsumer fanOut) {
+        for (int station = 0; station < stations.size(); station++) {
+            fanOut.accept(offsets[station + 1] - offsets[station]);
+        }
+    }
+
+    IdDictionary stations() {
+        return stations;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] routes() {
+        return routes;
+    }
+
+    int[] positions() {
+        return positions;
+    }
+
+    int getStationCount() {
+        return stations.size();
+    }
+
+    /**
+     * @return the ordinal of the station or a negative number if it does not exist
+     */
+    int ordinalOf(int stationId) {
+        return stations.ordinalOf(stationId);
+    }
+
+    int stationIdOf(int station) {
+        return stations.idOf(station);
+    }
+
+    /**
+     * @return the first posting of the station ordinal, see {@link #routeAt(int)} and {@link #positionAt(int)}
+     */
+    int postingsStart(int station) {
+        return offsets[station];
+    }
+
+    int postingsEnd(int station) {
+        return offsets[station + 1];
+    }
+
+    int routeAt(int posting) {
+        return routes[posting];
+    }
+
+    int positionAt(int posting) {
+        return positions[posting];
+    }
+
+    /**
+     * @return true if any route visits the departure before the arrival, or both are the same existing station
+     */
+    boolean connects(int departure, int arrival) {
+        return connects(departure, arrival, null);
+    }
+
+    /**
+     * Same as {@link #connects(int, int)} ignoring the given routes
+     *
+     * @param removedRoutes the route ordinals to ignore, or null to ignore none
+     */
+    boolean connects(int departure, int arrival, RemovedRoutes removedRoutes) {
+        return connects(departure, arrival, removedRoutes, false);
+    }
+
+    /**
+     * Same as {@link #connects(int, int, RemovedRoutes)} whichever of the two stations comes first on the route,
+     * for routes run in both directions
+     */
+    boolean connectsEitherWay(int station1, int station2, RemovedRoutes removedRoutes) {
+        return connects(station1, station2, removedRoutes, true);
+    }
+
+    private boolean connects(int departure, int arrival, RemovedRoutes removedRoutes, boolean eitherWay) {
+        int dep = stations.ordinalOf(departure);
+        int arr = stations.ordinalOf(arrival);
+        if (dep < 0 || arr < 0) {
+            // at least one of the provided stations does not exist in any of the routes
+            return false;
+        }
+        if (dep == arr) {
+            // a station is reachable from itself
+            return removedRoutes == null || isOnAnyRoute(dep, removedRoutes);
+        }
+
+        Intersection intersection = intersectionOf(dep, arr);
+        intersections[intersection.ordinal()].increment();
+        switch (intersection) {
+            case BITMAP:
+                return bitmapConnects(dep, arr, removedRoutes, eitherWay);
+            case GALLOP:
+                return gallopConnects(dep, arr, removedRoutes, eitherWay);
+            default:
+                return mergeConnects(dep, arr, removedRoutes, eitherWay);
+        }
+    }
+
+    /**
+     * @return the intersection suiting the fan-out of both station ordinals
+     */
+    Intersection intersectionOf(int dep, int arr) {
+        if (!adaptive) {
+            return Intersection.MERGE;
+        }
+        int fanOut1 = offsets[dep + 1] - offsets[dep];
+        int fanOut2 = offsets[arr + 1] - offsets[arr];
+        if (fanOut1 >= hubFanOut && fanOut2 >= hubFanOut) {
+            return Intersection.BITMAP;
+        }
+        if (fanOut1 >= GALLOP_RATIO * fanOut2 || fanOut2 >= GALLOP_RATIO * fanOut1) {
+            return Intersection.GALLOP;
+        }
+        return Intersection.MERGE;
+    }
+
+    private boolean mergeConnects(int dep, int arr, RemovedRoutes removedRoutes, boolean eitherWay) {
+        int i = offsets[dep];
+        int iEnd = offsets[dep + 1];
+        int j = offsets[arr];
+        int jEnd = offsets[arr + 1];
+        while (i < iEnd && j < jEnd) {
+            int route1 = routes[i];
+            int route2 = routes[j];
+            if (route1 < route2) {
+                i++;
+            } else if (route1 > route2) {
+                j++;
+            } else {
+                // distinct stations never share a position, any common route connects them either way
+                if ((eitherWay || positions[i] < positions[j]) && (removedRoutes == null || !removedRoutes.contains(route1))) {
+                    return true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches every route of the shorter list in the longer one, each search starting where the last one ended
+     */
+    private boolean gallopConnects(int dep, int arr, RemovedRoutes removedRoutes, boolean eitherWay) {
+        boolean departureShorter = offsets[dep + 1] - offsets[dep] <= offsets[arr + 1] - offsets[arr];
+        int shorter = departureShorter ? dep : arr;
+        int longer = departureShorter ? arr : dep;
+        int j = offsets[longer];
+        int jEnd = offsets[longer + 1];
+        for (int i = offsets[shorter]; i < offsets[shorter + 1] && j < jEnd; i++) {
+            int route = routes[i];
+            j = seek(j, jEnd, route);
+            if (j < jEnd && routes[j] == route) {
+                int departurePosition = departureShorter ? positions[i] : positions[j];
+                int arrivalPosition = departureShorter ? positions[j] : positions[i];
+                if ((eitherWay || departurePosition < arrivalPosition) && (removedRoutes == null || !removedRoutes.contains(route))) {
+                    return true;
+                }
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ands the route bitmaps of two hubs, looking the positions up for the common routes only
+     */
+    private boolean bitmapConnects(int dep, int arr, RemovedRoutes removedRoutes, boolean eitherWay) {
+        int depRoutes = Arrays.binarySearch(hubs, dep) * hubWords;
+        int arrRoutes = Arrays.binarySearch(hubs, arr) * hubWords;
+        int i = offsets[dep];
+        int j = offsets[arr];
+        for (int word = 0; word < hubWords; word++) {
+            long common = hubRoutes[depRoutes + word] & hubRoutes[arrRoutes + word];
+            while (common != 0) {
+                int route = (word << 6) + Long.numberOfTrailingZeros(common);
+                // the common routes come in ascending order, so do their postings
+                i = seek(i, offsets[dep + 1], route);
+                j = seek(j, offsets[arr + 1], route);
+                if ((eitherWay || positions[i] < positions[j]) && (removedRoutes == null || !removedRoutes.contains(route))) {
+                    return true;
+                }
+                common &= common - 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the first posting of {@code from..to} with a route not before the target, {@code to} if there is none
+     */
+    private int seek(int from, int to, int target) {
+        if (from >= to || routes[from] >= target) {
+            return from;
+        }
+        // routes[lo] is before the target, routes[hi] is not, should hi be in range
+        int lo = from;
+        int hi = from + 1;
+        int step = 1;
+        while (hi < to && routes[hi] < target) {
+            lo = hi;
+            step <<= 1;
+            hi = lo + step;
+        }
+        hi = Math.min(hi, to);
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (routes[mid] < target) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return hi;
+    }
+
+    /**
+     * Same merge-join as {@link #connects(int, int, RemovedRoutes)}, going on past the first connecting route so that every
+     * one of them is told along with the number of stops from the departure to the arrival
+     *
+     * @param removedRoutes the route ordinals to ignore, or null to ignore none
+     * @param routeIds the ids of the routes by ordinal
+     * @return true if any route connects the stations
+     */
+    boolean forEachConnection(int departure, int arrival, RemovedRoutes removedRoutes, int[] routeIds, RouteStore.DirectRouteConsumer consumer) {
+        int dep = stations.ordinalOf(departure);
+        int arr = stations.ordinalOf(arrival);
+        if (dep < 0 || arr < 0) {
+            return false;
+        }
+
+        boolean connected = false;
+        if (dep == arr) {
+            // every route of the station connects it to itself
+            for (int posting = offsets[dep]; posting < offsets[dep + 1]; posting++) {
+                if (removedRoutes == null || !removedRoutes.contains(routes[posting])) {
+                    consumer.accept(routeIds[routes[posting]], 0);
+                    connected = true;
+                }
+            }
+            return connected;
+        }
+
+        int i = offsets[dep];
+        int iEnd = offsets[dep + 1];
+        int j = offsets[arr];
+        int jEnd = offsets[arr + 1];
+        while (i < iEnd && j < jEnd) {
+            int route1 = routes[i];
+            int route2 = routes[j];
+            if (route1 < route2) {
+                i++;
+            } else if (route1 > route2) {
+                j++;
+            } else {
+                if (positions[i] < positions[j] && (removedRoutes == null || !removedRoutes.contains(route1))) {
+                    consumer.accept(routeIds[route1], positions[j] - positions[i]);
+                    connected = true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * @return true if the station ordinal is found on any of the routes that are not removed
+     */
+    boolean isOnAnyRoute(int station, RemovedRoutes removedRoutes) {
+        for (int posting = offsets[station]; posting < offsets[station + 1]; posting++) {
+            if (!removedRoutes.contains(routes[posting])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param adaptive false to merge the lists whatever their fan-out
+     */
+    void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @return the number of hubs, see {@link Intersection#BITMAP}
+     */
+    int getHubCount() {
+        return hubs.length;
+    }
+
+    /**
+     * @return the fewest routes of a hub
+     */
+    int getHubFanOut() {
+        return hubFanOut;
+    }
+
+    /**
+     * @return the number of queries answered by the intersection so far
+     */
+    long getIntersections(Intersection intersection) {
+        return intersections[intersection.ordinal()].sum();
+    }
+
+    /**
+     * @return the size of the arrays in bytes, excluding the object headers
+     */
+    long getMemoryFootprint() {
+        return stations.getMemoryFootprint() + ((long) offsets.length + routes.length + positions.length + hubs.length) * Integer.BYTES +
+                (long) hubRoutes.length * Long.BYTES;
+    }
+}
@@ -0,0 +1,119 @@
+package com.jojos.challenge.busroute.service;
+
+/**
+ * The routes a station is found on, in ascending route id order, along with the position of the station in each
+ * of them. It is all a shard tells about a station, see {@link ShardRouteStore}, and all it takes to answer whether
+ * two stations are directly connected wherever their postings come from.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public final class StationPostings {
+
+    private final int stationId;
+    private final int[] routeIds;
+    private final int[] positions;
+
+    /**
+     * @param routeIds the ids of the routes in ascending order
+     * @param positions the position of the station in every route
+     */
+    public StationPostings(int stationId, int[] routeIds, int[] positions) {
+        if (routeIds.length != positions.length) {
+            throw new IllegalArgumentException(String.format("Station %d found on %d routes but at %d positions",
+                    stationId, routeIds.length, positions.length));
+        }
+        this.stationId = stationId;
+        this.routeIds = routeIds;
+        this.positions = positions;
+    }
+
+    public int getStationId() {
+        return stationId;
+    }
+
+    /**
+     * @return the route ids in ascending order, not to be modified
+     */
+    public int[] getRouteIds() {
+        return routeIds;
+    }
+
+    /**
+     * @return the position of the station in every route, not to be modified
+     */
+    public int[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return true if the station is found on any route
+     */
+    public boolean exists() {
+        return routeIds.length > 0;
+    }
+
+    /**
+     * Same merge-join as {@link StationIndex#connects(int, int)}
+     *
+     * @param eitherWay whether the arrival may come first on a route, see {@link RouteStore#isConnectionEitherWayBetween(int, int)}
+     */
+    static boolean connects(StationPostings departure, StationPostings arrival, boolean eitherWay) {
+        if (!departure.exists() || !arrival.exists()) {
+            return false;
+        }
+        if (departure.stationId == arrival.stationId) {
+            return true;
+        }
+        int[] routes1 = departure.routeIds;
+        int[] routes2 = arrival.routeIds;
+        int i = 0;
+        int j = 0;
+        while (i < routes1.length && j < routes2.length) {
+            if (routes1[i] < routes2[j]) {
+                i++;
+            } else if (routes1[i] > routes2[j]) {
+                j++;
+            } else {
+                if (eitherWay || departure.positions[i] < arrival.positions[j]) {
+                    return true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same merge-join as {@link StationIndex#forEachConnection}, telling every connecting route
+     */
+    static boolean forEachConnection(StationPostings departure, StationPostings arrival, RouteStore.DirectRouteConsumer consumer) {
+        boolean connected = false;
+        if (departure.stationId == arrival.stationId) {
+            for (int routeId : departure.routeIds) {
+                consumer.accept(routeId, 0);
+                connected = true;
+            }
+            return connected;
+        }
+        int[] routes1 = departure.routeIds;
+        int[] routes2 = arrival.routeIds;
+        int i = 0;
+        int j = 0;
+        while (i < routes1.length && j < routes2.length) {
+            if (routes1[i] < routes2[j]) {
+                i++;
+            } else if (routes1[i] > routes2[j]) {
+                j++;
+            } else {
+                if (departure.positions[i] < arrival.positions[j]) {
+                    consumer.accept(routes1[i], arrival.positions[j] - departure.positions[i]);
+                    connected = true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return connected;
+    }
+}
@@ -0,0 +1,119 @@
+package com.jojos.challenge.busroute.util;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of ints, compressed in the fashion of roaring bitmaps.
+ *
+ * The 32 bit space is split into chunks of 65536 values sharing the same high 16 bits. Every
+ * non empty chunk keeps its low 16 bits either as a sorted array (sparse chunks) or as a plain
+ * bitmap of 8 KB (dense chunks), whichever is smaller. A membership test is a binary search over
+ * the chunk keys followed by a bit test or a binary search inside the chunk.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class CompressedBitmap {
+
+    private static final int MAX_ARRAY_CARDINALITY = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    // high 16 bits of the values of each chunk, sorted
+    private final char[] keys;
+    // for every chunk exactly one of the two is set
+    private final char[][] arrays;
+    private final long[][] bitmaps;
+    private final int cardinality;
+
+    private CompressedBitmap(char[] keys, char[][] arrays, long[][] bitmaps, int cardinality) {
+        this.keys = keys;
+        this.arrays = arrays;
+        this.bitmaps = bitmaps;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @param values the values of the set, in any order and possibly with duplicates. The array is sorted in place
+     * @param length how many of the values to consider
+     * @return the compressed set
+     */
+    public static CompressedBitmap of(int[] values, int length) {
+        // order the values as unsigned so that chunks come out sorted by their char key
+        for (int i = 0; i < length; i++) {
+            values[i] ^= Integer.MIN_VALUE;
+        }
+        Arrays.sort(values, 0, length);
+        for (int i = 0; i < length; i++) {
+            values[i] ^= Integer.MIN_VALUE;
+        }
+
+        int chunks = 0;
+        for (int i = 0; i < length; i++) {
+            if (i == 0 || (values[i] >>> 16) != (values[i - 1] >>> 16)) {
+                chunks++;
+            }
+        }
+
+        char[] keys = new char[chunks];
+        char[][] arrays = new char[chunks][];
+        long[][] bitmaps = new long[chunks][];
+        int cardinality = 0;
+        int chunk = 0;
+        int start = 0;
+        while (start < length) {
+            char key = (char) (values[start] >>> 16);
+            int end = start;
+            char[] lows = new char[Math.min(length - start, 1 << 16)];
+            int distinct = 0;
+            while (end < length && (values[end] >>> 16) == key) {
+                char low = (char) values[end];
+                if (distinct == 0 || lows[distinct - 1] != low) {
+                    lows[distinct++] = low;
+                }
+                end++;
+            }
+
+            keys[chunk] = key;
+            if (distinct <= MAX_ARRAY_CARDINALITY) {
+                arrays[chunk] = Arrays.copyOf(lows, distinct);
+            } else {
+                long[] bitmap = new long[BITMAP_WORDS];
+                for (int i = 0; i < distinct; i++) {
+                    bitmap[lows[i] >>> 6] |= 1L << lows[i];
+                }
+                bitmaps[chunk] = bitmap;
+            }
+            cardinality += distinct;
+            chunk++;
+            start = end;
+        }
+        return new CompressedBitmap(keys, arrays, bitmaps, cardinality);
+    }
+
+    public boolean contains(int value) {
+        int chunk = Arrays.binarySearch(keys, (char) (value >>> 16));
+        if (chunk < 0) {
+            return false;
+        }
+        char low = (char) value;
+        long[] bitmap = bitmaps[chunk];
+        if (bitmap != null) {
+            return (bitmap[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(arrays[chunk], low) >= 0;
+    }
+
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return the size of the arrays in bytes, excluding the object headers
+     */
+    public long getMemoryFootprint() {
+        long bytes = (long) keys.length * Character.BYTES;
+        for (int chunk = 0; chunk < keys.length; chunk++) {
+            bytes += bitmaps[chunk] != null ? (long) BITMAP_WORDS * Long.BYTES : (long) arrays[chunk].length * Character.BYTES;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,71 @@
+package com.jojos.challenge.busroute.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A set of primitive ints that many threads add to at the same time, without locking.
+ *
+ * Same open addressing with linear probing as {@link IntOpenHashSet}, a free slot being claimed with a
+ * compare and set. The table never grows, it is sized once for the most elements expected, so it is meant
+ * for a bounded number of elements such as the route ids or the station ids of a bus route data file.
+ * Elements can't be removed.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class ConcurrentIntSet {
+
+    // the key marking an empty slot, whether it is a member of the set is tracked separately
+    private static final int FREE = 0;
+
+    private final AtomicIntegerArray keys;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean containsFree = new AtomicBoolean();
+
+    /**
+     * @param maxSize the most elements the set is expected to hold, the table is twice as large
+     */
+    public ConcurrentIntSet(int maxSize) {
+        int capacity = Integer.highestOneBit(Math.max(maxSize, 4) * 2 - 1) << 1;
+        keys = new AtomicIntegerArray(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return true if the value was not already contained
+     * @throws IllegalStateException should the table be full
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            if (!containsFree.compareAndSet(false, true)) {
+                return false;
+            }
+            size.incrementAndGet();
+            return true;
+        }
+        int slot = IntOpenHashSet.mix(value) & mask;
+        for (int probes = 0; probes <= mask; ) {
+            int key = keys.get(slot);
+            if (key == value) {
+                return false;
+            }
+            if (key == FREE) {
+                if (keys.compareAndSet(slot, FREE, value)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                // another thread claimed the slot first, it may have added the same value
+                continue;
+            }
+            slot = (slot + 1) & mask;
+            probes++;
+        }
+        throw new IllegalStateException("No room for more than " + keys.length() + " elements");
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
@@ -0,0 +1,94 @@
+package com.jojos.challenge.busroute.util;
+
+import java.util.Arrays;
+
+/**
+ * A minimal append-only list of primitive ints.
+ * Used while loading the route information so that no {@link Integer} boxing takes place.
+ *
+ * Not thread safe, callers must synchronize externally.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class GrowableIntArray {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] elements;
+    private int size;
+
+    public GrowableIntArray() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public GrowableIntArray(int initialCapacity) {
+        this.elements = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(int value) {
+        ensureCapacity(size + 1);
+        elements[size++] = value;
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(values, offset, elements, size, length);
+        size += length;
+    }
+
+    /**
+     * Grows the array by the given length without setting the new elements. They are expected to be written
+     * directly into {@link #elements()}, possibly by several threads each one writing a disjoint range.
+     *
+     * @param length the number of elements to append
+     * @return the index of the first of the appended elements
+     */
+    public int extend(int length) {
+        ensureCapacity(size + length);
+        int start = size;
+        size += length;
+        return start;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the backing array, which may be larger than {@link #size()}. No copy is made.
+     */
+    public int[] elements() {
+        return elements;
+    }
+
+    /**
+     * @return a copy of the elements trimmed to {@link #size()}
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            long newCapacity = Math.max((long) elements.length << 1, minCapacity);
+            if (newCapacity > Integer.MAX_VALUE - 8) {
+                newCapacity = Integer.MAX_VALUE - 8;
+                if (minCapacity > newCapacity) {
+                    throw new OutOfMemoryError("Required array size too large: " + minCapacity);
+                }
+            }
+            elements = Arrays.copyOf(elements, (int) newCapacity);
+        }
+    }
+}
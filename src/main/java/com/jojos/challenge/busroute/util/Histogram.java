@@ -0,0 +1,164 @@
+package com.jojos.challenge.busroute.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of non negative long values, in the fashion of HDR histograms.
+ *
+ * Values below 32 are counted exactly. Above that every power of 2 is split into 32 buckets of equal width,
+ * so a value is reported within about 3% of what was recorded whatever its magnitude, from nanoseconds to
+ * hours. The buckets are fixed, recording is a bucket index computation and a few atomic additions, no lock
+ * is taken and nothing is allocated once the thread has recorded a value.
+ *
+ * Threads recording the same values at the same time would all increment the same bucket and race for the
+ * same max, so the buckets and the max are striped: every thread records into one of up to {@link #MAX_STRIPES}
+ * stripes, picked by its id and created the first time it is used, and the stripes are merged when read.
+ * Threads sharing a stripe still contend, the fewer the more stripes there are for the number of cores.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // one group of sub buckets for the exact values and one for every power of 2 from 2^5 to 2^62
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    static final int MAX_STRIPES = 16;
+    // a power of 2, twice the cores so that threads seldom share a stripe, MAX_STRIPES at most
+    private static final int STRIPES = Math.min(MAX_STRIPES,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+
+    /**
+     * The buckets and the max of the values recorded by the threads of one stripe
+     */
+    private static final class Stripe {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+    }
+
+    // null until a thread of the stripe records a value
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPES);
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        Stripe stripe = stripe();
+        stripe.counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+        long currentMax = stripe.max.get();
+        while (value > currentMax && !stripe.max.compareAndSet(currentMax, value)) {
+            currentMax = stripe.max.get();
+        }
+    }
+
+    /**
+     * @return the number of values recorded so far
+     */
+    public long getCount() {
+        long count = 0;
+        for (long bucketCount : counts()) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    public long getMax() {
+        long max = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                max = Math.max(max, stripe.max.get());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the mean of the values recorded so far, 0 if none
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value equivalent to the value at the percentile, never more than the max. 0 if no value is recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = counts();
+        long count = 0;
+        for (long bucketCount : snapshot) {
+            count += bucketCount;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(bucket), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return the count of every bucket, summed over the stripes
+     */
+    private long[] counts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                    counts[bucket] += stripe.counts.get(bucket);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the stripe of the current thread, created should it be the first of the stripe to record a value
+     */
+    private Stripe stripe() {
+        long id = Thread.currentThread().getId();
+        // threads of a pool often have consecutive ids, spread them anyway
+        int index = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe());
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,225 @@
+package com.jojos.challenge.busroute.util;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable dictionary of arbitrary 32 bit ids to dense ordinals, {@code 0..size - 1}, so that everything
+ * kept per id can live in plain arrays indexed by the ordinal.
+ *
+ * The ordinal of an id is its index in the sorted ids, which are kept as the reverse mapping. The ids are
+ * looked up in a table hashing every one of them to a slot of its own, hash and displace: the ids are first
+ * hashed to buckets of about 4, then every bucket is given the first seed that hashes all of its ids, along
+ * with the seed, to slots free so far, the biggest buckets first. A lookup reads the seed of the bucket of the
+ * id, then the single slot the id hashes to with it, holding (id, ordinal + 1): an empty slot holds ordinal 0,
+ * so any id can be a key. Finding an id and telling it is missing take the same two reads, most queries being
+ * of ids found on no route.
+ *
+ * The table is a single int array: the number of buckets, their seeds of 16 bits two to an int, then the slots
+ * as pairs of ints. There is the smallest power of 2 of buckets no fewer than a quarter of the ids, and of slots
+ * keeping them no more than 7/8 full, so the table takes 10 to 20 bytes per id on top of the 4 of the sorted ids,
+ * which alone would answer by a binary search of about 20 dependent reads for a million ids. The seeds take half
+ * a byte to a byte per id, so that they mostly stay cached.
+ *
+ * The table is meant to be exported along with the ids, see {@link #table()}, and looked up as it is out of
+ * any int buffer, e.g. a memory mapped snapshot, see {@link #ordinalOf(IntBuffer, int)}.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public final class IdDictionary {
+
+    // Fibonacci hashing of the ids to their bucket, the top bits of the product
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    // the seeds tried for a bucket before the slots are doubled, 16 bits each
+    private static final int MAX_SEED = 1 << 16;
+
+    // sorted distinct ids, the index of an id is its ordinal
+    private final int[] ids;
+
+    // the number of buckets, their seeds two to an int, then id, ordinal + 1 pairs, the ordinal of an empty slot is 0
+    private final int[] table;
+
+    private IdDictionary(int[] ids, int[] table) {
+        this.ids = ids;
+        this.table = table;
+    }
+
+    /**
+     * @param sortedIds distinct ids in ascending order, kept by the dictionary
+     */
+    public static IdDictionary of(int[] sortedIds) {
+        int buckets = ceilingPowerOfTwo(Math.max(2, (sortedIds.length + 3) / 4));
+        int slots = ceilingPowerOfTwo(Math.max(2, (int) ((sortedIds.length * 8L + 6) / 7)));
+        int[] table;
+        while ((table = table(sortedIds, buckets, slots)) == null) {
+            slots <<= 1;
+        }
+        return new IdDictionary(sortedIds, table);
+    }
+
+    /**
+     * Restores a dictionary out of the arrays previously exported by one, without hashing the ids again
+     *
+     * @param sortedIds see {@link #ids()}
+     * @param table see {@link #table()}
+     */
+    public static IdDictionary of(int[] sortedIds, int[] table) {
+        int buckets = table.length == 0 ? 0 : table[0];
+        long slots = ((long) table.length - 1 - (buckets >>> 1)) / 2;
+        if (buckets < 2 || Integer.bitCount(buckets) != 1 || Long.bitCount(slots) != 1 ||
+                1 + (buckets >>> 1) + slots * 2 != table.length || sortedIds.length > slots) {
+            throw new IllegalArgumentException(String.format("Not the table of %d ids, %d ints long", sortedIds.length, table.length));
+        }
+        return new IdDictionary(sortedIds, table);
+    }
+
+    /**
+     * @return the ordinal of the id or -1 if it is not in the dictionary
+     */
+    public int ordinalOf(int id) {
+        int buckets = table[0];
+        int bucket = bucketOf(id, buckets);
+        int seed = (table[1 + (bucket >>> 1)] >>> ((bucket & 1) << 4)) & 0xFFFF;
+        int slot = 1 + (buckets >>> 1) + slotOf(id, seed, ((table.length - 1 - (buckets >>> 1)) >>> 1) - 1) * 2;
+        return table[slot] == id ? table[slot + 1] - 1 : -1;
+    }
+
+    /**
+     * Same as {@link #ordinalOf(int)}, looking the id up in a table exported by a dictionary
+     *
+     * @param table the ints of {@link #table()}, starting at index 0
+     */
+    public static int ordinalOf(IntBuffer table, int id) {
+        int buckets = table.get(0);
+        int bucket = bucketOf(id, buckets);
+        int seed = (table.get(1 + (bucket >>> 1)) >>> ((bucket & 1) << 4)) & 0xFFFF;
+        int slot = 1 + (buckets >>> 1) + slotOf(id, seed, ((table.limit() - 1 - (buckets >>> 1)) >>> 1) - 1) * 2;
+        return table.get(slot) == id ? table.get(slot + 1) - 1 : -1;
+    }
+
+    public int idOf(int ordinal) {
+        return ids[ordinal];
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the ids in ordinal order, not to be modified
+     */
+    public int[] ids() {
+        return ids;
+    }
+
+    /**
+     * @return the lookup table, not to be modified
+     */
+    public int[] table() {
+        return table;
+    }
+
+    /**
+     * @return the size of the arrays in bytes, excluding the object headers
+     */
+    public long getMemoryFootprint() {
+        return ((long) ids.length + table.length) * Integer.BYTES;
+    }
+
+    /**
+     * @return the table of the ids, null should a bucket find no seed hashing its ids to free slots
+     */
+    private static int[] table(int[] ids, int buckets, int slots) {
+        int[] table = new int[1 + (buckets >>> 1) + slots * 2];
+        table[0] = buckets;
+        int mask = slots - 1;
+
+        // the ordinals of the ids by bucket, the ones of bucket b from bucketStarts[b] to bucketStarts[b + 1]
+        int[] bucketStarts = new int[buckets + 1];
+        for (int id : ids) {
+            bucketStarts[bucketOf(id, buckets) + 1]++;
+        }
+        int maxSize = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            maxSize = Math.max(maxSize, bucketStarts[bucket + 1]);
+            bucketStarts[bucket + 1] += bucketStarts[bucket];
+        }
+        int[] members = new int[ids.length];
+        int[] next = Arrays.copyOf(bucketStarts, buckets);
+        for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+            members[next[bucketOf(ids[ordinal], buckets)]++] = ordinal;
+        }
+
+        // the buckets by size, the biggest placed first while most slots are free
+        int[] sizeStarts = new int[maxSize + 2];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            sizeStarts[maxSize - (bucketStarts[bucket + 1] - bucketStarts[bucket]) + 1]++;
+        }
+        for (int size = 0; size <= maxSize; size++) {
+            sizeStarts[size + 1] += sizeStarts[size];
+        }
+        int[] order = new int[buckets];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            order[sizeStarts[maxSize - (bucketStarts[bucket + 1] - bucketStarts[bucket])]++] = bucket;
+        }
+
+        for (int bucket : order) {
+            int start = bucketStarts[bucket];
+            int end = bucketStarts[bucket + 1];
+            if (start == end) {
+                // left at seed 0, the slot any id of the bucket hashes to holds another id or none
+                break;
+            }
+            int seed = 0;
+            while (!place(ids, members, start, end, seed, table, buckets >>> 1, mask)) {
+                if (++seed == MAX_SEED) {
+                    return null;
+                }
+            }
+            table[1 + (bucket >>> 1)] |= seed << ((bucket & 1) << 4);
+        }
+        return table;
+    }
+
+    /**
+     * Places the ids of a bucket in the slots they hash to with the seed, all of them or none
+     *
+     * @return false if a slot is taken, by another bucket or by an id of the same bucket
+     */
+    private static boolean place(int[] ids, int[] members, int start, int end, int seed, int[] table, int seedInts, int mask) {
+        for (int member = start; member < end; member++) {
+            int ordinal = members[member];
+            int slot = 1 + seedInts + slotOf(ids[ordinal], seed, mask) * 2;
+            if (table[slot + 1] != 0) {
+                for (int placed = start; placed < member; placed++) {
+                    int taken = 1 + seedInts + slotOf(ids[members[placed]], seed, mask) * 2;
+                    table[taken] = 0;
+                    table[taken + 1] = 0;
+                }
+                return false;
+            }
+            table[slot] = ids[ordinal];
+            table[slot + 1] = ordinal + 1;
+        }
+        return true;
+    }
+
+    private static int bucketOf(int id, int buckets) {
+        return (int) ((id * GOLDEN_RATIO) >>> (Long.SIZE - Integer.numberOfTrailingZeros(buckets)));
+    }
+
+    /**
+     * The finalizer of MurmurHash3 over the seed and the id, every seed hashing the ids of a bucket anew
+     */
+    private static int slotOf(int id, int seed, int mask) {
+        long hash = ((long) seed << 32) | (id & 0xFFFFFFFFL);
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (hash ^ (hash >>> 33)) & mask;
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+}
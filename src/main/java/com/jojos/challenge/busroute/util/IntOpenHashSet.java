@@ -0,0 +1,107 @@
+package com.jojos.challenge.busroute.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive ints using open addressing with linear probing, no boxing takes place.
+ *
+ * Not thread safe, callers must synchronize externally.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class IntOpenHashSet {
+
+    // the key marking an empty slot, whether it is a member of the set is tracked separately
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private int mask;
+    private int size;
+    private boolean containsFree;
+
+    /**
+     * @param expectedSize the number of elements the set can hold without resizing
+     */
+    public IntOpenHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        keys = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return true if the value was not already contained
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            if (containsFree) {
+                return false;
+            }
+            containsFree = true;
+            size++;
+            return true;
+        }
+        int slot = slotOf(value);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value == FREE) {
+            return containsFree;
+        }
+        int slot = slotOf(value);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        containsFree = false;
+        size = 0;
+    }
+
+    private int slotOf(int value) {
+        return mix(value) & mask;
+    }
+
+    /**
+     * Spreads the bits of the value so that sequential ids do not end up in clusters
+     */
+    static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        keys = new int[capacity];
+        mask = capacity - 1;
+        for (int key : oldKeys) {
+            if (key != FREE) {
+                int slot = slotOf(key);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
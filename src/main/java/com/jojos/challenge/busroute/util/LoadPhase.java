@@ -0,0 +1,49 @@
+package com.jojos.challenge.busroute.util;
+
+/**
+ * The phases of loading the bus route data into a route store, timed separately
+ *
+ * @author karanikasg@gmail.com.
+ */
+public enum LoadPhase {
+
+    /**
+     * Reading the data file into route buffers, checking every rule but the minimum number of routes on the way
+     */
+    PARSE,
+    /**
+     * Checking the rules that can only be told once the whole file is read, i.e. no fewer routes than announced
+     */
+    VALIDATE,
+    /**
+     * Storing the routes and building the station index
+     */
+    INDEX,
+    /**
+     * Precomputing the reachable stations of the hot stations
+     */
+    HOT_STATIONS,
+    /**
+     * Building the filter rejecting the pairs of stations that share no route
+     */
+    FILTER,
+    /**
+     * Writing the binary snapshot of the loaded routes
+     */
+    SNAPSHOT_WRITE,
+    /**
+     * Restoring the routes out of the binary snapshot, instead of parsing, validating and indexing them
+     */
+    SNAPSHOT_RESTORE;
+
+    /**
+     * Told about every phase once it completes
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        Listener NONE = (phase, nanos) -> {};
+
+        void completed(LoadPhase phase, long nanos);
+    }
+}
@@ -0,0 +1,109 @@
+package com.jojos.challenge.busroute.util;
+
+/**
+ * An immutable array of non negative ints, every one of them stored with as few bits as the largest one needs.
+ * The bits are packed into longs one value after the other, a value may span two of them. Any value is read
+ * back in constant time, see {@link #get(int)}.
+ *
+ * The static methods read and write single values of any width at any bit offset of a {@code long[]}, for
+ * layouts of varying widths of their own.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public final class PackedIntArray {
+
+    private final long[] bits;
+    private final int width;
+    private final int size;
+
+    private PackedIntArray(long[] bits, int width, int size) {
+        this.bits = bits;
+        this.width = width;
+        this.size = size;
+    }
+
+    /**
+     * @param values non negative ints
+     */
+    public static PackedIntArray of(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Negative value " + value + " cannot be packed");
+            }
+            max = Math.max(max, value);
+        }
+        int width = bitsRequired(max);
+        long[] bits = new long[wordsFor((long) values.length * width)];
+        for (int i = 0; i < values.length; i++) {
+            write(bits, (long) i * width, width, values[i]);
+        }
+        return new PackedIntArray(bits, width, values.length);
+    }
+
+    public int get(int index) {
+        return read(bits, (long) index * width, width);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the bits of every value
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the size of the packed bits in bytes, excluding the object headers
+     */
+    public long getMemoryFootprint() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    /**
+     * @return the bits the non negative value needs, 0 for 0
+     */
+    public static int bitsRequired(int value) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * @return the longs holding the given number of bits, one more so that a value is always read out of two longs
+     */
+    public static int wordsFor(long bitCount) {
+        long words = (bitCount >>> 6) + 1;
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("%d bits are too many to pack", bitCount));
+        }
+        return (int) words;
+    }
+
+    /**
+     * @return the non negative value of {@code width} bits, at most 31, starting at bit {@code bit}
+     */
+    public static int read(long[] bits, long bit, int width) {
+        int word = (int) (bit >>> 6);
+        int shift = (int) bit & 63;
+        long value = bits[word] >>> shift;
+        if (shift + width > Long.SIZE) {
+            value |= bits[word + 1] << (Long.SIZE - shift);
+        }
+        return (int) (value & ((1L << width) - 1));
+    }
+
+    /**
+     * Writes the low {@code width} bits of the value starting at bit {@code bit}, the bits must still be clear
+     */
+    public static void write(long[] bits, long bit, int width, int value) {
+        long masked = value & ((1L << width) - 1);
+        int word = (int) (bit >>> 6);
+        int shift = (int) bit & 63;
+        bits[word] |= masked << shift;
+        if (shift + width > Long.SIZE) {
+            bits[word + 1] |= masked >>> (Long.SIZE - shift);
+        }
+    }
+}
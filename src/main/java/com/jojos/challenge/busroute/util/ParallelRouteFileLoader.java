@@ -0,0 +1,384 @@
+package com.jojos.challenge.busroute.util;
+
+import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * Loads the bus route data file using several threads.
+ *
+ * The header is parsed first, then the rest of the memory mapped file is cut at line boundaries into
+ * byte ranges of about the same size. Every range is parsed by its own thread into its own
+ * {@link RouteBuffer}. Lines are numbered relatively to their range until the number of lines of
+ * every range is known.
+ *
+ * The rules spanning the whole file are checked as the routes are parsed by a {@link RouteFileValidator}
+ * shared by the threads, the first violation stopping all of them. Only then is the violation located:
+ * the offending line is found by counting the lines of the file up to it. Once all ranges are parsed
+ * the buffers are handed over to the route store at once, see {@link RouteStore#storeRoutes(List)}.
+ *
+ * Should the store keep some of the stations only, the buffers drop the others as the ranges are parsed,
+ * see {@link RouteStore#stationFilter()}. The distinct stations of all routes (rule 8) are then left for
+ * the store to check against its own, no set of the stations of the whole file being kept.
+ *
+ * @author karanikasg@gmail.com.
+ */
+class ParallelRouteFileLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelRouteFileLoader.class);
+
+    // a range is mapped at once, so it can't be larger than what a MappedByteBuffer can hold
+    private static final long MAX_RANGE_SIZE = 1L << 30;
+
+    private final Path path;
+    private final int threads;
+    private final ThreadFactory threadFactory;
+    private final LoadPhase.Listener listener;
+    private final RouteLimits limits;
+
+    ParallelRouteFileLoader(Path path, int threads) {
+        this(path, threads, platformThreads(), LoadPhase.Listener.NONE, RouteLimits.DEFAULT);
+    }
+
+    /**
+     * @param threadFactory creates the threads parsing the ranges, one per range
+     */
+    ParallelRouteFileLoader(Path path, int threads, ThreadFactory threadFactory, LoadPhase.Listener listener, RouteLimits limits) {
+        this.path = path;
+        this.threads = Math.max(threads, 1);
+        this.threadFactory = threadFactory;
+        this.listener = listener;
+        this.limits = limits;
+    }
+
+    /**
+     * @return a factory of daemon platform threads named route-loader-N
+     */
+    static ThreadFactory platformThreads() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "route-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    RouteStore load(RouteStoreType storeType) throws IOException {
+        return load(storeType.newRouteStore());
+    }
+
+    /**
+     * @param routeStore the empty store to load the routes into
+     * @return the same store, frozen
+     */
+    RouteStore load(RouteStore routeStore) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = System.nanoTime();
+
+            // rule 1 & 2
+            long bodyStart = nextLineStart(channel, 0, size);
+            int routeCount = parseHeader(channel, bodyStart);
+
+            long[] boundaries = splitAtLines(channel, bodyStart, size);
+            log.info("Parsing {} bytes of {} in {} ranges using {} threads", size, path, boundaries.length - 1, threads);
+            IntPredicate stationFilter = routeStore.stationFilter();
+            // a station takes at least two bytes, one digit and a separator
+            RouteFileValidator validator = new RouteFileValidator(routeCount, stationFilter == null ? (size - bodyStart) / 2 : 0,
+                    limits.getMaxStations());
+            List<RouteBuffer> buffers = parse(channel, boundaries, validator, stationFilter);
+            start = completed(LoadPhase.PARSE, start);
+
+            // rule 3, more lines than routes are found while parsing
+            if (validator.getRouteCount() < routeCount) {
+                throw new IllegalArgumentException(String.format("The number of lines differs, expected %d bus routes but found %d (rule 3)",
+                        routeCount, validator.getRouteCount()));
+            }
+            start = completed(LoadPhase.VALIDATE, start);
+
+            routeStore.storeRoutes(buffers);
+            routeStore.freeze();
+            completed(LoadPhase.INDEX, start);
+            return routeStore;
+        }
+    }
+
+    /**
+     * @return the end of the phase, i.e. the start of the next one
+     */
+    private long completed(LoadPhase phase, long start) {
+        long end = System.nanoTime();
+        listener.completed(phase, end - start);
+        return end;
+    }
+
+    private int parseHeader(FileChannel channel, long bodyStart) throws IOException {
+        int[] routeCount = new int[1];
+        RouteFileParser parser = new RouteFileParser(new RouteFileParser.RouteSink() {
+            @Override
+            public void header(int line, int count) {
+                // rule 2
+                if (count > limits.getMaxBusRoutes()) {
+                    throw new RouteFileException(line, 2, String.format("Number of bus routes %d larger than expected %d", count, limits.getMaxBusRoutes()));
+                }
+                routeCount[0] = count;
+            }
+
+            @Override
+            public void route(int line, int routeId, int[] stationIds, int count) {
+            }
+        }, 1, true, limits.getMaxStationsPerRoute());
+        parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(bodyStart, MAX_RANGE_SIZE)));
+        parser.finish();
+        return routeCount[0];
+    }
+
+    /**
+     * @return the boundaries of the ranges, range i is found in [boundaries[i], boundaries[i + 1])
+     */
+    private long[] splitAtLines(FileChannel channel, long bodyStart, long size) throws IOException {
+        long bodySize = size - bodyStart;
+        int ranges = (int) Math.max(threads, (bodySize + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE);
+        long[] boundaries = new long[ranges + 1];
+        boundaries[0] = bodyStart;
+        for (int i = 1; i < ranges; i++) {
+            long target = bodyStart + bodySize * i / ranges;
+            // the byte before a line start is a new line, so look for the first new line from there on
+            boundaries[i] = Math.max(boundaries[i - 1], nextLineStart(channel, Math.max(target - 1, bodyStart), size));
+        }
+        boundaries[ranges] = size;
+        for (int i = 0; i < ranges; i++) {
+            if (boundaries[i + 1] - boundaries[i] > MAX_RANGE_SIZE) {
+                throw new IllegalArgumentException("Lines of the bus route data file are too long to be split in ranges");
+            }
+        }
+        return boundaries;
+    }
+
+    /**
+     * @param stationFilter the stations the buffers keep, null for all of them
+     */
+    private List<RouteBuffer> parse(FileChannel channel, long[] boundaries, RouteFileValidator validator,
+                                    IntPredicate stationFilter) throws IOException {
+        int ranges = boundaries.length - 1;
+        // the number of lines found in every range
+        int[] lines = new int[ranges];
+        // kept apart from the futures, so that the routes of an aborted range can be searched as well
+        RouteBuffer[] parsed = new RouteBuffer[ranges];
+
+        List<Callable<RouteBuffer>> tasks = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; i++) {
+            int range = i;
+            parsed[range] = new RouteBuffer(stationFilter);
+            tasks.add(() -> {
+                RouteBuffer buffer = parsed[range];
+                RouteFileParser parser = new RouteFileParser((line, routeId, stationIds, count) -> {
+                    int rule = validator.check(routeId, stationIds, count);
+                    if (rule == RouteFileValidator.ABORTED) {
+                        throw new CancellationException();
+                    }
+                    if (rule != RouteFileValidator.VALID) {
+                        RouteFileException violation = new RouteFileException(line, rule, validator.describe(rule, routeId));
+                        validator.fail(range, routeId, violation);
+                        throw violation;
+                    }
+                    buffer.route(line, routeId, stationIds, count);
+                }, 0, false, limits.getMaxStationsPerRoute());
+                try {
+                    long length = boundaries[range + 1] - boundaries[range];
+                    if (length > 0) {
+                        parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, boundaries[range], length));
+                    }
+                    parser.finish();
+                } catch (RouteFileException e) {
+                    validator.fail(range, 0, e);
+                    throw e;
+                } catch (RuntimeException | IOException e) {
+                    validator.abort();
+                    throw e;
+                }
+                lines[range] = parser.getLine();
+                return buffer;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, ranges), threadFactory);
+        try {
+            List<Future<RouteBuffer>> futures = executor.invokeAll(tasks);
+            RouteFileValidator.Violation violation = validator.getViolation();
+            if (violation != null) {
+                throw located(channel, boundaries, parsed, validator, violation);
+            }
+            List<RouteBuffer> buffers = new ArrayList<>(ranges);
+            RuntimeException failure = null;
+            // the header is line 1, the first range starts at line 2
+            int firstLine = 2;
+            for (int range = 0; range < ranges; range++) {
+                try {
+                    RouteBuffer buffer = futures.get(range).get();
+                    buffer.setFirstLine(firstLine);
+                    buffers.add(buffer);
+                } catch (ExecutionException e) {
+                    // the ranges stopped by the failure of another one tell nothing
+                    if (failure == null || failure instanceof CancellationException) {
+                        failure = relocated(e.getCause());
+                    }
+                }
+                firstLine += lines[range];
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return buffers;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading " + path, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Numbers the line of the violation within the whole file. The lines of the ranges preceding the one the violation
+     * was found in are counted, as those ranges may have been aborted before their end.
+     *
+     * Should the violation span lines, the line reported is the one a sequential pass would stop at: the first route
+     * past the number announced in the header (rule 3), or the later of the two routes sharing an id (rule 5).
+     */
+    private static RouteFileException located(FileChannel channel, long[] boundaries, RouteBuffer[] parsed,
+                                              RouteFileValidator validator, RouteFileValidator.Violation violation) throws IOException {
+        RouteFileException exception = violation.getException();
+        switch (exception.getRule()) {
+            case RouteFileValidator.TOO_MANY_ROUTES:
+                return exception.at(lineOfRoute(channel, boundaries[0], boundaries[boundaries.length - 1], validator.getExpectedRoutes() + 1));
+            case RouteFileValidator.DUPLICATE_ROUTE:
+                int routeId = violation.getRouteId();
+                long first = Long.MAX_VALUE;
+                for (int range = 0; range < parsed.length; range++) {
+                    for (int route = 0; route < parsed[range].size(); route++) {
+                        if (parsed[range].getRouteId(route) == routeId) {
+                            first = Math.min(first, ((long) range << 32) | parsed[range].getLine(route));
+                        }
+                    }
+                }
+                long found = ((long) violation.getRange() << 32) | exception.getLine();
+                // the route id checked first may well be the later one of the two in the file
+                long later = Math.max(first == Long.MAX_VALUE ? found : first, found);
+                return exception.at(firstLineOf(channel, boundaries, (int) (later >>> 32)) + (int) later);
+            default:
+                return exception.shiftedBy(firstLineOf(channel, boundaries, violation.getRange()));
+        }
+    }
+
+    /**
+     * @return the number of the first line of the range
+     */
+    private static int firstLineOf(FileChannel channel, long[] boundaries, int range) throws IOException {
+        int[] lines = new int[1];
+        scan(channel, boundaries[0], boundaries[range], b -> {
+            if (b == '\n') {
+                lines[0]++;
+            }
+            return true;
+        });
+        // the header is line 1
+        return 2 + lines[0];
+    }
+
+    /**
+     * @param route the number of the route in file order, starting at 1
+     * @return the number of the line the route is found in, empty lines not being routes
+     */
+    private static int lineOfRoute(FileChannel channel, long bodyStart, long size, int route) throws IOException {
+        // the line being scanned, whether it holds anything but whitespace and the number of such lines so far
+        int[] state = {2, 0, 0};
+        scan(channel, bodyStart, size, b -> {
+            if (b == '\n') {
+                state[0]++;
+                state[1] = 0;
+            } else if (state[1] == 0 && b != ' ' && b != '\t' && b != '\r' && b != '\f' && b != 0x0B) {
+                state[1] = 1;
+                if (++state[2] == route) {
+                    return false;
+                }
+            }
+            return true;
+        });
+        return state[0];
+    }
+
+    @FunctionalInterface
+    private interface ByteVisitor {
+        /**
+         * @return false to stop the scan
+         */
+        boolean visit(byte b);
+    }
+
+    private static void scan(FileChannel channel, long from, long to, ByteVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (long position = from; position < to; ) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return;
+            }
+            for (int i = 0; i < read; i++) {
+                if (!visitor.visit(buffer.get(i))) {
+                    return;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private static RuntimeException relocated(Throwable cause) {
+        if (cause instanceof IOException) {
+            return new UncheckedIOException((IOException) cause);
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+    /**
+     * @return the position right after the first new line found from the given position on, or the size if none
+     */
+    static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
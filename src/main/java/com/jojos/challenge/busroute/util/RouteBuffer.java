@@ -0,0 +1,117 @@
+package com.jojos.challenge.busroute.util;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Routes parsed out of a chunk of the bus route data file, kept in primitive arrays.
+ *
+ * Every loader thread fills its own buffer, the buffers are merged into the route store once parsed.
+ * A buffer may keep some of the stations only, those of the store loading the file, along with their
+ * position in the route, see {@link com.jojos.challenge.busroute.service.RouteStore#stationFilter()}.
+ * Not thread safe.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class RouteBuffer implements RouteFileParser.RouteSink {
+
+    private final GrowableIntArray routeIds = new GrowableIntArray();
+    private final GrowableIntArray lines = new GrowableIntArray();
+    // the stations of route i are found in [offsets[i], offsets[i + 1])
+    private final GrowableIntArray offsets = new GrowableIntArray();
+    private final GrowableIntArray stationIds = new GrowableIntArray(1 << 16);
+
+    // null if all stations are kept, otherwise the stations kept and their positions in the route
+    private final IntPredicate stationFilter;
+    private final GrowableIntArray positions;
+
+    // lines are numbered by the parser relatively to the chunk, starting from 0
+    private int firstLine;
+
+    public RouteBuffer() {
+        this(null);
+    }
+
+    /**
+     * @param stationFilter the stations of the routes to keep, null for all of them
+     */
+    public RouteBuffer(IntPredicate stationFilter) {
+        this.stationFilter = stationFilter;
+        this.positions = stationFilter == null ? null : new GrowableIntArray(1 << 10);
+        offsets.add(0);
+    }
+
+    @Override
+    public void route(int line, int routeId, int[] stationIds, int count) {
+        routeIds.add(routeId);
+        lines.add(line);
+        if (stationFilter == null) {
+            this.stationIds.addAll(stationIds, 0, count);
+        } else {
+            for (int position = 0; position < count; position++) {
+                if (stationFilter.test(stationIds[position])) {
+                    this.stationIds.add(stationIds[position]);
+                    positions.add(position);
+                }
+            }
+        }
+        offsets.add(this.stationIds.size());
+    }
+
+    /**
+     * @return the number of routes in the buffer
+     */
+    public int size() {
+        return routeIds.size();
+    }
+
+    public int getRouteId(int route) {
+        return routeIds.get(route);
+    }
+
+    /**
+     * @param firstLine the number of the first line of the chunk the routes were parsed out of
+     */
+    public void setFirstLine(int firstLine) {
+        this.firstLine = firstLine;
+    }
+
+    /**
+     * @return the number of the line the route was found in
+     */
+    public int getLine(int route) {
+        return firstLine + lines.get(route);
+    }
+
+    /**
+     * @return the index of the first station of the route in {@link #stationIds()}
+     */
+    public int getStationsStart(int route) {
+        return offsets.get(route);
+    }
+
+    public int getStationsEnd(int route) {
+        return offsets.get(route + 1);
+    }
+
+    /**
+     * @return the station ids of all routes, one after the other. No copy is made
+     */
+    public int[] stationIds() {
+        return stationIds.elements();
+    }
+
+    /**
+     * @return the position in its route of every station id of {@link #stationIds()}, null if all stations are kept,
+     * the position of a station then being its index less the start of its route. No copy is made
+     */
+    public int[] positions() {
+        return positions == null ? null : positions.elements();
+    }
+
+    /**
+     * @return the number of station ids of all routes
+     */
+    public int getStationCount() {
+        return stationIds.size();
+    }
+}
@@ -0,0 +1,227 @@
+package com.jojos.challenge.busroute.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * A set of changes to the routes, read out of a delta file. Every non empty line of the file is one of
+ * <pre>
+ *     add &lt;route id&gt; &lt;station id&gt; &lt;station id&gt; ...
+ *     remove &lt;route id&gt;
+ *     replace &lt;route id&gt; &lt;station id&gt; &lt;station id&gt; ...
+ * </pre>
+ * The changes are applied in the order they are found. A route being added must not exist, a route
+ * being removed or replaced must. The rules of a route line of the bus route data file apply to the
+ * stations of a route being added or replaced, the limits of the file to the routes once changed.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class RouteDelta {
+
+    public static final String SUFFIX = ".delta";
+
+    public enum Kind {
+        ADD,
+        REMOVE,
+        REPLACE
+    }
+
+    /**
+     * A single change of a route
+     */
+    public static final class Operation {
+
+        private final int line;
+        private final Kind kind;
+        private final int routeId;
+        private final int[] stationIds;
+
+        /**
+         * A change that has not been read out of a delta file, found at line 0
+         */
+        public Operation(Kind kind, int routeId, int[] stationIds) {
+            this(0, kind, routeId, stationIds);
+        }
+
+        Operation(int line, Kind kind, int routeId, int[] stationIds) {
+            this.line = line;
+            this.kind = kind;
+            this.routeId = routeId;
+            this.stationIds = stationIds;
+        }
+
+        /**
+         * @return the line of the delta file the change was found in
+         */
+        public int getLine() {
+            return line;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getRouteId() {
+            return routeId;
+        }
+
+        /**
+         * @return the stations of an added or replaced route in order, empty for a removed one
+         */
+        public int[] getStationIds() {
+            return stationIds;
+        }
+    }
+
+    private final List<Operation> operations;
+    private final RouteLimits limits;
+
+    private RouteDelta(List<Operation> operations, RouteLimits limits) {
+        this.operations = Collections.unmodifiableList(operations);
+        this.limits = limits;
+    }
+
+    /**
+     * @return the path of the delta file of the given bus route data file
+     */
+    public static Path pathFor(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Reads the delta file, a violation is reported as a {@link RouteFileException} along with the offending line
+     */
+    public static RouteDelta parse(Path path) throws IOException {
+        return parse(path, RouteLimits.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #parse(Path)}, the routes limited by the given limits instead of the default ones
+     */
+    public static RouteDelta parse(Path path, RouteLimits limits) throws IOException {
+        return parse(Files.readAllLines(path, StandardCharsets.US_ASCII), limits);
+    }
+
+    public static RouteDelta parse(List<String> lines) {
+        return parse(lines, RouteLimits.DEFAULT);
+    }
+
+    public static RouteDelta parse(List<String> lines, RouteLimits limits) {
+        List<Operation> operations = new ArrayList<>();
+        IntOpenHashSet lineStations = new IntOpenHashSet(Math.min(limits.getMaxStationsPerRoute(), RouteUtils.MAX_STATIONS_PER_ROUTE));
+        for (int i = 0; i < lines.size(); i++) {
+            int line = i + 1;
+            String trimmed = lines.get(i).trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] tokens = trimmed.split("\\s+");
+            Kind kind;
+            try {
+                kind = Kind.valueOf(tokens[0].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new RouteFileException(line, "Unknown change '" + tokens[0] + "', expected add, remove or replace");
+            }
+
+            if (kind == Kind.REMOVE) {
+                throwIf(tokens.length != 2, line, "A removal must only contain the route id");
+                operations.add(new Operation(line, kind, parseInt(tokens[1], line), new int[0]));
+                continue;
+            }
+
+            // rule 4
+            throwIf(tokens.length < 4, line, "Each bus route must have at least 3 integers");
+            // rule 7
+            throwIf(tokens.length - 2 > limits.getMaxStationsPerRoute(), line, "Upper limit for the number of stations in one bus route exceeded");
+            int[] stationIds = new int[tokens.length - 2];
+            lineStations.clear();
+            for (int station = 0; station < stationIds.length; station++) {
+                stationIds[station] = parseInt(tokens[station + 2], line);
+                // rule 6
+                throwIf(!lineStations.add(stationIds[station]), line, "Duplicate stations per route found, station id " + stationIds[station]);
+            }
+            operations.add(new Operation(line, kind, parseInt(tokens[1], line), stationIds));
+        }
+        return new RouteDelta(operations, limits);
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return the limits the changes were parsed with, the stations of every route added or replaced are within them
+     */
+    public RouteLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Checks the routes once all changes are applied against the limits the changes were parsed with, a violation
+     * reported along with the last line of the changes.
+     *
+     * @param routeCount the number of routes once all changes are applied (rule 2)
+     * @param stationCount the number of distinct stations of all routes once all changes are applied (rule 8)
+     */
+    public void checkLimits(int routeCount, int stationCount) {
+        int line = operations.isEmpty() ? 0 : operations.get(operations.size() - 1).getLine();
+        if (routeCount > limits.getMaxBusRoutes()) {
+            throw new RouteFileException(line, 2, String.format("Number of bus routes %d larger than expected %d",
+                    routeCount, limits.getMaxBusRoutes()));
+        }
+        if (stationCount > limits.getMaxStations()) {
+            throw new RouteFileException(line, 8, "Upper limit for the total number of stations on all routes exceeded");
+        }
+    }
+
+    /**
+     * Checks that every route being added does not exist and every route being removed or replaced does,
+     * taking the preceding changes into account.
+     *
+     * @param exists whether a route id exists before any of the changes is applied
+     * @return the change in the number of routes once all changes are applied
+     */
+    public int validate(IntPredicate exists) {
+        Map<Integer, Boolean> changed = new HashMap<>();
+        int routeCountChange = 0;
+        for (Operation operation : operations) {
+            int routeId = operation.getRouteId();
+            boolean routeExists = changed.getOrDefault(routeId, exists.test(routeId));
+            if (operation.getKind() == Kind.ADD) {
+                throwIf(routeExists, operation.getLine(), "Route id " + routeId + " already exists");
+                changed.put(routeId, true);
+                routeCountChange++;
+            } else {
+                throwIf(!routeExists, operation.getLine(), "Route id " + routeId + " does not exist");
+                if (operation.getKind() == Kind.REMOVE) {
+                    changed.put(routeId, false);
+                    routeCountChange--;
+                }
+            }
+        }
+        return routeCountChange;
+    }
+
+    private static int parseInt(String token, int line) {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new RouteFileException(line, "Invalid integer '" + token + "'");
+        }
+    }
+
+    private static void throwIf(boolean condition, int line, String message) {
+        if (condition) {
+            throw new RouteFileException(line, message);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.jojos.challenge.busroute.util;
+
+/**
+ * Thrown when a line of the bus route data file violates one of the rules.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class RouteFileException extends IllegalArgumentException {
+
+    private final int line;
+    private final int rule;
+    private final String detail;
+
+    public RouteFileException(int line, String detail) {
+        this(line, 0, detail);
+    }
+
+    /**
+     * @param rule the number of the violated rule, see {@link RouteUtils#loadRoutesFromStreamAndValidate(java.util.function.Supplier)},
+     *             0 if the line is not made of integers at all
+     */
+    public RouteFileException(int line, int rule, String detail) {
+        super(rule > 0 ? String.format("Line %d: %s (rule %d)", line, detail, rule) : String.format("Line %d: %s", line, detail));
+        this.line = line;
+        this.rule = rule;
+        this.detail = detail;
+    }
+
+    /**
+     * @return the number of the offending line
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the number of the violated rule, 0 for a line that can't be parsed
+     */
+    public int getRule() {
+        return rule;
+    }
+
+    /**
+     * @return the violation, without the line number
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Lines of a file parsed in chunks are numbered relatively to the chunk until the lines of the
+     * preceding chunks are known.
+     *
+     * @param lines the number of lines preceding the chunk the line was numbered in
+     * @return the same violation with the line number shifted by the given lines
+     */
+    public RouteFileException shiftedBy(int lines) {
+        return at(line + lines);
+    }
+
+    /**
+     * @return the same violation found at the given line
+     */
+    public RouteFileException at(int line) {
+        RouteFileException moved = new RouteFileException(line, rule, detail);
+        moved.setStackTrace(getStackTrace());
+        return moved;
+    }
+}
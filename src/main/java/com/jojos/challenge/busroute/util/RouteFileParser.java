@@ -0,0 +1,188 @@
+package com.jojos.challenge.busroute.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A byte level tokenizer for the bus route data file.
+ *
+ * Integers are parsed straight out of the bytes into a reusable primitive buffer, a line at a time,
+ * without creating any intermediate {@link String}. The input may be fed in consecutive chunks of
+ * any size through {@link #parse(ByteBuffer)}, a token or a line may span two chunks.
+ *
+ * The rules that can be checked by looking at a single line are enforced here, every violation
+ * results in a {@link RouteFileException} carrying the number of the offending line and of the rule:
+ * <ul>
+ *     <li>the first line must contain the number of routes (rule 1)</li>
+ *     <li>a route line must contain at least three integers (rule 4)</li>
+ *     <li>a station id can never occur twice within the same route (rule 6)</li>
+ *     <li>a route must not have more stations than the given upper limit (rule 7)</li>
+ * </ul>
+ * Empty lines, or lines with whitespace only, are skipped.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class RouteFileParser {
+
+    /**
+     * Receives the header and the routes of the parsed lines
+     */
+    public interface RouteSink {
+
+        /**
+         * @param line the line number of the header
+         * @param routeCount the number of routes announced in the header
+         */
+        default void header(int line, int routeCount) {}
+
+        /**
+         * @param line the line number of the route
+         * @param routeId the id of the route
+         * @param stationIds the station ids of the route in order, starting at index 0.
+         *                   The array is reused, so it must be copied if kept
+         * @param count how many of the station ids belong to the route
+         */
+        void route(int line, int routeId, int[] stationIds, int count);
+    }
+
+    private static final long INT_LIMIT = 1L << 31;
+
+    private final RouteSink sink;
+    private final int maxStationsPerRoute;
+
+    private boolean expectHeader;
+    private int line;
+
+    // the token being parsed
+    private boolean inToken;
+    private boolean negative;
+    private int digits;
+    private long value;
+
+    // the line being parsed
+    private int tokens;
+    private int routeId;
+    private final int[] stationIds;
+    private int count;
+    private final IntOpenHashSet lineStations;
+
+    /**
+     * @param sink receives the parsed header and routes
+     * @param firstLine the line number of the first byte that will be parsed
+     * @param expectHeader whether the first line is the header holding the number of routes
+     * @param maxStationsPerRoute the upper limit for the stations of a route
+     */
+    public RouteFileParser(RouteSink sink, int firstLine, boolean expectHeader, int maxStationsPerRoute) {
+        this.sink = sink;
+        this.line = firstLine;
+        this.expectHeader = expectHeader;
+        this.maxStationsPerRoute = maxStationsPerRoute;
+        this.stationIds = new int[maxStationsPerRoute];
+        this.lineStations = new IntOpenHashSet(maxStationsPerRoute);
+    }
+
+    /**
+     * Parses all the remaining bytes of the buffer
+     */
+    public void parse(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        for (int i = buffer.position(); i < limit; i++) {
+            accept(buffer.get(i));
+        }
+        buffer.position(limit);
+    }
+
+    /**
+     * Signals the end of the input, completing the last line should it not end with a new line
+     */
+    public void finish() {
+        endToken();
+        if (tokens > 0 || expectHeader) {
+            endLine();
+        }
+    }
+
+    /**
+     * @return the number of the line currently being parsed
+     */
+    public int getLine() {
+        return line;
+    }
+
+    private void accept(byte b) {
+        if (b >= '0' && b <= '9') {
+            if (!inToken) {
+                startToken();
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            if (value > INT_LIMIT) {
+                throw new RouteFileException(line, "Integer out of range");
+            }
+        } else if (b == '\n') {
+            endToken();
+            endLine();
+            line++;
+        } else if (b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B) {
+            endToken();
+        } else if ((b == '-' || b == '+') && !inToken) {
+            startToken();
+            negative = b == '-';
+        } else {
+            throw new RouteFileException(line, "Invalid character '" + (char) b + "' in integer");
+        }
+    }
+
+    private void startToken() {
+        inToken = true;
+        negative = false;
+        digits = 0;
+        value = 0;
+    }
+
+    private void endToken() {
+        if (!inToken) {
+            return;
+        }
+        inToken = false;
+        if (digits == 0 || value > (negative ? INT_LIMIT : INT_LIMIT - 1)) {
+            throw new RouteFileException(line, digits == 0 ? "Sign without digits" : "Integer out of range");
+        }
+        int token = (int) (negative ? -value : value);
+
+        if (expectHeader) {
+            throwIf(tokens > 0, 1, "The first line must contain only the number of bus routes");
+            routeId = token;
+        } else if (tokens == 0) {
+            routeId = token;
+        } else {
+            // rule 7
+            throwIf(count == maxStationsPerRoute, 7, "Upper limit for the number of stations in one bus route exceeded");
+            // rule 6
+            throwIf(!lineStations.add(token), 6, "Duplicate stations per route found, station id " + token);
+            stationIds[count++] = token;
+        }
+        tokens++;
+    }
+
+    private void endLine() {
+        if (expectHeader) {
+            // rule 1
+            throwIf(tokens == 0, 1, "The first line must contain the number of bus routes");
+            expectHeader = false;
+            sink.header(line, routeId);
+        } else if (tokens > 0) {
+            // rule 4
+            throwIf(tokens < 3, 4, "Each bus route must have at least 3 integers");
+            sink.route(line, routeId, stationIds, count);
+            lineStations.clear();
+        }
+        tokens = 0;
+        count = 0;
+    }
+
+    private void throwIf(boolean condition, int rule, String message) {
+        if (condition) {
+            throw new RouteFileException(line, rule, message);
+        }
+    }
+}
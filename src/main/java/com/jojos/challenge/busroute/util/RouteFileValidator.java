@@ -0,0 +1,174 @@
+package com.jojos.challenge.busroute.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks the rules spanning the whole bus route data file while its lines are still being parsed,
+ * by any number of threads at the same time:
+ * <ul>
+ *     <li>no more routes than announced in the header (rule 3)</li>
+ *     <li>the route ids are unique (rule 5)</li>
+ *     <li>no more than {@link RouteLimits#getMaxStations()} distinct stations (rule 8)</li>
+ * </ul>
+ * The route and station ids seen so far are kept in {@link ConcurrentIntSet}s, so a bad file is rejected
+ * at the first offending route instead of once all of it is loaded and indexed.
+ *
+ * The first violation, whichever thread finds it, aborts the validation: from then on {@link #check}
+ * tells every thread to stop. Fewer routes than announced (rule 3) can only be told at the end,
+ * see {@link #getRouteCount()}.
+ *
+ * @author karanikasg@gmail.com.
+ */
+class RouteFileValidator {
+
+    static final int VALID = 0;
+    static final int ABORTED = -1;
+    static final int TOO_MANY_ROUTES = 3;
+    static final int DUPLICATE_ROUTE = 5;
+    static final int TOO_MANY_STATIONS = 8;
+
+    /**
+     * The first violation found, the line is numbered the way the thread that found it numbers them
+     */
+    static class Violation {
+
+        private final int range;
+        private final int routeId;
+        private final RouteFileException exception;
+
+        Violation(int range, int routeId, RouteFileException exception) {
+            this.range = range;
+            this.routeId = routeId;
+            this.exception = exception;
+        }
+
+        /**
+         * @return the range of the file the violation was found in, 0 if the file is not parsed in ranges
+         */
+        int getRange() {
+            return range;
+        }
+
+        /**
+         * @return the id of the offending route, should the violation be about a route id
+         */
+        int getRouteId() {
+            return routeId;
+        }
+
+        RouteFileException getException() {
+            return exception;
+        }
+    }
+
+    private final int expectedRoutes;
+    private final int stationLimit;
+    private final AtomicInteger routes = new AtomicInteger();
+    private final ConcurrentIntSet routeIds;
+    // null if there can't be more stations than allowed
+    private final ConcurrentIntSet stationIds;
+
+    private final AtomicReference<Violation> violation = new AtomicReference<>();
+    private volatile boolean aborted;
+
+    RouteFileValidator(int expectedRoutes, long maxStations) {
+        this(expectedRoutes, maxStations, RouteLimits.DEFAULT.getMaxStations());
+    }
+
+    /**
+     * @param expectedRoutes the number of routes announced in the header
+     * @param maxStations the most distinct stations the file can hold, e.g. one every two bytes, 0 to leave rule 8 unchecked
+     * @param stationLimit the most distinct stations allowed
+     */
+    RouteFileValidator(int expectedRoutes, long maxStations, int stationLimit) {
+        this.expectedRoutes = expectedRoutes;
+        this.stationLimit = stationLimit;
+        this.routeIds = new ConcurrentIntSet(expectedRoutes);
+        this.stationIds = maxStations > stationLimit ? new ConcurrentIntSet(stationLimit) : null;
+    }
+
+    /**
+     * @param stationIds the station ids of the route, starting at index 0
+     * @param count how many of the station ids belong to the route
+     * @return {@link #VALID}, the number of the violated rule, or {@link #ABORTED} if a violation was found already
+     */
+    int check(int routeId, int[] stationIds, int count) {
+        if (aborted) {
+            return ABORTED;
+        }
+        // rule 3, checked first so that the sets never hold more than expected
+        if (routes.incrementAndGet() > expectedRoutes) {
+            return TOO_MANY_ROUTES;
+        }
+        // rule 5
+        if (!routeIds.add(routeId)) {
+            return DUPLICATE_ROUTE;
+        }
+        // rule 8, a few more stations than allowed may be added by the threads racing past the limit
+        if (this.stationIds != null) {
+            for (int i = 0; i < count; i++) {
+                if (this.stationIds.add(stationIds[i]) && this.stationIds.size() > stationLimit) {
+                    return TOO_MANY_STATIONS;
+                }
+            }
+        }
+        return VALID;
+    }
+
+    /**
+     * @return the violation of the rule {@link #check} returned
+     */
+    String describe(int rule, int routeId) {
+        switch (rule) {
+            case TOO_MANY_ROUTES:
+                return String.format("The number of lines differs, expected %d bus routes", expectedRoutes);
+            case DUPLICATE_ROUTE:
+                return String.format("Route ids are not unique among all other bus routes ids in the input, route id %d", routeId);
+            case TOO_MANY_STATIONS:
+                return "Upper limit for the total number of stations on all routes exceeded";
+            default:
+                throw new IllegalArgumentException("Not a rule checked across lines: " + rule);
+        }
+    }
+
+    int getExpectedRoutes() {
+        return expectedRoutes;
+    }
+
+    /**
+     * Aborts the validation, keeping the violation only if it is the first one
+     *
+     * @param range the range the violation was found in
+     * @param routeId the id of the offending route, if known
+     */
+    void fail(int range, int routeId, RouteFileException exception) {
+        violation.compareAndSet(null, new Violation(range, routeId, exception));
+        aborted = true;
+    }
+
+    /**
+     * Aborts the validation for a reason other than a violation, e.g. the file failing to be read
+     */
+    void abort() {
+        aborted = true;
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * @return the first violation, null if none was found
+     */
+    Violation getViolation() {
+        return violation.get();
+    }
+
+    /**
+     * @return the number of routes checked so far
+     */
+    int getRouteCount() {
+        return routes.get();
+    }
+}
@@ -0,0 +1,49 @@
+package com.jojos.challenge.busroute.util;
+
+/**
+ * The upper limits a bus route data file is validated against (rules 2, 7 and 8). The defaults are the ones
+ * of the description of the data file, a merged network beyond them needs limits of its own.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public final class RouteLimits {
+
+    public static final RouteLimits DEFAULT = new RouteLimits(RouteUtils.MAX_BUS_ROUTES, RouteUtils.MAX_STATIONS,
+            RouteUtils.MAX_STATIONS_PER_ROUTE);
+
+    private final int maxBusRoutes;
+    private final int maxStations;
+    private final int maxStationsPerRoute;
+
+    /**
+     * @param maxBusRoutes the most routes of the file (rule 2)
+     * @param maxStations the most distinct stations of all routes (rule 8)
+     * @param maxStationsPerRoute the most stations of one route (rule 7)
+     */
+    public RouteLimits(int maxBusRoutes, int maxStations, int maxStationsPerRoute) {
+        if (maxBusRoutes <= 0 || maxStations <= 0 || maxStationsPerRoute <= 0) {
+            throw new IllegalArgumentException(String.format("Route limits must be positive, found %d routes, %d stations and %d stations per route",
+                    maxBusRoutes, maxStations, maxStationsPerRoute));
+        }
+        this.maxBusRoutes = maxBusRoutes;
+        this.maxStations = maxStations;
+        this.maxStationsPerRoute = maxStationsPerRoute;
+    }
+
+    public int getMaxBusRoutes() {
+        return maxBusRoutes;
+    }
+
+    public int getMaxStations() {
+        return maxStations;
+    }
+
+    public int getMaxStationsPerRoute() {
+        return maxStationsPerRoute;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d routes, %d stations, %d stations per route", maxBusRoutes, maxStations, maxStationsPerRoute);
+    }
+}
@@ -1,7 +1,7 @@
 package com.jojos.challenge.busroute.util;
 
-import com.jojos.challenge.busroute.service.InMemoryRouteStore;
 import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,11 +10,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -70,58 +67,137 @@ public class RouteUtils {
      * 7. Assume 1,000 as upper limit for the number of stations of one bus route
      * 8. 1,000,000 as upper limit for the number of stations
      *
+     * The routes are loaded into an {@link RouteStoreType#IN_MEMORY} store. Rules 3, 5 and 8 are checked as the lines
+     * are parsed, see {@link RouteFileValidator}, the first violation stopping the load. A violation is reported
+     * along with the number of the rule.
      */
     public static RouteStore loadRoutesFromStreamAndValidate(Supplier<Stream<String>> stream) {
+        return loadRoutesFromStreamAndValidate(stream, RouteStoreType.IN_MEMORY);
+    }
+
+    /**
+     * Same as {@link #loadRoutesFromStreamAndValidate(Supplier)} but loads the routes into a store of the given type.
+     * The store is frozen once all routes have been stored.
+     */
+    public static RouteStore loadRoutesFromStreamAndValidate(Supplier<Stream<String>> stream, RouteStoreType storeType) {
+        return loadRoutesFromStreamAndValidate(stream, storeType, RouteLimits.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #loadRoutesFromStreamAndValidate(Supplier, RouteStoreType)}, validating the routes against the given
+     * limits instead of the default ones
+     */
+    public static RouteStore loadRoutesFromStreamAndValidate(Supplier<Stream<String>> stream, RouteStoreType storeType, RouteLimits limits) {
         String firstElement = stream.get().findFirst().orElseThrow(() -> new IllegalArgumentException("Invalid first element"));
 
         // rule 1
         int routeCount = Integer.parseInt(firstElement);
 
         // rule 2
-        throwIf(routeCount > MAX_BUS_ROUTES, String.format("Number of bus routes %d larger than expected %d", routeCount, MAX_BUS_ROUTES));
+        throwIf(routeCount > limits.getMaxBusRoutes(), String.format("Number of bus routes %d larger than expected %d", routeCount, limits.getMaxBusRoutes()));
 
-        RouteStore routeStore = new InMemoryRouteStore();
-        log.info("Start to load file into memory");
+        RouteStore routeStore = storeType.newRouteStore();
+        log.info("Start to load file into memory using a {} route store", storeType);
 
+        RouteFileValidator validator = new RouteFileValidator(routeCount, Long.MAX_VALUE, limits.getMaxStations());
         stream.get().
                 filter(s -> !s.isEmpty()).
                 skip(1).
                 parallel().
                 map(s -> s.split("\\s+")).
                 forEach(strings -> {
+                    // the other threads stop at their next line once a violation is found
+                    if (validator.isAborted()) {
+                        return;
+                    }
                     // rule 4
-                    throwIf(strings.length < 3, "Each bus route must have at least 3 integers");
+                    throwIf(strings.length < 3, validator, 4, "Each bus route must have at least 3 integers");
 
                     int routeId = Integer.parseInt(strings[0]);
-                    LinkedHashSet<Integer> stationIds = Arrays.stream(strings).
-                            skip(1).
-                            map(Integer::parseInt).
+                    int[] stations = Arrays.stream(strings).skip(1).mapToInt(Integer::parseInt).toArray();
+                    LinkedHashSet<Integer> stationIds = Arrays.stream(stations).
+                            boxed().
                             collect(Collectors.toCollection(LinkedHashSet::new));
                     // rule 6
-                    throwIf(stationIds.size() != strings.length - 1, "Duplicate stations per route found");
+                    throwIf(stationIds.size() != strings.length - 1, validator, 6, "Duplicate stations per route found");
                     // rule 7
-                    throwIf(stationIds.size() > MAX_STATIONS_PER_ROUTE, "Upper limit for the number of stations in one bus route exceeded");
+                    throwIf(stationIds.size() > limits.getMaxStationsPerRoute(), validator, 7, "Upper limit for the number of stations in one bus route exceeded");
+                    // rules 3, 5 & 8
+                    int rule = validator.check(routeId, stations, stations.length);
+                    if (rule == RouteFileValidator.ABORTED) {
+                        return;
+                    }
+                    if (rule != RouteFileValidator.VALID) {
+                        throw violation(validator, rule, validator.describe(rule, routeId));
+                    }
                     routeStore.storeRoute(routeId, stationIds);
                 });
+        // rule 3
+        throwIf(validator.getRouteCount() != routeCount, String.format("The number of lines differs, expected %d bus routes but found %d (rule 3)",
+                routeCount, validator.getRouteCount()));
+        routeStore.freeze();
+        return routeStore;
+    }
 
-        // rule 3 & 5
-        throwIf(routeStore.getTotalNumberOfRoutes() != routeCount, "Route ids are not unique among all other bus routes ids in the input OR number of lines differs");
-        // rule 8
-        throwIf(routeStore.getTotalNumberOfStations() > MAX_STATIONS, "Upper limit for the total number of stations on all routes exceeded");
+    /**
+     * Loads the bus route data file found under the given path into a store of the given type, in a single pass
+     * over the memory mapped file and without any intermediate {@link String} or boxed {@link Integer}.
+     * The file is parsed by as many threads as there are available processors.
+     *
+     * The same validations as {@link #loadRoutesFromStreamAndValidate(Supplier)} apply. Every violation
+     * that can be attributed to a line is reported along with the number of the line.
+     *
+     * @param path the path of the bus route data file
+     * @param storeType the type of the route store to load the file into
+     * @return the frozen route store
+     * @throws IOException should the file fail to be read
+     */
+    public static RouteStore loadRoutesFromFileAndValidate(Path path, RouteStoreType storeType) throws IOException {
+        return loadRoutesFromFileAndValidate(path, storeType, Runtime.getRuntime().availableProcessors());
+    }
 
-        return routeStore;
+    /**
+     * Same as {@link #loadRoutesFromFileAndValidate(Path, RouteStoreType)}, with the file cut at line boundaries
+     * into byte ranges that are parsed by the given number of threads.
+     */
+    public static RouteStore loadRoutesFromFileAndValidate(Path path, RouteStoreType storeType, int threads) throws IOException {
+        return loadRoutesFromFileAndValidate(path, storeType, threads, LoadPhase.Listener.NONE);
     }
 
-    public static <K, V> boolean addToContainedSet(ConcurrentMap<K, Set<V>> map, K mapKey, V value) {
-        Set<V> existingSet = map.get(mapKey);
-        if (existingSet == null) {
-            Set<V> newSet = Collections.newSetFromMap(new ConcurrentHashMap<V, Boolean>());
-            existingSet = map.putIfAbsent(mapKey, newSet);
-            if (existingSet == null) {
-                existingSet = newSet;
-            }
-        }
-        return existingSet.add(value);
+    /**
+     * Same as {@link #loadRoutesFromFileAndValidate(Path, RouteStoreType, int)}, telling the listener how long
+     * every {@link LoadPhase} took
+     */
+    public static RouteStore loadRoutesFromFileAndValidate(Path path, RouteStoreType storeType, int threads,
+                                                           LoadPhase.Listener listener) throws IOException {
+        return loadRoutesFromFileAndValidate(path, storeType, threads, platformThreads(), listener);
+    }
+
+    /**
+     * Same as {@link #loadRoutesFromFileAndValidate(Path, RouteStoreType, int, LoadPhase.Listener)}, with the threads
+     * parsing the ranges created by the given factory, e.g. virtual threads
+     */
+    public static RouteStore loadRoutesFromFileAndValidate(Path path, RouteStoreType storeType, int threads, ThreadFactory threadFactory,
+                                                           LoadPhase.Listener listener) throws IOException {
+        return loadRoutesFromFileAndValidate(path, storeType.newRouteStore(), threads, threadFactory, listener, RouteLimits.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #loadRoutesFromFileAndValidate(Path, RouteStoreType, int, ThreadFactory, LoadPhase.Listener)}, loading
+     * the routes into the given empty store and validating them against the given limits instead of the default ones
+     */
+    public static RouteStore loadRoutesFromFileAndValidate(Path path, RouteStore routeStore, int threads, ThreadFactory threadFactory,
+                                                           LoadPhase.Listener listener, RouteLimits limits) throws IOException {
+        throwIf(!Files.isRegularFile(path), String.format("Bus route data file %s does not exist", path));
+        log.info("Start to load file {} into memory using a {} route store, up to {}", path, routeStore.getClass().getSimpleName(), limits);
+        return new ParallelRouteFileLoader(path, threads, threadFactory, listener, limits).load(routeStore);
+    }
+
+    /**
+     * @return a factory of the daemon platform threads parsing the data file by default
+     */
+    public static ThreadFactory platformThreads() {
+        return ParallelRouteFileLoader.platformThreads();
     }
 
     private static void throwIf(boolean condition, String message) {
@@ -130,4 +206,18 @@ public class RouteUtils {
         }
     }
 
+    /**
+     * Fails the validation, the lines of a stream being parsed in no particular order are not numbered
+     */
+    private static void throwIf(boolean condition, RouteFileValidator validator, int rule, String message) {
+        if (condition) {
+            throw violation(validator, rule, message);
+        }
+    }
+
+    private static IllegalArgumentException violation(RouteFileValidator validator, int rule, String message) {
+        validator.abort();
+        return new IllegalArgumentException(String.format("%s (rule %d)", message, rule));
+    }
+
 }
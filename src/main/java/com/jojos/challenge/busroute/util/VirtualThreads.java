@@ -0,0 +1,73 @@
+package com.jojos.challenge.busroute.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of JDK 21 on, while the code base stays compatible with Java 8.
+ *
+ * The {@code Thread.ofVirtual()} builder is looked up reflectively once. On an older JDK, or one where virtual
+ * threads are a preview feature that is not enabled, {@link #isSupported()} is false.
+ *
+ * @author karanikasg@gmail.com.
+ */
+public final class VirtualThreads {
+
+    // Thread.Builder#name(String, long) and Thread.Builder#factory(), null if not supported
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    static {
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            // throws on a JDK with virtual threads in preview that are not enabled
+            Thread.class.getMethod("ofVirtual").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            name = null;
+            factory = null;
+        }
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether the running JDK provides virtual threads
+     */
+    public static boolean isSupported() {
+        return FACTORY != null;
+    }
+
+    /**
+     * @param prefix the threads are named after the prefix followed by a counter
+     * @return a factory of virtual threads
+     * @throws UnsupportedOperationException should the running JDK not provide virtual threads
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later, running on " + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) FACTORY.invoke(NAME.invoke(builder, prefix, 0L));
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Failed to create virtual threads", e);
+        }
+    }
+
+    /**
+     * @return an executor running every task on a new virtual thread
+     * @throws UnsupportedOperationException should the running JDK not provide virtual threads
+     */
+    public static Executor threadPerTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        return task -> factory.newThread(task).start();
+    }
+}
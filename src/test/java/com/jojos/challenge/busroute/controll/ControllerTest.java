@@ -1,15 +1,36 @@
 package com.jojos.challenge.busroute.controll;
 
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.control.Controller;
+import com.jojos.challenge.busroute.service.QueryAuditor;
+import com.jojos.challenge.busroute.service.RouteService;
+import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.springframework.boot.DefaultApplicationArguments;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -22,9 +43,30 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc(print = MockMvcPrint.LOG_DEBUG)
 public class ControllerTest {
 
+    // stations 1 to 5 on one route, 6 to 9 on the other
+    private static final String ROUTES = "2\n0 1 2 3 4 5\n1 6 7 8 9";
+    private static final int[] PAIRS = {1, 3, 3, 1, 6, 9, 9, 6, 1, 6, 2, 5, 5, 2, 7, 8, 8, 9, 4, 6};
+    private static final boolean[] CONNECTED = {true, false, true, false, false, true, false, true, true, false};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Autowired
     private MockMvc mockMvc;
 
+    private final List<RouteService> routeServices = new ArrayList<>();
+    private final List<QueryAuditor> auditors = new ArrayList<>();
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        for (RouteService routeService : routeServices) {
+            routeService.stopWatching();
+        }
+        for (QueryAuditor auditor : auditors) {
+            auditor.stop();
+        }
+    }
+
     @Test
     public void testApiWithoutBothRequestParams() throws Exception {
         mockMvc.perform(get("/api/direct")).
@@ -40,7 +82,118 @@ public class ControllerTest {
     @Test
     public void testApiWithAllRequestParams() throws Exception {
         mockMvc.perform(get("/api/direct").param("dep_sid", "5").param("arr_sid", "6")).
-                andExpect(status().isOk());
+                andExpect(status().isOk()).
+                andExpect(content().json("{\"dep_sid\":5,\"arr_sid\":6,\"direct_bus_route\":false}", true));
+    }
+
+    @Test
+    public void testApiWithDetails() throws Exception {
+        mockMvc.perform(get("/api/direct").param("dep_sid", "5").param("arr_sid", "6").param("details", "true")).
+                andExpect(status().isOk()).
+                andExpect(content().json("{\"dep_sid\":5,\"arr_sid\":6,\"direct_bus_route\":false,\"route_ids\":[]," +
+                        "\"best_route_id\":null,\"stops\":null}", true));
+    }
+
+    @Test
+    public void testTransfersApi() throws Exception {
+        mockMvc.perform(get("/api/transfers").param("dep_sid", "5").param("arr_sid", "6").param("max_transfers", "2")).
+                andExpect(status().isOk()).
+                andExpect(content().json("{\"dep_sid\":5,\"arr_sid\":6,\"max_transfers\":2,\"reachable\":false,\"transfers\":null}", true));
+    }
+
+    @Test
+    public void testTransfersApiWithTooManyTransfers() throws Exception {
+        mockMvc.perform(get("/api/transfers").param("dep_sid", "5").param("arr_sid", "6").param("max_transfers", "4")).
+                andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void testMetricsApi() throws Exception {
+        mockMvc.perform(get("/api/metrics")).
+                andExpect(status().isOk()).
+                andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)).
+                andExpect(jsonPath("$.store.type").value("None")).
+                andExpect(jsonPath("$.load.PARSE.count").exists()).
+                andExpect(jsonPath("$.stationFanOut.p99").exists());
+    }
+
+    @Test
+    public void testBatchApi() throws Exception {
+        mockMvc.perform(post("/api/direct/batch").contentType(MediaType.APPLICATION_JSON).content("[5, 6, 6, 5, 1, 1]")).
+                andExpect(status().isOk()).
+                andExpect(content().string("[false,false,false]"));
+    }
+
+    @Test
+    public void testBatchApiAsBitset() throws Exception {
+        // pairs 0, 2, 5, 7 and 8 are connected, the last two pairs fall in the second byte
+        mockMvcOf(ROUTES).perform(post("/api/direct/batch").contentType(MediaType.APPLICATION_OCTET_STREAM).
+                accept(MediaType.APPLICATION_OCTET_STREAM).content(body(PAIRS))).
+                andExpect(status().isOk()).
+                andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM)).
+                andExpect(content().bytes(new byte[]{(byte) 0b1010_0101, 0b0000_0001}));
+    }
+
+    @Test
+    public void testBatchApiAsBitsetInChunks() throws Exception {
+        // the pairs repeated past a few chunks read off the body, answered as JSON and as a bitset
+        int count = 20_005;
+        int[] pairs = new int[count * 2];
+        byte[] bitset = new byte[(count + 7) / 8];
+        StringBuilder json = new StringBuilder("[");
+        for (int pair = 0; pair < count; pair++) {
+            pairs[pair * 2] = PAIRS[(pair % 10) * 2];
+            pairs[pair * 2 + 1] = PAIRS[(pair % 10) * 2 + 1];
+            boolean connected = CONNECTED[pair % 10];
+            if (connected) {
+                bitset[pair / 8] |= 1 << (pair % 8);
+            }
+            json.append(pair > 0 ? "," : "").append(connected);
+        }
+        MockMvc loaded = mockMvcOf(ROUTES);
+        loaded.perform(post("/api/direct/batch").contentType(MediaType.APPLICATION_OCTET_STREAM).
+                accept(MediaType.APPLICATION_OCTET_STREAM).content(body(pairs))).
+                andExpect(status().isOk()).
+                andExpect(content().bytes(bitset));
+        loaded.perform(post("/api/direct/batch").contentType(MediaType.APPLICATION_OCTET_STREAM).content(body(pairs))).
+                andExpect(status().isOk()).
+                andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)).
+                andExpect(content().string(json.append(']').toString()));
+    }
+
+    @Test
+    public void testBatchApiAsBitsetWithoutArrival() throws Exception {
+        mockMvc.perform(post("/api/direct/batch").contentType(MediaType.APPLICATION_OCTET_STREAM).
+                accept(MediaType.APPLICATION_OCTET_STREAM).content(body(new int[]{5, 6, 7}))).
+                andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testBatchApiWithoutArrival() throws Exception {
+        mockMvc.perform(post("/api/direct/batch").contentType(MediaType.APPLICATION_JSON).content("[5, 6, 7]")).
+                andExpect(status().isBadRequest());
+    }
+
+    /**
+     * @return a controller of its own answering out of the given data file
+     */
+    private MockMvc mockMvcOf(String dataFile) throws IOException {
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.getReload().setEnabled(false);
+        properties.getAudit().setEnabled(false);
+        Path path = folder.newFile().toPath();
+        Files.write(path, dataFile.getBytes(StandardCharsets.US_ASCII));
+        RouteService routeService = new RouteService(properties);
+        routeService.run(new DefaultApplicationArguments(new String[]{path.toString()}));
+        QueryAuditor auditor = new QueryAuditor(properties);
+        routeServices.add(routeService);
+        auditors.add(auditor);
+        return MockMvcBuilders.standaloneSetup(new Controller(routeService, properties, auditor)).build();
+    }
+
+    private static byte[] body(int[] stationIds) {
+        ByteBuffer body = ByteBuffer.allocate(stationIds.length * Integer.BYTES);
+        body.asIntBuffer().put(stationIds);
+        return body.array();
+    }
 }
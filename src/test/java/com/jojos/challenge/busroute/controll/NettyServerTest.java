@@ -0,0 +1,104 @@
+package com.jojos.challenge.busroute.controll;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.control.NettyServer;
+import com.jojos.challenge.busroute.service.QueryAuditor;
+import com.jojos.challenge.busroute.service.RouteService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The netty front end against the same contract as the controller
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class NettyServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NettyServer server;
+    private QueryAuditor auditor;
+
+    @Before
+    public void setUp() throws Exception {
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.getReload().setEnabled(false);
+        properties.getAudit().setEnabled(false);
+        properties.getNetty().setPort(0);
+
+        Path dataFile = folder.newFile().toPath();
+        Files.write(dataFile, "2\n0 1 2 3\n1 -4 5 2147483647".getBytes(StandardCharsets.US_ASCII));
+        RouteService routeService = new RouteService(properties);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+
+        auditor = new QueryAuditor(properties);
+        server = new NettyServer(routeService, auditor, properties);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        server.stop();
+        auditor.stop();
+    }
+
+    @Test
+    public void testDirectConnection() throws IOException {
+        Assert.assertEquals("{\"dep_sid\":1,\"arr_sid\":3,\"direct_bus_route\":true}", get("/api/direct?dep_sid=1&arr_sid=3", 200));
+        Assert.assertEquals("{\"dep_sid\":3,\"arr_sid\":1,\"direct_bus_route\":false}", get("/api/direct?arr_sid=1&dep_sid=3", 200));
+        Assert.assertEquals("{\"dep_sid\":-4,\"arr_sid\":2147483647,\"direct_bus_route\":true}",
+                get("/api/direct?x=y&dep_sid=-4&arr_sid=2147483647", 200));
+        Assert.assertEquals("{\"dep_sid\":0,\"arr_sid\":-2147483648,\"direct_bus_route\":false}",
+                get("/api/direct?dep_sid=+0&arr_sid=-2147483648", 200));
+    }
+
+    @Test
+    public void testDirectRoutes() throws IOException {
+        Assert.assertEquals("{\"dep_sid\":1,\"arr_sid\":3,\"direct_bus_route\":true,\"route_ids\":[0],\"best_route_id\":0,\"stops\":2}",
+                get("/api/direct?dep_sid=1&arr_sid=3&details=true", 200));
+        Assert.assertEquals("{\"dep_sid\":3,\"arr_sid\":1,\"direct_bus_route\":false,\"route_ids\":[],\"best_route_id\":null,\"stops\":null}",
+                get("/api/direct?details=true&dep_sid=3&arr_sid=1", 200));
+        Assert.assertEquals("{\"dep_sid\":1,\"arr_sid\":3,\"direct_bus_route\":true}", get("/api/direct?dep_sid=1&arr_sid=3&details=false", 200));
+    }
+
+    @Test
+    public void testInvalidRequests() throws IOException {
+        get("/api/direct", 400);
+        get("/api/direct?dep_sid=5", 400);
+        get("/api/direct?dep_sid=5&arr_sid=", 400);
+        get("/api/direct?dep_sid=5&arr_sid=6x", 400);
+        get("/api/direct?dep_sid=5&arr_sid=2147483648", 400);
+        get("/api/directs?dep_sid=5&arr_sid=6", 404);
+        get("/api", 404);
+    }
+
+    private String get(String pathAndQuery, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + pathAndQuery).openConnection();
+        Assert.assertEquals(pathAndQuery, expectedStatus, connection.getResponseCode());
+        Assert.assertEquals("application/json;charset=UTF-8", connection.getContentType());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[1_024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
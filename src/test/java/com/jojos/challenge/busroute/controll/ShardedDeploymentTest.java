@@ -0,0 +1,152 @@
+package com.jojos.challenge.busroute.controll;
+
+import com.jojos.challenge.busroute.Main;
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.service.DirectRoutes;
+import com.jojos.challenge.busroute.service.RouteService;
+import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import com.jojos.challenge.busroute.util.RouteUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Two shard nodes started as processes of their own, asked by a router in process and checked against a single
+ * store holding all of the routes
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class ShardedDeploymentTest {
+
+    private static final int SHARDS = 2;
+    private static final long STARTUP_TIMEOUT_MILLIS = 120_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Process> nodes = new ArrayList<>();
+    private RouteService router;
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        if (router != null) {
+            router.stopWatching();
+        }
+        for (Process node : nodes) {
+            node.destroy();
+        }
+        for (Process node : nodes) {
+            node.waitFor();
+        }
+    }
+
+    @Test
+    public void testRouterAgainstSingleStore() throws Exception {
+        Random random = new Random();
+        String[] rows = new String[2_001];
+        rows[0] = "2000";
+        for (int routeId = 0; routeId < 2_000; routeId++) {
+            rows[routeId + 1] = routeId + " " + random.ints(0, 5_000).distinct().limit(2 + random.nextInt(50)).
+                    mapToObj(String::valueOf).collect(Collectors.joining(" "));
+        }
+        Path dataFile = folder.newFile().toPath();
+        Files.write(dataFile, String.join("\n", rows).getBytes(StandardCharsets.US_ASCII));
+        RouteStore whole = RouteUtils.loadRoutesFromFileAndValidate(dataFile, RouteStoreType.COMPACT);
+
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.getReload().setEnabled(false);
+        properties.getAudit().setEnabled(false);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            int port = freePort();
+            nodes.add(startNode(dataFile, shard, port));
+            properties.getShards().getNodes().add("http://localhost:" + port);
+        }
+        for (String node : properties.getShards().getNodes()) {
+            awaitReady(node);
+        }
+
+        router = new RouteService(properties);
+        router.run(new DefaultApplicationArguments(new String[0]));
+        for (int i = 0; i < 2_000; i++) {
+            int departure = random.nextInt(5_100);
+            int arrival = random.nextInt(5_100);
+            Assert.assertEquals(whole.isDirectConnectionExistBetween(departure, arrival), router.isThereConnectionBetween(departure, arrival));
+            if (i % 20 == 0) {
+                DirectRoutes expected = new DirectRoutes();
+                whole.forEachDirectRoute(departure, arrival, expected);
+                DirectRoutes actual = router.getDirectRoutesBetween(departure, arrival);
+                Assert.assertArrayEquals(expected.getRouteIds(), actual.getRouteIds());
+                Assert.assertEquals(expected.getStops(), actual.getStops());
+            }
+        }
+    }
+
+    private Process startNode(Path dataFile, int shard, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // the module options the tests run with, if any
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments().stream().
+                filter(argument -> argument.startsWith("--add-opens") || argument.startsWith("--add-exports")).
+                collect(Collectors.toList()));
+        command.add("-Xmx256m");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.add(dataFile.toString());
+        command.add("--server.port=" + port);
+        command.add("--busroute.shards.count=" + SHARDS);
+        command.add("--busroute.shards.index=" + shard);
+        command.add("--busroute.reload.enabled=false");
+        command.add("--busroute.snapshot.enabled=false");
+        command.add("--busroute.audit.enabled=false");
+        File directory = folder.newFolder();
+        return new ProcessBuilder(command).directory(directory).
+                redirectErrorStream(true).redirectOutput(new File(directory, "node.log")).start();
+    }
+
+    private void awaitReady(String node) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            for (Process process : nodes) {
+                Assert.assertTrue("A shard node exited early", process.isAlive());
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(node + "/api/shard/postings?sid=1").openConnection();
+                connection.setConnectTimeout(1_000);
+                connection.setReadTimeout(5_000);
+                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(250);
+        }
+        Assert.fail("Shard node " + node + " not ready within " + STARTUP_TIMEOUT_MILLIS + " ms");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
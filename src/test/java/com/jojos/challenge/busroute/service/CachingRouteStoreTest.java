@@ -0,0 +1,97 @@
+package com.jojos.challenge.busroute.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class CachingRouteStoreTest {
+
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+
+    // connected when the sum of the station ids is even
+    private final RouteStore delegate = new RouteStore() {
+        @Override
+        public boolean isDirectConnectionExistBetween(int departure, int arrival) {
+            delegateCalls.incrementAndGet();
+            return ((departure + arrival) & 1) == 0;
+        }
+    };
+
+    @Test
+    public void testSameAnswersAsTheWrappedStore() {
+        for (CachingRouteStore.Policy policy : CachingRouteStore.Policy.values()) {
+            CachingRouteStore store = new CachingRouteStore(delegate, 64, policy);
+            Random random = new Random(5);
+            for (int i = 0; i < 10_000; i++) {
+                int departure = random.nextInt(40) - 5;
+                int arrival = random.nextInt(40) - 5;
+                Assert.assertEquals(((departure + arrival) & 1) == 0, store.isDirectConnectionExistBetween(departure, arrival));
+            }
+            Assert.assertTrue(store.getHits() > 0);
+            Assert.assertTrue(store.getEvictions() > 0);
+        }
+    }
+
+    @Test
+    public void testRepeatedPairIsAnsweredOutOfTheCache() {
+        CachingRouteStore store = new CachingRouteStore(delegate, 16, CachingRouteStore.Policy.LRU);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(store.isDirectConnectionExistBetween(Integer.MAX_VALUE, 1));
+            Assert.assertFalse(store.isDirectConnectionExistBetween(2, 1));
+        }
+        Assert.assertEquals(2, delegateCalls.get());
+        Assert.assertEquals(2, store.getMisses());
+        Assert.assertEquals(18, store.getHits());
+
+        // negative station ids are never cached
+        store.isDirectConnectionExistBetween(-1, 1);
+        store.isDirectConnectionExistBetween(-1, 1);
+        Assert.assertEquals(4, delegateCalls.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPairIsEvicted() {
+        // a single set of 4 pairs
+        CachingRouteStore store = new CachingRouteStore(delegate, 4, CachingRouteStore.Policy.LRU);
+        for (int pair = 0; pair < 4; pair++) {
+            store.isDirectConnectionExistBetween(pair, pair);
+        }
+        store.isDirectConnectionExistBetween(0, 0);
+        store.isDirectConnectionExistBetween(4, 4);
+        Assert.assertEquals(1, store.getEvictions());
+
+        delegateCalls.set(0);
+        store.isDirectConnectionExistBetween(0, 0);
+        store.isDirectConnectionExistBetween(4, 4);
+        Assert.assertEquals(0, delegateCalls.get());
+        store.isDirectConnectionExistBetween(1, 1);
+        Assert.assertEquals(1, delegateCalls.get());
+    }
+
+    @Test
+    public void testOneOffPairsDoNotFlushPopularOnes() {
+        CachingRouteStore lru = new CachingRouteStore(delegate, 4, CachingRouteStore.Policy.LRU);
+        CachingRouteStore tinyLfu = new CachingRouteStore(delegate, 4, CachingRouteStore.Policy.TINY_LFU);
+        for (CachingRouteStore store : new CachingRouteStore[]{lru, tinyLfu}) {
+            for (int i = 0; i < 5; i++) {
+                for (int pair = 0; pair < 4; pair++) {
+                    store.isDirectConnectionExistBetween(pair, pair);
+                }
+            }
+            for (int pair = 100; pair < 200; pair++) {
+                store.isDirectConnectionExistBetween(pair, pair);
+            }
+            for (int pair = 0; pair < 4; pair++) {
+                store.isDirectConnectionExistBetween(pair, pair);
+            }
+        }
+        Assert.assertEquals(16, lru.getHits());
+        Assert.assertEquals(16 + 4, tinyLfu.getHits());
+        Assert.assertEquals(0, tinyLfu.getEvictions());
+    }
+}
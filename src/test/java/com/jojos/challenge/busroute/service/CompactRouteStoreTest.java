@@ -0,0 +1,180 @@
+package com.jojos.challenge.busroute.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.jojos.challenge.busroute.util.RouteUtils.MAX_BUS_ROUTES;
+import static com.jojos.challenge.busroute.util.RouteUtils.MAX_STATIONS;
+import static com.jojos.challenge.busroute.util.RouteUtils.MAX_STATIONS_PER_ROUTE;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class CompactRouteStoreTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CompactRouteStoreTest.class);
+
+    private final Random random = new Random();
+
+    @Test
+    public void testExampleRoutes() {
+        RouteStore routeStore = new CompactRouteStore();
+        routeStore.storeRoute(0, stations(0, 1, 2, 3, 4));
+        routeStore.storeRoute(1, stations(3, 1, 6, 5));
+        routeStore.storeRoute(2, stations(0, 6, 4));
+        routeStore.freeze();
+
+        Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        Assert.assertEquals(7, routeStore.getTotalNumberOfStations());
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, 4));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(6, 3));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(5, 0));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(0, 7));
+    }
+
+    @Test
+    public void testDuplicateRouteIdsAreCountedOnce() {
+        RouteStore routeStore = new CompactRouteStore();
+        routeStore.storeRoute(0, stations(1, 2));
+        routeStore.storeRoute(0, stations(3, 4));
+        Assert.assertEquals(1, routeStore.getTotalNumberOfRoutes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoRoutesAfterFreeze() {
+        RouteStore routeStore = new CompactRouteStore();
+        routeStore.storeRoute(0, stations(1, 2));
+        routeStore.freeze();
+        routeStore.storeRoute(1, stations(3, 4));
+    }
+
+    @Test
+    public void testDirectRoute() {
+        int start = 0;
+        int end = 140;
+        RouteStore routeStore = routesStoreBetween(new CompactRouteStore(), start, end, MAX_BUS_ROUTES / 100);
+
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(start, end - 1));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(start, end));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(start + 50, end - 50));
+
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(end - 1, start));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(end, start));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(end - 50, start + 50));
+    }
+
+    @Test
+    public void testSameAnswersAsInMemoryStore() {
+        int routes = 500;
+        int stationRange = 2_000;
+        RouteStore inMemory = new InMemoryRouteStore();
+        RouteStore compact = new CompactRouteStore();
+        for (int routeId = 0; routeId < routes; routeId++) {
+            LinkedHashSet<Integer> stationIds = random.ints(0, stationRange).distinct().limit(2 + random.nextInt(50)).
+                    boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+            inMemory.storeRoute(routeId, stationIds);
+            compact.storeRoute(routeId, stationIds);
+        }
+        compact.freeze();
+
+        Assert.assertEquals(inMemory.getTotalNumberOfRoutes(), compact.getTotalNumberOfRoutes());
+        Assert.assertEquals(inMemory.getTotalNumberOfStations(), compact.getTotalNumberOfStations());
+        for (int i = 0; i < 50_000; i++) {
+            int departure = random.nextInt(stationRange + 10);
+            int arrival = random.nextInt(stationRange + 10);
+            Assert.assertEquals(departure + " -> " + arrival,
+                    inMemory.isDirectConnectionExistBetween(departure, arrival),
+                    compact.isDirectConnectionExistBetween(departure, arrival));
+        }
+    }
+
+    @Test
+    public void testAdaptiveIntersections() {
+        // ten hubs on about half the routes each, among stations on a handful of routes
+        CompactRouteStore adaptive = new CompactRouteStore();
+        CompactRouteStore merging = new CompactRouteStore();
+        for (int routeId = 0; routeId < 2_000; routeId++) {
+            int[] stationIds = IntStream.concat(random.ints(0, 10).limit(5), random.ints(10, 5_000).limit(2 + random.nextInt(30))).
+                    distinct().toArray();
+            adaptive.storeRoute(routeId, stationIds, 0, stationIds.length);
+            merging.storeRoute(routeId, stationIds, 0, stationIds.length);
+        }
+        merging.stationIndex().setAdaptive(false);
+        Assert.assertEquals(10, adaptive.stationIndex().getHubCount());
+
+        for (int i = 0; i < 30_000; i++) {
+            int departure = random.nextInt(3) == 0 ? random.nextInt(10) : random.nextInt(5_000);
+            int arrival = random.nextInt(3) == 0 ? random.nextInt(10) : random.nextInt(5_000);
+            String pair = departure + " -> " + arrival;
+            Assert.assertEquals(pair, merging.isDirectConnectionExistBetween(departure, arrival), adaptive.isDirectConnectionExistBetween(departure, arrival));
+            Assert.assertEquals(pair, merging.isConnectionEitherWayBetween(departure, arrival), adaptive.isConnectionEitherWayBetween(departure, arrival));
+        }
+        for (Intersection intersection : Intersection.values()) {
+            Assert.assertTrue(intersection.name(), adaptive.stationIndex().getIntersections(intersection) > 0);
+        }
+        Assert.assertEquals(0, merging.stationIndex().getIntersections(Intersection.GALLOP) + merging.stationIndex().getIntersections(Intersection.BITMAP));
+    }
+
+    @Test
+    public void testMemoryFootprintComparedToInMemoryStore() {
+        compareMemoryFootprint(2_000, 500);
+    }
+
+    //    @Test
+    public void testMemoryFootprintAtTheLimits() {
+        // needs a big heap (-Xmx16g) for the in memory store
+        compareMemoryFootprint(MAX_BUS_ROUTES, MAX_STATIONS_PER_ROUTE);
+    }
+
+    private void compareMemoryFootprint(int routes, int stationsPerRoute) {
+        long inMemory = measureHeapOf(routes, stationsPerRoute, new InMemoryRouteStore());
+        long compact = measureHeapOf(routes, stationsPerRoute, new CompactRouteStore());
+        log.info("{} routes of {} stations, in memory store: {} MB, compact store: {} MB",
+                routes, stationsPerRoute, inMemory >> 20, compact >> 20);
+
+        Assert.assertTrue("Compact store is not smaller: " + compact + " vs " + inMemory, compact * 3 < inMemory);
+    }
+
+    private long measureHeapOf(int routes, int stationsPerRoute, RouteStore routeStore) {
+        long before = usedHeap();
+        for (int routeId = 0; routeId < routes; routeId++) {
+            LinkedHashSet<Integer> stationIds = random.ints(0, MAX_STATIONS).distinct().limit(stationsPerRoute).
+                    boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+            routeStore.storeRoute(routeId, stationIds);
+        }
+        routeStore.freeze();
+        long after = usedHeap();
+        // keep the store reachable until measured
+        Assert.assertEquals(routes, routeStore.getTotalNumberOfRoutes());
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private RouteStore routesStoreBetween(RouteStore routeStore, int start, int end, int size) {
+        IntStream.range(0, size).forEach(routeId -> {
+            LinkedHashSet<Integer> stationIds = IntStream.range(start, end).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+            routeStore.storeRoute(routeId, stationIds);
+        });
+        routeStore.freeze();
+        return routeStore;
+    }
+
+    private static LinkedHashSet<Integer> stations(int... stationIds) {
+        return IntStream.of(stationIds).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
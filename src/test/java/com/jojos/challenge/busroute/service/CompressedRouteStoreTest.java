@@ -0,0 +1,105 @@
+package com.jojos.challenge.busroute.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class CompressedRouteStoreTest {
+
+    private final Random random = new Random();
+
+    @Test
+    public void testExampleRoutes() {
+        RouteStore routeStore = new CompressedRouteStore();
+        routeStore.storeRoute(0, stations(0, 1, 2, 3, 4));
+        routeStore.storeRoute(1, stations(3, 1, 6, 5));
+        routeStore.storeRoute(2, stations(0, 6, 4));
+        routeStore.freeze();
+
+        Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        Assert.assertEquals(7, routeStore.getTotalNumberOfStations());
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, 4));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(5, 5));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(6, 3));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(5, 0));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(0, 7));
+        Assert.assertEquals(1, routeStore.getMinimumTransfersBetween(2, 5, 2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoRoutesAfterFreeze() {
+        RouteStore routeStore = new CompressedRouteStore();
+        routeStore.storeRoute(0, stations(1, 2));
+        routeStore.freeze();
+        routeStore.storeRoute(1, stations(3, 4));
+    }
+
+    @Test
+    public void testSameAnswersAsCompactStore() {
+        // a few hubs on most routes, so that their postings span several blocks
+        int stationRange = 3_000;
+        RouteStore compact = new CompactRouteStore();
+        RouteStore compressed = new CompressedRouteStore();
+        for (int routeId = 0; routeId < 800; routeId++) {
+            int[] stationIds = IntStream.concat(random.ints(0, 8).limit(random.nextInt(4)),
+                    random.ints(8, stationRange).limit(2 + random.nextInt(60))).distinct().toArray();
+            // sparse route ids, the ordinals are dense regardless
+            compact.storeRoute(routeId * 7, stationIds, 0, stationIds.length);
+            compressed.storeRoute(routeId * 7, stationIds, 0, stationIds.length);
+        }
+        compact.freeze();
+        compressed.freeze();
+
+        Assert.assertEquals(compact.getTotalNumberOfRoutes(), compressed.getTotalNumberOfRoutes());
+        Assert.assertEquals(compact.getTotalNumberOfStations(), compressed.getTotalNumberOfStations());
+        StringBuilder compactFanOut = new StringBuilder();
+        StringBuilder compressedFanOut = new StringBuilder();
+        compact.forEachStationFanOut(fanOut -> compactFanOut.append(fanOut).append(' '));
+        compressed.forEachStationFanOut(fanOut -> compressedFanOut.append(fanOut).append(' '));
+        Assert.assertEquals(compactFanOut.toString(), compressedFanOut.toString());
+
+        for (int i = 0; i < 20_000; i++) {
+            // hubs and ordinary stations alike, along with a few unknown ones
+            int departure = random.nextBoolean() ? random.nextInt(8) : random.nextInt(stationRange + 10);
+            int arrival = random.nextBoolean() ? random.nextInt(8) : random.nextInt(stationRange + 10);
+            String pair = departure + " -> " + arrival;
+
+            Assert.assertEquals(pair, compact.isDirectConnectionExistBetween(departure, arrival), compressed.isDirectConnectionExistBetween(departure, arrival));
+            Assert.assertEquals(pair, compact.isConnectionEitherWayBetween(departure, arrival), compressed.isConnectionEitherWayBetween(departure, arrival));
+            DirectRoutes expected = new DirectRoutes();
+            DirectRoutes actual = new DirectRoutes();
+            Assert.assertEquals(pair, compact.forEachDirectRoute(departure, arrival, expected), compressed.forEachDirectRoute(departure, arrival, actual));
+            Assert.assertArrayEquals(pair, expected.getRouteIds(), actual.getRouteIds());
+            Assert.assertEquals(pair, expected.getStops(), actual.getStops());
+            if (i % 10 == 0) {
+                Assert.assertEquals(pair, compact.getMinimumTransfersBetween(departure, arrival, 2), compressed.getMinimumTransfersBetween(departure, arrival, 2));
+            }
+        }
+    }
+
+    @Test
+    public void testSmallerThanCompactStore() {
+        CompactRouteStore compact = new CompactRouteStore();
+        CompressedRouteStore compressed = new CompressedRouteStore();
+        // every station on about 50 routes, the station ids themselves take the same memory in both stores
+        for (int routeId = 0; routeId < 2_000; routeId++) {
+            int[] stationIds = random.ints(0, 2_000).distinct().limit(50).toArray();
+            compact.storeRoute(routeId, stationIds, 0, stationIds.length);
+            compressed.storeRoute(routeId, stationIds, 0, stationIds.length);
+        }
+
+        Assert.assertTrue(compressed.getMemoryFootprint() * 2 < compact.getMemoryFootprint());
+    }
+
+    private static LinkedHashSet<Integer> stations(int... stationIds) {
+        return IntStream.of(stationIds).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
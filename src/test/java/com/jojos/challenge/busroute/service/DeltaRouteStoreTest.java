@@ -0,0 +1,236 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.RouteDelta;
+import com.jojos.challenge.busroute.util.RouteFileException;
+import com.jojos.challenge.busroute.util.RouteLimits;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class DeltaRouteStoreTest {
+
+    // as many routes and 3 stations more than the example routes
+    private static final RouteLimits LIMITS = new RouteLimits(3, 10, 10);
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private final Random random = new Random();
+
+    @Test
+    public void testExampleDelta() {
+        DeltaRouteStore routeStore = new DeltaRouteStore(exampleRoutes());
+
+        routeStore.applyDelta(RouteDelta.parse(Arrays.asList(
+                "add 3 7 8 9",
+                "",
+                "remove 2",
+                "replace 1 5 6 1 3")));
+
+        Assert.assertEquals(1, routeStore.getEpoch());
+        Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        // 0 to 9, station 4 is still on route 0
+        Assert.assertEquals(10, routeStore.getTotalNumberOfStations());
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(7, 9));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(6, 3));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(6, 4));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, 4));
+
+        routeStore.removeRoute(0);
+        Assert.assertEquals(2, routeStore.getTotalNumberOfRoutes());
+        Assert.assertEquals(7, routeStore.getTotalNumberOfStations());
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(0, 4));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(4, 4));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(1, 1));
+    }
+
+    @Test
+    public void testRemovedRoutesOfHubs() {
+        // two hubs on every route, and-ed as bitmaps, one of them first on the even routes only
+        CompactRouteStore base = new CompactRouteStore();
+        InMemoryRouteStore expected = new InMemoryRouteStore();
+        for (int routeId = 0; routeId < 200; routeId++) {
+            LinkedHashSet<Integer> stations = new LinkedHashSet<>(routeId % 2 == 0 ? Arrays.asList(0, 1, 2) : Arrays.asList(1, 0, 2));
+            base.storeRoute(routeId, stations);
+            expected.storeRoute(routeId, stations);
+        }
+        DeltaRouteStore routeStore = new DeltaRouteStore(base);
+        Assert.assertEquals(3, base.stationIndex().getHubCount());
+
+        for (int routeId = 0; routeId < 200; routeId += 2) {
+            routeStore.removeRoute(routeId);
+            expected.removeRoute(routeId);
+            Assert.assertEquals(expected.isDirectConnectionExistBetween(0, 1), routeStore.isDirectConnectionExistBetween(0, 1));
+            Assert.assertEquals(expected.isDirectConnectionExistBetween(1, 0), routeStore.isDirectConnectionExistBetween(1, 0));
+        }
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(0, 1));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(1, 0));
+        Assert.assertTrue(base.stationIndex().getIntersections(Intersection.BITMAP) > 0);
+    }
+
+    @Test
+    public void testFailedDeltaChangesNothing() {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 3: Route id 2 does not exist");
+
+        DeltaRouteStore routeStore = new DeltaRouteStore(exampleRoutes());
+        try {
+            routeStore.applyDelta(RouteDelta.parse(Arrays.asList("remove 0", "remove 2", "remove 2")));
+        } finally {
+            Assert.assertEquals(0, routeStore.getEpoch());
+            Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+            Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, 4));
+        }
+    }
+
+    @Test
+    public void testDeltaWithinLimits() {
+        DeltaRouteStore routeStore = new DeltaRouteStore(exampleRoutes());
+
+        // station 5 is only found on route 1
+        routeStore.applyDelta(RouteDelta.parse(Arrays.asList("remove 1", "add 3 7 8 9 10"), LIMITS));
+
+        Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        Assert.assertEquals(10, routeStore.getTotalNumberOfStations());
+    }
+
+    @Test
+    public void testDeltaExceedingRouteLimit() {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 3: Number of bus routes 4 larger than expected 3 (rule 2)");
+
+        DeltaRouteStore routeStore = new DeltaRouteStore(exampleRoutes());
+        try {
+            routeStore.applyDelta(RouteDelta.parse(Arrays.asList("remove 2", "add 3 7 8", "add 4 8 9"), LIMITS));
+        } finally {
+            Assert.assertEquals(0, routeStore.getEpoch());
+            Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        }
+    }
+
+    @Test
+    public void testDeltaExceedingStationLimit() {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 2: Upper limit for the total number of stations on all routes exceeded (rule 8)");
+
+        DeltaRouteStore routeStore = new DeltaRouteStore(exampleRoutes());
+        try {
+            routeStore.applyDelta(RouteDelta.parse(Arrays.asList("remove 1", "add 3 7 8 9 10 11"), LIMITS));
+        } finally {
+            Assert.assertEquals(0, routeStore.getEpoch());
+            Assert.assertEquals(7, routeStore.getTotalNumberOfStations());
+        }
+    }
+
+    @Test
+    public void testAddExistingRoute() {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 1: Route id 1 already exists");
+        new DeltaRouteStore(exampleRoutes()).applyDelta(RouteDelta.parse(Arrays.asList("add 1 2 3")));
+    }
+
+    @Test
+    public void testInvalidDeltaLine() {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 2: Duplicate stations per route found, station id 3");
+        RouteDelta.parse(Arrays.asList("remove 1", "replace 1 3 4 3"));
+    }
+
+    @Test
+    public void testSameAnswersAsInMemoryStore() {
+        int stationRange = 1_000;
+        RouteStore inMemory = new InMemoryRouteStore();
+        CompactRouteStore compact = new CompactRouteStore();
+        List<Integer> routeIds = new ArrayList<>();
+        Map<Integer, LinkedHashSet<Integer>> routes = new HashMap<>();
+        for (int routeId = 0; routeId < 300; routeId++) {
+            LinkedHashSet<Integer> stations = randomStations(stationRange);
+            inMemory.storeRoute(routeId, stations);
+            compact.storeRoute(routeId, stations);
+            routeIds.add(routeId);
+            routes.put(routeId, stations);
+        }
+        inMemory.freeze();
+        DeltaRouteStore delta = new DeltaRouteStore(compact);
+
+        int nextRouteId = 300;
+        for (int round = 0; round < 50; round++) {
+            List<String> lines = new ArrayList<>();
+            for (int change = 0; change < 5; change++) {
+                int kind = random.nextInt(3);
+                if (kind == 0 || routeIds.size() < 10) {
+                    LinkedHashSet<Integer> stations = randomStations(stationRange);
+                    lines.add("add " + nextRouteId + " " + join(stations));
+                    routes.put(nextRouteId, stations);
+                    routeIds.add(nextRouteId++);
+                } else if (kind == 1) {
+                    int routeId = routeIds.remove(random.nextInt(routeIds.size()));
+                    lines.add("remove " + routeId);
+                    routes.remove(routeId);
+                } else {
+                    int routeId = routeIds.get(random.nextInt(routeIds.size()));
+                    LinkedHashSet<Integer> stations = randomStations(stationRange);
+                    lines.add("replace " + routeId + " " + join(stations));
+                    routes.put(routeId, stations);
+                }
+            }
+            RouteDelta routeDelta = RouteDelta.parse(lines);
+            inMemory.applyDelta(routeDelta);
+            delta.applyDelta(routeDelta);
+
+            // both layer the changes on top of the routes loaded, a store built out of the routes as they are now does not
+            RouteStore rebuilt = new CompactRouteStore();
+            routes.forEach(rebuilt::storeRoute);
+            Assert.assertEquals(rebuilt.getTotalNumberOfRoutes(), inMemory.getTotalNumberOfRoutes());
+            Assert.assertEquals(rebuilt.getTotalNumberOfRoutes(), delta.getTotalNumberOfRoutes());
+            Assert.assertEquals(rebuilt.getTotalNumberOfStations(), inMemory.getTotalNumberOfStations());
+            Assert.assertEquals(rebuilt.getTotalNumberOfStations(), delta.getTotalNumberOfStations());
+            for (int i = 0; i < 2_000; i++) {
+                int departure = random.nextInt(stationRange);
+                int arrival = random.nextInt(stationRange);
+                boolean expected = rebuilt.isDirectConnectionExistBetween(departure, arrival);
+                Assert.assertEquals(expected, inMemory.isDirectConnectionExistBetween(departure, arrival));
+                Assert.assertEquals(expected, delta.isDirectConnectionExistBetween(departure, arrival));
+                Assert.assertEquals(rebuilt.isConnectionEitherWayBetween(departure, arrival), delta.isConnectionEitherWayBetween(departure, arrival));
+            }
+        }
+    }
+
+    private CompactRouteStore exampleRoutes() {
+        CompactRouteStore routeStore = new CompactRouteStore();
+        routeStore.storeRoute(0, stations(0, 1, 2, 3, 4));
+        routeStore.storeRoute(1, stations(3, 1, 6, 5));
+        routeStore.storeRoute(2, stations(0, 6, 4));
+        routeStore.freeze();
+        return routeStore;
+    }
+
+    private LinkedHashSet<Integer> randomStations(int stationRange) {
+        return random.ints(0, stationRange).distinct().limit(2 + random.nextInt(30)).boxed().
+                collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static String join(LinkedHashSet<Integer> stations) {
+        return stations.stream().map(String::valueOf).collect(Collectors.joining(" "));
+    }
+
+    private static LinkedHashSet<Integer> stations(int... stationIds) {
+        LinkedHashSet<Integer> stations = new LinkedHashSet<>();
+        Arrays.stream(stationIds).forEach(stations::add);
+        return stations;
+    }
+}
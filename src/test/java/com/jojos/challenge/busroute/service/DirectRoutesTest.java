@@ -0,0 +1,134 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.RouteDelta;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+import static com.jojos.challenge.busroute.service.RouteFixtures.compact;
+import static com.jojos.challenge.busroute.service.RouteFixtures.indexOf;
+import static com.jojos.challenge.busroute.service.RouteFixtures.join;
+import static com.jojos.challenge.busroute.service.RouteFixtures.mapped;
+import static com.jojos.challenge.busroute.service.RouteFixtures.randomRoute;
+import static com.jojos.challenge.busroute.service.RouteFixtures.randomRoutes;
+import static com.jojos.challenge.busroute.service.RouteFixtures.toSet;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class DirectRoutesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random();
+
+    @Test
+    public void testExampleRoutes() {
+        CompactRouteStore store = compact(new int[][]{{0, 1, 2, 3, 4}, {3, 1, 6, 5}, {0, 6, 4}, {7, 1, 4}});
+
+        DirectRoutes routes = routes(store, 1, 4);
+        Assert.assertTrue(routes.isConnected());
+        Assert.assertArrayEquals(new int[]{0, 3}, routes.getRouteIds());
+        Assert.assertEquals(3, routes.getBestRouteId());
+        Assert.assertEquals(1, routes.getStops());
+
+        routes = routes(store, 0, 4);
+        Assert.assertArrayEquals(new int[]{0, 2}, routes.getRouteIds());
+        Assert.assertEquals(2, routes.getBestRouteId());
+        Assert.assertEquals(2, routes.getStops());
+
+        routes = routes(store, 6, 6);
+        Assert.assertArrayEquals(new int[]{1, 2}, routes.getRouteIds());
+        Assert.assertEquals(1, routes.getBestRouteId());
+        Assert.assertEquals(0, routes.getStops());
+
+        for (int[] pair : new int[][]{{4, 0}, {5, 3}, {0, 8}, {8, 8}}) {
+            routes = routes(store, pair[0], pair[1]);
+            Assert.assertFalse(routes.isConnected());
+            Assert.assertEquals(0, routes.getRouteIds().length);
+            Assert.assertEquals(-1, routes.getBestRouteId());
+            Assert.assertEquals(-1, routes.getStops());
+        }
+    }
+
+    @Test
+    public void testSameAnswersAsScanningTheRoutes() throws IOException {
+        int[][] routes = randomRoutes(random, 300, 2, 12, 500);
+        CompactRouteStore compact = compact(routes);
+        InMemoryRouteStore inMemory = new InMemoryRouteStore();
+        for (int route = 0; route < routes.length; route++) {
+            inMemory.storeRoute(route, toSet(routes[route]));
+        }
+        RouteStore[] stores = {compact, inMemory, mapped(folder, routes), new HotStationRouteStore(compact, 10, Long.MAX_VALUE),
+                new CachingRouteStore(compact, 1_024, CachingRouteStore.Policy.LRU)};
+
+        for (int i = 0; i < 5_000; i++) {
+            int departure = random.nextInt(520);
+            int arrival = random.nextInt(520);
+            for (RouteStore store : stores) {
+                assertSameAsScan(routes, store, departure, arrival);
+            }
+        }
+    }
+
+    @Test
+    public void testDeltaRoutes() {
+        int[][] routes = randomRoutes(random, 200, 2, 10, 300);
+        DeltaRouteStore store = new DeltaRouteStore(compact(routes));
+        int[][] expected = Arrays.copyOf(routes, 210);
+        StringBuilder changes = new StringBuilder();
+        for (int route = 0; route < 20; route++) {
+            changes.append("remove ").append(route).append('\n');
+            expected[route] = new int[0];
+        }
+        for (int route = 20; route < 40; route++) {
+            expected[route] = randomRoute(random, 2, 10, 300);
+            changes.append("replace ").append(route).append(' ').append(join(expected[route])).append('\n');
+        }
+        for (int route = 200; route < 210; route++) {
+            expected[route] = randomRoute(random, 2, 10, 300);
+            changes.append("add ").append(route).append(' ').append(join(expected[route])).append('\n');
+        }
+        store.applyDelta(RouteDelta.parse(Arrays.asList(changes.toString().split("\n"))));
+
+        for (int i = 0; i < 5_000; i++) {
+            assertSameAsScan(expected, store, random.nextInt(300), random.nextInt(300));
+        }
+    }
+
+    private static void assertSameAsScan(int[][] routes, RouteStore store, int departure, int arrival) {
+        DirectRoutes actual = routes(store, departure, arrival);
+        Assert.assertEquals(store.isDirectConnectionExistBetween(departure, arrival), actual.isConnected());
+
+        LinkedHashSet<Integer> routeIds = new LinkedHashSet<>();
+        int bestRouteId = -1;
+        int stops = -1;
+        for (int route = 0; route < routes.length; route++) {
+            int from = indexOf(routes[route], departure);
+            int to = indexOf(routes[route], arrival);
+            if (from >= 0 && to >= from) {
+                routeIds.add(route);
+                if (stops < 0 || to - from < stops) {
+                    bestRouteId = route;
+                    stops = to - from;
+                }
+            }
+        }
+        Assert.assertArrayEquals(routeIds.stream().mapToInt(Integer::intValue).toArray(), actual.getRouteIds());
+        Assert.assertEquals(bestRouteId, actual.getBestRouteId());
+        Assert.assertEquals(stops, actual.getStops());
+    }
+
+    private static DirectRoutes routes(RouteStore store, int departure, int arrival) {
+        DirectRoutes routes = new DirectRoutes();
+        Assert.assertEquals(store.forEachDirectRoute(departure, arrival, routes), routes.isConnected());
+        return routes;
+    }
+}
@@ -0,0 +1,121 @@
+package com.jojos.challenge.busroute.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class FilteringRouteStoreTest {
+
+    private final Random random = new Random();
+
+    @Test
+    public void testExampleRoutes() {
+        CompactRouteStore compact = new CompactRouteStore();
+        compact.storeRoute(0, stations(0, 1, 2, 3, 4));
+        compact.storeRoute(1, stations(3, 1, 6, 5));
+        compact.storeRoute(2, stations(0, 6, 4));
+
+        FilteringRouteStore routeStore = new FilteringRouteStore(compact, compact.stationIndex(), 0.01, Long.MAX_VALUE);
+
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, 4));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(5, 5));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(6, 3));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(5, 0));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(0, 7));
+        Assert.assertTrue(routeStore.isConnectionEitherWayBetween(6, 3));
+        Assert.assertEquals(1, routeStore.getMinimumTransfersBetween(2, 5, 2));
+        Assert.assertEquals(7, routeStore.getChecks());
+    }
+
+    @Test
+    public void testSameAnswersAsCompactStore() {
+        int stationRange = 20_000;
+        CompactRouteStore compact = randomCompactStore(1_000, stationRange);
+        FilteringRouteStore routeStore = new FilteringRouteStore(compact, compact.stationIndex(), 0.05, Long.MAX_VALUE);
+
+        int notConnected = 0;
+        for (int i = 0; i < 100_000; i++) {
+            // known stations and unknown ones alike
+            int departure = random.nextInt(stationRange * 2);
+            int arrival = random.nextInt(stationRange * 2);
+            String pair = departure + " -> " + arrival;
+
+            boolean connected = compact.isDirectConnectionExistBetween(departure, arrival);
+            Assert.assertEquals(pair, connected, routeStore.isDirectConnectionExistBetween(departure, arrival));
+            Assert.assertEquals(pair, compact.isConnectionEitherWayBetween(departure, arrival), routeStore.isConnectionEitherWayBetween(departure, arrival));
+            DirectRoutes expected = new DirectRoutes();
+            DirectRoutes actual = new DirectRoutes();
+            Assert.assertEquals(pair, compact.forEachDirectRoute(departure, arrival, expected), routeStore.forEachDirectRoute(departure, arrival, actual));
+            Assert.assertArrayEquals(pair, expected.getRouteIds(), actual.getRouteIds());
+            if (!connected) {
+                notConnected++;
+            }
+        }
+        // three checks per pair, most of the pairs sharing no route are rejected
+        Assert.assertEquals(300_000, routeStore.getChecks());
+        Assert.assertTrue(routeStore.getRejects() > notConnected * 3 * 0.8);
+    }
+
+    @Test
+    public void testMemoryCapIsNotExceeded() {
+        CompactRouteStore compact = randomCompactStore(1_000, 20_000);
+        FilteringRouteStore unbounded = new FilteringRouteStore(compact, compact.stationIndex(), 0.01, Long.MAX_VALUE);
+        long cap = unbounded.getMemoryFootprint() / 4;
+
+        FilteringRouteStore routeStore = new FilteringRouteStore(compact, compact.stationIndex(), 0.01, cap);
+
+        Assert.assertTrue(routeStore.getMemoryFootprint() <= cap);
+        for (int i = 0; i < 10_000; i++) {
+            int departure = random.nextInt(20_000);
+            int arrival = random.nextInt(20_000);
+            Assert.assertEquals(compact.isDirectConnectionExistBetween(departure, arrival), routeStore.isDirectConnectionExistBetween(departure, arrival));
+        }
+    }
+
+    @Test
+    public void testRateNotReachedForLargeFanOut() {
+        CompactRouteStore compact = randomCompactStore(1_000, 20_000);
+        FilteringRouteStore routeStore = new FilteringRouteStore(compact, compact.stationIndex(), 0.05, Long.MAX_VALUE);
+        Assert.assertTrue(routeStore.getExpectedFalsePositiveRate() <= 0.05);
+
+        // every station on 50 routes, a block of 512 bits lets about 1 - exp(-50 * 50 / 512) of the pairs through
+        CompactRouteStore hubs = new CompactRouteStore();
+        for (int routeId = 0; routeId < 100; routeId++) {
+            hubs.storeRoute(routeId, routeId % 2 == 0 ? stations(0, 1, 2, 3) : stations(4, 5, 6, 7));
+        }
+        hubs.freeze();
+        routeStore = new FilteringRouteStore(hubs, hubs.stationIndex(), 0.05, Long.MAX_VALUE);
+
+        Assert.assertEquals(512, routeStore.getBlockBits());
+        Assert.assertTrue(routeStore.getExpectedFalsePositiveRate() > 0.05);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFalsePositiveRateOutOfRange() {
+        CompactRouteStore compact = randomCompactStore(10, 100);
+        new FilteringRouteStore(compact, compact.stationIndex(), 1, Long.MAX_VALUE);
+    }
+
+    private CompactRouteStore randomCompactStore(int routes, int stationRange) {
+        CompactRouteStore compact = new CompactRouteStore();
+        for (int routeId = 0; routeId < routes; routeId++) {
+            LinkedHashSet<Integer> stationIds = random.ints(0, stationRange).distinct().limit(2 + random.nextInt(20)).
+                    boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+            compact.storeRoute(routeId, stationIds);
+        }
+        compact.freeze();
+        return compact;
+    }
+
+    private static LinkedHashSet<Integer> stations(int... stationIds) {
+        return IntStream.of(stationIds).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
@@ -0,0 +1,80 @@
+package com.jojos.challenge.busroute.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class HotStationRouteStoreTest {
+
+    private final Random random = new Random();
+
+    @Test
+    public void testExampleRoutes() {
+        CompactRouteStore compact = new CompactRouteStore();
+        compact.storeRoute(0, stations(0, 1, 2, 3, 4));
+        compact.storeRoute(1, stations(3, 1, 6, 5));
+        compact.storeRoute(2, stations(0, 6, 4));
+        compact.freeze();
+
+        HotStationRouteStore routeStore = new HotStationRouteStore(compact, 7, Long.MAX_VALUE);
+
+        Assert.assertEquals(7, routeStore.getHotStationCount());
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, 4));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(4, 4));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(6, 3));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(5, 0));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(0, 7));
+    }
+
+    @Test
+    public void testSameAnswersAsCompactStore() {
+        int stationRange = 3_000;
+        CompactRouteStore compact = randomCompactStore(1_000, stationRange);
+        HotStationRouteStore routeStore = new HotStationRouteStore(compact, 100, Long.MAX_VALUE);
+
+        Assert.assertEquals(100, routeStore.getHotStationCount());
+        for (int i = 0; i < 100_000; i++) {
+            int departure = random.nextInt(stationRange + 10);
+            int arrival = random.nextInt(stationRange + 10);
+            Assert.assertEquals(departure + " -> " + arrival,
+                    compact.isDirectConnectionExistBetween(departure, arrival),
+                    routeStore.isDirectConnectionExistBetween(departure, arrival));
+        }
+    }
+
+    @Test
+    public void testMemoryCapIsNotExceeded() {
+        CompactRouteStore compact = randomCompactStore(1_000, 3_000);
+        HotStationRouteStore unbounded = new HotStationRouteStore(compact, 100, Long.MAX_VALUE);
+        long cap = unbounded.getMemoryFootprint() / 2;
+
+        HotStationRouteStore routeStore = new HotStationRouteStore(compact, 100, cap);
+
+        Assert.assertTrue(routeStore.getMemoryFootprint() <= cap);
+        Assert.assertTrue(routeStore.getHotStationCount() > 0);
+        Assert.assertTrue(routeStore.getHotStationCount() < 100);
+    }
+
+    private CompactRouteStore randomCompactStore(int routes, int stationRange) {
+        CompactRouteStore compact = new CompactRouteStore();
+        for (int routeId = 0; routeId < routes; routeId++) {
+            LinkedHashSet<Integer> stationIds = random.ints(0, stationRange).distinct().limit(2 + random.nextInt(100)).
+                    boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+            compact.storeRoute(routeId, stationIds);
+        }
+        compact.freeze();
+        return compact;
+    }
+
+    private static LinkedHashSet<Integer> stations(int... stationIds) {
+        return IntStream.of(stationIds).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
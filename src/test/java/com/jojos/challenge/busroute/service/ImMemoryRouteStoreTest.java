@@ -1,8 +1,14 @@
 package com.jojos.challenge.busroute.service;
 
+import com.jojos.challenge.busroute.util.RouteDelta;
+import com.jojos.challenge.busroute.util.RouteFileException;
+import com.jojos.challenge.busroute.util.RouteLimits;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
@@ -18,6 +24,12 @@ import static com.jojos.challenge.busroute.util.RouteUtils.MAX_STATIONS_PER_ROUT
  */
 public class ImMemoryRouteStoreTest {
 
+    // as many routes and 3 stations more than the example routes
+    private static final RouteLimits LIMITS = new RouteLimits(3, 10, 10);
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
     private final Random random = new Random();
 
     @Test
@@ -74,6 +86,65 @@ public class ImMemoryRouteStoreTest {
 
     }
 
+    @Test
+    public void testRoutesStoredAfterAQueryAreVisible() {
+        RouteStore routeStore = new InMemoryRouteStore();
+        routeStore.storeRoute(0, IntStream.of(0, 1, 2, 3, 4).boxed().collect(Collectors.toCollection(LinkedHashSet::new)));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertEquals(5, routeStore.getTotalNumberOfStations());
+
+        routeStore.storeRoute(1, IntStream.of(3, 1, 6, 5).boxed().collect(Collectors.toCollection(LinkedHashSet::new)));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(6, 3));
+        Assert.assertEquals(7, routeStore.getTotalNumberOfStations());
+    }
+
+    @Test
+    public void testDeltaWithinLimits() {
+        RouteStore routeStore = exampleRoutes();
+
+        // station 5 is only found on route 1
+        routeStore.applyDelta(RouteDelta.parse(Arrays.asList("remove 1", "add 3 7 8 9 10"), LIMITS));
+
+        Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        Assert.assertEquals(10, routeStore.getTotalNumberOfStations());
+    }
+
+    @Test
+    public void testDeltaExceedingRouteLimit() {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 3: Number of bus routes 4 larger than expected 3 (rule 2)");
+
+        RouteStore routeStore = exampleRoutes();
+        try {
+            routeStore.applyDelta(RouteDelta.parse(Arrays.asList("remove 2", "add 3 7 8", "add 4 8 9"), LIMITS));
+        } finally {
+            Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+            Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, 6));
+        }
+    }
+
+    @Test
+    public void testDeltaExceedingStationLimit() {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 2: Upper limit for the total number of stations on all routes exceeded (rule 8)");
+
+        RouteStore routeStore = exampleRoutes();
+        try {
+            routeStore.applyDelta(RouteDelta.parse(Arrays.asList("remove 1", "add 3 7 8 9 10 11"), LIMITS));
+        } finally {
+            Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+            Assert.assertEquals(7, routeStore.getTotalNumberOfStations());
+        }
+    }
+
+    private RouteStore exampleRoutes() {
+        RouteStore routeStore = new InMemoryRouteStore();
+        routeStore.storeRoute(0, IntStream.of(0, 1, 2, 3, 4).boxed().collect(Collectors.toCollection(LinkedHashSet::new)));
+        routeStore.storeRoute(1, IntStream.of(3, 1, 6, 5).boxed().collect(Collectors.toCollection(LinkedHashSet::new)));
+        routeStore.storeRoute(2, IntStream.of(0, 6, 4).boxed().collect(Collectors.toCollection(LinkedHashSet::new)));
+        return routeStore;
+    }
 
     private RouteStore routesStoreBetween(int start, int end, int size) {
         RouteStore routeStore = new InMemoryRouteStore();
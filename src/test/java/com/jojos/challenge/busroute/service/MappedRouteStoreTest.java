@@ -0,0 +1,95 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.util.RouteUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class MappedRouteStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random();
+
+    @Test
+    public void testExampleRoutes() throws IOException {
+        RouteStore routeStore = loadMapped(dataFile("3", "0 0 1 2 3 4", "1 3 1 6 5", "2 0 6 4"));
+
+        Assert.assertTrue(routeStore instanceof MappedRouteStore);
+        Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        Assert.assertEquals(7, routeStore.getTotalNumberOfStations());
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, 4));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(5, 5));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(6, 3));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(5, 0));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(0, 7));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(-1, 0));
+    }
+
+    @Test
+    public void testSameAnswersAsCompactStore() throws IOException {
+        String[] rows = new String[1_001];
+        rows[0] = "1000";
+        for (int routeId = 0; routeId < 1_000; routeId++) {
+            rows[routeId + 1] = routeId + " " + random.ints(0, 3_000).distinct().limit(2 + random.nextInt(80)).
+                    mapToObj(String::valueOf).collect(Collectors.joining(" "));
+        }
+        Path dataFile = dataFile(rows);
+
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.setStore(RouteStoreType.COMPACT);
+        properties.getSnapshot().setEnabled(false);
+        RouteStore compact = new RouteService(properties).loadRoutesFromFileAndValidate(dataFile.toString());
+
+        // the first one parses the data file and maps the snapshot it writes, the second one only maps it
+        MappedRouteStore parsed = (MappedRouteStore) loadMapped(dataFile);
+        MappedRouteStore restored = (MappedRouteStore) loadMapped(dataFile);
+
+        Assert.assertEquals(compact.getTotalNumberOfRoutes(), restored.getTotalNumberOfRoutes());
+        Assert.assertEquals(compact.getTotalNumberOfStations(), restored.getTotalNumberOfStations());
+        Assert.assertEquals(((CompactRouteStore) compact).stationIndex().getMemoryFootprint(), restored.getMappedSize());
+        for (int i = 0; i < 50_000; i++) {
+            int departure = random.nextInt(3_000);
+            int arrival = random.nextInt(3_000);
+            boolean expected = compact.isDirectConnectionExistBetween(departure, arrival);
+            Assert.assertEquals(expected, parsed.isDirectConnectionExistBetween(departure, arrival));
+            Assert.assertEquals(expected, restored.isDirectConnectionExistBetween(departure, arrival));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoRoutesCanBeStored() throws IOException {
+        loadMapped(dataFile("1", "0 1 2")).storeRoute(1, new int[]{3, 4}, 0, 2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNoMappedStoreWithoutSnapshot() throws IOException {
+        RouteUtils.loadRoutesFromFileAndValidate(dataFile("1", "0 1 2"), RouteStoreType.MAPPED);
+    }
+
+    private RouteStore loadMapped(Path dataFile) throws IOException {
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.setStore(RouteStoreType.MAPPED);
+        return new RouteService(properties).loadRoutesFromFileAndValidate(dataFile.toString());
+    }
+
+    private Path dataFile(String... lines) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, String.join("\n", lines).getBytes(StandardCharsets.US_ASCII));
+        return path;
+    }
+}
@@ -0,0 +1,79 @@
+package com.jojos.challenge.busroute.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class QueryAuditorTest {
+
+    @Test
+    public void testEveryQueryIsAuditedInOrder() throws InterruptedException {
+        List<String> audited = Collections.synchronizedList(new ArrayList<>());
+        QueryAuditor auditor = new QueryAuditor(true, 1, 16, 4,
+                (departure, arrival, exists) -> audited.add(departure + " " + arrival + " " + exists));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            // leaves the writer time to drain so that nothing is dropped
+            while (auditor.getDropped() == 0 && audited.size() + 8 < i) {
+                Thread.sleep(1);
+            }
+            auditor.record(i, -i, i % 3 == 0);
+            expected.add(i + " " + -i + " " + (i % 3 == 0));
+        }
+        auditor.stop();
+
+        Assert.assertEquals(0, auditor.getDropped());
+        Assert.assertEquals(expected, audited);
+    }
+
+    @Test
+    public void testQueriesAreDroppedOnceTheBufferIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger audited = new AtomicInteger();
+        QueryAuditor auditor = new QueryAuditor(true, 1, 8, 64, (departure, arrival, exists) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            audited.incrementAndGet();
+        });
+
+        // the writer is stuck on the first query and keeps its slot until the batch is over
+        for (int i = 0; i < 20; i++) {
+            auditor.record(i, i, true);
+        }
+        release.countDown();
+        auditor.stop();
+
+        Assert.assertEquals(12, auditor.getDropped());
+        Assert.assertEquals(8, audited.get());
+    }
+
+    @Test
+    public void testQueriesAreSampled() throws InterruptedException {
+        AtomicInteger audited = new AtomicInteger();
+        QueryAuditor auditor = new QueryAuditor(true, 0.1, 1 << 16, 1_024, (departure, arrival, exists) -> audited.incrementAndGet());
+        for (int i = 0; i < 10_000; i++) {
+            auditor.record(i, i, false);
+        }
+        auditor.stop();
+        Assert.assertEquals(0, auditor.getDropped());
+        Assert.assertTrue(String.valueOf(audited.get()), audited.get() > 700 && audited.get() < 1_300);
+
+        AtomicInteger none = new AtomicInteger();
+        QueryAuditor disabled = new QueryAuditor(false, 1, 16, 16, (departure, arrival, exists) -> none.incrementAndGet());
+        disabled.record(1, 2, true);
+        disabled.stop();
+        Assert.assertEquals(0, none.get());
+    }
+}
@@ -0,0 +1,158 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.RouteDelta;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static com.jojos.challenge.busroute.service.RouteFixtures.compact;
+import static com.jojos.challenge.busroute.service.RouteFixtures.join;
+import static com.jojos.challenge.busroute.service.RouteFixtures.mapped;
+import static com.jojos.challenge.busroute.service.RouteFixtures.randomRoute;
+import static com.jojos.challenge.busroute.util.RouteUtils.MAX_BUS_ROUTES;
+import static com.jojos.challenge.busroute.util.RouteUtils.MAX_STATIONS;
+import static com.jojos.challenge.busroute.util.RouteUtils.MAX_STATIONS_PER_ROUTE;
+
+/**
+ * Randomized route maps up to the limits of the data file, every store against a brute force scan of the routes,
+ * one way and both ways
+ *
+ * @author karanikasg@gmail.com.
+ */
+public class RouteDirectionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final long seed = System.nanoTime();
+    private final Random random = new Random(seed);
+
+    @Test
+    public void testShortRoutes() throws IOException {
+        for (int round = 0; round < 5; round++) {
+            assertSameAsOracle(randomRoutes(500, 2, 10, 1_000), 5_000);
+        }
+    }
+
+    @Test
+    public void testLongestRoutes() throws IOException {
+        assertSameAsOracle(randomRoutes(200, MAX_STATIONS_PER_ROUTE / 2, MAX_STATIONS_PER_ROUTE, 20_000), 10_000);
+    }
+
+    @Test
+    public void testMostRoutes() throws IOException {
+        assertSameAsOracle(randomRoutes(MAX_BUS_ROUTES, 2, 10, MAX_STATIONS), 500);
+    }
+
+    @Test
+    public void testDeltaRoutes() {
+        int[][] routes = randomRoutes(1_000, 2, 20, 2_000);
+        DeltaRouteStore store = new DeltaRouteStore(compact(routes));
+        List<String> changes = new ArrayList<>();
+        for (int route = 0; route < 100; route++) {
+            changes.add("remove " + route);
+            routes[route] = new int[0];
+        }
+        for (int route = 100; route < 200; route++) {
+            routes[route] = randomRoute(random, 2, 20, 2_000);
+            changes.add("replace " + route + " " + join(routes[route]));
+        }
+        store.applyDelta(RouteDelta.parse(changes));
+
+        Oracle oracle = new Oracle(routes);
+        for (int i = 0; i < 10_000; i++) {
+            int[] pair = oracle.randomPair(random);
+            assertSameAnswers(store, pair[0], pair[1], oracle.connects(pair[0], pair[1], false), oracle.connects(pair[0], pair[1], true));
+        }
+    }
+
+    private void assertSameAsOracle(int[][] routes, int queries) throws IOException {
+        Oracle oracle = new Oracle(routes);
+        CompactRouteStore compact = compact(routes);
+        InMemoryRouteStore inMemory = new InMemoryRouteStore();
+        for (int route = 0; route < routes.length; route++) {
+            inMemory.storeRoute(route, Arrays.stream(routes[route]).boxed().collect(Collectors.toCollection(LinkedHashSet::new)));
+        }
+        RouteStore[] stores = {compact, inMemory, mapped(folder, routes), new CachingRouteStore(compact, 1_024, CachingRouteStore.Policy.LRU)};
+
+        for (int i = 0; i < queries; i++) {
+            int[] pair = oracle.randomPair(random);
+            boolean oneWay = oracle.connects(pair[0], pair[1], false);
+            boolean eitherWay = oracle.connects(pair[0], pair[1], true);
+            for (RouteStore store : stores) {
+                assertSameAnswers(store, pair[0], pair[1], oneWay, eitherWay);
+            }
+        }
+    }
+
+    private void assertSameAnswers(RouteStore store, int departure, int arrival, boolean oneWay, boolean eitherWay) {
+        String message = String.format("%s from %d to %d, seed %d", store.getClass().getSimpleName(), departure, arrival, seed);
+        Assert.assertEquals(message, oneWay, store.isDirectConnectionExistBetween(departure, arrival));
+        Assert.assertEquals(message, eitherWay, store.isConnectionEitherWayBetween(departure, arrival));
+    }
+
+    /**
+     * Scans every route for the two stations
+     */
+    private static class Oracle {
+
+        private final List<Map<Integer, Integer>> positions = new ArrayList<>();
+        private final int[][] routes;
+
+        Oracle(int[][] routes) {
+            this.routes = routes;
+            for (int[] stations : routes) {
+                Map<Integer, Integer> route = new HashMap<>();
+                for (int i = 0; i < stations.length; i++) {
+                    route.put(stations[i], i);
+                }
+                positions.add(route);
+            }
+        }
+
+        boolean connects(int departure, int arrival, boolean eitherWay) {
+            for (Map<Integer, Integer> route : positions) {
+                Integer from = route.get(departure);
+                Integer to = route.get(arrival);
+                if (from != null && to != null && (eitherWay || from <= to)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return two stations of the same route in either order, of different routes or not found on any route
+         */
+        int[] randomPair(Random random) {
+            int[] route1 = routes[random.nextInt(routes.length)];
+            int[] route2 = random.nextBoolean() ? route1 : routes[random.nextInt(routes.length)];
+            int departure = route1.length == 0 || random.nextInt(20) == 0 ? random.nextInt() : route1[random.nextInt(route1.length)];
+            int arrival = route2.length == 0 || random.nextInt(20) == 0 ? random.nextInt() : route2[random.nextInt(route2.length)];
+            return new int[]{departure, arrival};
+        }
+    }
+
+    /**
+     * @param stations the number of distinct station ids to pick from, spread over the whole int range
+     */
+    private int[][] randomRoutes(int count, int minStations, int maxStations, int stations) {
+        int[] stationIds = random.ints().distinct().limit(stations).toArray();
+        int[][] routes = RouteFixtures.randomRoutes(random, count, minStations, maxStations, stations);
+        for (int route = 0; route < count; route++) {
+            routes[route] = Arrays.stream(routes[route]).map(ordinal -> stationIds[ordinal]).toArray();
+        }
+        return routes;
+    }
+}
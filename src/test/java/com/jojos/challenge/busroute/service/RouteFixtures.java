@@ -0,0 +1,96 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import org.junit.Assert;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Random routes as arrays of station ids, route id {@code i} at index {@code i}, and the stores and data files
+ * holding them
+ *
+ * @author karanikasg@gmail.com.
+ */
+final class RouteFixtures {
+
+    private RouteFixtures() {
+    }
+
+    /**
+     * @param stations the station ids are picked from {@code 0..stations - 1}
+     */
+    static int[][] randomRoutes(Random random, int count, int minStations, int maxStations, int stations) {
+        int[][] routes = new int[count][];
+        for (int route = 0; route < count; route++) {
+            routes[route] = randomRoute(random, minStations, maxStations, stations);
+        }
+        return routes;
+    }
+
+    static int[] randomRoute(Random random, int minStations, int maxStations, int stations) {
+        return random.ints(0, stations).distinct().limit(minStations + random.nextInt(maxStations - minStations + 1)).toArray();
+    }
+
+    static CompactRouteStore compact(int[][] routes) {
+        CompactRouteStore store = new CompactRouteStore();
+        for (int route = 0; route < routes.length; route++) {
+            store.storeRoute(route, routes[route], 0, routes[route].length);
+        }
+        store.freeze();
+        return store;
+    }
+
+    /**
+     * @return the routes loaded from a data file into a {@link MappedRouteStore}
+     */
+    static RouteStore mapped(TemporaryFolder folder, int[][] routes) throws IOException {
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.setStore(RouteStoreType.MAPPED);
+        RouteStore store = new RouteService(properties).loadRoutesFromFileAndValidate(dataFile(folder, routes).toString());
+        Assert.assertTrue(store instanceof MappedRouteStore);
+        return store;
+    }
+
+    /**
+     * @return a data file of the routes, in a folder of its own
+     */
+    static Path dataFile(TemporaryFolder folder, int[][] routes) throws IOException {
+        Path dataFile = folder.newFolder().toPath().resolve("routes.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(dataFile, StandardCharsets.US_ASCII)) {
+            writer.write(routes.length + "\n");
+            for (int route = 0; route < routes.length; route++) {
+                writer.write(route + " " + join(routes[route]) + "\n");
+            }
+        }
+        return dataFile;
+    }
+
+    static String join(int[] stations) {
+        return Arrays.stream(stations).mapToObj(String::valueOf).collect(Collectors.joining(" "));
+    }
+
+    static LinkedHashSet<Integer> toSet(int[] stations) {
+        return Arrays.stream(stations).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * @return the position of the station on the route, -1 if it is not on it
+     */
+    static int indexOf(int[] stations, int station) {
+        for (int i = 0; i < stations.length; i++) {
+            if (stations[i] == station) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,224 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.RouteDelta;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static com.jojos.challenge.busroute.service.RouteFixtures.compact;
+import static com.jojos.challenge.busroute.service.RouteFixtures.indexOf;
+import static com.jojos.challenge.busroute.service.RouteFixtures.mapped;
+import static com.jojos.challenge.busroute.service.RouteFixtures.randomRoute;
+import static com.jojos.challenge.busroute.service.RouteFixtures.randomRoutes;
+import static com.jojos.challenge.busroute.service.RouteFixtures.toSet;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class RouteGraphTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random();
+
+    @Test
+    public void testExampleRoutes() {
+        CompactRouteStore store = compact(new int[][]{{0, 1, 2, 3, 4}, {3, 1, 6, 5}, {0, 6, 4}});
+
+        Assert.assertEquals(0, store.getMinimumTransfersBetween(3, 6, 0));
+        Assert.assertEquals(0, store.getMinimumTransfersBetween(5, 5, 0));
+        Assert.assertEquals(1, store.getMinimumTransfersBetween(0, 5, 3));
+        Assert.assertEquals(1, store.getMinimumTransfersBetween(2, 6, 1));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(0, 5, 0));
+        // the routes only run one way
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(6, 3, 3));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(5, 0, 3));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(0, 7, 3));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(0, 1, -1));
+    }
+
+    @Test
+    public void testTransfersOnlyAfterBoarding() {
+        // 3 comes before 1 on route 1, so getting from 2 to 1 takes going all the way round
+        CompactRouteStore store = compact(new int[][]{{1, 2, 4}, {3, 1, 5}, {4, 5, 6}, {6, 3}});
+
+        Assert.assertEquals(0, store.getMinimumTransfersBetween(1, 5, 3));
+        Assert.assertEquals(1, store.getMinimumTransfersBetween(2, 6, 3));
+        Assert.assertEquals(2, store.getMinimumTransfersBetween(2, 3, 3));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(2, 3, 1));
+        Assert.assertEquals(3, store.getMinimumTransfersBetween(2, 1, 3));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(2, 1, 2));
+    }
+
+    @Test
+    public void testChainOfRoutes() {
+        int[][] routes = new int[50][];
+        for (int route = 0; route < routes.length; route++) {
+            routes[route] = new int[]{route * 10, route * 10 + 5, (route + 1) * 10};
+        }
+        CompactRouteStore store = compact(routes);
+
+        Assert.assertEquals(49, store.getMinimumTransfersBetween(0, 500, 100));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(0, 500, 48));
+        Assert.assertEquals(3, store.getMinimumTransfersBetween(105, 135, 3));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(105, 135, 2));
+        Assert.assertEquals(-1, store.getMinimumTransfersBetween(135, 105, 100));
+    }
+
+    @Test
+    public void testSameAnswersAsBreadthFirstSearchOverStations() throws IOException {
+        for (int round = 0; round < 5; round++) {
+            int[][] routes = randomRoutes(random, 300, 2, 12, 600);
+            CompactRouteStore compact = compact(routes);
+            InMemoryRouteStore inMemory = new InMemoryRouteStore();
+            for (int route = 0; route < routes.length; route++) {
+                inMemory.storeRoute(route, toSet(routes[route]));
+            }
+            RouteStore mapped = mapped(folder, routes);
+
+            for (int i = 0; i < 2_000; i++) {
+                int departure = random.nextInt(620);
+                int arrival = random.nextInt(620);
+                int maxTransfers = random.nextInt(6);
+                int expected = oracle(routes, departure, arrival, maxTransfers);
+                Assert.assertEquals(expected, compact.getMinimumTransfersBetween(departure, arrival, maxTransfers));
+                Assert.assertEquals(expected, inMemory.getMinimumTransfersBetween(departure, arrival, maxTransfers));
+                Assert.assertEquals(expected, mapped.getMinimumTransfersBetween(departure, arrival, maxTransfers));
+            }
+        }
+    }
+
+    @Test
+    public void testDeltaRoutes() {
+        int[][] routes = randomRoutes(random, 200, 2, 10, 400);
+        DeltaRouteStore store = new DeltaRouteStore(compact(routes));
+
+        List<String> changes = new ArrayList<>();
+        for (int route = 0; route < 20; route++) {
+            changes.add("remove " + route);
+        }
+        for (int route = 20; route < 40; route++) {
+            routes[route] = randomRoute(random, 2, 10, 400);
+            changes.add("replace " + route + " " + Arrays.stream(routes[route]).mapToObj(String::valueOf).collect(Collectors.joining(" ")));
+        }
+        int[][] added = randomRoutes(random, 10, 2, 10, 400);
+        for (int route = 0; route < added.length; route++) {
+            changes.add("add " + (1_000 + route) + " " + Arrays.stream(added[route]).mapToObj(String::valueOf).collect(Collectors.joining(" ")));
+        }
+        store.applyDelta(RouteDelta.parse(changes));
+
+        List<int[]> current = new ArrayList<>(Arrays.asList(routes).subList(20, routes.length));
+        current.addAll(Arrays.asList(added));
+        int[][] expectedRoutes = current.toArray(new int[0][]);
+        for (int i = 0; i < 5_000; i++) {
+            int departure = random.nextInt(400);
+            int arrival = random.nextInt(400);
+            int maxTransfers = random.nextInt(5);
+            Assert.assertEquals(oracle(expectedRoutes, departure, arrival, maxTransfers),
+                    store.getMinimumTransfersBetween(departure, arrival, maxTransfers));
+        }
+    }
+
+    @Test
+    public void testDeltaRoutesInBatches() {
+        int[][] routes = randomRoutes(random, 200, 2, 10, 400);
+        DeltaRouteStore delta = new DeltaRouteStore(compact(routes));
+        InMemoryRouteStore inMemory = new InMemoryRouteStore();
+        for (int route = 0; route < routes.length; route++) {
+            inMemory.storeRoute(route, toSet(routes[route]));
+        }
+        inMemory.freeze();
+
+        // batches of a few changes each, merging the segments of the earlier ones along the way
+        Map<Integer, int[]> current = new HashMap<>();
+        for (int route = 0; route < routes.length; route++) {
+            current.put(route, routes[route]);
+        }
+        for (int batch = 0; batch < 40; batch++) {
+            List<String> changes = new ArrayList<>();
+            int count = 1 + random.nextInt(4);
+            for (int change = 0; change < count; change++) {
+                int routeId = random.nextInt(260);
+                if (current.containsKey(routeId) && random.nextBoolean()) {
+                    current.remove(routeId);
+                    changes.add("remove " + routeId);
+                } else {
+                    int[] stations = randomRoute(random, 2, 10, 400);
+                    changes.add((current.containsKey(routeId) ? "replace " : "add ") + routeId + " " +
+                            Arrays.stream(stations).mapToObj(String::valueOf).collect(Collectors.joining(" ")));
+                    current.put(routeId, stations);
+                }
+            }
+            RouteDelta routeDelta = RouteDelta.parse(changes);
+            delta.applyDelta(routeDelta);
+            inMemory.applyDelta(routeDelta);
+
+            int[][] expectedRoutes = current.values().toArray(new int[0][]);
+            for (int i = 0; i < 200; i++) {
+                int departure = random.nextInt(400);
+                int arrival = random.nextInt(400);
+                int maxTransfers = random.nextInt(5);
+                int expected = oracle(expectedRoutes, departure, arrival, maxTransfers);
+                Assert.assertEquals(expected, delta.getMinimumTransfersBetween(departure, arrival, maxTransfers));
+                Assert.assertEquals(expected, inMemory.getMinimumTransfersBetween(departure, arrival, maxTransfers));
+            }
+        }
+    }
+
+    /**
+     * A plain breadth first search, one level per transfer, keeping the earliest boarding position of every route
+     */
+    private static int oracle(int[][] routes, int departure, int arrival, int maxTransfers) {
+        Map<Integer, Integer> boarding = new HashMap<>();
+        boolean arrivalExists = false;
+        for (int route = 0; route < routes.length; route++) {
+            int position = indexOf(routes[route], departure);
+            if (position >= 0) {
+                boarding.put(route, position);
+            }
+            arrivalExists |= indexOf(routes[route], arrival) >= 0;
+        }
+        if (boarding.isEmpty() || !arrivalExists || maxTransfers < 0) {
+            return -1;
+        }
+        if (departure == arrival) {
+            return 0;
+        }
+
+        for (int transfers = 0; transfers <= maxTransfers; transfers++) {
+            for (Map.Entry<Integer, Integer> entry : boarding.entrySet()) {
+                if (indexOf(routes[entry.getKey()], arrival) > entry.getValue()) {
+                    return transfers;
+                }
+            }
+            Map<Integer, Integer> next = new HashMap<>(boarding);
+            for (Map.Entry<Integer, Integer> entry : boarding.entrySet()) {
+                int[] stations = routes[entry.getKey()];
+                for (int i = entry.getValue() + 1; i < stations.length; i++) {
+                    for (int route = 0; route < routes.length; route++) {
+                        int position = indexOf(routes[route], stations[i]);
+                        if (position >= 0 && position < next.getOrDefault(route, Integer.MAX_VALUE)) {
+                            next.put(route, position);
+                        }
+                    }
+                }
+            }
+            if (next.equals(boarding)) {
+                return -1;
+            }
+            boarding = next;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,260 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.util.RouteDelta;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class RouteServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BusRouteProperties properties = new BusRouteProperties();
+
+    private RouteService routeService;
+    private Path dataFile;
+
+    @Before
+    public void setUp() throws IOException {
+        properties.getReload().setQuietPeriod(100);
+        routeService = new RouteService(properties);
+        dataFile = folder.getRoot().toPath().resolve("routes.txt");
+        write(dataFile, "1", "0 1 2 3");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        routeService.stopWatching();
+    }
+
+    @Test
+    public void testReloadPublishesTheNewStore() throws IOException {
+        properties.getReload().setEnabled(false);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+        Assert.assertTrue(routeService.isThereConnectionBetween(1, 3));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+
+        write(dataFile, "2", "0 1 2 3", "1 3 4 5");
+        Assert.assertTrue(routeService.reload());
+        Assert.assertTrue(routeService.isThereConnectionBetween(1, 3));
+        Assert.assertTrue(routeService.isThereConnectionBetween(3, 5));
+    }
+
+    @Test
+    public void testBidirectionalRoutes() throws IOException {
+        properties.getReload().setEnabled(false);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 1));
+        Assert.assertArrayEquals(new long[]{0b01}, routeService.areThereConnectionsBetween(new int[]{1, 3, 3, 1}));
+
+        properties.getRoutes().setBidirectional(true);
+        Assert.assertTrue(routeService.isThereConnectionBetween(3, 1));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 4));
+        Assert.assertArrayEquals(new long[]{0b11}, routeService.areThereConnectionsBetween(new int[]{1, 3, 3, 1}));
+        DirectRoutes routes = routeService.getDirectRoutesBetween(3, 1);
+        Assert.assertArrayEquals(new int[]{0}, routes.getRouteIds());
+        Assert.assertEquals(2, routes.getStops());
+        Assert.assertArrayEquals(new int[]{0}, routeService.getDirectRoutesBetween(2, 2).getRouteIds());
+    }
+
+    @Test
+    public void testCacheIsDiscardedOnReload() throws IOException {
+        properties.getReload().setEnabled(false);
+        properties.getCache().setSize(64);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+
+        write(dataFile, "2", "0 1 2 3", "1 3 4 5");
+        Assert.assertTrue(routeService.reload());
+        Assert.assertTrue(routeService.isThereConnectionBetween(3, 5));
+
+        write(RouteDelta.pathFor(dataFile), "remove 1");
+        Assert.assertTrue(routeService.applyDelta(RouteDelta.pathFor(dataFile)));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFilterIsDroppedOnRouteChanges() throws IOException {
+        properties.getReload().setEnabled(false);
+        properties.getFilter().setEnabled(true);
+        RouteMetrics metrics = new RouteMetrics(properties);
+        routeService = new RouteService(properties, metrics);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+        Assert.assertTrue(routeService.isThereConnectionBetween(1, 3));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+        Map<String, Object> filter = (Map<String, Object>) ((Map<String, Object>) metrics.snapshot().get("store")).get("filter");
+        Assert.assertEquals(2L, filter.get("checks"));
+
+        // the filter is built anew along with the store
+        write(dataFile, "2", "0 1 2 3", "1 3 4 5");
+        Assert.assertTrue(routeService.reload());
+        Assert.assertTrue(routeService.isThereConnectionBetween(3, 5));
+
+        write(RouteDelta.pathFor(dataFile), "remove 1");
+        Assert.assertTrue(routeService.applyDelta(RouteDelta.pathFor(dataFile)));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+        Assert.assertNull(((Map<String, Object>) metrics.snapshot().get("store")).get("filter"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRejectedDeltaKeepsTheFilter() throws IOException {
+        properties.getReload().setEnabled(false);
+        properties.getFilter().setEnabled(true);
+        properties.getCache().setSize(64);
+        RouteMetrics metrics = new RouteMetrics(properties);
+        routeService = new RouteService(properties, metrics);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+
+        write(RouteDelta.pathFor(dataFile), "remove 7");
+        Assert.assertFalse(routeService.applyDelta(RouteDelta.pathFor(dataFile)));
+        Assert.assertTrue(routeService.isThereConnectionBetween(1, 3));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+        Map<String, Object> filter = (Map<String, Object>) ((Map<String, Object>) metrics.snapshot().get("store")).get("filter");
+        Assert.assertEquals(2L, filter.get("checks"));
+    }
+
+    @Test
+    public void testInvalidFileKeepsTheCurrentStore() throws IOException {
+        properties.getReload().setEnabled(false);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+
+        write(dataFile, "2", "0 1 2 3");
+        Assert.assertFalse(routeService.reload());
+        Assert.assertTrue(routeService.isThereConnectionBetween(1, 3));
+    }
+
+    @Test
+    public void testNoReloadWithoutHeadroom() throws IOException {
+        properties.getReload().setEnabled(false);
+        properties.getReload().setHeadroomFactor(Double.MAX_VALUE);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+
+        write(dataFile, "2", "0 1 2 3", "1 3 4 5");
+        Assert.assertFalse(routeService.reload());
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+
+        properties.getReload().setMemoryPolicy(BusRouteProperties.Reload.MemoryPolicy.ALWAYS);
+        Assert.assertTrue(routeService.reload());
+        Assert.assertTrue(routeService.isThereConnectionBetween(3, 5));
+    }
+
+    @Test
+    public void testChangedFileIsReloaded() throws Exception {
+        properties.setStore(RouteStoreType.MAPPED);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+        Assert.assertFalse(routeService.isThereConnectionBetween(3, 5));
+
+        // replaced the way most editors save a file
+        Path newFile = folder.newFile().toPath();
+        write(newFile, "2", "0 1 2 3", "1 3 4 5");
+        Files.move(newFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!routeService.isThereConnectionBetween(3, 5) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(routeService.isThereConnectionBetween(3, 5));
+        Assert.assertTrue(routeService.isThereConnectionBetween(1, 3));
+    }
+
+    @Test
+    public void testDeltaFileIsApplied() throws Exception {
+        properties.setStore(RouteStoreType.COMPACT);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+
+        Path deltaFile = RouteDelta.pathFor(dataFile);
+        write(deltaFile, "add 1 3 4 5", "replace 0 2 1");
+
+        Path applied = deltaFile.resolveSibling(deltaFile.getFileName() + ".applied");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(applied) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(Files.exists(applied));
+        Assert.assertFalse(Files.exists(deltaFile));
+        Assert.assertTrue(routeService.isThereConnectionBetween(3, 5));
+        Assert.assertTrue(routeService.isThereConnectionBetween(2, 1));
+        Assert.assertFalse(routeService.isThereConnectionBetween(1, 3));
+
+        // a delta that does not apply is rejected as a whole
+        write(deltaFile, "remove 1", "remove 7");
+        Assert.assertFalse(routeService.applyDelta(deltaFile));
+        Assert.assertTrue(routeService.isThereConnectionBetween(3, 5));
+    }
+
+    @Test
+    public void testBatchOfPairs() throws IOException {
+        properties.getReload().setEnabled(false);
+        properties.getBatch().setParallelThreshold(64);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+
+        Random random = new Random();
+        int[] pairs = random.ints(1_001 * 2, 0, 5).toArray();
+        long[] connected = routeService.areThereConnectionsBetween(pairs);
+        Assert.assertEquals(16, connected.length);
+        for (int pair = 0; pair < 1_001; pair++) {
+            Assert.assertEquals(routeService.isThereConnectionBetween(pairs[2 * pair], pairs[2 * pair + 1]),
+                    (connected[pair / 64] & (1L << pair)) != 0);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMetrics() throws IOException {
+        properties.getReload().setEnabled(false);
+        properties.setStore(RouteStoreType.COMPACT);
+        RouteMetrics metrics = new RouteMetrics(properties);
+        routeService = new RouteService(properties, metrics);
+        routeService.run(new DefaultApplicationArguments(new String[]{dataFile.toString()}));
+        routeService.isThereConnectionBetween(1, 3);
+        routeService.isThereConnectionBetween(3, 1);
+        routeService.isThereConnectionBetween(0, 2);
+        routeService.areThereConnectionsBetween(new int[]{1, 2, 2, 1});
+
+        Map<String, Object> snapshot = metrics.snapshot();
+        Map<String, Object> store = (Map<String, Object>) snapshot.get("store");
+        Assert.assertEquals("CompactRouteStore", store.get("type"));
+        Assert.assertEquals(1, store.get("routes"));
+        Assert.assertEquals(3, store.get("stations"));
+
+        Map<String, Object> queries = (Map<String, Object>) ((Map<String, Object>) snapshot.get("queries")).get("CompactRouteStore");
+        Assert.assertEquals(2L, queries.get("connected"));
+        Assert.assertEquals(3L, queries.get("notConnected"));
+        Assert.assertEquals(3L, ((Map<String, Object>) queries.get("latencyNanos")).get("count"));
+        Assert.assertEquals(2L, queries.get("batchPairs"));
+
+        Map<String, Object> load = (Map<String, Object>) snapshot.get("load");
+        for (String phase : new String[]{"PARSE", "VALIDATE", "INDEX", "SNAPSHOT_WRITE"}) {
+            Assert.assertEquals(phase, 1L, ((Map<String, Object>) load.get(phase)).get("count"));
+        }
+        Assert.assertEquals(0L, ((Map<String, Object>) load.get("SNAPSHOT_RESTORE")).get("count"));
+
+        Map<String, Object> fanOut = (Map<String, Object>) snapshot.get("stationFanOut");
+        Assert.assertEquals(3L, fanOut.get("count"));
+        Assert.assertEquals(1L, fanOut.get("max"));
+    }
+
+    private static void write(Path path, String... lines) throws IOException {
+        Files.write(path, String.join("\n", lines).getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,120 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.config.BusRouteProperties;
+import com.jojos.challenge.busroute.util.RouteUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class RouteSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random();
+
+    private Path dataFile;
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder content = new StringBuilder("500\n");
+        for (int routeId = 0; routeId < 500; routeId++) {
+            content.append(routeId).append(' ').append(random.ints(0, 2_000).distinct().limit(2 + random.nextInt(50)).
+                    mapToObj(String::valueOf).collect(Collectors.joining(" "))).append('\n');
+        }
+        dataFile = folder.getRoot().toPath().resolve("routes.txt");
+        Files.write(dataFile, content.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testRestoredStoreGivesTheSameAnswers() throws IOException {
+        CompactRouteStore store = load();
+        Path snapshotPath = RouteSnapshot.pathFor(dataFile);
+        RouteSnapshot.Source source = RouteSnapshot.Source.of(dataFile);
+        RouteSnapshot.write(snapshotPath, source, store);
+
+        RouteSnapshot snapshot = RouteSnapshot.open(snapshotPath, source);
+        Assert.assertNotNull(snapshot);
+        CompactRouteStore restored = snapshot.toCompactRouteStore();
+
+        Assert.assertEquals(store.getTotalNumberOfRoutes(), restored.getTotalNumberOfRoutes());
+        Assert.assertEquals(store.getTotalNumberOfStations(), restored.getTotalNumberOfStations());
+        Assert.assertEquals(store.getMemoryFootprint(), restored.getMemoryFootprint());
+        for (int i = 0; i < 20_000; i++) {
+            int departure = random.nextInt(2_000);
+            int arrival = random.nextInt(2_000);
+            Assert.assertEquals(store.isDirectConnectionExistBetween(departure, arrival),
+                    restored.isDirectConnectionExistBetween(departure, arrival));
+        }
+    }
+
+    @Test
+    public void testStaleSnapshotIsIgnored() throws IOException {
+        Path snapshotPath = RouteSnapshot.pathFor(dataFile);
+        RouteSnapshot.write(snapshotPath, RouteSnapshot.Source.of(dataFile), load());
+
+        Files.setLastModifiedTime(dataFile, FileTime.fromMillis(Files.getLastModifiedTime(dataFile).toMillis() + 1_000));
+        Assert.assertNull(RouteSnapshot.open(snapshotPath, RouteSnapshot.Source.of(dataFile)));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws IOException {
+        Path snapshotPath = RouteSnapshot.pathFor(dataFile);
+        RouteSnapshot.Source source = RouteSnapshot.Source.of(dataFile);
+        RouteSnapshot.write(snapshotPath, source, load());
+
+        try (RandomAccessFile file = new RandomAccessFile(snapshotPath.toFile(), "rw")) {
+            long position = file.length() - 10;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0x01);
+        }
+        Assert.assertNull(RouteSnapshot.open(snapshotPath, source));
+
+        try (RandomAccessFile file = new RandomAccessFile(snapshotPath.toFile(), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        Assert.assertNull(RouteSnapshot.open(snapshotPath, source));
+    }
+
+    @Test
+    public void testRouteServiceRebuildsTheSnapshotOnce() throws IOException {
+        BusRouteProperties properties = new BusRouteProperties();
+        properties.setStore(RouteStoreType.COMPACT);
+        RouteService routeService = new RouteService(properties);
+        Path snapshotPath = RouteSnapshot.pathFor(dataFile);
+
+        RouteStore parsed = routeService.loadRoutesFromFileAndValidate(dataFile.toString());
+        Assert.assertTrue(Files.isRegularFile(snapshotPath));
+        FileTime written = Files.getLastModifiedTime(snapshotPath);
+
+        RouteStore restored = routeService.loadRoutesFromFileAndValidate(dataFile.toString());
+        Assert.assertEquals(written, Files.getLastModifiedTime(snapshotPath));
+        Assert.assertEquals(parsed.getTotalNumberOfStations(), restored.getTotalNumberOfStations());
+
+        // garbage in place of the snapshot is replaced transparently
+        Files.write(snapshotPath, new byte[]{1, 2, 3});
+        RouteStore rebuilt = routeService.loadRoutesFromFileAndValidate(dataFile.toString());
+        Assert.assertEquals(parsed.getTotalNumberOfStations(), rebuilt.getTotalNumberOfStations());
+        Assert.assertNotNull(RouteSnapshot.open(snapshotPath, RouteSnapshot.Source.of(dataFile)));
+    }
+
+    private CompactRouteStore load() throws IOException {
+        return (CompactRouteStore) RouteUtils.loadRoutesFromFileAndValidate(dataFile, RouteStoreType.COMPACT);
+    }
+}
@@ -0,0 +1,172 @@
+package com.jojos.challenge.busroute.service;
+
+import com.jojos.challenge.busroute.util.LoadPhase;
+import com.jojos.challenge.busroute.util.RouteLimits;
+import com.jojos.challenge.busroute.util.RouteUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.jojos.challenge.busroute.service.RouteFixtures.dataFile;
+import static com.jojos.challenge.busroute.service.RouteFixtures.randomRoutes;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class ShardRouteStoreTest {
+
+    private static final int SHARDS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random();
+
+    @Test
+    public void testStationsAreSplitAmongTheShards() {
+        int[][] routes = randomRoutes(random, 500, 2, 20, 2_000);
+        CompactRouteStore whole = new CompactRouteStore();
+        List<ShardRouteStore> shards = shards(routes, whole);
+
+        int stations = 0;
+        for (ShardRouteStore shard : shards) {
+            Assert.assertTrue(shard.getTotalNumberOfStations() < whole.getTotalNumberOfStations());
+            Assert.assertTrue(shard.getTotalNumberOfRoutes() <= whole.getTotalNumberOfRoutes());
+            stations += shard.getTotalNumberOfStations();
+        }
+        Assert.assertEquals(whole.getTotalNumberOfStations(), stations);
+
+        for (int stationId = -100; stationId < 2_100; stationId++) {
+            int owner = ShardRouteStore.shardOf(stationId, SHARDS);
+            for (ShardRouteStore shard : shards) {
+                boolean known = shard.postings(stationId)[0].exists();
+                Assert.assertTrue(!known || shard.getShard() == owner);
+            }
+        }
+    }
+
+    @Test
+    public void testRouterAnswersAsTheWholeStore() {
+        int[][] routes = randomRoutes(random, 400, 2, 15, 1_000);
+        CompactRouteStore whole = new CompactRouteStore();
+        AtomicInteger asked = new AtomicInteger();
+        List<ShardRouter.Shard> shards = new ArrayList<>();
+        for (ShardRouteStore shard : shards(routes, whole)) {
+            shards.add(stationIds -> {
+                asked.incrementAndGet();
+                for (int stationId : stationIds) {
+                    Assert.assertEquals(shard.getShard(), ShardRouteStore.shardOf(stationId, SHARDS));
+                }
+                return shard.postings(stationIds);
+            });
+        }
+        ShardRouter router = new ShardRouter(shards);
+        try {
+            for (int i = 0; i < 5_000; i++) {
+                int departure = random.nextInt(1_050);
+                int arrival = random.nextInt(1_050);
+                String pair = departure + " -> " + arrival;
+
+                asked.set(0);
+                Assert.assertEquals(pair, whole.isDirectConnectionExistBetween(departure, arrival), router.isDirectConnectionExistBetween(departure, arrival));
+                // at most two shards asked
+                Assert.assertTrue(asked.get() <= 2);
+                Assert.assertEquals(pair, whole.isConnectionEitherWayBetween(departure, arrival), router.isConnectionEitherWayBetween(departure, arrival));
+
+                DirectRoutes expected = new DirectRoutes();
+                DirectRoutes actual = new DirectRoutes();
+                Assert.assertEquals(pair, whole.forEachDirectRoute(departure, arrival, expected), router.forEachDirectRoute(departure, arrival, actual));
+                Assert.assertArrayEquals(pair, expected.getRouteIds(), actual.getRouteIds());
+                Assert.assertEquals(pair, expected.getStops(), actual.getStops());
+            }
+        } finally {
+            router.close();
+        }
+    }
+
+    @Test
+    public void testShardAnswersItsOwnStations() {
+        ShardRouteStore shard = new ShardRouteStore(0, 1);
+        shard.storeRoute(7, new int[]{0, 1, 2, 3, 4}, 0, 5);
+        shard.storeRoute(-3, new int[]{3, 1, 6, 5}, 0, 4);
+        shard.freeze();
+
+        Assert.assertEquals(2, shard.getTotalNumberOfRoutes());
+        Assert.assertEquals(7, shard.getTotalNumberOfStations());
+        Assert.assertTrue(shard.isDirectConnectionExistBetween(3, 6));
+        Assert.assertFalse(shard.isDirectConnectionExistBetween(6, 3));
+        Assert.assertTrue(shard.isConnectionEitherWayBetween(6, 3));
+
+        StationPostings postings = shard.postings(3)[0];
+        Assert.assertArrayEquals(new int[]{-3, 7}, postings.getRouteIds());
+        Assert.assertArrayEquals(new int[]{0, 3}, postings.getPositions());
+        Assert.assertFalse(shard.postings(8)[0].exists());
+    }
+
+    @Test
+    public void testShardsLoadedFromFileKeepTheirStations() throws IOException {
+        int[][] routes = randomRoutes(random, 2_000, 2, 20, 3_000);
+        Path dataFile = dataFile(folder, routes);
+
+        List<ShardRouteStore> expected = shards(routes, new CompactRouteStore());
+        for (ShardRouteStore stored : expected) {
+            // the ranges are parsed by 4 threads, the stations of the other shards dropped by each of them
+            ShardRouteStore loaded = (ShardRouteStore) RouteUtils.loadRoutesFromFileAndValidate(dataFile,
+                    new ShardRouteStore(stored.getShard(), SHARDS), 4, RouteUtils.platformThreads(), LoadPhase.Listener.NONE, RouteLimits.DEFAULT);
+
+            Assert.assertEquals(stored.getTotalNumberOfRoutes(), loaded.getTotalNumberOfRoutes());
+            Assert.assertEquals(stored.getTotalNumberOfStations(), loaded.getTotalNumberOfStations());
+            for (int stationId = 0; stationId < 3_000; stationId++) {
+                StationPostings expectedPostings = stored.postings(stationId)[0];
+                StationPostings loadedPostings = loaded.postings(stationId)[0];
+                Assert.assertArrayEquals(expectedPostings.getRouteIds(), loadedPostings.getRouteIds());
+                Assert.assertArrayEquals(expectedPostings.getPositions(), loadedPostings.getPositions());
+            }
+        }
+    }
+
+    @Test
+    public void testStationLimitOfTheShard() {
+        ShardRouteStore shard = new ShardRouteStore(0, 1, new RouteLimits(10, 6, 10));
+        shard.storeRoute(7, new int[]{0, 1, 2, 3, 4}, 0, 5);
+        shard.storeRoute(-3, new int[]{3, 1, 6, 5}, 0, 4);
+        try {
+            shard.freeze();
+            Assert.fail("7 stations are more than the limit of 6");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().endsWith("7 stations of shard 0 out of 1 (rule 8)"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShardOutOfRange() {
+        new ShardRouteStore(SHARDS, SHARDS);
+    }
+
+    /**
+     * @return the stores of all shards, every route being stored in the given store as well
+     */
+    private static List<ShardRouteStore> shards(int[][] routes, RouteStore whole) {
+        List<ShardRouteStore> shards = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            shards.add(new ShardRouteStore(shard, SHARDS));
+        }
+        for (int route = 0; route < routes.length; route++) {
+            whole.storeRoute(route, routes[route], 0, routes[route].length);
+            for (ShardRouteStore shard : shards) {
+                shard.storeRoute(route, routes[route], 0, routes[route].length);
+            }
+        }
+        whole.freeze();
+        shards.forEach(ShardRouteStore::freeze);
+        return shards;
+    }
+}
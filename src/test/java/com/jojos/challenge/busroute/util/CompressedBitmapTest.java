@@ -0,0 +1,53 @@
+package com.jojos.challenge.busroute.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class CompressedBitmapTest {
+
+    private final Random random = new Random();
+
+    @Test
+    public void testSparseAndDenseChunks() {
+        // a dense chunk, a sparse one and the extremes of the signed range
+        int[] values = new int[10_003];
+        for (int i = 0; i < 10_000; i++) {
+            values[i] = 3 * i;
+        }
+        values[10_000] = Integer.MIN_VALUE;
+        values[10_001] = Integer.MAX_VALUE;
+        values[10_002] = -1;
+        int[] expected = values.clone();
+
+        CompressedBitmap bitmap = CompressedBitmap.of(values, values.length);
+
+        Assert.assertEquals(expected.length, bitmap.getCardinality());
+        for (int value : expected) {
+            Assert.assertTrue(String.valueOf(value), bitmap.contains(value));
+        }
+        Assert.assertFalse(bitmap.contains(1));
+        Assert.assertFalse(bitmap.contains(30_001));
+        Assert.assertFalse(bitmap.contains(Integer.MIN_VALUE + 1));
+        Assert.assertFalse(bitmap.contains(-2));
+    }
+
+    @Test
+    public void testRandomValuesWithDuplicates() {
+        int[] values = random.ints(50_000, -200_000, 200_000).toArray();
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        CompressedBitmap bitmap = CompressedBitmap.of(values, values.length);
+
+        Assert.assertEquals(Arrays.stream(sorted).distinct().count(), bitmap.getCardinality());
+        for (int value = -200_010; value < 200_010; value++) {
+            Assert.assertEquals(String.valueOf(value), Arrays.binarySearch(sorted, value) >= 0, bitmap.contains(value));
+        }
+    }
+}
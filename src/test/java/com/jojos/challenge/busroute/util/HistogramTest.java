@@ -0,0 +1,71 @@
+package com.jojos.challenge.busroute.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class HistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 1_000, 1L << 40, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Histogram.bucketOf(value);
+            Assert.assertTrue(value + " above its bucket", value <= Histogram.highestValueOf(bucket));
+            Assert.assertTrue(value + " below its bucket", bucket == 0 || value > Histogram.highestValueOf(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+
+        Random random = new Random(3);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.abs(random.nextGaussian() * 1_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        Assert.assertEquals(values.length, histogram.getCount());
+        Assert.assertEquals(values[values.length - 1], histogram.getMax());
+        Assert.assertEquals(Arrays.stream(values).average().getAsDouble(), histogram.getMean(), 0.001);
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            Assert.assertTrue(percentile + ": " + actual + " vs " + expected, actual >= expected && actual <= expected * 1.04);
+        }
+    }
+
+    @Test
+    public void testStripesMergedWhenRead() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        // more threads than stripes, every one of them recording 1 to 10,000 and a max of its own
+        Thread[] threads = new Thread[Histogram.MAX_STRIPES * 2];
+        for (int t = 0; t < threads.length; t++) {
+            long max = 1_000_000L + t;
+            threads[t] = new Thread(() -> {
+                for (int value = 1; value <= 10_000; value++) {
+                    histogram.record(value);
+                }
+                histogram.record(max);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(threads.length * 10_001L, histogram.getCount());
+        Assert.assertEquals(1_000_000L + threads.length - 1, histogram.getMax());
+        long median = histogram.getValueAtPercentile(50);
+        Assert.assertTrue(String.valueOf(median), median >= 5_000 && median <= 5_000 * 1.04);
+    }
+}
@@ -0,0 +1,75 @@
+package com.jojos.challenge.busroute.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class IdDictionaryTest {
+
+    private final Random random = new Random();
+
+    @Test
+    public void testOrdinalsAreRanks() {
+        // 0 is a valid id as well as the extremes of the signed range
+        int[] ids = {Integer.MIN_VALUE, -7, 0, 1, 64, Integer.MAX_VALUE};
+        IdDictionary dictionary = IdDictionary.of(ids);
+
+        Assert.assertEquals(ids.length, dictionary.size());
+        for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+            Assert.assertEquals(ordinal, dictionary.ordinalOf(ids[ordinal]));
+            Assert.assertEquals(ids[ordinal], dictionary.idOf(ordinal));
+        }
+        Assert.assertEquals(-1, dictionary.ordinalOf(2));
+        Assert.assertEquals(-1, dictionary.ordinalOf(-1));
+        Assert.assertEquals(-1, IdDictionary.of(new int[0]).ordinalOf(0));
+    }
+
+    @Test
+    public void testExportedTable() {
+        int[] ids = random.ints().distinct().limit(100_000).sorted().toArray();
+        IdDictionary dictionary = IdDictionary.of(ids);
+        IdDictionary restored = IdDictionary.of(ids.clone(), dictionary.table().clone());
+        IntBuffer table = IntBuffer.wrap(dictionary.table());
+        // no more than 7/8 of the slots taken, pairs of ints after the seeds of the buckets, two to an int
+        Assert.assertTrue((dictionary.table().length - 1 - dictionary.table()[0] / 2) / 2 * 7 >= ids.length * 8);
+
+        for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+            Assert.assertEquals(ordinal, dictionary.ordinalOf(ids[ordinal]));
+            Assert.assertEquals(ordinal, restored.ordinalOf(ids[ordinal]));
+            Assert.assertEquals(ordinal, IdDictionary.ordinalOf(table, ids[ordinal]));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            int id = random.nextInt();
+            int expected = Arrays.binarySearch(ids, id);
+            Assert.assertEquals(Math.max(expected, -1), dictionary.ordinalOf(id));
+            Assert.assertEquals(Math.max(expected, -1), IdDictionary.ordinalOf(table, id));
+        }
+    }
+
+    @Test
+    public void testRegularIds() {
+        // consecutive ids and ids sharing their low bits alike
+        int[] consecutive = IntStream.range(-50_000, 50_000).toArray();
+        int[] strided = IntStream.range(0, 100_000).map(i -> i << 12).toArray();
+        for (int[] ids : Arrays.asList(consecutive, strided)) {
+            IdDictionary dictionary = IdDictionary.of(ids);
+            for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+                Assert.assertEquals(ordinal, dictionary.ordinalOf(ids[ordinal]));
+            }
+            Assert.assertEquals(-1, dictionary.ordinalOf(ids[ids.length - 1] + 1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTableTooSmall() {
+        // 2 buckets and 2 slots
+        IdDictionary.of(new int[]{1, 2, 3}, new int[]{2, 0, 1, 1, 2, 2});
+    }
+}
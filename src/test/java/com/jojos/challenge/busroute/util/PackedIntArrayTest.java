@@ -0,0 +1,53 @@
+package com.jojos.challenge.busroute.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class PackedIntArrayTest {
+
+    private final Random random = new Random();
+
+    @Test
+    public void testValuesOfEveryWidth() {
+        for (int width = 0; width < Integer.SIZE; width++) {
+            int max = (int) ((1L << width) - 1);
+            int[] values = random.ints(1_000, 0, Integer.MAX_VALUE).map(value -> value & max).toArray();
+            values[0] = max;
+            PackedIntArray array = PackedIntArray.of(values);
+
+            Assert.assertEquals(width, array.getWidth());
+            Assert.assertEquals(values.length, array.size());
+            for (int i = 0; i < values.length; i++) {
+                Assert.assertEquals(values[i], array.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testMixedWidthsAcrossWords() {
+        int[] widths = random.ints(10_000, 0, Integer.SIZE).toArray();
+        int[] values = new int[widths.length];
+        long[] bits = new long[PackedIntArray.wordsFor(10_000L * Integer.SIZE)];
+        long bit = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(Integer.MAX_VALUE) & (int) ((1L << widths[i]) - 1);
+            PackedIntArray.write(bits, bit, widths[i], values[i]);
+            bit += widths[i];
+        }
+        bit = 0;
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], PackedIntArray.read(bits, bit, widths[i]));
+            bit += widths[i];
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue() {
+        PackedIntArray.of(new int[]{1, -1});
+    }
+}
@@ -0,0 +1,84 @@
+package com.jojos.challenge.busroute.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class RouteFileValidatorTest {
+
+    @Test
+    public void testRulesAcrossLines() {
+        RouteFileValidator validator = new RouteFileValidator(3, 10);
+        Assert.assertEquals(RouteFileValidator.VALID, validator.check(7, new int[]{1, 2}, 2));
+        Assert.assertEquals(RouteFileValidator.DUPLICATE_ROUTE, validator.check(7, new int[]{3, 4}, 2));
+        Assert.assertEquals(RouteFileValidator.VALID, validator.check(0, new int[]{3, 4}, 2));
+        Assert.assertEquals(RouteFileValidator.TOO_MANY_ROUTES, validator.check(8, new int[]{5, 6}, 2));
+        Assert.assertEquals("Route ids are not unique among all other bus routes ids in the input, route id 7",
+                validator.describe(RouteFileValidator.DUPLICATE_ROUTE, 7));
+    }
+
+    @Test
+    public void testTooManyStations() {
+        RouteFileValidator validator = new RouteFileValidator(2, Long.MAX_VALUE);
+        int[] stations = new int[RouteUtils.MAX_STATIONS];
+        for (int i = 0; i < stations.length; i++) {
+            stations[i] = i - stations.length / 2;
+        }
+        Assert.assertEquals(RouteFileValidator.VALID, validator.check(0, stations, stations.length));
+        Assert.assertEquals(RouteFileValidator.TOO_MANY_STATIONS, validator.check(1, new int[]{0, RouteUtils.MAX_STATIONS}, 2));
+    }
+
+    @Test
+    public void testFirstViolationAbortsAll() {
+        RouteFileValidator validator = new RouteFileValidator(10, 10);
+        RouteFileException first = new RouteFileException(3, 5, "first");
+        validator.fail(2, 9, first);
+        validator.fail(0, 0, new RouteFileException(1, 4, "second"));
+
+        Assert.assertTrue(validator.isAborted());
+        Assert.assertSame(first, validator.getViolation().getException());
+        Assert.assertEquals(2, validator.getViolation().getRange());
+        Assert.assertEquals(9, validator.getViolation().getRouteId());
+        Assert.assertEquals(RouteFileValidator.ABORTED, validator.check(1, new int[]{1, 2}, 2));
+    }
+
+    @Test
+    public void testConcurrentSetAddsEveryValueOnce() throws Exception {
+        ConcurrentIntSet set = new ConcurrentIntSet(100_000);
+        AtomicInteger added = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread * 25_000;
+                // every thread adds its own quarter and the one of the next thread
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        if (set.add((offset + i) % 100_000)) {
+                            added.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(100_000, added.get());
+        Assert.assertEquals(100_000, set.size());
+        Assert.assertFalse(set.add(0));
+        Assert.assertFalse(set.add(99_999));
+        Assert.assertTrue(set.add(-1));
+    }
+}
@@ -1,12 +1,14 @@
 package com.jojos.challenge.busroute.util;
 
+import com.jojos.challenge.busroute.service.RouteStore;
+import com.jojos.challenge.busroute.service.RouteStoreType;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
-import org.junit.runner.RunWith;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.MockitoAnnotations;
-import org.powermock.modules.junit4.PowerMockRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,9 +17,15 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -27,7 +35,6 @@ import java.util.stream.Stream;
  * Class that tests all the possible rule violetions
  * @author karanikasg@gmail.com.
  */
-@RunWith(PowerMockRunner.class)
 public class RouteUtilsTest {
 
     private static final Logger log = LoggerFactory.getLogger(RouteUtilsTest.class);
@@ -35,6 +42,9 @@ public class RouteUtilsTest {
     @Rule
     public final ExpectedException thrown = ExpectedException.none();
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
@@ -89,6 +99,14 @@ public class RouteUtilsTest {
         RouteUtils.loadRoutesFromStreamAndValidate(stream);
     }
 
+    @Test
+    public void testNotUniqueRoutesInCompactStore() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Route ids are not unique among all other bus routes ids in the input");
+        Supplier<Stream<String>> stream = getStreamFor("4", "0 1 2", "2 1 2", "3 1 2", "0 1 2");
+        RouteUtils.loadRoutesFromStreamAndValidate(stream, RouteStoreType.COMPACT);
+    }
+
     @Test
     public void testNotUniqueStations() throws Exception {
         thrown.expect(IllegalArgumentException.class);
@@ -118,6 +136,236 @@ public class RouteUtilsTest {
         RouteUtils.loadRoutesFromStreamAndValidate(stream);
     }
 
+    @Test
+    public void testLoadFile() throws Exception {
+        Path path = fileFor("3", "0 0 1 2 3 4", "", "1 3 1 6 5", "  2\t0 6 4  \r");
+        RouteStore routeStore = RouteUtils.loadRoutesFromFileAndValidate(path, RouteStoreType.COMPACT);
+
+        Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        Assert.assertEquals(7, routeStore.getTotalNumberOfStations());
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(3, 6));
+        Assert.assertFalse(routeStore.isDirectConnectionExistBetween(6, 3));
+    }
+
+    @Test
+    public void testLoadFileOnThreadsOfFactory() throws Exception {
+        Path path = fileFor("3", "0 0 1 2 3 4", "1 3 1 6 5", "2 0 6 4");
+        AtomicInteger created = new AtomicInteger();
+        ThreadFactory delegate = VirtualThreads.isSupported() ? VirtualThreads.factory("test-loader-") : Thread::new;
+        ThreadFactory factory = runnable -> {
+            created.incrementAndGet();
+            return delegate.newThread(runnable);
+        };
+        RouteStore routeStore = RouteUtils.loadRoutesFromFileAndValidate(path, RouteStoreType.COMPACT, 2, factory, LoadPhase.Listener.NONE);
+
+        Assert.assertTrue(created.get() > 0);
+        Assert.assertEquals(3, routeStore.getTotalNumberOfRoutes());
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(3, 6));
+    }
+
+    @Test
+    public void testLoadFileWithoutTrailingNewLineAndNegativeIds() throws Exception {
+        Path path = folder.newFile().toPath();
+        Files.write(path, "2\n-1 -5 2147483647 -2147483648\n7 1 2".getBytes(StandardCharsets.US_ASCII));
+        RouteStore routeStore = RouteUtils.loadRoutesFromFileAndValidate(path, RouteStoreType.IN_MEMORY);
+
+        Assert.assertEquals(2, routeStore.getTotalNumberOfRoutes());
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(-5, Integer.MIN_VALUE));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(1, 2));
+    }
+
+    @Test
+    public void testFileInvalidEmptyFirstLine() throws Exception {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 1: The first line must contain the number of bus routes");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("", "0 1 2"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileInvalidNumber() throws Exception {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 3: Invalid character 'x' in integer");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("2", "0 1 2", "1 2x 3"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileIntegerOutOfRange() throws Exception {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 2: Integer out of range");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("1", "0 1 2147483648"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileLargerThanExpectedNumberOfRoutes() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Line 1: Number of bus routes 100001 larger than expected 100000");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("100001"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileMoreLinesThanRoutes() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Line 4: The number of lines differs");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("2", "1 3 2", "2 3 2", "3 3 2"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileLessLinesThanRoutes() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("The number of lines differs, expected 5 bus routes but found 4");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("5", "1 3 2", "2 3 2", "3 3 2", "4 3 2"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileAtLeastThreeIntegersPerRoute() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Line 5: Each bus route must have at least 3 integers");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("4", "0 1 2", "2 1 2", "3 1 2", "0 2"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileNotUniqueRoutes() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Line 5: Route ids are not unique among all other bus routes ids in the input");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("4", "0 1 2", "2 1 2", "3 1 2", "0 1 2"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileNotUniqueStations() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Line 6: Duplicate stations per route found");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("5", "0 1 2", "2 1 2", "3 1 2", "4 1 2", "5 1 2 1"), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileInvalidUpperLimitOfStationsPerRoute() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Line 2: Upper limit for the number of stations in one bus route exceeded");
+        String stationIdsStr = IntStream.range(0, RouteUtils.MAX_STATIONS_PER_ROUTE + 2).boxed().map(String::valueOf).collect(Collectors.joining(" "));
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor("1", stationIdsStr), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testFileInvalidUpperLimitOfTotalStations() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Upper limit for the total number of stations on all routes exceeded");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor(produceRoutesXByY(1000, 1001)), RouteStoreType.COMPACT);
+    }
+
+    @Test
+    public void testLoadFileInParallelRanges() throws Exception {
+        Random random = new Random();
+        String[] rows = new String[2_001];
+        rows[0] = "2000";
+        for (int routeId = 0; routeId < 2_000; routeId++) {
+            rows[routeId + 1] = routeId + " " + random.ints(0, 5_000).distinct().limit(2 + random.nextInt(100)).
+                    mapToObj(String::valueOf).collect(Collectors.joining(" "));
+        }
+        Path path = fileFor(rows);
+
+        RouteStore sequential = RouteUtils.loadRoutesFromFileAndValidate(path, RouteStoreType.COMPACT, 1);
+        RouteStore parallel = RouteUtils.loadRoutesFromFileAndValidate(path, RouteStoreType.COMPACT, 7);
+        RouteStore inMemory = RouteUtils.loadRoutesFromFileAndValidate(path, RouteStoreType.IN_MEMORY, 3);
+
+        Assert.assertEquals(2_000, parallel.getTotalNumberOfRoutes());
+        Assert.assertEquals(sequential.getTotalNumberOfStations(), parallel.getTotalNumberOfStations());
+        Assert.assertEquals(sequential.getTotalNumberOfStations(), inMemory.getTotalNumberOfStations());
+        for (int i = 0; i < 20_000; i++) {
+            int departure = random.nextInt(5_000);
+            int arrival = random.nextInt(5_000);
+            boolean expected = sequential.isDirectConnectionExistBetween(departure, arrival);
+            Assert.assertEquals(expected, parallel.isDirectConnectionExistBetween(departure, arrival));
+            Assert.assertEquals(expected, inMemory.isDirectConnectionExistBetween(departure, arrival));
+        }
+    }
+
+    @Test
+    public void testLineNumberOfViolationInALaterRange() throws Exception {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 902: Duplicate stations per route found, station id 5");
+        String[] rows = new String[1_001];
+        rows[0] = "1000";
+        for (int routeId = 0; routeId < 1_000; routeId++) {
+            rows[routeId + 1] = routeId + (routeId == 900 ? " 5 6 5" : " 5 6 7");
+        }
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor(rows), RouteStoreType.COMPACT, 4);
+    }
+
+    @Test
+    public void testLineNumberOfDuplicateRouteInALaterRange() throws Exception {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 952: Route ids are not unique among all other bus routes ids in the input, route id 3");
+        String[] rows = new String[1_001];
+        rows[0] = "1000";
+        for (int routeId = 0; routeId < 1_000; routeId++) {
+            rows[routeId + 1] = (routeId == 950 ? 3 : routeId) + " 5 6 7";
+        }
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor(rows), RouteStoreType.COMPACT, 4);
+    }
+
+    @Test
+    public void testLineNumberOfExtraRouteInALaterRange() throws Exception {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 1007: The number of lines differs, expected 1000 bus routes (rule 3)");
+        String[] rows = new String[1_011];
+        rows[0] = "1000";
+        for (int row = 1; row < rows.length; row++) {
+            // a few empty lines, which are not routes
+            rows[row] = row % 200 == 0 ? " " : row + " 5 6 7";
+        }
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor(rows), RouteStoreType.COMPACT, 4);
+    }
+
+    @Test
+    public void testLineNumberOfTooManyStations() throws Exception {
+        thrown.expect(RouteFileException.class);
+        thrown.expectMessage("Line 1002: Upper limit for the total number of stations on all routes exceeded (rule 8)");
+        RouteUtils.loadRoutesFromFileAndValidate(fileFor(produceRoutesXByY(1000, 1001)), RouteStoreType.COMPACT, 1);
+    }
+
+    @Test
+    public void testRuleOfViolation() throws Exception {
+        try {
+            RouteUtils.loadRoutesFromFileAndValidate(fileFor("3", "0 1 2", "1 3 4", "0 5 6"), RouteStoreType.COMPACT, 2);
+            Assert.fail("Duplicate route id expected");
+        } catch (RouteFileException e) {
+            Assert.assertEquals(4, e.getLine());
+            Assert.assertEquals(5, e.getRule());
+            Assert.assertEquals("Line 4: Route ids are not unique among all other bus routes ids in the input, route id 0 (rule 5)", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConfiguredLimits() throws Exception {
+        RouteLimits limits = new RouteLimits(3, 10, 4);
+        Path[] violations = {
+                fileFor("4", "0 1 2", "1 1 2", "2 1 2", "3 1 2"),
+                fileFor("2", "0 1 2 3 4", "1 1 2 3 4 5"),
+                fileFor("3", "0 1 2 3 4", "1 5 6 7 8", "2 9 10 11")};
+        int[] rules = {2, 7, 8};
+        for (int i = 0; i < violations.length; i++) {
+            try {
+                RouteUtils.loadRoutesFromFileAndValidate(violations[i], RouteStoreType.COMPACT.newRouteStore(), 2,
+                        RouteUtils.platformThreads(), LoadPhase.Listener.NONE, limits);
+                Assert.fail("Rule " + rules[i] + " violation expected");
+            } catch (RouteFileException e) {
+                Assert.assertEquals(rules[i], e.getRule());
+            }
+        }
+
+        // within the limits, and beyond the default limit of stations per route
+        String stationIdsStr = IntStream.range(0, RouteUtils.MAX_STATIONS_PER_ROUTE + 2).boxed().map(String::valueOf).collect(Collectors.joining(" "));
+        RouteStore routeStore = RouteUtils.loadRoutesFromFileAndValidate(fileFor("1", "0 " + stationIdsStr), RouteStoreType.COMPACT.newRouteStore(), 2,
+                RouteUtils.platformThreads(), LoadPhase.Listener.NONE, new RouteLimits(1, 2_000, 2_000));
+        Assert.assertTrue(routeStore.isDirectConnectionExistBetween(0, RouteUtils.MAX_STATIONS_PER_ROUTE + 1));
+    }
+
+    private Path fileFor(String... lines) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, Arrays.asList(lines), StandardCharsets.US_ASCII);
+        return path;
+    }
+
     private String[] produceRoutesXByY(int stations, int routes) {
         String[] rows = new String[routes + 1];
         rows[0] = String.valueOf(routes);
@@ -146,6 +394,14 @@ public class RouteUtilsTest {
 
             Instant end = Instant.now();
             log.info("Validating big file took {} ", Duration.between(start, end).toString());
+
+            // load time per number of threads, should scale close to linearly up to the available processors
+            for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads <<= 1) {
+                start = Instant.now();
+                RouteUtils.loadRoutesFromFileAndValidate(new File(fileName).toPath(), RouteStoreType.COMPACT, threads);
+                end = Instant.now();
+                log.info("Parsing and validating big file byte by byte with {} threads took {} ", threads, Duration.between(start, end).toString());
+            }
         } finally {
             deleteBigFile(fileName);
         }
@@ -0,0 +1,50 @@
+package com.jojos.challenge.busroute.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author karanikasg@gmail.com.
+ */
+public class VirtualThreadsTest {
+
+    @Test
+    public void testSupportedFromJdk21() {
+        String version = System.getProperty("java.specification.version");
+        boolean modern = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+        Assert.assertEquals(modern, VirtualThreads.isSupported());
+    }
+
+    @Test
+    public void testThreadPerTaskExecutor() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            try {
+                VirtualThreads.threadPerTaskExecutor("test-");
+                Assert.fail("Virtual threads should not be available on " + System.getProperty("java.version"));
+            } catch (UnsupportedOperationException expected) {
+                return;
+            }
+        }
+
+        AtomicReference<Thread> first = new AtomicReference<>();
+        AtomicReference<Thread> second = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(2);
+        VirtualThreads.threadPerTaskExecutor("test-").execute(() -> {
+            first.set(Thread.currentThread());
+            done.countDown();
+        });
+        VirtualThreads.threadPerTaskExecutor("test-").execute(() -> {
+            second.set(Thread.currentThread());
+            done.countDown();
+        });
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        Assert.assertNotSame(first.get(), second.get());
+        Assert.assertTrue(first.get().getName().startsWith("test-"));
+        Assert.assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(first.get()));
+    }
+}